@@ -17,10 +17,15 @@ package science.atlarge.graphalytics.reference;
 
 import java.io.*;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.io.output.TeeOutputStream;
 import science.atlarge.graphalytics.domain.algorithms.*;
 import science.atlarge.graphalytics.execution.BenchmarkRunSetup;
 import science.atlarge.graphalytics.execution.RunSpecification;
@@ -35,14 +40,35 @@ import science.atlarge.graphalytics.domain.benchmark.BenchmarkRun;
 import science.atlarge.graphalytics.domain.graph.PropertyList;
 import science.atlarge.graphalytics.domain.graph.PropertyType;
 import science.atlarge.graphalytics.reference.algorithms.bfs.BreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.bfs.SemiExternalBreadthFirstSearchJob;
 import science.atlarge.graphalytics.reference.algorithms.cdlp.CommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.SemiExternalCommunityDetectionLPJob;
 import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
 import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.SemiExternalPageRankJob;
 import science.atlarge.graphalytics.reference.algorithms.sssp.SingleSourceShortestPathJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.SemiExternalWeaklyConnectedComponentsJob;
 import science.atlarge.graphalytics.reference.algorithms.wcc.WeaklyConnectedComponentsJob;
-import science.atlarge.graphalytics.util.graph.PropertyGraph;
-import science.atlarge.graphalytics.util.graph.PropertyGraphParser;
-import science.atlarge.graphalytics.util.graph.PropertyGraphParser.ValueParser;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraphLoader;
+import science.atlarge.graphalytics.reference.graph.ExecutionMode;
+import science.atlarge.graphalytics.reference.graph.GraphStatistics;
+import science.atlarge.graphalytics.reference.graph.MemoryEstimator;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraphLoader;
+import science.atlarge.graphalytics.reference.output.AsyncOutputWriter;
+import science.atlarge.graphalytics.reference.partitioned.CommunicationStatistics;
+import science.atlarge.graphalytics.reference.partitioned.JobDescription;
+import science.atlarge.graphalytics.reference.partitioned.PartitionCoordinator;
+import science.atlarge.graphalytics.reference.partitioned.ProcessWorkerLauncher;
+import science.atlarge.graphalytics.reference.util.CheckpointStore;
+import science.atlarge.graphalytics.reference.util.ConcurrentRunScheduler;
+import science.atlarge.graphalytics.reference.util.DriverLog;
+import science.atlarge.graphalytics.reference.util.Kernels;
+import science.atlarge.graphalytics.reference.util.MetricsServer;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+import science.atlarge.graphalytics.reference.util.Profiling;
+import science.atlarge.graphalytics.reference.util.Progress;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -56,11 +82,59 @@ import static java.nio.file.Files.readAllBytes;
 public class ReferencePlatform implements Platform {
 
 	private static final Logger LOG = LogManager.getLogger();
-	private static PrintStream sysOut;
-	private static PrintStream sysErr;
+
+	private final ReferencePlatformConfiguration configuration = ReferencePlatformConfiguration.load();
+
+	private boolean incomingEdgesAllowed = true;
+	private AsyncOutputWriter outputWriter;
+	private Profiling.Recording recording;
+	private DriverLog driverLog;
+	private MetricsServer metricsServer;
+	/**
+	 * Statistics of the loaded graphs, by name, which are computed by the first in-memory run on a graph.
+	 */
+	private final Map<String, GraphStatistics> graphStatistics = new HashMap<>();
 
 	@Override
-	public void verifySetup() {}
+	public void verifySetup() {
+		// Fail on invalid settings before any graph is loaded
+		LOG.info("Using " + configuration.getNumThreads() + " threads, " +
+				configuration.getFloatingPointMode().name().toLowerCase() + " floating-point mode, " +
+				configuration.getWeightPrecision().name().toLowerCase() + "-precision edge weights.");
+		LOG.info("Maximum heap size: " + MemoryEstimator.formatBytes(Runtime.getRuntime().maxMemory()) +
+				(configuration.isMemoryCheckEnabled() ? "" : " (memory check disabled)") + ".");
+		LOG.info("Vector kernels: " + (Kernels.isVectorized() ? "enabled" : "not available, using scalar kernels") + ".");
+		LOG.info("Adaptive selection of BFS, LCC and SSSP variants: " +
+				(configuration.isAdaptiveSelectionEnabled() ? "enabled" : "disabled") + ".");
+		String recordingConfiguration = configuration.getFlightRecordingConfiguration();
+		if (recordingConfiguration != null) {
+			LOG.info("Flight recording: " + (Profiling.isAvailable() ? "enabled, " + recordingConfiguration +
+					" configuration" : "not available, requires Java 17 or newer") + ".");
+		}
+		if (configuration.getExecutionMode() == ExecutionMode.SEMI_EXTERNAL) {
+			LOG.info("Semi-external execution: edge files in " + configuration.getSemiExternalDirectory() + ", " +
+					MemoryEstimator.formatBytes(configuration.getSemiExternalBlockBytes()) + " blocks.");
+		} else if (configuration.getExecutionMode() == ExecutionMode.PARTITIONED) {
+			LOG.info("Partitioned execution: " + configuration.getNumPartitions() + " workers, " +
+					configuration.getPartitioning().name().toLowerCase() + " partitioning, worker JVM options " +
+					configuration.getWorkerJvmOptions() + ".");
+		}
+		LocalClusteringCoefficientJob.Approximation lccApproximation = configuration.getLccApproximation();
+		if (lccApproximation != LocalClusteringCoefficientJob.Approximation.EXACT) {
+			LOG.warn("Approximate LCC: " + variantName(lccApproximation) + " with " +
+					configuration.getLccSampleSize() + " samples per vertex; the output will not pass validation.");
+		}
+		PageRankJob.Approximation prApproximation = configuration.getPageRankApproximation();
+		if (prApproximation != PageRankJob.Approximation.EXACT) {
+			LOG.warn("Approximate PageRank: " + (prApproximation == PageRankJob.Approximation.RESIDUAL
+					? "stopping at L1 residual " + configuration.getPageRankResidual()
+					: configuration.getPageRankWalks() + " random walks per vertex") +
+					", in memory only; the output will not pass validation.");
+		}
+		if (configuration.isApproximationBaselineEnabled()) {
+			LOG.info("Approximate runs are followed by the exact job to measure their speedup and error.");
+		}
+	}
 
 	@Override
 	public LoadedGraph loadGraph(FormattedGraph formattedGraph) throws Exception {
@@ -68,18 +142,47 @@ public class ReferencePlatform implements Platform {
 	}
 
 	@Override
-	public void deleteGraph(LoadedGraph loadedGraph) {}
+	public void deleteGraph(LoadedGraph loadedGraph) {
+		graphStatistics.remove(loadedGraph.getFormattedGraph().getName());
+	}
 
 	@Override
-	public void prepare(RunSpecification runSpecification) {}
+	public void prepare(RunSpecification runSpecification) {
+		FormattedGraph formattedGraph = runSpecification.getRuntimeSetup().getLoadedGraph().getFormattedGraph();
+		Algorithm algorithm = runSpecification.getBenchmarkRun().getAlgorithm();
+		incomingEdgesAllowed = true;
+		if (!isSemiExternal(algorithm) && !isPartitioned(algorithm)) {
+			checkEdgeLimit(formattedGraph);
+		}
+		if (configuration.isMemoryCheckEnabled() && !isPartitioned(algorithm)) {
+			// Partitioned runs load the graph in the worker processes, whose heap is set by the worker JVM options
+			incomingEdgesAllowed = checkMemory(formattedGraph, algorithm);
+		}
+	}
 
 	@Override
 	public void startup(RunSpecification runSpecification) {
 		BenchmarkRunSetup benchmarkRunSetup = runSpecification.getBenchmarkRunSetup();
-		startBenchmarkLogging(benchmarkRunSetup.getLogDir().resolve("platform").resolve("driver.logs"));
+		BenchmarkRun benchmarkRun = runSpecification.getBenchmarkRun();
+		startBenchmarkLogging(benchmarkRunSetup.getLogDir().resolve("platform").resolve("driver.logs"),
+				benchmarkRun.getId(), benchmarkRun.getAlgorithm().name());
+
+		String recordingConfiguration = configuration.getFlightRecordingConfiguration();
+		if (recordingConfiguration != null && Profiling.isAvailable()) {
+			// Recording is best-effort, a run is not failed because it cannot be recorded
+			try {
+				recording = Profiling.startRecording(recordingConfiguration);
+			} catch (IOException | RuntimeException e) {
+				LOG.warn("Failed to start flight recording", e);
+			}
+		}
+
+		metricsServer = MetricsServer.start(Progress.get(), configuration.getMetricsPort());
+		if (metricsServer.getUrl() != null) {
+			LOG.info("Progress of the run: " + metricsServer.getUrl());
+		}
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void run(RunSpecification runSpecification) throws PlatformExecutionException {
 
@@ -91,87 +194,552 @@ public class ReferencePlatform implements Platform {
 		Object parameters = benchmarkRun.getAlgorithmParameters();
 		Map<Long, ? extends Object> output;
 
-		PropertyGraph graph = null;
+		LOG.info(DriverLog.LOADING, DriverLog.LOADING_STARTS + System.currentTimeMillis());
+		if (isSemiExternal(algorithm)) {
+			output = runSemiExternal(runtimeSetup.getLoadedGraph().getFormattedGraph(), algorithm, parameters);
+			submitOutput(benchmarkRunSetup, benchmarkRun, output);
+			LOG.info(DriverLog.PROCESSING, DriverLog.PROCESSING_ENDS + System.currentTimeMillis());
+			return;
+		} else if (isPartitioned(algorithm)) {
+			output = runPartitioned(runtimeSetup.getLoadedGraph().getFormattedGraph(), algorithm, parameters,
+					benchmarkRunSetup.getLogDir().resolve("platform"));
+			submitOutput(benchmarkRunSetup, benchmarkRun, output);
+			LOG.info(DriverLog.PROCESSING, DriverLog.PROCESSING_ENDS + System.currentTimeMillis());
+			return;
+		} else if (configuration.getExecutionMode() == ExecutionMode.SEMI_EXTERNAL) {
+			LOG.warn(algorithm + " has no semi-external implementation, loading the graph into memory.");
+		} else if (configuration.getExecutionMode() == ExecutionMode.PARTITIONED) {
+			LOG.warn(algorithm + " has no partitioned implementation, loading the graph into memory.");
+		}
+
+		Profiling.Span loadSpan = Profiling.beginLoad(runtimeSetup.getLoadedGraph().getFormattedGraph().getName(),
+				algorithm.name());
+		CsrGraph graph;
 		try {
-			graph = convertToPropertyGraph(runtimeSetup.getLoadedGraph().getFormattedGraph());
-		} catch (Exception e) {
-			e.printStackTrace();
+			graph = convertToCsrGraph(runtimeSetup.getLoadedGraph().getFormattedGraph());
+		} catch (IOException e) {
+			throw new PlatformExecutionException("Failed to load graph", e);
 		}
 
-		LOG.info("Processing starts at: " + System.currentTimeMillis());
+		// Selecting a variant is part of loading the graph, not of processing it
+		Variants variants = selectVariants(runtimeSetup.getLoadedGraph().getFormattedGraph(), graph, algorithm,
+				configuration.getNumThreads());
+		if (needsIncomingEdges(algorithm, variants) && graph.supportsIncomingEdges()) {
+			// Building the reverse edge index is part of loading the graph, not of processing it
+			graph.buildIncomingEdges();
+		}
+
+		CheckpointStore checkpoints = createCheckpointStore(runtimeSetup.getLoadedGraph().getFormattedGraph(), algorithm);
+		loadSpan.end(graph.getNumberOfVertices(), graph.getNumberOfEdges());
+
+		LOG.info(DriverLog.PROCESSING, DriverLog.PROCESSING_STARTS + System.currentTimeMillis());
+		Profiling.Span processingSpan = Profiling.beginProcessing(
+				runtimeSetup.getLoadedGraph().getFormattedGraph().getName(), algorithm.name());
+		long processingStart = System.nanoTime();
+		try (ParallelExecutor executor = new ParallelExecutor(configuration.getNumThreads())) {
+			output = runJob(graph, algorithm, parameters, variants, executor, checkpoints);
+		} finally {
+			if (checkpoints != null) {
+				checkpoints.close();
+			}
+		}
+		long processingNanos = System.nanoTime() - processingStart;
+		processingSpan.end(output.size(), graph.getNumberOfEdges());
+
+		submitOutput(benchmarkRunSetup, benchmarkRun, output);
+		LOG.info(DriverLog.PROCESSING, DriverLog.PROCESSING_ENDS + System.currentTimeMillis());
+
+		if (variants.isApproximate() && configuration.isApproximationBaselineEnabled()) {
+			compareWithExactJob(graph, algorithm, parameters, variants, output, processingNanos);
+		}
+
+		if (checkpoints != null) {
+			// Checkpointing is part of the processing time; report its overhead so it can be accounted for
+			LOG.info("Checkpoint time: " + toSeconds(checkpoints.getWriteTimeMillis()) + " s for " +
+					checkpoints.getNumberOfCheckpoints() + " checkpoints in the background, processing waited " +
+					toSeconds(checkpoints.getWaitTimeMillis()) + " s for checkpoints and " +
+					toSeconds(checkpoints.getRestoreTimeMillis()) + " s to restore a checkpoint.");
+		}
+	}
+
+	/**
+	 * Executes several in-memory runs on the same graph concurrently, instead of one after another as the benchmark
+	 * driver does. This is a library API for throughput experiments, e.g., many small runs on one graph; the driver
+	 * never calls it, and runs executed this way are not part of a benchmark report. The graph is loaded once and
+	 * shared read-only by all runs, and the configured number of threads is split over the runs that execute at the
+	 * same time, see {@link ConcurrentRunScheduler}. Outputs are written once all runs have completed, so that writing
+	 * them does not slow down runs that are still processing. Runs are not checkpointed.
+	 * <p>
+	 * The processing time of every run includes any slowdown from sharing the machine with the other runs, so it is
+	 * not comparable with the processing time of a run executed alone. It is logged together with the time the run
+	 * waited for other runs and the wall-clock time of the whole suite, and returned with the makespan of every run,
+	 * which covers loading the graph and waiting. Every run tracks its own {@link Progress}, which is exposed by the
+	 * metrics server under the name of the run.
+	 *
+	 * @param maxConcurrentRuns the maximum number of runs executed at the same time, or 0 to execute as many runs as
+	 *                          the number of threads allows
+	 * @return the metrics of every run, in the given order; the metrics of a failed run are empty
+	 * @throws PlatformExecutionException if the runs do not share a graph, a run does not execute in memory, or the
+	 *                                    graph cannot be loaded
+	 */
+	public List<BenchmarkMetrics> runConcurrently(List<RunSpecification> runSpecifications, int maxConcurrentRuns)
+			throws PlatformExecutionException {
+		List<BenchmarkMetrics> metrics = new ArrayList<>();
+		if (runSpecifications.isEmpty()) {
+			return metrics;
+		}
+		FormattedGraph formattedGraph = runSpecifications.get(0).getRuntimeSetup().getLoadedGraph()
+				.getFormattedGraph();
+		List<Algorithm> algorithms = new ArrayList<>();
+		StringBuilder algorithmNames = new StringBuilder();
+		for (RunSpecification runSpecification : runSpecifications) {
+			BenchmarkRun benchmarkRun = runSpecification.getBenchmarkRun();
+			String graphName = runSpecification.getRuntimeSetup().getLoadedGraph().getFormattedGraph().getName();
+			if (!graphName.equals(formattedGraph.getName())) {
+				throw new PlatformExecutionException("Concurrent runs must share a graph, but " +
+						benchmarkRun.getName() + " runs on " + graphName + " instead of " + formattedGraph.getName());
+			}
+			Algorithm algorithm = benchmarkRun.getAlgorithm();
+			if (isSemiExternal(algorithm) || isPartitioned(algorithm)) {
+				throw new PlatformExecutionException("Concurrent runs execute in memory, but " +
+						benchmarkRun.getName() + " runs in " + variantName(configuration.getExecutionMode()) +
+						" mode");
+			}
+			algorithms.add(algorithm);
+			algorithmNames.append(algorithmNames.length() > 0 ? "," : "").append(algorithm.name());
+		}
+
+		ConcurrentRunScheduler scheduler = new ConcurrentRunScheduler(configuration.getNumThreads(), maxConcurrentRuns);
+		int numSlots = scheduler.getNumberOfSlots(runSpecifications.size());
+		int[] slotThreads = scheduler.getThreadsPerSlot(runSpecifications.size());
+		LOG.info("Concurrent runs: " + runSpecifications.size() + " runs on " + formattedGraph.getName() + ", " +
+				numSlots + " at a time with " + slotThreads[numSlots - 1] +
+				(slotThreads[0] > slotThreads[numSlots - 1] ? " or " + slotThreads[0] : "") + " threads each.");
+		checkEdgeLimit(formattedGraph);
+		incomingEdgesAllowed = true;
+		if (configuration.isMemoryCheckEnabled()) {
+			incomingEdgesAllowed = checkConcurrentMemory(formattedGraph, algorithms, numSlots);
+		}
+
+		long loadStartNanos = System.nanoTime();
+		Profiling.Span loadSpan = Profiling.beginLoad(formattedGraph.getName(), algorithmNames.toString());
+		final String graphName = formattedGraph.getName();
+		final CsrGraph graph;
+		try {
+			graph = convertToCsrGraph(formattedGraph);
+		} catch (IOException e) {
+			throw new PlatformExecutionException("Failed to load graph", e);
+		}
+
+		// The runs share the graph, so anything they would build on it is built before any of them starts
+		List<ConcurrentRunScheduler.Run<Map<Long, ? extends Object>>> runs = new ArrayList<>();
+		boolean incomingEdges = false;
+		for (int i = 0; i < algorithms.size(); i++) {
+			final Algorithm algorithm = algorithms.get(i);
+			final Object parameters = runSpecifications.get(i).getBenchmarkRun().getAlgorithmParameters();
+			final Variants variants = selectVariants(formattedGraph, graph, algorithm, slotThreads[numSlots - 1]);
+			incomingEdges |= needsIncomingEdges(algorithm, variants);
+			// Every run tracks its own progress, which also adds up to the progress of the suite
+			final Progress progress = new Progress(Progress.get());
+			if (metricsServer != null) {
+				metricsServer.addRun(runSpecifications.get(i).getBenchmarkRun().getName(), progress);
+			}
+			runs.add(new ConcurrentRunScheduler.Run<Map<Long, ? extends Object>>() {
+				@Override
+				public Map<Long, ? extends Object> run(ParallelExecutor executor) throws Exception {
+					Progress previous = Progress.bind(progress);
+					progress.beginProcessing(graphName, algorithm.name());
+					try {
+						return runJob(graph, algorithm, parameters, variants, executor, null);
+					} finally {
+						progress.endPhase(Progress.Phase.PROCESSING);
+						Progress.bind(previous);
+					}
+				}
+			});
+		}
+		if (incomingEdges && graph.supportsIncomingEdges()) {
+			graph.buildIncomingEdges();
+		}
+		loadSpan.end(graph.getNumberOfVertices(), graph.getNumberOfEdges());
+		long loadNanos = System.nanoTime() - loadStartNanos;
+		LOG.info("Load time: " + toSeconds(TimeUnit.NANOSECONDS.toMillis(loadNanos)) + " s");
+
+		Profiling.Span processingSpan = Profiling.beginProcessing(formattedGraph.getName(),
+				algorithmNames.toString());
+		ConcurrentRunScheduler.Suite<Map<Long, ? extends Object>> suite;
+		try {
+			suite = scheduler.runAll(runs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PlatformExecutionException("Interrupted while executing concurrent runs", e);
+		}
+		long outputSize = 0;
+		for (ConcurrentRunScheduler.Result<Map<Long, ? extends Object>> result : suite.getResults()) {
+			outputSize += result.getOutput() != null ? result.getOutput().size() : 0;
+		}
+		processingSpan.end(outputSize, graph.getNumberOfEdges());
+
+		for (int i = 0; i < runSpecifications.size(); i++) {
+			String name = runSpecifications.get(i).getBenchmarkRun().getName();
+			ConcurrentRunScheduler.Result<Map<Long, ? extends Object>> result = suite.getResults().get(i);
+			if (result.getFailure() != null) {
+				LOG.error("Run " + name + " failed.", result.getFailure());
+				metrics.add(new BenchmarkMetrics());
+				continue;
+			}
+			long processingMillis = TimeUnit.NANOSECONDS.toMillis(result.getProcessingNanos());
+			long waitMillis = TimeUnit.NANOSECONDS.toMillis(result.getWaitNanos());
+			LOG.info("Run " + name + ": " + algorithms.get(i) + " on " + result.getNumberOfThreads() +
+					" threads, processing time " + toSeconds(processingMillis) + " s, waited " +
+					toSeconds(waitMillis) + " s.");
+
+			BenchmarkMetrics runMetrics = new BenchmarkMetrics();
+			runMetrics.setProcessingTime(new BenchmarkMetric(toSeconds(processingMillis), "s"));
+			// The makespan of a run covers the shared loading of the graph and the wait for other runs
+			runMetrics.setMakespan(new BenchmarkMetric(toSeconds(TimeUnit.NANOSECONDS.toMillis(loadNanos) +
+					waitMillis + processingMillis), "s"));
+			metrics.add(runMetrics);
+		}
+		LOG.info(String.format(Locale.ROOT, "Suite wall-clock time: %s s for %d runs, total processing time %s s " +
+						"(%.2f runs processing at a time on average).",
+				toSeconds(TimeUnit.NANOSECONDS.toMillis(suite.getWallClockNanos())), runSpecifications.size(),
+				toSeconds(TimeUnit.NANOSECONDS.toMillis(suite.getTotalProcessingNanos())),
+				(double)suite.getTotalProcessingNanos() / Math.max(1, suite.getWallClockNanos())));
+
+		for (int i = 0; i < runSpecifications.size(); i++) {
+			Map<Long, ? extends Object> output = suite.getResults().get(i).getOutput();
+			if (output != null) {
+				writeOutput(runSpecifications.get(i), output);
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * Writes the output of a concurrent run, if the run requires it, and waits for it to be written.
+	 */
+	private void writeOutput(RunSpecification runSpecification, Map<Long, ? extends Object> output)
+			throws PlatformExecutionException {
+		BenchmarkRunSetup benchmarkRunSetup = runSpecification.getBenchmarkRunSetup();
+		BenchmarkRun benchmarkRun = runSpecification.getBenchmarkRun();
+		if (!benchmarkRunSetup.isOutputRequired()) {
+			return;
+		}
+		String outputFile = benchmarkRunSetup.getOutputDir().resolve(benchmarkRun.getName()).toAbsolutePath().toString();
+		try (AsyncOutputWriter writer = new AsyncOutputWriter(configuration.getOutputCompression())) {
+			writer.submit(outputFile, output, benchmarkRun.getAlgorithm().name());
+			LOG.info("Output time of " + benchmarkRun.getName() + ": " + toSeconds(writer.awaitCompletion()) + " s");
+		} catch (IOException e) {
+			throw new PlatformExecutionException("Failed to write output of " + benchmarkRun.getName(), e);
+		}
+	}
+
+	/**
+	 * The implementation variants of BFS, LCC and SSSP, and the approximations of LCC and PageRank, selected for a
+	 * run.
+	 */
+	private static final class Variants {
+
+		private BreadthFirstSearchJob.Variant bfs = BreadthFirstSearchJob.Variant.TOP_DOWN;
+		private LocalClusteringCoefficientJob.Variant lcc = LocalClusteringCoefficientJob.Variant.MERGE;
+		private SingleSourceShortestPathJob.Variant sssp = SingleSourceShortestPathJob.Variant.DIJKSTRA;
+		private double delta = 0.0;
+		private LocalClusteringCoefficientJob.Approximation lccApproximation =
+				LocalClusteringCoefficientJob.Approximation.EXACT;
+		private PageRankJob.Approximation prApproximation = PageRankJob.Approximation.EXACT;
+
+		private boolean isApproximate() {
+			return lccApproximation != LocalClusteringCoefficientJob.Approximation.EXACT ||
+					prApproximation != PageRankJob.Approximation.EXACT;
+		}
+
+		/**
+		 * @return the same variants without approximations
+		 */
+		private Variants exact() {
+			Variants exact = new Variants();
+			exact.bfs = bfs;
+			exact.lcc = lcc;
+			exact.sssp = sssp;
+			exact.delta = delta;
+			return exact;
+		}
+
+	}
+
+	/**
+	 * @param numThreads the number of threads with which the algorithm will run
+	 * @return the variants selected from statistics of the graph, or the baseline variants if adaptive selection is
+	 * disabled
+	 */
+	private Variants selectVariants(FormattedGraph formattedGraph, CsrGraph graph, Algorithm algorithm,
+			int numThreads) {
+		Variants variants = new Variants();
+		if (algorithm == Algorithm.LCC) {
+			variants.lccApproximation = configuration.getLccApproximation();
+		} else if (algorithm == Algorithm.PR) {
+			variants.prApproximation = configuration.getPageRankApproximation();
+		}
+		if (!configuration.isAdaptiveSelectionEnabled() || !hasVariants(algorithm)) {
+			return variants;
+		}
+		GraphStatistics statistics = getGraphStatistics(formattedGraph, graph);
 		switch (algorithm) {
 			case BFS:
-				output = new BreadthFirstSearchJob((PropertyGraph<Void, Void>) graph, (BreadthFirstSearchParameters)parameters).run();
+				variants.bfs = BreadthFirstSearchJob.selectVariant(statistics, graph.supportsIncomingEdges());
+				LOG.info("Selected " + variantName(variants.bfs) + " BFS.");
 				break;
-			case CDLP:
-				output = new CommunityDetectionLPJob((PropertyGraph<Void, Void>) graph, (CommunityDetectionLPParameters)parameters).run();
+			case LCC:
+				variants.lcc = LocalClusteringCoefficientJob.selectVariant(statistics);
+				LOG.info("Selected " + variantName(variants.lcc) + " LCC.");
 				break;
-			case WCC:
-				output = new WeaklyConnectedComponentsJob(graph).run();
+			case SSSP:
+				variants.sssp = SingleSourceShortestPathJob.selectVariant(statistics, numThreads);
+				if (variants.sssp == SingleSourceShortestPathJob.Variant.DELTA_STEPPING) {
+					variants.delta = SingleSourceShortestPathJob.selectDelta(statistics);
+					LOG.info("Selected " + variantName(variants.sssp) + " SSSP with delta " + variants.delta + ".");
+				} else {
+					LOG.info("Selected " + variantName(variants.sssp) + " SSSP.");
+				}
 				break;
-			case PR:
-				output = new PageRankJob((PropertyGraph<Void, Void>) graph, (PageRankParameters)parameters).run();
+			default:
 				break;
+		}
+		return variants;
+	}
+
+	private boolean needsIncomingEdges(Algorithm algorithm, Variants variants) {
+		if (algorithm == Algorithm.BFS) {
+			return variants.bfs == BreadthFirstSearchJob.Variant.DIRECTION_OPTIMIZING;
+		} else if (algorithm == Algorithm.PR && variants.prApproximation == PageRankJob.Approximation.MONTE_CARLO) {
+			// Random walks only follow outgoing edges
+			return false;
+		}
+		return usesIncomingEdges(algorithm);
+	}
+
+	/**
+	 * Runs the exact job after an approximate job, outside the processing time, and logs the speedup of the
+	 * approximate job and the error of its output.
+	 */
+	private void compareWithExactJob(CsrGraph graph, Algorithm algorithm, Object parameters, Variants variants,
+			Map<Long, ? extends Object> approximateOutput, long approximateNanos) throws PlatformExecutionException {
+		LOG.info("Running the exact job to measure the approximation.");
+		Variants exactVariants = variants.exact();
+		if (needsIncomingEdges(algorithm, exactVariants) && graph.supportsIncomingEdges()) {
+			graph.buildIncomingEdges();
+		}
+		long start = System.nanoTime();
+		Map<Long, ? extends Object> exactOutput;
+		try (ParallelExecutor executor = new ParallelExecutor(configuration.getNumThreads())) {
+			exactOutput = runJob(graph, algorithm, parameters, exactVariants, executor, null);
+		}
+		long exactNanos = System.nanoTime() - start;
+
+		double maxError = 0.0;
+		double totalError = 0.0;
+		for (Map.Entry<Long, ? extends Object> entry : exactOutput.entrySet()) {
+			double error = Math.abs(((Number)entry.getValue()).doubleValue() -
+					((Number)approximateOutput.get(entry.getKey())).doubleValue());
+			maxError = Math.max(maxError, error);
+			totalError += error;
+		}
+		LOG.info(String.format(Locale.ROOT, "Approximation: processing time %s s, exact job %s s, speedup %.2f, " +
+						"maximum absolute error %.3g, L1 error %.3g.",
+				toSeconds(TimeUnit.NANOSECONDS.toMillis(approximateNanos)),
+				toSeconds(TimeUnit.NANOSECONDS.toMillis(exactNanos)), (double)exactNanos / approximateNanos,
+				maxError, totalError));
+	}
+
+	/**
+	 * Runs the job of an algorithm on an in-memory graph, which the job only reads.
+	 *
+	 * @param checkpoints the store for checkpoints of the job, or null if the job is not checkpointed
+	 */
+	private Map<Long, ? extends Object> runJob(CsrGraph graph, Algorithm algorithm, Object parameters,
+			Variants variants, ParallelExecutor executor, CheckpointStore checkpoints)
+			throws PlatformExecutionException {
+		switch (algorithm) {
+			case BFS:
+				return new BreadthFirstSearchJob(graph, (BreadthFirstSearchParameters)parameters, executor,
+						variants.bfs).run();
+			case CDLP:
+				CommunityDetectionLPJob cdlpJob = new CommunityDetectionLPJob(graph,
+						(CommunityDetectionLPParameters)parameters);
+				cdlpJob.setCheckpointStore(checkpoints);
+				return cdlpJob.run();
+			case WCC:
+				return new WeaklyConnectedComponentsJob(graph).run();
+			case PR:
+				PageRankJob prJob = new PageRankJob(graph, (PageRankParameters)parameters, executor,
+						configuration.getFloatingPointMode());
+				prJob.setCheckpointStore(checkpoints);
+				prJob.setApproximation(variants.prApproximation);
+				prJob.setResidualThreshold(configuration.getPageRankResidual());
+				prJob.setWalksPerVertex(configuration.getPageRankWalks());
+				return prJob.run();
 			case LCC:
-				output = new LocalClusteringCoefficientJob(graph).run();
-				break;
+				LocalClusteringCoefficientJob lccJob = new LocalClusteringCoefficientJob(graph, executor,
+						variants.lcc);
+				lccJob.setApproximation(variants.lccApproximation, configuration.getLccSampleSize());
+				return lccJob.run();
 			case SSSP:
-				output = new SingleSourceShortestPathJob((PropertyGraph<Void, Double>) graph, (SingleSourceShortestPathsParameters)parameters).run();
-				break;
+				return new SingleSourceShortestPathJob(graph, (SingleSourceShortestPathsParameters)parameters,
+						executor, variants.sssp, variants.delta).run();
 			default:
 				throw new PlatformExecutionException("Unsupported algorithm: " + algorithm);
 		}
+	}
 
-		if (benchmarkRunSetup.isOutputRequired()) {
-			try {
-				String outputFile = benchmarkRunSetup.getOutputDir().resolve(benchmarkRun.getName()).toAbsolutePath().toString();
-				writeOutput(outputFile, output);
-			} catch(IOException e) {
-				throw new PlatformExecutionException("An error while writing to output file", e);
+	/**
+	 * Loads the graph into a {@link SemiExternalGraph} and runs the algorithm on it. The binary files of the graph
+	 * are deleted when the run completes.
+	 */
+	private Map<Long, ? extends Object> runSemiExternal(FormattedGraph formattedGraph, Algorithm algorithm,
+			Object parameters) throws PlatformExecutionException {
+		LOG.info("Loading graph: " + formattedGraph.getName() + " (semi-external).");
+		Profiling.Span loadSpan = Profiling.beginLoad(formattedGraph.getName(), algorithm.name());
+		SemiExternalGraphLoader loader = new SemiExternalGraphLoader(configuration.getSemiExternalDirectory(),
+				configuration.getSemiExternalBlockBytes(), getPartitionBytes());
+		try (SemiExternalGraph graph = loader.load(formattedGraph.getName(), formattedGraph.getVertexFilePath(),
+				formattedGraph.getEdgeFilePath(), formattedGraph.isDirected())) {
+			if (algorithm == Algorithm.CDLP) {
+				// Building the neighbour lists is part of loading the graph, not of processing it
+				graph.buildNeighbourLists();
 			}
+			LOG.info("Loaded graph: " + formattedGraph.getName() + ".");
+
+			loadSpan.end(graph.getNumberOfVertices(), graph.getNumberOfEdges());
+
+			Map<Long, ? extends Object> output;
+			LOG.info(DriverLog.PROCESSING, DriverLog.PROCESSING_STARTS + System.currentTimeMillis());
+			Profiling.Span processingSpan = Profiling.beginProcessing(formattedGraph.getName(), algorithm.name());
+			switch (algorithm) {
+				case BFS:
+					output = new SemiExternalBreadthFirstSearchJob(graph, (BreadthFirstSearchParameters)parameters).run();
+					break;
+				case CDLP:
+					output = new SemiExternalCommunityDetectionLPJob(graph,
+							(CommunityDetectionLPParameters)parameters).run();
+					break;
+				case WCC:
+					output = new SemiExternalWeaklyConnectedComponentsJob(graph).run();
+					break;
+				case PR:
+					output = new SemiExternalPageRankJob(graph, (PageRankParameters)parameters).run();
+					break;
+				default:
+					throw new PlatformExecutionException("Unsupported algorithm in semi-external mode: " + algorithm);
+			}
+			processingSpan.end(output.size(), graph.getNumberOfEdges());
+			LOG.info("Semi-external I/O: " + graph.getIoStatistics() + ".");
+			return output;
+		} catch (IOException e) {
+			throw new PlatformExecutionException("Failed to process semi-external graph", e);
+		}
+	}
+
+	/**
+	 * Partitions the graph over worker processes on the local machine and runs the algorithm on them. Loading ends
+	 * when every worker has loaded its partition; the output of the workers is gathered by this process.
+	 *
+	 * @param logDirectory the directory to which the output of the worker processes is written
+	 */
+	private Map<Long, ? extends Object> runPartitioned(FormattedGraph formattedGraph, Algorithm algorithm,
+			Object parameters, Path logDirectory) throws PlatformExecutionException {
+		int numPartitions = configuration.getNumPartitions();
+		LOG.info("Loading graph: " + formattedGraph.getName() + " (" + numPartitions + " partitions).");
+		Profiling.Span loadSpan = Profiling.beginLoad(formattedGraph.getName(), algorithm.name());
+		JobDescription job = JobDescription.create(formattedGraph.getVertexFilePath(),
+				formattedGraph.getEdgeFilePath(), formattedGraph.isDirected(), algorithm, parameters,
+				configuration.getPartitioning(), numPartitions);
+		try (PartitionCoordinator coordinator = new PartitionCoordinator(numPartitions,
+				new ProcessWorkerLauncher(configuration.getWorkerJvmOptions(), logDirectory))) {
+			coordinator.start(job);
+			LOG.info("Loaded graph: " + formattedGraph.getName() + ".");
+			loadSpan.end(formattedGraph.getNumberOfVertices(), formattedGraph.getNumberOfEdges());
+
+			LOG.info(DriverLog.PROCESSING, DriverLog.PROCESSING_STARTS + System.currentTimeMillis());
+			Profiling.Span processingSpan = Profiling.beginProcessing(formattedGraph.getName(), algorithm.name());
+			Map<Long, ? extends Object> output = coordinator.process();
+			processingSpan.end(output.size(), formattedGraph.getNumberOfEdges());
+
+			List<CommunicationStatistics> supersteps = coordinator.getCommunicationStatistics();
+			for (int s = 0; s < supersteps.size(); s++) {
+				LOG.info("Superstep " + s + ": " + supersteps.get(s) + ".");
+			}
+			LOG.info("Communication: " + supersteps.size() + " supersteps, " + coordinator.getTotalCommunication() +
+					".");
+			return output;
+		} catch (IOException e) {
+			throw new PlatformExecutionException("Failed to run partitioned job, see the worker logs in " +
+					logDirectory, e);
+		}
+	}
+
+	private void submitOutput(BenchmarkRunSetup benchmarkRunSetup, BenchmarkRun benchmarkRun,
+			Map<Long, ? extends Object> output) {
+		if (benchmarkRunSetup.isOutputRequired()) {
+			// The output is written in the background and awaited in finalize, outside the processing time
+			String outputFile = benchmarkRunSetup.getOutputDir().resolve(benchmarkRun.getName()).toAbsolutePath().toString();
+			outputWriter = new AsyncOutputWriter(configuration.getOutputCompression());
+			outputWriter.submit(outputFile, output, benchmarkRun.getAlgorithm().name());
 		}
-		LOG.info("Processing ends at: " + System.currentTimeMillis());
 	}
 
 	@Override
 	public BenchmarkMetrics finalize(RunSpecification runSpecification) {
-		stopPlatformLogging();
+		IOException outputException = null;
+		if (outputWriter != null) {
+			try {
+				LOG.info("Output time: " + toSeconds(outputWriter.awaitCompletion()) + " s");
+			} catch (IOException e) {
+				outputException = e;
+			} finally {
+				outputWriter.close();
+				outputWriter = null;
+			}
+		}
+		if (recording != null) {
+			Path recordingFile = runSpecification.getBenchmarkRunSetup().getLogDir().resolve("platform")
+					.resolve("recording.jfr");
+			try {
+				recording.dump(recordingFile);
+				LOG.info("Flight recording: " + recordingFile);
+			} catch (IOException e) {
+				LOG.warn("Failed to write flight recording to " + recordingFile, e);
+			} finally {
+				recording.close();
+				recording = null;
+			}
+		}
+		stopMetricsServer();
+		stopBenchmarkLogging();
+		if (outputException != null) {
+			throw new IllegalStateException("An error while writing to output file", outputException);
+		}
+
 		BenchmarkRunSetup benchmarkRunSetup = runSpecification.getBenchmarkRunSetup();
 		Path path = benchmarkRunSetup.getLogDir().resolve("platform").resolve("driver.logs");
 		String logs = null;
 		try {
-			logs = new String(readAllBytes(path));
+			logs = new String(readAllBytes(path), StandardCharsets.UTF_8);
 		} catch (IOException e) {
-			e.printStackTrace();
-			throw new IllegalStateException("Can't read file at " + path);
+			throw new IllegalStateException("Can't read file at " + path, e);
 		}
 
-		Long startTime = null;
-		Long endTime = null;
-
-		for (String line : logs.split("\n")) {
-			try {
-				if (line.contains("Processing starts at: ")) {
-					String[] lineParts = line.split("\\s+");
-					startTime = Long.parseLong(lineParts[lineParts.length - 1]);
-				}
-
-				if (line.contains("Processing ends at: ")) {
-					String[] lineParts = line.split("\\s+");
-					endTime = Long.parseLong(lineParts[lineParts.length - 1]);
-				}
-			} catch (Exception e) {
-				LOG.error(String.format("Cannot parse line: %s", line, e));
-			}
-
-		}
+		Long loadStartTime = DriverLog.readTime(logs, DriverLog.LOADING_STARTS);
+		Long startTime = DriverLog.readTime(logs, DriverLog.PROCESSING_STARTS);
+		Long endTime = DriverLog.readTime(logs, DriverLog.PROCESSING_ENDS);
 
 		if(startTime != null && endTime != null) {
 
 			BenchmarkMetrics metrics = new BenchmarkMetrics();
-			Long procTimeMS =  new Long(endTime - startTime);
-			BigDecimal procTimeS = (new BigDecimal(procTimeMS)).divide(new BigDecimal(1000), 3, BigDecimal.ROUND_CEILING);
-			metrics.setProcessingTime(new BenchmarkMetric(procTimeS, "s"));
+			metrics.setProcessingTime(new BenchmarkMetric(toSeconds(endTime - startTime), "s"));
+			if (loadStartTime != null) {
+				metrics.setMakespan(new BenchmarkMetric(toSeconds(endTime - loadStartTime), "s"));
+			}
 
 			return metrics;
 		} else {
@@ -181,84 +749,301 @@ public class ReferencePlatform implements Platform {
 
 	@Override
 	public void terminate(RunSpecification runSpecification) {
+		if (outputWriter != null) {
+			outputWriter.close();
+			outputWriter = null;
+		}
+		if (recording != null) {
+			recording.close();
+			recording = null;
+		}
+		stopMetricsServer();
+		stopBenchmarkLogging();
+	}
 
+	private void stopMetricsServer() {
+		if (metricsServer != null) {
+			metricsServer.close();
+			metricsServer = null;
+		}
 	}
 
-	private PropertyGraph convertToPropertyGraph(FormattedGraph formattedGraph) throws Exception {
+	private CsrGraph convertToCsrGraph(FormattedGraph formattedGraph) throws IOException {
 		LOG.info("Loading graph: " + formattedGraph.getName() + ".");
 
-		ValueParser vertexParser = getValueParser(formattedGraph.getVertexProperties());
-		ValueParser edgeParser = getValueParser(formattedGraph.getEdgeProperties());
-
-		PropertyGraph graph = PropertyGraphParser.parsePropertyGraph(
+		CsrGraphLoader loader = new CsrGraphLoader(configuration.getNumThreads());
+		loader.setIncomingEdgesAllowed(incomingEdgesAllowed);
+		loader.setWeightPrecision(configuration.getWeightPrecision());
+		CsrGraph graph = loader.load(
 				formattedGraph.getVertexFilePath(),
 				formattedGraph.getEdgeFilePath(),
 				formattedGraph.isDirected(),
-				vertexParser,
-				edgeParser);
+				isWeighted(formattedGraph.getEdgeProperties()));
 
 		LOG.info("Loaded graph: " + formattedGraph.getName() + ".");
 
 		return graph;
 	}
 
+	/**
+	 * @return the statistics of the graph, which are computed on the first run on the graph and cached until the
+	 * graph is deleted
+	 */
+	private GraphStatistics getGraphStatistics(FormattedGraph formattedGraph, CsrGraph graph) {
+		GraphStatistics statistics = graphStatistics.get(formattedGraph.getName());
+		if (statistics != null) {
+			LOG.info("Graph statistics (cached): " + statistics + ".");
+			return statistics;
+		}
+		statistics = GraphStatistics.compute(graph);
+		graphStatistics.put(formattedGraph.getName(), statistics);
+		LOG.info("Graph statistics (computed in " + toSeconds(statistics.getComputeMillis()) + " s): " +
+				statistics + ".");
+		return statistics;
+	}
+
+	private static String variantName(Enum<?> variant) {
+		return variant.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+
+	/**
+	 * @return the store for checkpoints of the run, or null if the algorithm is not checkpointed
+	 */
+	private CheckpointStore createCheckpointStore(FormattedGraph formattedGraph, Algorithm algorithm) {
+		int interval = configuration.getCheckpointInterval();
+		if (interval == 0 || (algorithm != Algorithm.PR && algorithm != Algorithm.CDLP)) {
+			return null;
+		}
+		CheckpointStore checkpoints = new CheckpointStore(configuration.getCheckpointDirectory(),
+				formattedGraph.getName() + "-" + algorithm.name(), interval);
+		LOG.info("Checkpointing every " + interval + " iterations to " + checkpoints.getFile() + ".");
+		return checkpoints;
+	}
+
+	/**
+	 * Checks that the graph has few enough edges to be loaded in memory, whatever the heap size. Unlike the memory
+	 * check, this check cannot be disabled, as loading such a graph always fails.
+	 *
+	 * @throws IllegalStateException if the graph has too many edges to be loaded in memory
+	 */
+	private void checkEdgeLimit(FormattedGraph formattedGraph) {
+		MemoryEstimator estimator = createMemoryEstimator(formattedGraph);
+		if (!estimator.fitsInCsrGraph()) {
+			throw new IllegalStateException(String.format("Graph %s has too many edges to be loaded in memory: " +
+							"%d edges%s, of which at most %d can be stored. Run BFS, CDLP, WCC or PR in the " +
+							"semi-external or partitioned execution mode instead, by setting %s.",
+					formattedGraph.getName(), estimator.getNumberOfStoredEdges(),
+					formattedGraph.isDirected() ? "" : " counting both directions of every undirected edge",
+					CsrGraphLoader.MAX_EDGES, ReferencePlatformConfiguration.EXECUTION_MODE_KEY));
+		}
+	}
+
+	/**
+	 * Compares the estimated peak memory usage of a run with the maximum heap size. If the run does not fit, the
+	 * incoming edges of a directed graph are dropped for algorithms that can do without them.
+	 *
+	 * @return false if the run must not build the incoming edges of the graph
+	 * @throws IllegalStateException if the run is not expected to fit in memory
+	 */
+	private boolean checkMemory(FormattedGraph formattedGraph, Algorithm algorithm) {
+		MemoryEstimator estimator = createMemoryEstimator(formattedGraph);
+		long availableBytes = Runtime.getRuntime().maxMemory();
+
+		boolean semiExternal = isSemiExternal(algorithm);
+		long requiredBytes = semiExternal
+				? estimator.estimateSemiExternalPeakBytes(algorithm, configuration.getSemiExternalBlockBytes(),
+						getPartitionBytes())
+				: estimator.estimatePeakBytes(algorithm, usesIncomingEdges(algorithm));
+		LOG.info("Estimated peak memory usage: " + MemoryEstimator.formatBytes(requiredBytes) + " of " +
+				MemoryEstimator.formatBytes(availableBytes) + ".");
+		if (requiredBytes <= availableBytes) {
+			return true;
+		}
+
+		if (!semiExternal && formattedGraph.isDirected() && usesIncomingEdges(algorithm) &&
+				supportsOutgoingEdgesOnly(algorithm)) {
+			long reducedBytes = estimator.estimatePeakBytes(algorithm, false);
+			if (reducedBytes <= availableBytes) {
+				LOG.warn("Not enough memory to build incoming edges, running " + algorithm + " on outgoing edges " +
+						"only (estimated peak memory usage: " + MemoryEstimator.formatBytes(reducedBytes) + ").");
+				return false;
+			}
+		}
+
+		throw new IllegalStateException(String.format("Not enough memory to run %s on graph %s: estimated peak " +
+						"memory usage is %s, but the maximum heap size is %s. Increase the maximum heap size (-Xmx) " +
+						"or disable this check by setting %s = false.", algorithm, formattedGraph.getName(),
+				MemoryEstimator.formatBytes(requiredBytes), MemoryEstimator.formatBytes(availableBytes),
+				ReferencePlatformConfiguration.MEMORY_CHECK_KEY));
+	}
+
+	/**
+	 * Compares the estimated peak memory usage of concurrent runs with the maximum heap size, like
+	 * {@link #checkMemory(FormattedGraph, Algorithm)}.
+	 *
+	 * @param concurrentRuns the maximum number of runs executed at the same time
+	 * @return false if the runs must not build the incoming edges of the graph
+	 * @throws IllegalStateException if the runs are not expected to fit in memory
+	 */
+	private boolean checkConcurrentMemory(FormattedGraph formattedGraph, List<Algorithm> algorithms,
+			int concurrentRuns) {
+		MemoryEstimator estimator = createMemoryEstimator(formattedGraph);
+		long availableBytes = Runtime.getRuntime().maxMemory();
+
+		boolean incomingEdges = false;
+		boolean outgoingEdgesOnly = true;
+		for (Algorithm algorithm : algorithms) {
+			incomingEdges |= usesIncomingEdges(algorithm);
+			outgoingEdgesOnly &= !usesIncomingEdges(algorithm) || supportsOutgoingEdgesOnly(algorithm);
+		}
+		long requiredBytes = estimator.estimateConcurrentPeakBytes(algorithms, concurrentRuns, incomingEdges);
+		LOG.info("Estimated peak memory usage: " + MemoryEstimator.formatBytes(requiredBytes) + " of " +
+				MemoryEstimator.formatBytes(availableBytes) + ".");
+		if (requiredBytes <= availableBytes) {
+			return true;
+		}
+
+		if (formattedGraph.isDirected() && incomingEdges && outgoingEdgesOnly) {
+			long reducedBytes = estimator.estimateConcurrentPeakBytes(algorithms, concurrentRuns, false);
+			if (reducedBytes <= availableBytes) {
+				LOG.warn("Not enough memory to build incoming edges, running on outgoing edges only (estimated " +
+						"peak memory usage: " + MemoryEstimator.formatBytes(reducedBytes) + ").");
+				return false;
+			}
+		}
+
+		throw new IllegalStateException(String.format("Not enough memory to run %d runs concurrently on graph %s: " +
+						"estimated peak memory usage is %s, but the maximum heap size is %s. Reduce the maximum " +
+						"number of concurrent runs, increase the maximum heap size (-Xmx) or disable this check by " +
+						"setting %s = false.", algorithms.size(), formattedGraph.getName(),
+				MemoryEstimator.formatBytes(requiredBytes), MemoryEstimator.formatBytes(availableBytes),
+				ReferencePlatformConfiguration.MEMORY_CHECK_KEY));
+	}
+
+	private MemoryEstimator createMemoryEstimator(FormattedGraph formattedGraph) {
+		MemoryEstimator estimator = new MemoryEstimator(formattedGraph.getNumberOfVertices(),
+				formattedGraph.getNumberOfEdges(), formattedGraph.isDirected(),
+				isWeighted(formattedGraph.getEdgeProperties()), configuration.getNumThreads());
+		estimator.setWeightPrecision(configuration.getWeightPrecision());
+		return estimator;
+	}
+
+	/**
+	 * @return true if the algorithm runs on a semi-external graph
+	 */
+	private boolean isSemiExternal(Algorithm algorithm) {
+		if (configuration.getExecutionMode() != ExecutionMode.SEMI_EXTERNAL) {
+			return false;
+		}
+		switch (algorithm) {
+			case BFS:
+			case CDLP:
+			case WCC:
+			case PR:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return true if the algorithm runs on a partitioned graph
+	 */
+	private boolean isPartitioned(Algorithm algorithm) {
+		if (configuration.getExecutionMode() != ExecutionMode.PARTITIONED) {
+			return false;
+		}
+		switch (algorithm) {
+			case BFS:
+			case CDLP:
+			case WCC:
+			case PR:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return the maximum size of the edges or neighbour lists assembled in memory at once, a quarter of the heap
+	 */
+	private static long getPartitionBytes() {
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	/**
+	 * @return true if the algorithm has implementation variants that are selected from statistics of the graph
+	 */
+	private static boolean hasVariants(Algorithm algorithm) {
+		return algorithm == Algorithm.BFS || algorithm == Algorithm.LCC || algorithm == Algorithm.SSSP;
+	}
+
+	/**
+	 * @return true if the implementation of the algorithm traverses incoming edges of directed graphs; for BFS, only
+	 * the direction-optimizing variant does, which may be selected if adaptive selection is enabled
+	 */
+	private boolean usesIncomingEdges(Algorithm algorithm) {
+		switch (algorithm) {
+			case BFS:
+				return configuration.isAdaptiveSelectionEnabled();
+			case CDLP:
+			case WCC:
+			case PR:
+			case LCC:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return true if the implementation of the algorithm has a variant for graphs without incoming edges
+	 */
+	private static boolean supportsOutgoingEdgesOnly(Algorithm algorithm) {
+		switch (algorithm) {
+			case BFS:
+			case WCC:
+			case PR:
+			case SSSP:
+				return true;
+			default:
+				return false;
+		}
+	}
 
-	private ValueParser getValueParser(PropertyList props) {
+	private boolean isWeighted(PropertyList props) {
 		if (props.size() == 0) {
-			return new VoidParser();
+			return false;
 		} else if (props.size() == 1 && props.get(0).getType().equals(PropertyType.REAL)) {
-			return new DoubleParser();
+			return true;
 		} else {
-			throw new IllegalArgumentException("failed to find property value parser for properties: " + props);
+			throw new IllegalArgumentException("unsupported edge properties: " + props);
 		}
 	}
 
-	private static void startBenchmarkLogging(Path fileName) {
-		sysOut = System.out;
-		sysErr = System.err;
-		try {
-			File file = null;
-			file = fileName.toFile();
-			file.getParentFile().mkdirs();
-			file.createNewFile();
-			FileOutputStream fos = new FileOutputStream(file);
-			TeeOutputStream bothStream =new TeeOutputStream(System.out, fos);
-			PrintStream ps = new PrintStream(bothStream);
-			System.setOut(ps);
-			System.setErr(ps);
-		} catch(Exception e) {
-			e.printStackTrace();
-			throw new IllegalArgumentException("cannot redirect to output file");
-		}
-	}
-
-	public static void stopPlatformLogging() {
-		System.setOut(sysOut);
-		System.setErr(sysErr);
-	}
-
-	private void writeOutput(String path, Map<Long, ? extends Object> output) throws IOException {
-		try (PrintWriter w = new PrintWriter(new FileOutputStream(path))) {
-			for (Map.Entry<Long, ? extends Object> entry: output.entrySet()) {
-				w.print(entry.getKey());
-				w.print(" ");
-				w.print(entry.getValue());
-				w.println();
-			}
-		}
+	private static BigDecimal toSeconds(long timeMS) {
+		return (new BigDecimal(timeMS)).divide(new BigDecimal(1000), 3, BigDecimal.ROUND_CEILING);
 	}
 
-	private class VoidParser implements ValueParser<Void> {
-		@Override
-		public Void parse(String[] tokens) throws IOException {
-			return null;
+	/**
+	 * Starts writing the log of the run to a file, which is parsed for the processing time in finalize.
+	 */
+	private void startBenchmarkLogging(Path fileName, String runId, String algorithm) {
+		stopBenchmarkLogging();
+		try {
+			driverLog = DriverLog.open(fileName, runId, algorithm);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("cannot write log to " + fileName, e);
 		}
 	}
 
-	private class DoubleParser implements ValueParser<Double> {
-		@Override
-		public Double parse(String[] tokens) throws IOException {
-			return Double.parseDouble(tokens[0]);
+	/**
+	 * Stops writing the log of the run, once everything logged so far has been written.
+	 */
+	private void stopBenchmarkLogging() {
+		if (driverLog != null) {
+			driverLog.close();
+			driverLog = null;
 		}
 	}
 
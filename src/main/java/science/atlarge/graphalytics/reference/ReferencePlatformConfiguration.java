@@ -0,0 +1,352 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.graph.ExecutionMode;
+import science.atlarge.graphalytics.reference.graph.WeightPrecision;
+import science.atlarge.graphalytics.reference.output.OutputCompression;
+import science.atlarge.graphalytics.reference.partitioned.Partitioning;
+import science.atlarge.graphalytics.reference.util.FloatingPointMode;
+
+/**
+ * Reference-implementation-specific settings, read from the platform.properties file on the classpath.
+ */
+public class ReferencePlatformConfiguration {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	public static final String PLATFORM_PROPERTIES_FILE = "platform.properties";
+
+	public static final String NUM_THREADS_KEY = "platform.reference.num-threads";
+	public static final String FLOATING_POINT_MODE_KEY = "platform.reference.floating-point-mode";
+	public static final String WEIGHT_PRECISION_KEY = "platform.reference.weight-precision";
+	public static final String MEMORY_CHECK_KEY = "platform.reference.memory-check";
+	public static final String ADAPTIVE_SELECTION_KEY = "platform.reference.adaptive-selection";
+	public static final String OUTPUT_COMPRESSION_KEY = "platform.reference.output-compression";
+	public static final String FLIGHT_RECORDING_KEY = "platform.reference.flight-recording";
+	public static final String METRICS_PORT_KEY = "platform.reference.metrics-port";
+	public static final String LCC_APPROXIMATION_KEY = "platform.reference.lcc-approximation";
+	public static final String LCC_SAMPLE_SIZE_KEY = "platform.reference.lcc-sample-size";
+	public static final String PR_APPROXIMATION_KEY = "platform.reference.pr-approximation";
+	public static final String PR_RESIDUAL_KEY = "platform.reference.pr-residual";
+	public static final String PR_WALKS_KEY = "platform.reference.pr-walks";
+	public static final String APPROXIMATION_BASELINE_KEY = "platform.reference.approximation-baseline";
+	public static final String CHECKPOINT_INTERVAL_KEY = "platform.reference.checkpoint-interval";
+	public static final String CHECKPOINT_DIRECTORY_KEY = "platform.reference.checkpoint-dir";
+	public static final String EXECUTION_MODE_KEY = "platform.reference.execution-mode";
+	public static final String SEMI_EXTERNAL_DIRECTORY_KEY = "platform.reference.semi-external-dir";
+	public static final String SEMI_EXTERNAL_BLOCK_SIZE_KEY = "platform.reference.semi-external-block-size";
+	public static final String PARTITIONS_KEY = "platform.reference.partitions";
+	public static final String PARTITIONING_KEY = "platform.reference.partitioning";
+	public static final String WORKER_JVM_OPTIONS_KEY = "platform.reference.worker-jvm-options";
+
+	private static final int MAX_BLOCK_SIZE_MIB = 1024;
+
+	private final Properties properties;
+
+	public ReferencePlatformConfiguration(Properties properties) {
+		this.properties = properties;
+	}
+
+	public static ReferencePlatformConfiguration load() {
+		Properties properties = new Properties();
+		try (InputStream in = ReferencePlatformConfiguration.class.getClassLoader()
+				.getResourceAsStream(PLATFORM_PROPERTIES_FILE)) {
+			if (in != null) {
+				properties.load(in);
+			} else {
+				LOG.warn("Could not find " + PLATFORM_PROPERTIES_FILE + " on the classpath, using default settings.");
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Failed to read " + PLATFORM_PROPERTIES_FILE, e);
+		}
+		return new ReferencePlatformConfiguration(properties);
+	}
+
+	/**
+	 * @return the number of threads used to load and process a graph
+	 */
+	public int getNumThreads() {
+		int numThreads = getInt(NUM_THREADS_KEY, Runtime.getRuntime().availableProcessors());
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Invalid value for " + NUM_THREADS_KEY + ": " + numThreads);
+		}
+		return numThreads;
+	}
+
+	/**
+	 * @return the way in which parallel jobs reduce floating-point values
+	 */
+	public FloatingPointMode getFloatingPointMode() {
+		return getEnum(FLOATING_POINT_MODE_KEY, FloatingPointMode.class, FloatingPointMode.FAST);
+	}
+
+	/**
+	 * @return the precision in which the edge weights of weighted graphs are stored
+	 */
+	public WeightPrecision getWeightPrecision() {
+		return getEnum(WEIGHT_PRECISION_KEY, WeightPrecision.class, WeightPrecision.DOUBLE);
+	}
+
+	/**
+	 * @return true if runs must be checked against the available memory before loading a graph
+	 */
+	public boolean isMemoryCheckEnabled() {
+		return getBoolean(MEMORY_CHECK_KEY, true);
+	}
+
+	/**
+	 * @return true if the implementation variants of BFS, LCC and SSSP are selected from statistics of the graph
+	 */
+	public boolean isAdaptiveSelectionEnabled() {
+		return getBoolean(ADAPTIVE_SELECTION_KEY, true);
+	}
+
+	/**
+	 * @return the compression applied to output files
+	 */
+	public OutputCompression getOutputCompression() {
+		return getEnum(OUTPUT_COMPRESSION_KEY, OutputCompression.class, OutputCompression.NONE);
+	}
+
+	/**
+	 * @return the name of the JFR configuration with which every run is recorded, e.g., "default" or "profile", or
+	 * null if runs are not recorded
+	 */
+	public String getFlightRecordingConfiguration() {
+		String configuration = getString(FLIGHT_RECORDING_KEY);
+		if (configuration == null || configuration.equalsIgnoreCase("off")) {
+			return null;
+		}
+		return configuration;
+	}
+
+	/**
+	 * @return the port on the loopback interface on which the progress of runs is served over HTTP, 0 for any free
+	 * port, or -1 if it is not served
+	 */
+	public int getMetricsPort() {
+		int port = getInt(METRICS_PORT_KEY, -1);
+		if (port < -1 || port > 65535) {
+			throw new IllegalArgumentException("Invalid value for " + METRICS_PORT_KEY + ": " + port);
+		}
+		return port;
+	}
+
+	/**
+	 * @return the way in which local clustering coefficients are approximated, exact by default
+	 */
+	public LocalClusteringCoefficientJob.Approximation getLccApproximation() {
+		return getEnum(LCC_APPROXIMATION_KEY, LocalClusteringCoefficientJob.Approximation.class,
+				LocalClusteringCoefficientJob.Approximation.EXACT);
+	}
+
+	/**
+	 * @return the number of wedges or neighbours sampled per vertex by an approximate LCC
+	 */
+	public int getLccSampleSize() {
+		int sampleSize = getInt(LCC_SAMPLE_SIZE_KEY, LocalClusteringCoefficientJob.DEFAULT_SAMPLE_SIZE);
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("Invalid value for " + LCC_SAMPLE_SIZE_KEY + ": " + sampleSize);
+		}
+		return sampleSize;
+	}
+
+	/**
+	 * @return the way in which PageRank is approximated, exact by default
+	 */
+	public PageRankJob.Approximation getPageRankApproximation() {
+		return getEnum(PR_APPROXIMATION_KEY, PageRankJob.Approximation.class, PageRankJob.Approximation.EXACT);
+	}
+
+	/**
+	 * @return the L1 residual below which the residual approximation of PageRank stops iterating
+	 */
+	public double getPageRankResidual() {
+		double residual = getDouble(PR_RESIDUAL_KEY, PageRankJob.DEFAULT_RESIDUAL_THRESHOLD);
+		if (!(residual >= 0.0)) {
+			throw new IllegalArgumentException("Invalid value for " + PR_RESIDUAL_KEY + ": " + residual);
+		}
+		return residual;
+	}
+
+	/**
+	 * @return the number of random walks per vertex of the Monte Carlo approximation of PageRank
+	 */
+	public int getPageRankWalks() {
+		int walks = getInt(PR_WALKS_KEY, PageRankJob.DEFAULT_WALKS_PER_VERTEX);
+		if (walks < 2) {
+			throw new IllegalArgumentException("Invalid value for " + PR_WALKS_KEY + ": " + walks);
+		}
+		return walks;
+	}
+
+	/**
+	 * @return true if approximate runs are followed by the exact job, to measure their speedup and error
+	 */
+	public boolean isApproximationBaselineEnabled() {
+		return getBoolean(APPROXIMATION_BASELINE_KEY, false);
+	}
+
+	/**
+	 * @return the number of iterations between checkpoints of PageRank and CDLP, or 0 if checkpointing is disabled
+	 */
+	public int getCheckpointInterval() {
+		int interval = getInt(CHECKPOINT_INTERVAL_KEY, 0);
+		if (interval < 0) {
+			throw new IllegalArgumentException("Invalid value for " + CHECKPOINT_INTERVAL_KEY + ": " + interval);
+		}
+		return interval;
+	}
+
+	/**
+	 * @return the directory in which checkpoints are stored
+	 */
+	public Path getCheckpointDirectory() {
+		String directory = getString(CHECKPOINT_DIRECTORY_KEY);
+		if (directory == null) {
+			return Paths.get(System.getProperty("java.io.tmpdir"), "graphalytics-reference-checkpoints");
+		}
+		return Paths.get(directory);
+	}
+
+	/**
+	 * @return whether graphs are loaded into memory or streamed from disk
+	 */
+	public ExecutionMode getExecutionMode() {
+		return getEnum(EXECUTION_MODE_KEY, ExecutionMode.class, ExecutionMode.IN_MEMORY);
+	}
+
+	/**
+	 * @return the directory in which the binary edge files of semi-external graphs are stored
+	 */
+	public Path getSemiExternalDirectory() {
+		String directory = getString(SEMI_EXTERNAL_DIRECTORY_KEY);
+		if (directory == null) {
+			return Paths.get(System.getProperty("java.io.tmpdir"), "graphalytics-reference-edges");
+		}
+		return Paths.get(directory);
+	}
+
+	/**
+	 * @return the size of the blocks in which semi-external graphs are read from disk, in bytes
+	 */
+	public int getSemiExternalBlockBytes() {
+		int blockSize = getInt(SEMI_EXTERNAL_BLOCK_SIZE_KEY, 16);
+		if (blockSize < 1 || blockSize > MAX_BLOCK_SIZE_MIB) {
+			throw new IllegalArgumentException("Invalid value for " + SEMI_EXTERNAL_BLOCK_SIZE_KEY + ": " + blockSize);
+		}
+		return blockSize * 1024 * 1024;
+	}
+
+	/**
+	 * @return the number of worker processes over which graphs are partitioned
+	 */
+	public int getNumPartitions() {
+		int numPartitions = getInt(PARTITIONS_KEY, 2);
+		if (numPartitions < 1) {
+			throw new IllegalArgumentException("Invalid value for " + PARTITIONS_KEY + ": " + numPartitions);
+		}
+		return numPartitions;
+	}
+
+	/**
+	 * @return the way in which vertices are assigned to partitions
+	 */
+	public Partitioning getPartitioning() {
+		return getEnum(PARTITIONING_KEY, Partitioning.class, Partitioning.HASH);
+	}
+
+	/**
+	 * @return the options passed to the JVM of every worker process
+	 */
+	public List<String> getWorkerJvmOptions() {
+		String options = getString(WORKER_JVM_OPTIONS_KEY);
+		if (options == null) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(options.split("\\s+"));
+	}
+
+	private String getString(String key) {
+		String value = properties.getProperty(key);
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+	}
+
+	private int getInt(String key, int defaultValue) {
+		String value = getString(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+		}
+	}
+
+	private double getDouble(String key, double defaultValue) {
+		String value = getString(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+		}
+	}
+
+	private boolean getBoolean(String key, boolean defaultValue) {
+		String value = getString(key);
+		if (value == null) {
+			return defaultValue;
+		} else if (value.equalsIgnoreCase("true")) {
+			return true;
+		} else if (value.equalsIgnoreCase("false")) {
+			return false;
+		}
+		throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+	}
+
+	private <T extends Enum<T>> T getEnum(String key, Class<T> type, T defaultValue) {
+		String value = getString(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Enum.valueOf(type, value.toUpperCase(Locale.ROOT).replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+		}
+	}
+
+}
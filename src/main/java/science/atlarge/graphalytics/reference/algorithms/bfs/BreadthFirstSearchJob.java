@@ -15,16 +15,19 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.bfs;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import it.unimi.dsi.fastutil.longs.AbstractLongPriorityQueue;
 import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
-import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
-import it.unimi.dsi.fastutil.longs.LongSet;
 import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.GraphStatistics;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+import science.atlarge.graphalytics.reference.util.Profiling;
 import science.atlarge.graphalytics.util.graph.PropertyGraph;
 
 /**
@@ -38,51 +41,229 @@ public class BreadthFirstSearchJob {
 
 	private static final long MAX_DISTANCE = Long.MAX_VALUE;
 
-	private final PropertyGraph<Void, Void> graph;
+	/**
+	 * The direction-optimizing search switches to bottom-up steps once the edges of the frontier exceed the edges of
+	 * the unvisited vertices divided by ALPHA, and back to top-down steps once the frontier holds fewer than the
+	 * number of vertices divided by BETA (the values suggested by Beamer et al.).
+	 */
+	private static final int ALPHA = 14;
+	private static final int BETA = 24;
+
+	/**
+	 * Graphs for which the direction-optimizing search is selected: a few levels must hold most of the vertices,
+	 * which requires a small diameter and a large component, and vertices need enough neighbours for bottom-up steps
+	 * to find a parent early.
+	 */
+	private static final double MIN_AVERAGE_DEGREE = 4.0;
+	private static final int MAX_DIAMETER = 64;
+
+	/**
+	 * Implementation variants of the search, which compute the same distances.
+	 */
+	public enum Variant {
+
+		/**
+		 * Every level expands the outgoing edges of the vertices in the frontier, sequentially.
+		 */
+		TOP_DOWN,
+
+		/**
+		 * Levels with a large frontier are computed bottom-up in parallel: every unvisited vertex looks for a parent
+		 * in the frontier among its incoming neighbours, and stops at the first one. Requires the incoming edges of
+		 * directed graphs.
+		 */
+		DIRECTION_OPTIMIZING
+
+	}
+
+	private final CsrGraph graph;
 	private final BreadthFirstSearchParameters parameters;
+	private final ParallelExecutor executor;
+	private final Variant variant;
 
 	public BreadthFirstSearchJob(PropertyGraph<Void, Void> graph, BreadthFirstSearchParameters parameters) {
+		this(CsrGraph.fromPropertyGraph(graph), parameters);
+	}
+
+	public BreadthFirstSearchJob(CsrGraph graph, BreadthFirstSearchParameters parameters) {
+		this(graph, parameters, new ParallelExecutor(1), Variant.TOP_DOWN);
+	}
+
+	public BreadthFirstSearchJob(CsrGraph graph, BreadthFirstSearchParameters parameters, ParallelExecutor executor,
+			Variant variant) {
 		this.graph = graph;
 		this.parameters = parameters;
+		this.executor = executor;
+		this.variant = variant;
+	}
+
+	/**
+	 * @param incomingEdgesAvailable false if the incoming edges of a directed graph cannot be built
+	 * @return the variant expected to be fastest on a graph with the given statistics
+	 */
+	public static Variant selectVariant(GraphStatistics statistics, boolean incomingEdgesAvailable) {
+		if ((incomingEdgesAvailable || !statistics.isDirected()) &&
+				statistics.getAverageDegree() >= MIN_AVERAGE_DEGREE &&
+				statistics.getEstimatedDiameter() <= MAX_DIAMETER &&
+				statistics.getLargestComponentSize() * 2L >= statistics.getNumberOfVertices()) {
+			return Variant.DIRECTION_OPTIMIZING;
+		}
+		return Variant.TOP_DOWN;
 	}
 
 	public Long2LongMap run() {
 		LOG.debug("- Starting Breadth First Search algorithm");
 
-		// Initialize distances
-		Long2LongMap distances = new Long2LongOpenHashMap();
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			distances.put(v.getId(), MAX_DISTANCE);
+		int numVertices = graph.getNumberOfVertices();
+
+		// Initialize distances, a vertex is visited once its distance is set
+		long[] distances = new long[numVertices];
+		Arrays.fill(distances, MAX_DISTANCE);
+
+		int source = graph.getVertexIndex(parameters.getSourceVertex());
+		if (source >= 0) {
+			if (variant == Variant.DIRECTION_OPTIMIZING) {
+				searchDirectionOptimizing(source, distances);
+			} else {
+				searchTopDown(source, distances);
+			}
+		}
+
+		Long2LongMap output = new Long2LongOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), distances[v]);
 		}
-		distances.put(parameters.getSourceVertex(), 0L);
-
-		// Define visited set
-		LongSet visited = new LongOpenHashSet();
-		visited.add(parameters.getSourceVertex());
-
-		// Define traversal queue
-		AbstractLongPriorityQueue queue = new LongArrayFIFOQueue();
-		queue.enqueue(parameters.getSourceVertex());
-
-		// Traverse the graph
-		while (!queue.isEmpty()) {
-			long currentVertexId = queue.dequeueLong();
-			long currentVertexDistance = distances.get(currentVertexId);
-
-			// Iterate over all outgoing edges of this vertex
-			for (PropertyGraph<Void, Void>.Edge e: graph.getVertex(currentVertexId).getOutgoingEdges()) {
-				long neighbour = e.getDestinationVertex().getId();
-
-				// If a neighbour has not been visited, add it to the queue and set its distance from the root
-				if (!visited.contains(neighbour)) {
-					visited.add(neighbour);
-					queue.enqueue(neighbour);
-					distances.put(neighbour, currentVertexDistance + 1);
+
+		LOG.debug("- Finished Breadth First Search algorithm");
+		return output;
+	}
+
+	private void searchTopDown(int source, long[] distances) {
+		int[] offsets = graph.getOutOffsets();
+		int[] neighbours = graph.getOutNeighbours();
+
+		// Define traversal queue, every vertex is enqueued at most once
+		int[] queue = new int[graph.getNumberOfVertices()];
+		int head = 0;
+		int tail = 0;
+
+		distances[source] = 0L;
+		queue[tail++] = source;
+
+		// Traverse the graph, one level at a time
+		for (int level = 0; head < tail; level++) {
+			Profiling.Span span = Profiling.beginIteration("BFS", level);
+			int levelStart = head;
+			int levelEnd = tail;
+			long numEdges = 0;
+			for (; head < levelEnd; head++) {
+				int currentVertex = queue[head];
+				long currentVertexDistance = distances[currentVertex];
+				numEdges += offsets[currentVertex + 1] - offsets[currentVertex];
+
+				// Iterate over all outgoing edges of this vertex
+				for (int i = offsets[currentVertex]; i < offsets[currentVertex + 1]; i++) {
+					int neighbour = neighbours[i];
+
+					// If a neighbour has not been visited, add it to the queue and set its distance from the root
+					if (distances[neighbour] == MAX_DISTANCE) {
+						queue[tail++] = neighbour;
+						distances[neighbour] = currentVertexDistance + 1;
+					}
 				}
 			}
+			span.end(levelEnd - levelStart, numEdges);
 		}
+	}
 
-		LOG.debug("- Finished Breadth First Search algorithm");
-		return distances;
+	private void searchDirectionOptimizing(int source, final long[] distances) {
+		final int numVertices = graph.getNumberOfVertices();
+		final int[] outOffsets = graph.getOutOffsets();
+		int[] outNeighbours = graph.getOutNeighbours();
+		final int[] inOffsets = graph.getInOffsets();
+		final int[] inNeighbours = graph.getInNeighbours();
+
+		// The frontier is queue[head, tail) in top-down steps; bottom-up steps find it from the distances
+		int[] queue = new int[numVertices];
+		int head = 0;
+		int tail = 0;
+		distances[source] = 0L;
+		queue[tail++] = source;
+
+		long frontierSize = 1;
+		long frontierEdges = outOffsets[source + 1] - outOffsets[source];
+		long unvisitedEdges = graph.getNumberOfEdges() - frontierEdges;
+		boolean bottomUp = false;
+		int numBottomUpSteps = 0;
+
+		final AtomicLong found = new AtomicLong();
+		final AtomicLong foundEdges = new AtomicLong();
+		for (long level = 0; frontierSize > 0; level++) {
+			Profiling.Span span = Profiling.beginIteration("BFS", (int)level);
+			long levelSize = frontierSize;
+			long levelEdges = frontierEdges;
+			if (!bottomUp && frontierEdges > unvisitedEdges / ALPHA) {
+				bottomUp = true;
+			} else if (bottomUp && frontierSize < numVertices / BETA) {
+				// Collect the frontier for the next top-down step
+				bottomUp = false;
+				head = 0;
+				tail = 0;
+				for (int v = 0; v < numVertices; v++) {
+					if (distances[v] == level) {
+						queue[tail++] = v;
+					}
+				}
+			}
+
+			if (bottomUp) {
+				final long currentLevel = level;
+				found.set(0);
+				foundEdges.set(0);
+				executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+					@Override
+					public void run(int from, int to) {
+						long count = 0;
+						long edges = 0;
+						for (int v = from; v < to; v++) {
+							if (distances[v] != MAX_DISTANCE) {
+								continue;
+							}
+							for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+								if (distances[inNeighbours[i]] == currentLevel) {
+									distances[v] = currentLevel + 1;
+									count++;
+									edges += outOffsets[v + 1] - outOffsets[v];
+									break;
+								}
+							}
+						}
+						found.addAndGet(count);
+						foundEdges.addAndGet(edges);
+					}
+				});
+				frontierSize = found.get();
+				frontierEdges = foundEdges.get();
+				numBottomUpSteps++;
+			} else {
+				int levelEnd = tail;
+				frontierEdges = 0;
+				for (; head < levelEnd; head++) {
+					int u = queue[head];
+					for (int i = outOffsets[u]; i < outOffsets[u + 1]; i++) {
+						int neighbour = outNeighbours[i];
+						if (distances[neighbour] == MAX_DISTANCE) {
+							queue[tail++] = neighbour;
+							distances[neighbour] = level + 1;
+							frontierEdges += outOffsets[neighbour + 1] - outOffsets[neighbour];
+						}
+					}
+				}
+				frontierSize = tail - levelEnd;
+			}
+			unvisitedEdges -= frontierEdges;
+			span.end(levelSize, levelEdges);
+		}
+		LOG.debug("- Computed " + numBottomUpSteps + " levels bottom-up");
 	}
 }
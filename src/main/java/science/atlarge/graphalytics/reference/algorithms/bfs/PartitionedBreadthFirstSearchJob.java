@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.bfs;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.reference.partitioned.PartitionedGraph;
+
+/**
+ * Implementation of Breadth First Search on one partition of a {@link PartitionedGraph}. The search proceeds level by
+ * level, one superstep per level: every unvisited vertex with an incoming neighbour in the current level joins the
+ * next level, after which the workers exchange the distances of their boundary vertices and the number of vertices
+ * they found. Only the distances that changed are sent.
+ */
+public class PartitionedBreadthFirstSearchJob {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final long MAX_DISTANCE = Long.MAX_VALUE;
+
+	private final PartitionedGraph graph;
+	private final BreadthFirstSearchParameters parameters;
+
+	public PartitionedBreadthFirstSearchJob(PartitionedGraph graph, BreadthFirstSearchParameters parameters) {
+		this.graph = graph;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * @return the distances of the local vertices
+	 */
+	public Long2LongMap run() throws IOException {
+		LOG.debug("- Starting partitioned Breadth First Search algorithm");
+
+		int numLocalVertices = graph.getNumberOfLocalVertices();
+		int[] offsets = graph.getOffsets();
+		int[] neighbours = graph.getNeighbours();
+
+		// Initialize distances, a vertex is visited once its distance is set
+		long[] distances = new long[graph.getValueArrayLength()];
+		Arrays.fill(distances, MAX_DISTANCE);
+
+		long numFound = 0;
+		for (int v = 0; v < numLocalVertices; v++) {
+			if (graph.getVertexId(v) == parameters.getSourceVertex()) {
+				distances[v] = 0L;
+				numFound++;
+			}
+		}
+		numFound = graph.exchange(distances, numFound);
+
+		// Expand one level per superstep, until no worker finds new vertices
+		for (long level = 0; numFound > 0; level++) {
+			long localFound = 0;
+			long scannedVertices = 0;
+			long scannedEdges = 0;
+			for (int v = 0; v < numLocalVertices; v++) {
+				if (distances[v] != MAX_DISTANCE) {
+					continue;
+				}
+				scannedVertices++;
+				for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+					scannedEdges++;
+					if (distances[neighbours[i]] == level) {
+						distances[v] = level + 1;
+						localFound++;
+						break;
+					}
+				}
+			}
+			graph.reportProgress((int)level, scannedVertices, scannedEdges);
+			numFound = graph.exchange(distances, localFound);
+			LOG.debug("- Level " + level + ": found " + numFound + " vertices");
+		}
+
+		Long2LongMap output = new Long2LongOpenHashMap(numLocalVertices);
+		for (int v = 0; v < numLocalVertices; v++) {
+			output.put(graph.getVertexId(v), distances[v]);
+		}
+
+		LOG.debug("- Finished partitioned Breadth First Search algorithm");
+		return output;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.bfs;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.reference.graph.IoStatistics;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+import science.atlarge.graphalytics.reference.util.Profiling;
+
+/**
+ * Implementation of Breadth First Search on a {@link SemiExternalGraph}. The search proceeds level by level; every
+ * level streams over the edge file once and visits the unvisited destinations of edges whose source is in the
+ * current level (and, for undirected graphs, vice versa).
+ */
+public class SemiExternalBreadthFirstSearchJob {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final long MAX_DISTANCE = Long.MAX_VALUE;
+
+	private final SemiExternalGraph graph;
+	private final BreadthFirstSearchParameters parameters;
+
+	public SemiExternalBreadthFirstSearchJob(SemiExternalGraph graph, BreadthFirstSearchParameters parameters) {
+		this.graph = graph;
+		this.parameters = parameters;
+	}
+
+	public Long2LongMap run() throws IOException {
+		LOG.debug("- Starting semi-external Breadth First Search algorithm");
+
+		int numVertices = graph.getNumberOfVertices();
+		final boolean directed = graph.isDirected();
+
+		// Initialize distances, a vertex is visited once its distance is set
+		final long[] distances = new long[numVertices];
+		Arrays.fill(distances, MAX_DISTANCE);
+
+		int source = graph.getVertexIndex(parameters.getSourceVertex());
+		if (source >= 0) {
+			distances[source] = 0L;
+		}
+
+		// Expand one level per pass, until a pass finds no new vertices
+		final long[] numFound = new long[1];
+		boolean expanding = source >= 0;
+		for (long level = 0; expanding; level++) {
+			final long currentLevel = level;
+			numFound[0] = 0;
+			Profiling.Span span = Profiling.beginIteration("BFS", (int)level);
+			IoStatistics io = graph.forEachEdge(new SemiExternalGraph.EdgeVisitor() {
+				@Override
+				public void visit(int[] edges, int count) {
+					for (int i = 0; i < 2 * count; i += 2) {
+						int u = edges[i];
+						int v = edges[i + 1];
+						if (distances[u] == currentLevel && distances[v] == MAX_DISTANCE) {
+							distances[v] = currentLevel + 1;
+							numFound[0]++;
+						} else if (!directed && distances[v] == currentLevel && distances[u] == MAX_DISTANCE) {
+							distances[u] = currentLevel + 1;
+							numFound[0]++;
+						}
+					}
+				}
+			});
+			span.end(numFound[0], graph.getNumberOfEdges());
+			LOG.info("Breadth First Search level " + level + " I/O: " + io + ", found " + numFound[0] +
+					" vertices.");
+			expanding = numFound[0] > 0;
+		}
+
+		Long2LongMap output = new Long2LongOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), distances[v]);
+		}
+
+		LOG.debug("- Finished semi-external Breadth First Search algorithm");
+		return output;
+	}
+}
@@ -18,11 +18,13 @@ package science.atlarge.graphalytics.reference.algorithms.cdlp;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import it.unimi.dsi.fastutil.longs.Long2IntMap;
-import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
 import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.util.CheckpointStore;
+import science.atlarge.graphalytics.reference.util.Profiling;
 import science.atlarge.graphalytics.util.graph.PropertyGraph;
 
 /**
@@ -33,84 +35,146 @@ import science.atlarge.graphalytics.util.graph.PropertyGraph;
 public class CommunityDetectionLPJob {
 	private static final Logger LOG = LogManager.getLogger();
 
-	private final PropertyGraph<Void, Void> graph;
+	private final CsrGraph graph;
 	private final CommunityDetectionLPParameters parameters;
+	private CheckpointStore checkpoints;
 
 	public CommunityDetectionLPJob(PropertyGraph<Void, Void> graph, CommunityDetectionLPParameters parameters) {
+		this(CsrGraph.fromPropertyGraph(graph), parameters);
+	}
+
+	public CommunityDetectionLPJob(CsrGraph graph, CommunityDetectionLPParameters parameters) {
 		this.graph = graph;
 		this.parameters = parameters;
 	}
 
+	/**
+	 * @param checkpoints the store used to checkpoint the labels every few iterations and to resume from the latest
+	 *                    checkpoint, or null to disable checkpointing
+	 */
+	public void setCheckpointStore(CheckpointStore checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
+	static long checkpointFingerprint(CsrGraph graph, CommunityDetectionLPParameters parameters) {
+		return CheckpointStore.fingerprint(graph.getNumberOfVertices(), graph.getNumberOfEdges(),
+				graph.isDirected() ? 1 : 0, parameters.getMaxIterations());
+	}
+
 	public Long2LongMap run() {
 		LOG.debug("- Starting community detection algorithm");
 
 		// Read parameters
-		int numVertices = graph.getVertices().size();
+		int numVertices = graph.getNumberOfVertices();
 		int numIterations = parameters.getMaxIterations();
+		int[] outOffsets = graph.getOutOffsets();
+		int[] outNeighbours = graph.getOutNeighbours();
+		// Undirected graphs store every edge in both directions, so counting only the outgoing edges scales all
+		// frequencies by the same factor and selects the same labels
+		boolean directed = graph.isDirected();
+		int[] inOffsets = directed ? graph.getInOffsets() : null;
+		int[] inNeighbours = directed ? graph.getInNeighbours() : null;
 
 		// Initialize values
-		Long2LongMap labels = new Long2LongOpenHashMap(numVertices);
-		Long2LongMap newLabels = new Long2LongOpenHashMap(numVertices);
-		Long2IntMap histogram = new Long2IntOpenHashMap();
-		histogram.defaultReturnValue(0);
+		long[] labels = new long[numVertices];
+		long[] newLabels = new long[numVertices];
+		// Labels of the neighbours of a single vertex, sorted to count the frequency of each label
+		long[] neighbourLabels = new long[0];
 
 		// Set initial labels
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			labels.put(v.getId(), v.getId());
+		for (int v = 0; v < numVertices; v++) {
+			labels[v] = graph.getVertexId(v);
 		}
 
+		long fingerprint = checkpointFingerprint(graph, parameters);
+		int firstIteration = checkpoints != null ? checkpoints.restore(fingerprint, labels) : 0;
+
 		// Run iterations
-		for (int it = 0; it < numIterations; it++) {
+		for (int it = firstIteration; it < numIterations; it++) {
 			LOG.debug("- Iteration " +  it);
+			Profiling.Span span = Profiling.beginIteration("CDLP", it);
 
 			boolean change = false;
+			if (checkpoints != null) {
+				checkpoints.awaitWrite(newLabels);
+			}
 
-			for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-				histogram.clear();
-
-				// Count frequency of each label
-				for (PropertyGraph<Void, Void>.Edge edge: v.getOutgoingEdges()) {
-					long neighbor = edge.getDestinationVertex().getId();
-					long label = labels.get(neighbor);
-					histogram.put(label, histogram.get(label) + 1);
+			for (int v = 0; v < numVertices; v++) {
+				int degree = outOffsets[v + 1] - outOffsets[v];
+				if (directed) {
+					degree += inOffsets[v + 1] - inOffsets[v];
 				}
-
-				for (PropertyGraph<Void, Void>.Edge edge: v.getIncomingEdges()) {
-					long neighbor = edge.getSourceVertex().getId();
-					long label = labels.get(neighbor);
-					histogram.put(label, histogram.get(label) + 1);
+				if (neighbourLabels.length < degree) {
+					neighbourLabels = new long[Math.max(degree, 2 * neighbourLabels.length)];
 				}
 
-				long bestLabel = 0;
-				int bestCount = 0;
-
-				// Select label with highest frequency. In case of a tie,
-				// the label with the lowest value is chosen.
-				for (long label: histogram.keySet()) {
-					int count = histogram.get(label);
+				// Collect the labels of all neighbours
+				int numLabels = 0;
+				for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+					neighbourLabels[numLabels++] = labels[outNeighbours[i]];
+				}
 
-					if (count > bestCount || (count == bestCount && label < bestLabel)) {
-						bestLabel = label;
-						bestCount = count;
+				if (directed) {
+					for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+						neighbourLabels[numLabels++] = labels[inNeighbours[i]];
 					}
 				}
 
+				long bestLabel = mostFrequentLabel(neighbourLabels, numLabels);
+
 				// Set new label and check if label of vertex has changed
-				newLabels.put(v.getId(), bestLabel);
-				change = change || labels.get(v.getId()) != bestLabel;
+				newLabels[v] = bestLabel;
+				change = change || labels[v] != bestLabel;
 			}
 
-			Long2LongMap tmp = labels;
+			long[] tmp = labels;
 			labels = newLabels;
 			newLabels = tmp;
+			span.end(numVertices, directed ? 2 * graph.getNumberOfEdges() : graph.getNumberOfEdges());
 
 			if (!change) {
 				break;
 			}
+
+			if (checkpoints != null && checkpoints.isDue(it + 1, numIterations)) {
+				checkpoints.save(fingerprint, it + 1, labels);
+			}
+		}
+
+		if (checkpoints != null) {
+			checkpoints.delete();
+		}
+
+		Long2LongMap output = new Long2LongOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), labels[v]);
 		}
 
 		LOG.debug("- Finished community detection algorithm");
 
-		return labels;
+		return output;
+	}
+
+	/**
+	 * Selects the label with the highest frequency among the first numLabels labels, which are sorted in place. In
+	 * case of a tie, the label with the lowest value is chosen. Vertices without neighbours get label 0.
+	 */
+	static long mostFrequentLabel(long[] labels, int numLabels) {
+		LongArrays.quickSort(labels, 0, numLabels);
+
+		long bestLabel = 0;
+		int bestCount = 0;
+		for (int start = 0, end; start < numLabels; start = end) {
+			end = start + 1;
+			while (end < numLabels && labels[end] == labels[start]) {
+				end++;
+			}
+
+			if (end - start > bestCount) {
+				bestLabel = labels[start];
+				bestCount = end - start;
+			}
+		}
+		return bestLabel;
 	}
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.cdlp;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.reference.partitioned.PartitionedGraph;
+
+/**
+ * Implementation of community detection on one partition of a {@link PartitionedGraph}. Every iteration is one
+ * superstep: every vertex selects its new label from the labels of its neighbours as in
+ * {@link CommunityDetectionLPJob}, after which the workers exchange the labels of their boundary vertices and the
+ * number of labels they changed.
+ */
+public class PartitionedCommunityDetectionLPJob {
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final PartitionedGraph graph;
+	private final CommunityDetectionLPParameters parameters;
+
+	public PartitionedCommunityDetectionLPJob(PartitionedGraph graph, CommunityDetectionLPParameters parameters) {
+		this.graph = graph;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * @return the labels of the local vertices
+	 */
+	public Long2LongMap run() throws IOException {
+		LOG.debug("- Starting partitioned community detection algorithm");
+
+		// Read parameters
+		int numLocalVertices = graph.getNumberOfLocalVertices();
+		int numIterations = parameters.getMaxIterations();
+		int[] offsets = graph.getOffsets();
+		int[] neighbours = graph.getNeighbours();
+
+		// Initialize values
+		long[] labels = new long[graph.getValueArrayLength()];
+		long[] newLabels = new long[numLocalVertices];
+		// Labels of the neighbours of a single vertex, sorted to count the frequency of each label
+		long[] neighbourLabels = new long[0];
+
+		// Set initial labels
+		for (int v = 0; v < numLocalVertices; v++) {
+			labels[v] = graph.getVertexId(v);
+		}
+		graph.exchange(labels, 0);
+
+		// Run iterations
+		for (int it = 0; it < numIterations; it++) {
+			LOG.debug("- Iteration " +  it);
+
+			long localChanged = 0;
+			for (int v = 0; v < numLocalVertices; v++) {
+				int numLabels = offsets[v + 1] - offsets[v];
+				if (neighbourLabels.length < numLabels) {
+					neighbourLabels = new long[Math.max(numLabels, 2 * neighbourLabels.length)];
+				}
+				for (int i = 0; i < numLabels; i++) {
+					neighbourLabels[i] = labels[neighbours[offsets[v] + i]];
+				}
+
+				newLabels[v] = CommunityDetectionLPJob.mostFrequentLabel(neighbourLabels, numLabels);
+				if (newLabels[v] != labels[v]) {
+					localChanged++;
+				}
+			}
+
+			graph.reportProgress(it, numLocalVertices, offsets[numLocalVertices]);
+
+			// Labels are updated synchronously, so every vertex selects its label from the previous iteration
+			System.arraycopy(newLabels, 0, labels, 0, numLocalVertices);
+			if (graph.exchange(labels, localChanged) == 0) {
+				break;
+			}
+		}
+
+		Long2LongMap output = new Long2LongOpenHashMap(numLocalVertices);
+		for (int v = 0; v < numLocalVertices; v++) {
+			output.put(graph.getVertexId(v), labels[v]);
+		}
+
+		LOG.debug("- Finished partitioned community detection algorithm");
+
+		return output;
+	}
+}
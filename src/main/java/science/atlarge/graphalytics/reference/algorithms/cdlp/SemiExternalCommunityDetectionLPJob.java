@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.cdlp;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.reference.graph.IoStatistics;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+import science.atlarge.graphalytics.reference.util.Profiling;
+
+/**
+ * Implementation of community detection on a {@link SemiExternalGraph}. Every iteration streams over the neighbour
+ * lists of the graph once, selecting the new label of every vertex as in {@link CommunityDetectionLPJob}.
+ */
+public class SemiExternalCommunityDetectionLPJob {
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final SemiExternalGraph graph;
+	private final CommunityDetectionLPParameters parameters;
+
+	public SemiExternalCommunityDetectionLPJob(SemiExternalGraph graph, CommunityDetectionLPParameters parameters) {
+		this.graph = graph;
+		this.parameters = parameters;
+	}
+
+	public Long2LongMap run() throws IOException {
+		LOG.debug("- Starting semi-external community detection algorithm");
+
+		int numVertices = graph.getNumberOfVertices();
+		int numIterations = parameters.getMaxIterations();
+		graph.buildNeighbourLists();
+
+		// Set initial labels
+		LabelUpdate update = new LabelUpdate(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			update.labels[v] = graph.getVertexId(v);
+		}
+
+		// Run iterations
+		for (int it = 0; it < numIterations; it++) {
+			LOG.debug("- Iteration " +  it);
+
+			Profiling.Span span = Profiling.beginIteration("CDLP", it);
+			update.changed = false;
+			IoStatistics io = graph.forEachNeighbourList(update);
+			span.end(numVertices, 2 * graph.getNumberOfEdges());
+			LOG.info("Community detection iteration " + it + " I/O: " + io + ".");
+
+			long[] tmp = update.labels;
+			update.labels = update.newLabels;
+			update.newLabels = tmp;
+
+			if (!update.changed) {
+				break;
+			}
+		}
+
+		Long2LongMap output = new Long2LongOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), update.labels[v]);
+		}
+
+		LOG.debug("- Finished semi-external community detection algorithm");
+
+		return output;
+	}
+
+	/**
+	 * Computes the new label of every vertex from the current labels of its neighbours.
+	 */
+	private static final class LabelUpdate implements SemiExternalGraph.NeighbourVisitor {
+
+		private long[] labels;
+		private long[] newLabels;
+		// Labels of the neighbours of a single vertex, sorted to count the frequency of each label
+		private long[] neighbourLabels = new long[0];
+		private boolean changed;
+
+		private LabelUpdate(int numVertices) {
+			this.labels = new long[numVertices];
+			this.newLabels = new long[numVertices];
+		}
+
+		@Override
+		public void visit(int vertex, int[] neighbours, int from, int to) {
+			int numLabels = to - from;
+			if (neighbourLabels.length < numLabels) {
+				neighbourLabels = new long[Math.max(numLabels, 2 * neighbourLabels.length)];
+			}
+			for (int i = 0; i < numLabels; i++) {
+				neighbourLabels[i] = labels[neighbours[from + i]];
+			}
+
+			long bestLabel = CommunityDetectionLPJob.mostFrequentLabel(neighbourLabels, numLabels);
+			newLabels[vertex] = bestLabel;
+			changed = changed || labels[vertex] != bestLabel;
+		}
+
+	}
+}
@@ -15,63 +15,390 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.lcc;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
 import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.GraphStatistics;
+import science.atlarge.graphalytics.reference.util.Kernels;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+import science.atlarge.graphalytics.reference.util.Progress;
+import science.atlarge.graphalytics.reference.util.SplitMixRandom;
 import science.atlarge.graphalytics.util.graph.PropertyGraph;
 
 /**
- * Reference implementation of local clustering coefficient calculation.
+ * Reference implementation of local clustering coefficient calculation. Triangles are counted by intersecting the
+ * sorted neighbour lists of the {@link CsrGraph}.
+ * <p>
+ * For exploratory runs, the coefficients of high-degree vertices can be estimated from a sample instead, see
+ * {@link Approximation}. Samples are drawn from a random stream per vertex, so estimates do not depend on the number
+ * of threads. Approximate coefficients do not pass benchmark validation.
  *
  * @author Stijn Heldens
  */
 public class LocalClusteringCoefficientJob {
 	private static final Logger LOG = LogManager.getLogger();
 
-	private final PropertyGraph<Void, Void> graph;
+	/**
+	 * Length ratio above which the shorter of two neighbour lists is intersected with the longer one by binary search.
+	 */
+	private static final int BINARY_SEARCH_RATIO = 16;
+
+	/**
+	 * Graphs for which the bitmap variant is selected: the bitmap of every thread must fit in the last-level cache,
+	 * and neighbourhoods must be large or skewed, so intersections dominate the cost of marking neighbourhoods.
+	 */
+	private static final long BITMAP_MAX_BYTES = 4L * 1024 * 1024;
+	private static final double BITMAP_MIN_AVERAGE_DEGREE = 16.0;
+	private static final int BITMAP_MIN_SKEW = 64;
+
+	public static final int DEFAULT_SAMPLE_SIZE = 1024;
+	/**
+	 * The probability with which the estimate of a sampled vertex is within the reported error bound.
+	 */
+	public static final double ERROR_CONFIDENCE = 0.95;
+	private static final long SAMPLE_SEED = 0x4C43433L;
+
+	/**
+	 * Implementation variants of the triangle count, which compute the same coefficients.
+	 */
+	public enum Variant {
+
+		/**
+		 * The neighbourhood of every vertex is intersected with the neighbours of each of its neighbours by merging
+		 * the sorted lists, or by binary search if their lengths differ greatly.
+		 */
+		MERGE,
+
+		/**
+		 * The neighbourhood of every vertex is marked in a bitmap of all vertices, and the neighbours of each of its
+		 * neighbours are looked up in the bitmap. Every thread uses a bitmap of one bit per vertex.
+		 */
+		BITMAP
+
+	}
+
+	/**
+	 * Ways to estimate the coefficients of vertices with many neighbours. The coefficient of a vertex is the fraction
+	 * of ordered pairs of distinct neighbours (u, w) with an edge from u to w. Vertices with few enough neighbours are
+	 * always computed exactly. Both estimates are means of samples in [0, 1], so by Hoeffding's inequality they are
+	 * within sqrt(ln(2 / (1 - c)) / (2 * samples)) of the exact coefficient with probability c =
+	 * {@link #ERROR_CONFIDENCE}.
+	 */
+	public enum Approximation {
+
+		/**
+		 * All coefficients are computed exactly.
+		 */
+		EXACT,
+
+		/**
+		 * Random ordered pairs of distinct neighbours are checked for an edge, by binary search in the neighbours of
+		 * the first vertex of the pair. Applies to vertices with more pairs of neighbours than samples.
+		 */
+		WEDGE_SAMPLING,
+
+		/**
+		 * The neighbours of random neighbours are intersected with the neighbourhood, and the number of triangles
+		 * is extrapolated from their mean. Applies to vertices with more neighbours than samples.
+		 */
+		NEIGHBOUR_SAMPLING
+
+	}
+
+	private final CsrGraph graph;
+	private final ParallelExecutor executor;
+	private final Variant variant;
+	private Approximation approximation = Approximation.EXACT;
+	private int sampleSize = DEFAULT_SAMPLE_SIZE;
+	private long numSampledVertices;
 
 	public LocalClusteringCoefficientJob(PropertyGraph<Void, Void> graph) {
+		this(CsrGraph.fromPropertyGraph(graph));
+	}
+
+	public LocalClusteringCoefficientJob(CsrGraph graph) {
+		this(graph, new ParallelExecutor(1));
+	}
+
+	/**
+	 * The coefficient of every vertex is computed independently from exact integer counts, so the result does not
+	 * depend on the number of threads.
+	 */
+	public LocalClusteringCoefficientJob(CsrGraph graph, ParallelExecutor executor) {
+		this(graph, executor, Variant.MERGE);
+	}
+
+	public LocalClusteringCoefficientJob(CsrGraph graph, ParallelExecutor executor, Variant variant) {
 		this.graph = graph;
+		this.executor = executor;
+		this.variant = variant;
+	}
+
+	/**
+	 * @param sampleSize the number of samples per vertex, i.e., wedges or neighbours; vertices that have no more
+	 *                   wedges or neighbours than this are computed exactly
+	 */
+	public void setApproximation(Approximation approximation, int sampleSize) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("Invalid sample size: " + sampleSize);
+		}
+		this.approximation = approximation;
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * @return the number of vertices of which the coefficient was estimated by the last run
+	 */
+	public long getNumberOfSampledVertices() {
+		return numSampledVertices;
+	}
+
+	/**
+	 * @return the maximum absolute error of the estimated coefficients, each with probability
+	 * {@value #ERROR_CONFIDENCE}, or 0 if all coefficients were computed exactly
+	 */
+	public double getErrorBound() {
+		return numSampledVertices > 0 ? errorBound(sampleSize) : 0.0;
+	}
+
+	/**
+	 * @return the Hoeffding bound on the error of the mean of samples in [0, 1] at the error confidence
+	 */
+	static double errorBound(int numSamples) {
+		return Math.sqrt(Math.log(2.0 / (1.0 - ERROR_CONFIDENCE)) / (2.0 * numSamples));
+	}
+
+	/**
+	 * @return the variant expected to be fastest on a graph with the given statistics
+	 */
+	public static Variant selectVariant(GraphStatistics statistics) {
+		double averageDegree = statistics.getAverageDegree();
+		if ((statistics.getNumberOfVertices() + 7L) / 8 <= BITMAP_MAX_BYTES &&
+				(averageDegree >= BITMAP_MIN_AVERAGE_DEGREE ||
+						statistics.getMaxDegree() >= BITMAP_MIN_SKEW * Math.max(1.0, averageDegree))) {
+			return Variant.BITMAP;
+		}
+		return Variant.MERGE;
 	}
 
 	public Long2DoubleMap run() {
 		LOG.debug("- Starting local clustering coefficient calculation");
 
-		Long2DoubleMap lcc = new Long2DoubleOpenHashMap();
+		int numVertices = graph.getNumberOfVertices();
+		final int[] outOffsets = graph.getOutOffsets();
+		final int[] outNeighbours = graph.getOutNeighbours();
+		// Undirected graphs store every edge in both directions, so the outgoing edges cover all neighbours
+		final boolean directed = graph.isDirected();
+		final int[] inOffsets = directed ? graph.getInOffsets() : null;
+		final int[] inNeighbours = directed ? graph.getInNeighbours() : null;
 
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			int tri = 0;
-			Set<PropertyGraph<Void, Void>.Vertex> v_neighbours = new HashSet<>();
-
-			for (PropertyGraph<Void, Void>.Edge e: v.getIncomingEdges()) {
-				v_neighbours.add(e.getSourceVertex());
+		final double[] lcc = new double[numVertices];
+		final AtomicLong sampledVertices = new AtomicLong();
+		final int bitmapLength = (numVertices + 63) / 64;
+		final ThreadLocal<long[]> bitmaps = variant == Variant.BITMAP ? new ThreadLocal<long[]>() {
+			@Override
+			protected long[] initialValue() {
+				return new long[bitmapLength];
 			}
+		} : null;
 
-			for (PropertyGraph<Void, Void>.Edge e: v.getOutgoingEdges()) {
-				v_neighbours.add(e.getDestinationVertex());
-			}
+		// The coefficients are computed in a single pass over the vertices, which reports its progress in batches
+		Progress.get().beginIteration(0);
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				// Merged, sorted neighbourhood of a vertex of a directed graph
+				int[] buffer = new int[0];
+				long[] bitmap = bitmaps != null ? bitmaps.get() : null;
+				long sampled = 0;
+				int reported = from;
+
+				for (int v = from; v < to; v++) {
+					if (v - reported == Progress.REPORT_INTERVAL) {
+						Progress.get().addProcessed(v - reported, outOffsets[v] - outOffsets[reported]);
+						reported = v;
+					}
 
-			for (PropertyGraph<Void, Void>.Vertex u: v_neighbours) {
-				for (PropertyGraph<Void, Void>.Edge e: u.getOutgoingEdges()) {
-					if (v_neighbours.contains(e.getDestinationVertex())) {
-						tri++;
+					int[] vNeighbours;
+					int vFrom, vTo;
+					if (directed) {
+						int maxDegree = (inOffsets[v + 1] - inOffsets[v]) + (outOffsets[v + 1] - outOffsets[v]);
+						if (buffer.length < maxDegree) {
+							buffer = new int[Math.max(maxDegree, 2 * buffer.length)];
+						}
+						vNeighbours = buffer;
+						vFrom = 0;
+						vTo = union(inNeighbours, inOffsets[v], inOffsets[v + 1],
+								outNeighbours, outOffsets[v], outOffsets[v + 1], buffer);
+					} else {
+						vNeighbours = outNeighbours;
+						vFrom = outOffsets[v];
+						vTo = outOffsets[v + 1];
 					}
+
+					int degree = vTo - vFrom;
+					if (isSampled(degree)) {
+						lcc[v] = estimate(v, outOffsets, outNeighbours, vNeighbours, vFrom, vTo);
+						sampled++;
+						continue;
+					}
+
+					long tri = 0;
+					if (bitmap != null) {
+						tri = countTriangles(outOffsets, outNeighbours, vNeighbours, vFrom, vTo, bitmap);
+					} else {
+						for (int i = vFrom; i < vTo; i++) {
+							int u = vNeighbours[i];
+							tri += countCommon(outNeighbours, outOffsets[u], outOffsets[u + 1],
+									vNeighbours, vFrom, vTo);
+						}
+					}
+
+					lcc[v] = degree >= 2 ? tri / (degree * (degree - 1.0)) : 0.0;
 				}
+				sampledVertices.addAndGet(sampled);
+				Progress.get().addProcessed(to - reported, outOffsets[to] - outOffsets[reported]);
 			}
+		});
+		numSampledVertices = sampledVertices.get();
+		if (approximation != Approximation.EXACT) {
+			LOG.info("Estimated the coefficients of " + numSampledVertices + " of " + numVertices + " vertices by " +
+					approximation.name().toLowerCase().replace('_', ' ') + " with " + sampleSize +
+					" samples, maximum error " + getErrorBound() + " per vertex with probability " +
+					ERROR_CONFIDENCE + ".");
+		}
 
-			int degree = v_neighbours.size();
-
-			double result = degree >= 2 ? tri / (degree * (degree - 1.0)) : 0.0;
-			lcc.put(v.getId(), result);
+		Long2DoubleMap output = new Long2DoubleOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), lcc[v]);
 		}
 
 		LOG.debug("- Finished local clustering coefficient calculation");
 
-		return lcc;
+		return output;
+	}
+
+	private boolean isSampled(int degree) {
+		switch (approximation) {
+			case WEDGE_SAMPLING:
+				return (long)degree * (degree - 1) > sampleSize;
+			case NEIGHBOUR_SAMPLING:
+				return degree > sampleSize;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Estimates the coefficient of a vertex with at least two neighbours from a sample.
+	 */
+	private double estimate(int v, int[] outOffsets, int[] outNeighbours, int[] neighbourhood, int from, int to) {
+		SplitMixRandom random = new SplitMixRandom(SAMPLE_SEED, v);
+		int degree = to - from;
+		long sum = 0;
+		for (int s = 0; s < sampleSize; s++) {
+			int i = random.nextInt(degree);
+			int u = neighbourhood[from + i];
+			if (approximation == Approximation.WEDGE_SAMPLING) {
+				// Pick the second neighbour from the others, by skipping over the first
+				int j = random.nextInt(degree - 1);
+				int w = neighbourhood[from + (j >= i ? j + 1 : j)];
+				if (Arrays.binarySearch(outNeighbours, outOffsets[u], outOffsets[u + 1], w) >= 0) {
+					sum++;
+				}
+			} else {
+				sum += countCommon(outNeighbours, outOffsets[u], outOffsets[u + 1], neighbourhood, from, to);
+			}
+		}
+		return approximation == Approximation.WEDGE_SAMPLING
+				? (double)sum / sampleSize
+				: (double)sum / sampleSize / (degree - 1);
+	}
+
+	/**
+	 * Merges two sorted lists of vertex indices into a sorted list without duplicates.
+	 *
+	 * @return the length of the merged list
+	 */
+	static int union(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out) {
+		int size = 0;
+		while (aFrom < aTo && bFrom < bTo) {
+			if (a[aFrom] < b[bFrom]) {
+				out[size++] = a[aFrom++];
+			} else if (a[aFrom] > b[bFrom]) {
+				out[size++] = b[bFrom++];
+			} else {
+				out[size++] = a[aFrom++];
+				bFrom++;
+			}
+		}
+		while (aFrom < aTo) {
+			out[size++] = a[aFrom++];
+		}
+		while (bFrom < bTo) {
+			out[size++] = b[bFrom++];
+		}
+		return size;
+	}
+
+	/**
+	 * Counts the outgoing edges between the vertices of a neighbourhood using a bitmap, which must be cleared on entry
+	 * and is cleared on return.
+	 */
+	static long countTriangles(int[] outOffsets, int[] outNeighbours, int[] neighbourhood, int from, int to,
+			long[] bitmap) {
+		for (int i = from; i < to; i++) {
+			int u = neighbourhood[i];
+			bitmap[u >>> 6] |= 1L << u;
+		}
+		long tri = 0;
+		for (int i = from; i < to; i++) {
+			int u = neighbourhood[i];
+			for (int j = outOffsets[u]; j < outOffsets[u + 1]; j++) {
+				int w = outNeighbours[j];
+				tri += (bitmap[w >>> 6] >>> w) & 1L;
+			}
+		}
+		for (int i = from; i < to; i++) {
+			bitmap[neighbourhood[i] >>> 6] = 0L;
+		}
+		return tri;
+	}
+
+	/**
+	 * Counts the vertex indices that occur in both sorted lists. Lists of similar length are merged by
+	 * {@link Kernels#countCommon}; if one list is
+	 * much shorter than the other, its elements are looked up in the longer list by binary search instead.
+	 */
+	static int countCommon(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+		int aLength = aTo - aFrom;
+		int bLength = bTo - bFrom;
+		if (aLength > bLength) {
+			return countCommon(b, bFrom, bTo, a, aFrom, aTo);
+		}
+		if (aLength == 0) {
+			return 0;
+		}
+
+		if ((long)aLength * BINARY_SEARCH_RATIO < bLength) {
+			int common = 0;
+			for (int i = aFrom; i < aTo && bFrom < bTo; i++) {
+				int position = Arrays.binarySearch(b, bFrom, bTo, a[i]);
+				if (position >= 0) {
+					common++;
+					bFrom = position + 1;
+				} else {
+					bFrom = -position - 1;
+				}
+			}
+			return common;
+		}
+		return Kernels.countCommon(a, aFrom, aTo, b, bFrom, bTo);
 	}
 }
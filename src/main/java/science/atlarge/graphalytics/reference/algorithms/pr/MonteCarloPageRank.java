@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.pr;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.util.FloatingPointMode;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+import science.atlarge.graphalytics.reference.util.ParallelSum;
+import science.atlarge.graphalytics.reference.util.SplitMixRandom;
+
+/**
+ * Estimates PageRank by random walks ("Monte Carlo complete path"). A number of walks start at every vertex; at every
+ * step, a walk stops with probability 1 - d, and otherwise moves to a random outgoing neighbour, or to a random vertex
+ * if the current vertex is dangling. The rank of a vertex is estimated from the number of visits to it by all walks.
+ * <p>
+ * The walks are split into two halves, by the parity of their number, whose visits are counted separately. The L1
+ * distance between the ranks estimated from either half is about twice the L1 error of the ranks estimated from all
+ * walks, so half of it is reported as the estimated error. The walks estimate the converged ranks, which may differ
+ * slightly from the ranks after the fixed number of iterations of the exact job.
+ */
+final class MonteCarloPageRank {
+
+	private static final long WALK_SEED = 0x5052L;
+
+	private final CsrGraph graph;
+	private final double dampingFactor;
+	private final int walksPerVertex;
+	private final ParallelExecutor executor;
+	private double errorEstimate;
+
+	/**
+	 * @param walksPerVertex the number of walks started at every vertex, at least two
+	 */
+	MonteCarloPageRank(CsrGraph graph, double dampingFactor, int walksPerVertex, ParallelExecutor executor) {
+		this.graph = graph;
+		this.dampingFactor = dampingFactor;
+		this.walksPerVertex = walksPerVertex;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the estimated rank of every vertex, by index
+	 */
+	double[] run() {
+		final int numVertices = graph.getNumberOfVertices();
+		final int[] outOffsets = graph.getOutOffsets();
+		final int[] outNeighbours = graph.getOutNeighbours();
+		final AtomicLongArray evenVisits = new AtomicLongArray(numVertices);
+		final AtomicLongArray oddVisits = new AtomicLongArray(numVertices);
+
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int s = from; s < to; s++) {
+					// Every start vertex has its own stream, so the walks do not depend on the number of threads
+					SplitMixRandom random = new SplitMixRandom(WALK_SEED, s);
+					for (int walk = 0; walk < walksPerVertex; walk++) {
+						AtomicLongArray visits = (walk & 1) == 0 ? evenVisits : oddVisits;
+						int v = s;
+						while (true) {
+							visits.getAndIncrement(v);
+							if (random.nextDouble() >= dampingFactor) {
+								break;
+							}
+							int degree = outOffsets[v + 1] - outOffsets[v];
+							v = degree > 0 ? outNeighbours[outOffsets[v] + random.nextInt(degree)]
+									: random.nextInt(numVertices);
+						}
+					}
+				}
+			}
+		});
+
+		// Every walk visits 1 / (1 - d) vertices on average, so the visits of all walks add up to n * walks / (1 - d)
+		final double scale = (1.0 - dampingFactor) / ((double)numVertices * walksPerVertex);
+		final int evenWalks = (walksPerVertex + 1) / 2;
+		final int oddWalks = walksPerVertex / 2;
+		final double[] ranks = new double[numVertices];
+		double distance = ParallelSum.sum(executor, FloatingPointMode.DETERMINISTIC, numVertices,
+				new ParallelSum.Terms() {
+			@Override
+			public void addTo(ParallelSum.Accumulator sum, int from, int to) {
+				for (int v = from; v < to; v++) {
+					long even = evenVisits.get(v);
+					long odd = oddVisits.get(v);
+					ranks[v] = (even + odd) * scale;
+					sum.add(Math.abs(even * scale * walksPerVertex / evenWalks -
+							odd * scale * walksPerVertex / oddWalks));
+				}
+			}
+		});
+		errorEstimate = distance / 2.0;
+		return ranks;
+	}
+
+	/**
+	 * @return the estimated L1 error of the ranks returned by the last run
+	 */
+	double getErrorEstimate() {
+		return errorEstimate;
+	}
+
+}
@@ -15,82 +15,303 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.pr;
 
+import java.util.Arrays;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
 import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
 import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.util.CheckpointStore;
+import science.atlarge.graphalytics.reference.util.FloatingPointMode;
+import science.atlarge.graphalytics.reference.util.Kernels;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+import science.atlarge.graphalytics.reference.util.ParallelSum;
+import science.atlarge.graphalytics.reference.util.Profiling;
 import science.atlarge.graphalytics.util.graph.PropertyGraph;
 
 /**
  * Reference implementation of PageRank algorithm.
+ * <p>
+ * For exploratory runs, the ranks can be approximated with less work, see {@link Approximation}. Approximate ranks do
+ * not pass benchmark validation.
  *
  * @author Tim Hegeman
  */
 public class PageRankJob {
 	private static final Logger LOG = LogManager.getLogger();
 
-	private final PropertyGraph<Void, Void> graph;
+	public static final double DEFAULT_RESIDUAL_THRESHOLD = 1e-3;
+	public static final int DEFAULT_WALKS_PER_VERTEX = 16;
+
+	/**
+	 * Ways to approximate the ranks.
+	 */
+	public enum Approximation {
+
+		/**
+		 * The ranks after the given number of iterations.
+		 */
+		EXACT,
+
+		/**
+		 * Iterations stop early once the L1 distance between the ranks of two consecutive iterations, the residual,
+		 * drops below a threshold. Every iteration shrinks the distance to the result of any later iteration by a
+		 * factor d, so the L1 error of the ranks is at most d / (1 - d) times the last residual.
+		 */
+		RESIDUAL,
+
+		/**
+		 * The ranks are estimated by random walks, see {@link MonteCarloPageRank}.
+		 */
+		MONTE_CARLO
+
+	}
+
+	private final CsrGraph graph;
 	private final PageRankParameters parameters;
+	private final ParallelExecutor executor;
+	private final FloatingPointMode floatingPointMode;
+	private CheckpointStore checkpoints;
+	private Approximation approximation = Approximation.EXACT;
+	private double residualThreshold = DEFAULT_RESIDUAL_THRESHOLD;
+	private int walksPerVertex = DEFAULT_WALKS_PER_VERTEX;
+	private int numIterationsRun;
+	private double errorBound;
 
 	public PageRankJob(PropertyGraph<Void, Void> graph, PageRankParameters parameters) {
+		this(CsrGraph.fromPropertyGraph(graph), parameters);
+	}
+
+	public PageRankJob(CsrGraph graph, PageRankParameters parameters) {
+		this(graph, parameters, new ParallelExecutor(1), FloatingPointMode.FAST);
+	}
+
+	public PageRankJob(CsrGraph graph, PageRankParameters parameters, ParallelExecutor executor,
+			FloatingPointMode floatingPointMode) {
 		this.graph = graph;
 		this.parameters = parameters;
+		this.executor = executor;
+		this.floatingPointMode = floatingPointMode;
+	}
+
+	/**
+	 * @param checkpoints the store used to checkpoint the ranks every few iterations and to resume from the latest
+	 *                    checkpoint, or null to disable checkpointing
+	 */
+	public void setCheckpointStore(CheckpointStore checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
+	public void setApproximation(Approximation approximation) {
+		this.approximation = approximation;
+	}
+
+	/**
+	 * @param residualThreshold the L1 residual below which approximate iterations stop
+	 */
+	public void setResidualThreshold(double residualThreshold) {
+		if (!(residualThreshold >= 0.0)) {
+			throw new IllegalArgumentException("Invalid residual threshold: " + residualThreshold);
+		}
+		this.residualThreshold = residualThreshold;
+	}
+
+	/**
+	 * @param walksPerVertex the number of random walks started at every vertex by the Monte Carlo approximation
+	 */
+	public void setWalksPerVertex(int walksPerVertex) {
+		if (walksPerVertex < 2) {
+			throw new IllegalArgumentException("Invalid number of walks per vertex: " + walksPerVertex);
+		}
+		this.walksPerVertex = walksPerVertex;
+	}
+
+	/**
+	 * @return the number of iterations performed by the last run, including iterations restored from a checkpoint,
+	 * or 0 for the Monte Carlo approximation
+	 */
+	public int getNumberOfIterationsRun() {
+		return numIterationsRun;
+	}
+
+	/**
+	 * @return the estimated L1 distance between the ranks of the last run and the exact ranks, or 0 if the ranks are
+	 * exact
+	 */
+	public double getErrorBound() {
+		return errorBound;
+	}
+
+	static long checkpointFingerprint(CsrGraph graph, PageRankParameters parameters) {
+		return CheckpointStore.fingerprint(graph.getNumberOfVertices(), graph.getNumberOfEdges(),
+				graph.isDirected() ? 1 : 0, Float.floatToIntBits(parameters.getDampingFactor()),
+				parameters.getNumberOfIterations());
 	}
 
 	public Long2DoubleMap run() {
 		LOG.debug("- Starting PageRank algorithm");
+		if (approximation == Approximation.MONTE_CARLO) {
+			return runMonteCarlo();
+		}
 
 		// Read parameters
-		int numVertices = graph.getVertices().size();
+		final int numVertices = graph.getNumberOfVertices();
 		int numIterations = parameters.getNumberOfIterations();
-		double dampingFactor = parameters.getDampingFactor();
+		final double dampingFactor = parameters.getDampingFactor();
+		final int[] outOffsets = graph.getOutOffsets();
+		final int[] outNeighbours = graph.getOutNeighbours();
+		final boolean pull = graph.supportsIncomingEdges();
+		final int[] inOffsets = pull ? graph.getInOffsets() : null;
+		final int[] inNeighbours = pull ? graph.getInNeighbours() : null;
+		if (!pull) {
+			LOG.debug("- Incoming edges are not available, pushing ranks along outgoing edges instead");
+		}
 
 		// Initialize values
-		Long2DoubleMap ranks = new Long2DoubleOpenHashMap(numVertices);
-		Long2DoubleMap newRanks = new Long2DoubleOpenHashMap(numVertices);
+		double[] ranks = new double[numVertices];
+		double[] newRanks = new double[numVertices];
+		final double[] contributions = new double[numVertices];
+		Arrays.fill(ranks, 1.0 / numVertices);
 
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			ranks.put(v.getId(), 1.0 / numVertices);
-		}
+		long fingerprint = checkpointFingerprint(graph, parameters);
+		int firstIteration = checkpoints != null ? checkpoints.restore(fingerprint, ranks) : 0;
+		numIterationsRun = firstIteration;
+		errorBound = 0.0;
 
 		// Run iterations
-		for (int it = 0; it < numIterations; it++) {
+		for (int it = firstIteration; it < numIterations; it++) {
 			LOG.debug("- Iteration " +  it);
+			Profiling.Span span = Profiling.beginIteration("PR", it);
 
-			double danglingSum = 0.0;
+			final double[] currentRanks = ranks;
+			final double[] nextRanks = newRanks;
+			if (checkpoints != null) {
+				checkpoints.awaitWrite(nextRanks);
+			}
 
 			// Collect sum of ranks for dangling vertices (i.e., without outgoing edges)
-			for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-				if (v.getOutgoingEdges().isEmpty()) {
-					danglingSum += ranks.get(v.getId());
+			final double danglingSum = ParallelSum.sum(executor, floatingPointMode, numVertices,
+					new ParallelSum.Terms() {
+				@Override
+				public void addTo(ParallelSum.Accumulator sum, int from, int to) {
+					for (int v = from; v < to; v++) {
+						if (outOffsets[v + 1] == outOffsets[v]) {
+							sum.add(currentRanks[v]);
+						}
+					}
 				}
-			}
+			});
 
-			// Compute new rank for all vertices
-			for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-				double sum = 0.0;
+			// Divide the rank of every vertex over its outgoing edges
+			executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					Kernels.divideByDegree(currentRanks, outOffsets, contributions, from, to);
+				}
+			});
 
-				for (PropertyGraph<Void, Void>.Edge e: v.getIncomingEdges()) {
-					PropertyGraph<Void, Void>.Vertex u = e.getSourceVertex();
-					sum += ranks.get(u.getId()) / u.getOutgoingEdges().size();
+			if (!pull) {
+				// Without incoming edges, every vertex pushes its rank to its neighbours. Vertices push in order of
+				// index, which adds up the ranks in the same order as the sequential pull over sorted incoming edges.
+				Arrays.fill(nextRanks, 0.0);
+				for (int u = 0; u < numVertices; u++) {
+					if (outOffsets[u + 1] > outOffsets[u]) {
+						Kernels.scatterAdd(nextRanks, outNeighbours, outOffsets[u], outOffsets[u + 1], contributions[u]);
+					}
 				}
+			}
+
+			// Compute new rank for all vertices. In deterministic mode, every vertex sums its incoming ranks
+			// sequentially; in fast mode, the sum may be vectorized, which changes the order of additions.
+			final boolean sequentialSum = floatingPointMode == FloatingPointMode.DETERMINISTIC;
+			executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					for (int v = from; v < to; v++) {
+						double sum = 0.0;
 
-				double newRank = (1.0 - dampingFactor) / numVertices
-						+ dampingFactor * (sum + danglingSum / numVertices);
+						if (!pull) {
+							sum = nextRanks[v];
+						} else if (sequentialSum) {
+							for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+								sum += contributions[inNeighbours[i]];
+							}
+						} else {
+							sum = Kernels.gatherSum(contributions, inNeighbours, inOffsets[v], inOffsets[v + 1]);
+						}
 
-				newRanks.put(v.getId(), newRank);
+						double newRank = (1.0 - dampingFactor) / numVertices
+								+ dampingFactor * (sum + danglingSum / numVertices);
+
+						nextRanks[v] = newRank;
+					}
+				}
+			});
+
+			double residual = Double.POSITIVE_INFINITY;
+			if (approximation == Approximation.RESIDUAL) {
+				residual = ParallelSum.sum(executor, floatingPointMode, numVertices, new ParallelSum.Terms() {
+					@Override
+					public void addTo(ParallelSum.Accumulator sum, int from, int to) {
+						for (int v = from; v < to; v++) {
+							sum.add(Math.abs(nextRanks[v] - currentRanks[v]));
+						}
+					}
+				});
 			}
 
 			// Swap prev and next
-			Long2DoubleMap tmp = ranks;
-			ranks = newRanks;
-			newRanks = tmp;
+			ranks = nextRanks;
+			newRanks = currentRanks;
+			numIterationsRun = it + 1;
+
+			if (checkpoints != null && checkpoints.isDue(it + 1, numIterations)) {
+				checkpoints.save(fingerprint, it + 1, ranks);
+			}
+			span.end(numVertices, graph.getNumberOfEdges());
+
+			if (residual <= residualThreshold && numIterationsRun < numIterations) {
+				errorBound = residual * dampingFactor / (1.0 - dampingFactor);
+				LOG.info("Stopped PageRank after " + numIterationsRun + " of " + numIterations +
+						" iterations at L1 residual " + residual + ", estimated L1 error " + errorBound + ".");
+				break;
+			}
+		}
+
+		if (checkpoints != null) {
+			checkpoints.delete();
+		}
+
+		Long2DoubleMap output = new Long2DoubleOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), ranks[v]);
+		}
+
+		LOG.debug("- Finished PageRank algorithm");
+
+		return output;
+	}
+
+	private Long2DoubleMap runMonteCarlo() {
+		int numVertices = graph.getNumberOfVertices();
+		MonteCarloPageRank monteCarlo = new MonteCarloPageRank(graph, parameters.getDampingFactor(), walksPerVertex,
+				executor);
+		double[] ranks = monteCarlo.run();
+		numIterationsRun = 0;
+		errorBound = monteCarlo.getErrorEstimate();
+		LOG.info("Estimated PageRank by " + walksPerVertex + " random walks per vertex, estimated L1 error " +
+				errorBound + ".");
+
+		Long2DoubleMap output = new Long2DoubleOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), ranks[v]);
 		}
 
 		LOG.debug("- Finished PageRank algorithm");
 
-		return ranks;
+		return output;
 	}
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.pr;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.partitioned.PartitionedGraph;
+
+/**
+ * Implementation of PageRank on one partition of a {@link PartitionedGraph}. In every superstep, the workers exchange
+ * the contribution of every boundary vertex, i.e., its rank divided by its degree, and the sum of the ranks of their
+ * dangling vertices. Every vertex then pulls the contributions of its incoming neighbours.
+ */
+public class PartitionedPageRankJob {
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final PartitionedGraph graph;
+	private final PageRankParameters parameters;
+
+	public PartitionedPageRankJob(PartitionedGraph graph, PageRankParameters parameters) {
+		this.graph = graph;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * @return the ranks of the local vertices
+	 */
+	public Long2DoubleMap run() throws IOException {
+		LOG.debug("- Starting partitioned PageRank algorithm");
+
+		// Read parameters
+		long numVertices = graph.getNumberOfVertices();
+		int numLocalVertices = graph.getNumberOfLocalVertices();
+		int numIterations = parameters.getNumberOfIterations();
+		double dampingFactor = parameters.getDampingFactor();
+		int[] offsets = graph.getOffsets();
+		int[] neighbours = graph.getNeighbours();
+
+		// Initialize values
+		double[] ranks = new double[numLocalVertices];
+		double[] contributions = new double[graph.getValueArrayLength()];
+		for (int v = 0; v < numLocalVertices; v++) {
+			ranks[v] = 1.0 / numVertices;
+		}
+
+		// Run iterations
+		for (int it = 0; it < numIterations; it++) {
+			LOG.debug("- Iteration " +  it);
+
+			// Divide the rank of every vertex over its outgoing edges, and collect the ranks of dangling vertices
+			double localDanglingSum = 0.0;
+			for (int v = 0; v < numLocalVertices; v++) {
+				int degree = graph.getOutDegree(v);
+				if (degree == 0) {
+					localDanglingSum += ranks[v];
+					contributions[v] = 0.0;
+				} else {
+					contributions[v] = ranks[v] / degree;
+				}
+			}
+			double danglingSum = graph.exchange(contributions, localDanglingSum);
+
+			// Compute new rank for all vertices
+			for (int v = 0; v < numLocalVertices; v++) {
+				double sum = 0.0;
+				for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+					sum += contributions[neighbours[i]];
+				}
+				ranks[v] = (1.0 - dampingFactor) / numVertices + dampingFactor * (sum + danglingSum / numVertices);
+			}
+			graph.reportProgress(it, numLocalVertices, offsets[numLocalVertices]);
+		}
+
+		Long2DoubleMap output = new Long2DoubleOpenHashMap(numLocalVertices);
+		for (int v = 0; v < numLocalVertices; v++) {
+			output.put(graph.getVertexId(v), ranks[v]);
+		}
+
+		LOG.debug("- Finished partitioned PageRank algorithm");
+
+		return output;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.pr;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.graph.IoStatistics;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+import science.atlarge.graphalytics.reference.util.Profiling;
+
+/**
+ * Implementation of PageRank on a {@link SemiExternalGraph}. Every iteration streams over the edge file once and
+ * pushes the rank of the source of every edge to its destination (and, for undirected graphs, vice versa), keeping
+ * three values per vertex in memory.
+ */
+public class SemiExternalPageRankJob {
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final SemiExternalGraph graph;
+	private final PageRankParameters parameters;
+
+	public SemiExternalPageRankJob(SemiExternalGraph graph, PageRankParameters parameters) {
+		this.graph = graph;
+		this.parameters = parameters;
+	}
+
+	public Long2DoubleMap run() throws IOException {
+		LOG.debug("- Starting semi-external PageRank algorithm");
+
+		// Read parameters
+		int numVertices = graph.getNumberOfVertices();
+		int numIterations = parameters.getNumberOfIterations();
+		double dampingFactor = parameters.getDampingFactor();
+		final boolean directed = graph.isDirected();
+
+		// Initialize values
+		double[] ranks = new double[numVertices];
+		double[] newRanks = new double[numVertices];
+		final double[] contributions = new double[numVertices];
+		Arrays.fill(ranks, 1.0 / numVertices);
+
+		// Run iterations
+		for (int it = 0; it < numIterations; it++) {
+			LOG.debug("- Iteration " +  it);
+			Profiling.Span span = Profiling.beginIteration("PR", it);
+
+			// Divide the rank of every vertex over its outgoing edges, and collect the ranks of dangling vertices
+			double danglingSum = 0.0;
+			for (int v = 0; v < numVertices; v++) {
+				int degree = graph.getOutDegree(v);
+				if (degree == 0) {
+					danglingSum += ranks[v];
+					contributions[v] = 0.0;
+				} else {
+					contributions[v] = ranks[v] / degree;
+				}
+			}
+
+			// Push the contributions along all edges
+			final double[] nextRanks = newRanks;
+			Arrays.fill(nextRanks, 0.0);
+			IoStatistics io = graph.forEachEdge(new SemiExternalGraph.EdgeVisitor() {
+				@Override
+				public void visit(int[] edges, int count) {
+					for (int i = 0; i < 2 * count; i += 2) {
+						nextRanks[edges[i + 1]] += contributions[edges[i]];
+						if (!directed) {
+							nextRanks[edges[i]] += contributions[edges[i + 1]];
+						}
+					}
+				}
+			});
+
+			for (int v = 0; v < numVertices; v++) {
+				nextRanks[v] = (1.0 - dampingFactor) / numVertices
+						+ dampingFactor * (nextRanks[v] + danglingSum / numVertices);
+			}
+			span.end(numVertices, graph.getNumberOfEdges());
+			LOG.info("PageRank iteration " + it + " I/O: " + io + ".");
+
+			// Swap prev and next
+			newRanks = ranks;
+			ranks = nextRanks;
+		}
+
+		Long2DoubleMap output = new Long2DoubleOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), ranks[v]);
+		}
+
+		LOG.debug("- Finished semi-external PageRank algorithm");
+
+		return output;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.sssp;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of vertex indices, ordered by their tentative distance. The heap tracks the position of every
+ * vertex, so the key of a queued vertex can be decreased in place instead of queueing a new entry. All storage is
+ * allocated up front.
+ */
+final class DistanceHeap {
+
+	private static final int NOT_QUEUED = -1;
+	private static final int REMOVED = -2;
+
+	private final double[] distances;
+	private final int[] heap;
+	private final int[] positions;
+	private int size;
+
+	/**
+	 * @param distances the tentative distance of every vertex, which must only decrease while a vertex is queued
+	 */
+	DistanceHeap(double[] distances) {
+		this.distances = distances;
+		this.heap = new int[distances.length];
+		this.positions = new int[distances.length];
+		Arrays.fill(positions, NOT_QUEUED);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return true if the vertex has been removed from the heap, i.e., its distance is final
+	 */
+	boolean isRemoved(int vertex) {
+		return positions[vertex] == REMOVED;
+	}
+
+	/**
+	 * Queues a vertex, or restores the heap order after its distance has decreased if it is already queued.
+	 */
+	void update(int vertex) {
+		int position = positions[vertex];
+		if (position < 0) {
+			position = size++;
+		}
+		siftUp(vertex, position);
+	}
+
+	/**
+	 * @return the queued vertex with the smallest distance, which is removed from the heap
+	 */
+	int removeMin() {
+		int min = heap[0];
+		positions[min] = REMOVED;
+		int last = heap[--size];
+		if (size > 0) {
+			siftDown(last, 0);
+		}
+		return min;
+	}
+
+	private void siftUp(int vertex, int position) {
+		double distance = distances[vertex];
+		while (position > 0) {
+			int parentPosition = (position - 1) >>> 1;
+			int parent = heap[parentPosition];
+			if (distances[parent] <= distance) {
+				break;
+			}
+			place(parent, position);
+			position = parentPosition;
+		}
+		place(vertex, position);
+	}
+
+	private void siftDown(int vertex, int position) {
+		double distance = distances[vertex];
+		int half = size >>> 1;
+		while (position < half) {
+			int childPosition = 2 * position + 1;
+			int child = heap[childPosition];
+			if (childPosition + 1 < size && distances[heap[childPosition + 1]] < distances[child]) {
+				child = heap[++childPosition];
+			}
+			if (distance <= distances[child]) {
+				break;
+			}
+			place(child, position);
+			position = childPosition;
+		}
+		place(vertex, position);
+	}
+
+	private void place(int vertex, int position) {
+		heap[position] = vertex;
+		positions[vertex] = position;
+	}
+
+}
@@ -18,18 +18,26 @@ package science.atlarge.graphalytics.reference.algorithms.sssp;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
 import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
-import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
 import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.GraphStatistics;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+import science.atlarge.graphalytics.reference.util.Progress;
 import science.atlarge.graphalytics.util.graph.PropertyGraph;
 
-import java.util.Comparator;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
- * Reference implementation of the Single Source Shortest Path algorithm.
+ * Reference implementation of the Single Source Shortest Path algorithm. Edge weights stored in single precision are
+ * widened before they are added, so distances are always accumulated in double precision.
  *
  * @author Tim Hegeman
  */
@@ -39,88 +47,296 @@ public class SingleSourceShortestPathJob {
 
 	private static final double MAX_DISTANCE = Double.POSITIVE_INFINITY;
 
-	private final PropertyGraph<Void, Double> graph;
+	/**
+	 * Minimum number of edges for which delta-stepping is selected; on smaller graphs the buckets hold too few
+	 * vertices to amortize the synchronization of the threads.
+	 */
+	private static final long DELTA_STEPPING_MIN_EDGES = 100000;
+
+	/**
+	 * Implementation variants of the search, which compute the same distances.
+	 */
+	public enum Variant {
+
+		/**
+		 * Dijkstra's algorithm with a binary heap, on a single thread.
+		 */
+		DIJKSTRA,
+
+		/**
+		 * Delta-stepping: vertices are grouped in buckets of distance width delta, and the vertices of the first
+		 * non-empty bucket are processed in parallel. Edges of at most delta may move vertices into the current
+		 * bucket and are relaxed until the bucket stays empty; longer edges are relaxed once afterwards.
+		 */
+		DELTA_STEPPING
+
+	}
+
+	private final CsrGraph graph;
 	private final SingleSourceShortestPathsParameters parameters;
+	private final ParallelExecutor executor;
+	private final Variant variant;
+	private final double delta;
 
 	public SingleSourceShortestPathJob(PropertyGraph<Void, Double> graph, SingleSourceShortestPathsParameters parameters) {
+		this(CsrGraph.fromPropertyGraph(graph), parameters);
+	}
+
+	public SingleSourceShortestPathJob(CsrGraph graph, SingleSourceShortestPathsParameters parameters) {
+		this(graph, parameters, new ParallelExecutor(1), Variant.DIJKSTRA, 0.0);
+	}
+
+	/**
+	 * @param delta the bucket width of delta-stepping, which must be positive if that variant is used
+	 */
+	public SingleSourceShortestPathJob(CsrGraph graph, SingleSourceShortestPathsParameters parameters,
+			ParallelExecutor executor, Variant variant, double delta) {
+		if (variant == Variant.DELTA_STEPPING && !(delta > 0.0)) {
+			throw new IllegalArgumentException("Delta must be positive: " + delta);
+		}
 		this.graph = graph;
 		this.parameters = parameters;
+		this.executor = executor;
+		this.variant = variant;
+		this.delta = delta;
+	}
+
+	/**
+	 * @return the variant expected to be fastest on a graph with the given statistics
+	 */
+	public static Variant selectVariant(GraphStatistics statistics, int numThreads) {
+		if (numThreads > 1 && statistics.getNumberOfEdges() >= DELTA_STEPPING_MIN_EDGES) {
+			return Variant.DELTA_STEPPING;
+		}
+		return Variant.DIJKSTRA;
+	}
+
+	/**
+	 * @return the bucket width for delta-stepping on a graph with the given statistics: the maximum weight divided by
+	 * the average degree, so that a vertex has about one outgoing edge shorter than delta
+	 */
+	public static double selectDelta(GraphStatistics statistics) {
+		double delta = statistics.getMaxWeight() / Math.max(1.0, statistics.getAverageDegree());
+		return delta > 0.0 && !Double.isInfinite(delta) ? delta : 1.0;
 	}
 
 	public Long2DoubleMap run() {
-		// This method presents a basic implementation of Dijkstra's shortest path algorithm.
 		LOG.debug("- Starting Single Source Shortest Path algorithm");
 
+		int numVertices = graph.getNumberOfVertices();
+		int source = graph.getVertexIndex(parameters.getSourceVertex());
+		double[] distances;
+		if (variant == Variant.DELTA_STEPPING) {
+			distances = runDeltaStepping(source);
+		} else {
+			distances = runDijkstra(source);
+		}
+
+		Long2DoubleMap output = new Long2DoubleOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), distances[v]);
+		}
+
+		LOG.debug("- Finished Single Source Shortest Path algorithm");
+
+		return output;
+	}
+
+	private double[] runDijkstra(int source) {
+		// This method presents a basic implementation of Dijkstra's shortest path algorithm.
+		int numVertices = graph.getNumberOfVertices();
+		int[] offsets = graph.getOutOffsets();
+		int[] neighbours = graph.getOutNeighbours();
+		double[] weights = graph.getOutWeights();
+		float[] floatWeights = graph.getOutFloatWeights();
+
 		// Define data structures
-		Long2DoubleMap distances = new Long2DoubleOpenHashMap(); // for O(1) lookup for neighbors' distance
-		PriorityQueue<Vertex> queue = new PriorityQueue<>(graph.getVertices().size(), new Vertex()); // for O(log n) lookup for priority
-		LongSet visited = new LongLinkedOpenHashSet(); // for tracking duplicated queue items.
+		double[] distances = new double[numVertices]; // for O(1) lookup for neighbors' distance
+		DistanceHeap queue = new DistanceHeap(distances); // for O(log n) lookup for priority
 
 		// Initialize distances
-		for (PropertyGraph<Void, Double>.Vertex v : graph.getVertices()) {
-			distances.put(v.getId(), MAX_DISTANCE);
-		}
+		Arrays.fill(distances, MAX_DISTANCE);
 
 		// Insert source vertex
-		distances.put(parameters.getSourceVertex(), 0.0);
-		queue.add(new Vertex(parameters.getSourceVertex(), 0.0));
+		if (source >= 0) {
+			distances[source] = 0.0;
+			queue.update(source);
+		}
+
+		// Vertices are settled one at a time, so the progress is reported in batches
+		Progress.get().beginIteration(0);
+		long settledVertices = 0;
+		long settledEdges = 0;
 
 		// Iterate until pending set is empty
 		while (!queue.isEmpty()) {
-			Vertex minVertex = queue.remove();
-
+			int minVertex = queue.removeMin();
+			settledEdges += offsets[minVertex + 1] - offsets[minVertex];
+			if (++settledVertices == Progress.REPORT_INTERVAL) {
+				Progress.get().addProcessed(settledVertices, settledEdges);
+				settledVertices = 0;
+				settledEdges = 0;
+			}
 
 			// Inform the neighbors of this vertex
-			if (!visited.contains(minVertex.getId())) {
-				visited.add(minVertex.getId());
-
-				for (PropertyGraph<Void, Double>.Edge edge : graph.getVertex(minVertex.getId()).getOutgoingEdges()) {
-					long neighbor = edge.getDestinationVertex().getId();
-					double edgeDist = edge.getValue();
-					double newDist = minVertex.getDist() + edgeDist;
-
-					// If neighbor not in pending set or distance has improved
-					if (newDist < distances.get(neighbor)) {
-						queue.add(new Vertex(neighbor, newDist));
-						distances.put(neighbor, newDist);
+			for (int i = offsets[minVertex]; i < offsets[minVertex + 1]; i++) {
+				int neighbor = neighbours[i];
+				double edgeDist = weights != null ? weights[i] : floatWeights[i];
+				double newDist = distances[minVertex] + edgeDist;
+
+				// If neighbor not in pending set or distance has improved
+				if (newDist < distances[neighbor]) {
+					distances[neighbor] = newDist;
+					if (!queue.isRemoved(neighbor)) {
+						queue.update(neighbor);
 					}
 				}
 			}
 		}
-
-		LOG.debug("- Finished Single Source Shortest Path algorithm");
-
+		Progress.get().addProcessed(settledVertices, settledEdges);
 		return distances;
 	}
 
-	private class Vertex implements Comparator<Vertex> {
-		private long id;
-		private double dist;
+	private double[] runDeltaStepping(int source) {
+		int numVertices = graph.getNumberOfVertices();
+		int[] offsets = graph.getOutOffsets();
 
-		public Vertex() {
+		// Distances are stored as the bits of doubles, so concurrent relaxations can lower them atomically
+		AtomicLongArray distances = new AtomicLongArray(numVertices);
+		long maxDistanceBits = Double.doubleToLongBits(MAX_DISTANCE);
+		for (int v = 0; v < numVertices; v++) {
+			distances.set(v, maxDistanceBits);
 		}
 
-		public Vertex(long id, double dist) {
-			this.id = id;
-			this.dist = dist;
-		}
+		// Buckets may contain stale entries of vertices whose distance has decreased since they were added; the
+		// last phase in which a vertex was queued, and the last bucket in which it was settled, filter duplicates
+		Long2ObjectSortedMap<IntArrayList> buckets = new Long2ObjectRBTreeMap<>();
+		int[] queuedPhase = new int[numVertices];
+		int[] settledBucket = new int[numVertices];
+		int phase = 0;
+		int bucketNumber = 0;
+		long numPhases = 0;
 
-		@Override
-		public int compare(Vertex v1, Vertex v2) {
-			if (v1.dist < v2.dist)
-				return -1;
-			if (v1.dist > v2.dist)
-				return 1;
-			return 0;
+		if (source >= 0) {
+			distances.set(source, Double.doubleToLongBits(0.0));
+			buckets.put(0L, IntArrayList.wrap(new int[] { source }));
 		}
 
-		public long getId() {
-			return id;
+		while (!buckets.isEmpty()) {
+			long bucket = buckets.firstLongKey();
+			IntArrayList candidates = buckets.remove(bucket);
+			// Every bucket is an iteration of the progress, counting from 0
+			Progress.get().beginIteration(bucketNumber);
+			bucketNumber++;
+			IntArrayList settled = new IntArrayList();
+			long settledEdges = 0;
+
+			// Relax the light edges of the bucket until no vertex moves into it
+			while (!candidates.isEmpty()) {
+				phase++;
+				numPhases++;
+				IntArrayList frontier = new IntArrayList(candidates.size());
+				for (int i = 0; i < candidates.size(); i++) {
+					int v = candidates.getInt(i);
+					if (queuedPhase[v] != phase && bucketOf(distances.get(v)) == bucket) {
+						queuedPhase[v] = phase;
+						frontier.add(v);
+						if (settledBucket[v] != bucketNumber) {
+							settledBucket[v] = bucketNumber;
+							settled.add(v);
+							settledEdges += offsets[v + 1] - offsets[v];
+						}
+					}
+				}
+
+				candidates = new IntArrayList();
+				for (IntArrayList improved : relax(frontier, distances, true)) {
+					for (int i = 0; i < improved.size(); i++) {
+						int v = improved.getInt(i);
+						long target = bucketOf(distances.get(v));
+						if (target == bucket) {
+							candidates.add(v);
+						} else {
+							addToBucket(buckets, target, v);
+						}
+					}
+				}
+			}
+
+			// The distances of the settled vertices are final, so their heavy edges are relaxed once
+			for (IntArrayList improved : relax(settled, distances, false)) {
+				for (int i = 0; i < improved.size(); i++) {
+					int v = improved.getInt(i);
+					addToBucket(buckets, bucketOf(distances.get(v)), v);
+				}
+			}
+			Progress.get().addProcessed(settled.size(), settledEdges);
 		}
+		LOG.debug("- Processed " + bucketNumber + " buckets in " + numPhases + " phases");
 
-		public double getDist() {
-			return dist;
+		double[] result = new double[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			result[v] = Double.longBitsToDouble(distances.get(v));
 		}
+		return result;
+	}
+
+	/**
+	 * Relaxes the light or heavy outgoing edges of the given vertices in parallel.
+	 *
+	 * @return lists of the vertices whose distance decreased, which may contain duplicates
+	 */
+	private List<IntArrayList> relax(final IntArrayList vertices, final AtomicLongArray distances,
+			final boolean light) {
+		final int[] offsets = graph.getOutOffsets();
+		final int[] neighbours = graph.getOutNeighbours();
+		final double[] weights = graph.getOutWeights();
+		final float[] floatWeights = graph.getOutFloatWeights();
+		final int[] elements = vertices.elements();
+		final List<IntArrayList> results = new ArrayList<>();
+
+		executor.forEach(vertices.size(), new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				IntArrayList improved = new IntArrayList();
+				for (int j = from; j < to; j++) {
+					int u = elements[j];
+					double distance = Double.longBitsToDouble(distances.get(u));
+					for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+						double weight = weights != null ? weights[i] : floatWeights[i];
+						if ((weight <= delta) != light) {
+							continue;
+						}
+						int neighbour = neighbours[i];
+						double newDistance = distance + weight;
+						long current = distances.get(neighbour);
+						while (newDistance < Double.longBitsToDouble(current)) {
+							if (distances.compareAndSet(neighbour, current, Double.doubleToLongBits(newDistance))) {
+								improved.add(neighbour);
+								break;
+							}
+							current = distances.get(neighbour);
+						}
+					}
+				}
+				synchronized (results) {
+					results.add(improved);
+				}
+			}
+		});
+		return results;
+	}
 
+	private long bucketOf(long distanceBits) {
+		return (long)(Double.longBitsToDouble(distanceBits) / delta);
+	}
+
+	private static void addToBucket(Long2ObjectSortedMap<IntArrayList> buckets, long bucket, int vertex) {
+		IntArrayList list = buckets.get(bucket);
+		if (list == null) {
+			list = new IntArrayList();
+			buckets.put(bucket, list);
+		}
+		list.add(vertex);
 	}
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.wcc;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import science.atlarge.graphalytics.reference.partitioned.PartitionedGraph;
+
+/**
+ * Implementation of connected components on one partition of a {@link PartitionedGraph}. Every vertex starts with its
+ * position in the vertex file as label and repeatedly takes the lowest label among its neighbours, in both
+ * directions, until no label changes. Every component then carries the position of its first vertex, and
+ * {@link #numberComponents(Long2LongMap)} numbers the components as {@link WeaklyConnectedComponentsJob} does.
+ */
+public class PartitionedWeaklyConnectedComponentsJob {
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final PartitionedGraph graph;
+
+	public PartitionedWeaklyConnectedComponentsJob(PartitionedGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * @return the lowest position in the vertex file of a vertex in the component of every local vertex
+	 */
+	public Long2LongMap run() throws IOException {
+		LOG.debug("- Starting partitioned connected components algorithm");
+
+		int numLocalVertices = graph.getNumberOfLocalVertices();
+		int[] offsets = graph.getOffsets();
+		int[] neighbours = graph.getNeighbours();
+
+		long[] labels = new long[graph.getValueArrayLength()];
+		for (int v = 0; v < numLocalVertices; v++) {
+			labels[v] = graph.getGlobalIndex(v);
+		}
+
+		// Propagate the lowest label until no worker changes a label
+		long numChanged = graph.exchange(labels, numLocalVertices);
+		for (int it = 0; numChanged > 0; it++) {
+			LOG.debug("- Iteration " + it);
+
+			long localChanged = 0;
+			for (int v = 0; v < numLocalVertices; v++) {
+				long label = labels[v];
+				for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+					label = Math.min(label, labels[neighbours[i]]);
+				}
+				if (label < labels[v]) {
+					labels[v] = label;
+					localChanged++;
+				}
+			}
+			graph.reportProgress(it, numLocalVertices, offsets[numLocalVertices]);
+			numChanged = graph.exchange(labels, localChanged);
+		}
+
+		Long2LongMap output = new Long2LongOpenHashMap(numLocalVertices);
+		for (int v = 0; v < numLocalVertices; v++) {
+			output.put(graph.getVertexId(v), labels[v]);
+		}
+
+		LOG.debug("- Finished partitioned connected components");
+
+		return output;
+	}
+
+	/**
+	 * Replaces the labels of the combined output of all workers by component numbers, numbering the components in
+	 * order of their label, i.e., of their first vertex in the vertex file.
+	 */
+	public static void numberComponents(Long2LongMap output) {
+		long[] labels = new LongOpenHashSet(output.values()).toLongArray();
+		LongArrays.quickSort(labels);
+		Long2LongMap components = new Long2LongOpenHashMap(labels.length);
+		for (int i = 0; i < labels.length; i++) {
+			components.put(labels[i], i);
+		}
+		for (Long2LongMap.Entry entry : output.long2LongEntrySet()) {
+			entry.setValue(components.get(entry.getLongValue()));
+		}
+	}
+}
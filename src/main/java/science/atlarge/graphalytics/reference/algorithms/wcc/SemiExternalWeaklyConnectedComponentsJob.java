@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.wcc;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import science.atlarge.graphalytics.reference.graph.IoStatistics;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+
+/**
+ * Implementation of weakly connected components on a {@link SemiExternalGraph}. Instead of propagating labels until
+ * they converge, which takes a pass over the edge file per step of the longest shortest path, the endpoints of every
+ * edge are merged in an in-memory union-find forest in a single pass. Components are numbered in order of their
+ * lowest vertex index, as in {@link WeaklyConnectedComponentsJob}.
+ */
+public class SemiExternalWeaklyConnectedComponentsJob {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final SemiExternalGraph graph;
+
+	public SemiExternalWeaklyConnectedComponentsJob(SemiExternalGraph graph) {
+		this.graph = graph;
+	}
+
+	public Long2LongMap run() throws IOException {
+		LOG.debug("- Starting semi-external connected components algorithm");
+
+		int numVertices = graph.getNumberOfVertices();
+		final int[] parent = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			parent[v] = v;
+		}
+
+		IoStatistics io = graph.forEachEdge(new SemiExternalGraph.EdgeVisitor() {
+			@Override
+			public void visit(int[] edges, int count) {
+				for (int i = 0; i < 2 * count; i += 2) {
+					WeaklyConnectedComponentsJob.union(parent, edges[i], edges[i + 1]);
+				}
+			}
+		});
+		LOG.info("Connected components I/O: " + io + ".");
+
+		long[] vertex2component = new long[numVertices];
+		WeaklyConnectedComponentsJob.numberComponents(parent, vertex2component);
+
+		Long2LongMap output = new Long2LongOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), vertex2component[v]);
+		}
+
+		LOG.debug("- Finished semi-external connected components");
+
+		return output;
+	}
+}
@@ -15,15 +15,15 @@
  */
 package science.atlarge.graphalytics.reference.algorithms.wcc;
 
-import java.util.Collection;
+import java.util.Arrays;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import it.unimi.dsi.fastutil.longs.AbstractLongPriorityQueue;
 import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
-import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.util.Progress;
 import science.atlarge.graphalytics.util.graph.PropertyGraph;
 
 /**
@@ -34,58 +34,165 @@ import science.atlarge.graphalytics.util.graph.PropertyGraph;
 public class WeaklyConnectedComponentsJob {
 	private static final Logger LOG = LogManager.getLogger();
 
-	private final PropertyGraph<Void, Void> graph;
+	private static final long UNASSIGNED = -1L;
+
+	private final CsrGraph graph;
 
 	public WeaklyConnectedComponentsJob(PropertyGraph<Void, Void> graph) {
+		this(CsrGraph.fromPropertyGraph(graph));
+	}
+
+	public WeaklyConnectedComponentsJob(CsrGraph graph) {
 		this.graph = graph;
 	}
 
 	public Long2LongMap run() {
 		LOG.debug("- Starting connected components algorithm");
 
-		Long2LongMap vertex2component = new Long2LongOpenHashMap();
+		int numVertices = graph.getNumberOfVertices();
+		long[] vertex2component = new long[numVertices];
+		Arrays.fill(vertex2component, UNASSIGNED);
+
+		// Both strategies make a single pass over the vertices, which reports its progress in batches
+		Progress.get().beginIteration(0);
+		if (graph.supportsIncomingEdges()) {
+			traverseComponents(vertex2component);
+		} else {
+			LOG.debug("- Incoming edges are not available, using union-find over outgoing edges instead");
+			unionComponents(vertex2component);
+		}
+
+		Long2LongMap output = new Long2LongOpenHashMap(numVertices);
+		for (int v = 0; v < numVertices; v++) {
+			output.put(graph.getVertexId(v), vertex2component[v]);
+		}
+
+		LOG.debug("- Finished connected components");
+
+		return output;
+	}
+
+	/**
+	 * Finds components by a breadth-first traversal over both outgoing and incoming edges.
+	 */
+	private void traverseComponents(long[] vertex2component) {
+		int numVertices = graph.getNumberOfVertices();
 		long numComponents = 0;
 
-		for (PropertyGraph<Void, Void>.Vertex v: graph.getVertices()) {
-			long id = v.getId();
+		// Traversal queue shared by all components, every vertex is enqueued at most once
+		int[] queue = new int[numVertices];
 
+		// Undirected graphs store every edge in both directions, so the outgoing edges cover all neighbours
+		int numDirections = graph.isDirected() ? 2 : 1;
+
+		long visitedVertices = 0;
+		long visitedEdges = 0;
+		for (int v = 0; v < numVertices; v++) {
 			// skip vertex if already assigned to component
-			if (vertex2component.containsKey(id)) {
+			if (vertex2component[v] != UNASSIGNED) {
 				continue;
 			}
 
 			// Assign to new component
 			long componentId = numComponents++;
-			vertex2component.put(id, componentId);
+			vertex2component[v] = componentId;
 
 			// Perform BFS starting at v to find members of component
-			AbstractLongPriorityQueue queue = new LongArrayFIFOQueue();
-			queue.enqueue(id);
-
-			while (!queue.isEmpty()) {
-				PropertyGraph<Void, Void>.Vertex u = graph.getVertex(queue.dequeueLong());
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = v;
+
+			while (head < tail) {
+				int u = queue[head++];
+				if (++visitedVertices == Progress.REPORT_INTERVAL) {
+					Progress.get().addProcessed(visitedVertices, visitedEdges);
+					visitedVertices = 0;
+					visitedEdges = 0;
+				}
 
-				for (int i = 0; i < 2; i++) {
-					Collection<PropertyGraph<Void, Void>.Edge> edges =
-							i == 0 ?
-							u.getOutgoingEdges() :
-							u.getIncomingEdges();
+				for (int i = 0; i < numDirections; i++) {
+					int[] offsets = i == 0 ? graph.getOutOffsets() : graph.getInOffsets();
+					int[] neighbours = i == 0 ? graph.getOutNeighbours() : graph.getInNeighbours();
+					visitedEdges += offsets[u + 1] - offsets[u];
 
-					for (PropertyGraph<Void, Void>.Edge edge: edges) {
-						long neighbour = edge.getOtherEndpoint(u).getId();
+					for (int j = offsets[u]; j < offsets[u + 1]; j++) {
+						int neighbour = neighbours[j];
 
-						if (!vertex2component.containsKey(neighbour)) {
-							vertex2component.put(neighbour, componentId);
-							queue.enqueue(neighbour);
+						if (vertex2component[neighbour] == UNASSIGNED) {
+							vertex2component[neighbour] = componentId;
+							queue[tail++] = neighbour;
 						}
 					}
-
 				}
 			}
 		}
+		Progress.get().addProcessed(visitedVertices, visitedEdges);
+	}
 
-		LOG.debug("- Finished connected components");
+	/**
+	 * Finds components by merging the endpoints of every outgoing edge in a union-find forest. Components are
+	 * numbered in order of their lowest vertex index, which matches the numbering of the traversal.
+	 */
+	private void unionComponents(long[] vertex2component) {
+		int numVertices = graph.getNumberOfVertices();
+		int[] offsets = graph.getOutOffsets();
+		int[] neighbours = graph.getOutNeighbours();
+
+		int[] parent = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			parent[v] = v;
+		}
+
+		int reported = 0;
+		for (int u = 0; u < numVertices; u++) {
+			if (u - reported == Progress.REPORT_INTERVAL) {
+				Progress.get().addProcessed(u - reported, offsets[u] - offsets[reported]);
+				reported = u;
+			}
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				union(parent, u, neighbours[i]);
+			}
+		}
+		Progress.get().addProcessed(numVertices - reported, offsets[numVertices] - offsets[reported]);
+
+		numberComponents(parent, vertex2component);
+	}
+
+	/**
+	 * Merges the sets of two vertices in a union-find forest. The higher root is linked to the lower one, so every
+	 * root is the lowest index of its set.
+	 */
+	static void union(int[] parent, int u, int v) {
+		int rootU = find(parent, u);
+		int rootV = find(parent, v);
+		if (rootU < rootV) {
+			parent[rootV] = rootU;
+		} else if (rootV < rootU) {
+			parent[rootU] = rootV;
+		}
+	}
+
+	/**
+	 * Numbers the sets of a union-find forest in order of their lowest vertex index.
+	 */
+	static void numberComponents(int[] parent, long[] vertex2component) {
+		long numComponents = 0;
+		for (int v = 0; v < parent.length; v++) {
+			int root = find(parent, v);
+			if (root == v) {
+				vertex2component[v] = numComponents++;
+			} else {
+				vertex2component[v] = vertex2component[root];
+			}
+		}
+	}
 
-		return vertex2component;
+	private static int find(int[] parent, int v) {
+		while (parent[v] != v) {
+			// Path halving
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
 	}
 }
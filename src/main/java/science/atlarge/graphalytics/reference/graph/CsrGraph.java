@@ -0,0 +1,332 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+import science.atlarge.graphalytics.util.graph.PropertyGraph;
+
+/**
+ * In-memory graph in compressed sparse row (CSR) format. Vertices are identified by a dense index in the range
+ * [0, numberOfVertices); the original vertex IDs are only needed to translate results back. Undirected graphs
+ * store every edge in both directions and share the incoming and outgoing edge arrays. For directed graphs, the
+ * incoming edges are derived from the outgoing edges the first time they are requested, so jobs that only
+ * traverse outgoing edges never pay for them. To bound memory usage, the incoming edges of a directed graph can be
+ * disallowed altogether, in which case jobs must fall back to variants that only traverse outgoing edges.
+ * <p>
+ * The neighbours of every vertex are sorted by index and contain neither the vertex itself nor duplicates, so jobs
+ * can intersect neighbourhoods by merging or binary search. Edge weights are stored as doubles or, to halve their
+ * footprint, as floats; see {@link WeightPrecision}.
+ */
+public class CsrGraph {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final long[] vertexIds;
+	private final VertexIndex vertexIndices;
+	private final boolean directed;
+	private final boolean incomingEdgesAllowed;
+	private final int numThreads;
+
+	private final int[] outOffsets;
+	private final int[] outNeighbours;
+	private final double[] outWeights;
+	private final float[] outFloatWeights;
+
+	private volatile int[] inOffsets;
+	private volatile int[] inNeighbours;
+
+	/**
+	 * @param vertexIds     the original ID of every vertex, by index
+	 * @param vertexIndices mapping from original vertex ID to index, returning -1 for unknown IDs
+	 * @param outOffsets    start of the outgoing edges of every vertex, with a trailing entry for the number of edges
+	 * @param outNeighbours destination index of every outgoing edge, sorted and without self-loops or duplicates
+	 *                      per vertex
+	 * @param outWeights    weight of every outgoing edge, or null for unweighted graphs
+	 * @param directed      false if every edge is stored in both directions
+	 * @param numThreads    number of threads used to build the incoming edges of a directed graph
+	 */
+	public CsrGraph(long[] vertexIds, VertexIndex vertexIndices, int[] outOffsets, int[] outNeighbours,
+			double[] outWeights, boolean directed, int numThreads) {
+		this(vertexIds, vertexIndices, outOffsets, outNeighbours, outWeights, directed, true, numThreads);
+	}
+
+	/**
+	 * @param incomingEdgesAllowed false to prevent building the incoming edges of a directed graph
+	 */
+	public CsrGraph(long[] vertexIds, VertexIndex vertexIndices, int[] outOffsets, int[] outNeighbours,
+			double[] outWeights, boolean directed, boolean incomingEdgesAllowed, int numThreads) {
+		this(vertexIds, vertexIndices, outOffsets, outNeighbours, outWeights, null, directed, incomingEdgesAllowed,
+				numThreads);
+	}
+
+	/**
+	 * @param outWeights      weight of every outgoing edge in double precision, or null
+	 * @param outFloatWeights weight of every outgoing edge in single precision, or null; at most one of the weight
+	 *                        arrays may be given
+	 */
+	public CsrGraph(long[] vertexIds, VertexIndex vertexIndices, int[] outOffsets, int[] outNeighbours,
+			double[] outWeights, float[] outFloatWeights, boolean directed, boolean incomingEdgesAllowed,
+			int numThreads) {
+		if (outWeights != null && outFloatWeights != null) {
+			throw new IllegalArgumentException("Edge weights must be stored in a single precision");
+		}
+		this.vertexIds = vertexIds;
+		this.vertexIndices = vertexIndices;
+		this.outOffsets = outOffsets;
+		this.outNeighbours = outNeighbours;
+		this.outWeights = outWeights;
+		this.outFloatWeights = outFloatWeights;
+		this.directed = directed;
+		this.incomingEdgesAllowed = incomingEdgesAllowed || !directed;
+		this.numThreads = numThreads;
+
+		if (!directed) {
+			this.inOffsets = outOffsets;
+			this.inNeighbours = outNeighbours;
+		}
+	}
+
+	public int getNumberOfVertices() {
+		return vertexIds.length;
+	}
+
+	/**
+	 * @return the number of stored (directed) edges; undirected edges are counted once per direction
+	 */
+	public long getNumberOfEdges() {
+		return outNeighbours.length;
+	}
+
+	/**
+	 * @return false if every edge is stored in both directions, in which case the incoming edges of a vertex are
+	 * identical to its outgoing edges
+	 */
+	public boolean isDirected() {
+		return directed;
+	}
+
+	public long getVertexId(int index) {
+		return vertexIds[index];
+	}
+
+	/**
+	 * @return the index of the vertex with the given ID, or -1 if the graph does not contain it
+	 */
+	public int getVertexIndex(long id) {
+		return vertexIndices.get(id);
+	}
+
+	public int getOutDegree(int index) {
+		return outOffsets[index + 1] - outOffsets[index];
+	}
+
+	public int getInDegree(int index) {
+		int[] offsets = getInOffsets();
+		return offsets[index + 1] - offsets[index];
+	}
+
+	public int[] getOutOffsets() {
+		return outOffsets;
+	}
+
+	/**
+	 * @return the destination index of every outgoing edge, sorted by destination index per vertex
+	 */
+	public int[] getOutNeighbours() {
+		return outNeighbours;
+	}
+
+	public boolean isWeighted() {
+		return outWeights != null || outFloatWeights != null;
+	}
+
+	/**
+	 * @return the precision in which the edge weights are stored, or null if the graph is unweighted
+	 */
+	public WeightPrecision getWeightPrecision() {
+		if (outWeights != null) {
+			return WeightPrecision.DOUBLE;
+		}
+		return outFloatWeights != null ? WeightPrecision.FLOAT : null;
+	}
+
+	/**
+	 * @return the weight of every outgoing edge, or null if the graph is unweighted or its weights are stored in
+	 * single precision
+	 */
+	public double[] getOutWeights() {
+		return outWeights;
+	}
+
+	/**
+	 * @return the weight of every outgoing edge, or null if the graph is unweighted or its weights are stored in
+	 * double precision
+	 */
+	public float[] getOutFloatWeights() {
+		return outFloatWeights;
+	}
+
+	/**
+	 * @return the weight of an outgoing edge, in either precision; the graph must be weighted
+	 */
+	public double getOutWeight(int edge) {
+		return outWeights != null ? outWeights[edge] : outFloatWeights[edge];
+	}
+
+	public int[] getInOffsets() {
+		buildIncomingEdges();
+		return inOffsets;
+	}
+
+	/**
+	 * @return the source index of every incoming edge, sorted by source index per vertex
+	 */
+	public int[] getInNeighbours() {
+		buildIncomingEdges();
+		return inNeighbours;
+	}
+
+	/**
+	 * @return false if this is a directed graph for which building the incoming edges has been disallowed
+	 */
+	public boolean supportsIncomingEdges() {
+		return incomingEdgesAllowed;
+	}
+
+	/**
+	 * @return true if the incoming edges are available without building them first
+	 */
+	public boolean hasIncomingEdges() {
+		return inNeighbours != null;
+	}
+
+	/**
+	 * Builds the incoming edges of a directed graph by transposing the outgoing edges in parallel, if this has not
+	 * been done yet.
+	 */
+	public void buildIncomingEdges() {
+		if (inNeighbours != null) {
+			return;
+		}
+		if (!incomingEdgesAllowed) {
+			throw new IllegalStateException("Incoming edges have been disallowed for this graph");
+		}
+		synchronized (this) {
+			if (inNeighbours == null) {
+				LOG.debug("- Building incoming edges");
+				try (ParallelExecutor executor = new ParallelExecutor(numThreads)) {
+					transpose(executor);
+				}
+				LOG.debug("- Built incoming edges");
+			}
+		}
+	}
+
+	private void transpose(ParallelExecutor executor) {
+		final int numVertices = getNumberOfVertices();
+		final AtomicIntegerArray cursors = new AtomicIntegerArray(numVertices);
+
+		// Count the in-degree of every vertex
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int i = outOffsets[from]; i < outOffsets[to]; i++) {
+					cursors.getAndIncrement(outNeighbours[i]);
+				}
+			}
+		});
+
+		final int[] offsets = new int[numVertices + 1];
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] = offsets[v] + cursors.get(v);
+			cursors.set(v, offsets[v]);
+		}
+
+		// Scatter the edges to their destination, in arbitrary order
+		final int[] neighbours = new int[outNeighbours.length];
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+						neighbours[cursors.getAndIncrement(outNeighbours[i])] = v;
+					}
+				}
+			}
+		});
+
+		// Sort the incoming edges of every vertex to make their order deterministic
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					IntArrays.quickSort(neighbours, offsets[v], offsets[v + 1]);
+				}
+			}
+		});
+
+		inOffsets = offsets;
+		inNeighbours = neighbours;
+	}
+
+	/**
+	 * Converts a PropertyGraph to a directed CsrGraph, preserving the iteration order of vertices. Numeric edge values
+	 * are stored as edge weights.
+	 */
+	public static <V, E> CsrGraph fromPropertyGraph(PropertyGraph<V, E> graph) {
+		int numVertices = graph.getVertices().size();
+		long[] vertexIds = new long[numVertices];
+		int[] outOffsets = new int[numVertices + 1];
+		int index = 0;
+		for (PropertyGraph<V, E>.Vertex v : graph.getVertices()) {
+			vertexIds[index] = v.getId();
+			outOffsets[index + 1] = outOffsets[index] + v.getOutgoingEdges().size();
+			index++;
+		}
+
+		VertexIndex vertexIndices = VertexIndex.build(vertexIds);
+
+		int[] outNeighbours = new int[outOffsets[numVertices]];
+		double[] outWeights = null;
+		int out = 0;
+		for (PropertyGraph<V, E>.Vertex v : graph.getVertices()) {
+			for (PropertyGraph<V, E>.Edge e : v.getOutgoingEdges()) {
+				outNeighbours[out] = vertexIndices.get(e.getDestinationVertex().getId());
+				if (e.getValue() instanceof Number) {
+					if (outWeights == null) {
+						outWeights = new double[outNeighbours.length];
+					}
+					outWeights[out] = ((Number) e.getValue()).doubleValue();
+				}
+				out++;
+			}
+		}
+
+		EdgeNormalizer normalizer = new EdgeNormalizer(outOffsets, outNeighbours, outWeights);
+		try (ParallelExecutor executor = new ParallelExecutor(1)) {
+			normalizer.normalize(executor);
+		}
+		return new CsrGraph(vertexIds, vertexIndices, normalizer.getOffsets(), normalizer.getNeighbours(),
+				normalizer.getWeights(), true, 1);
+	}
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+
+/**
+ * Loads a graph in the Graphalytics vertex/edge file format into a {@link CsrGraph} using a pipelined ingest.
+ * A reader thread streams chunks of edge lines into a bounded queue, from which builder threads parse the edges
+ * and count vertex degrees while the remainder of the file is still being read. Once the whole file has been
+ * parsed, the builder threads fill the outgoing edge array, releasing every chunk once its edges are stored, and
+ * the edges are normalized: the edges of every vertex are sorted in parallel, and self-loops and duplicate edges are
+ * removed. Incoming edges are not loaded; the {@link CsrGraph} derives them
+ * from the outgoing edges when a job first needs them.
+ * <p>
+ * Edge weights are stored in double precision by default. In single precision, every weight is rounded to a float as
+ * soon as it is parsed, so neither the parsed chunks nor the graph ever hold the weights as doubles.
+ */
+public class CsrGraphLoader {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	static final int CHUNK_SIZE = 1 << 16;
+	static final int CHUNKS_QUEUED_PER_THREAD = 4;
+	/**
+	 * The maximum number of edges that a {@link CsrGraph} can store, counting undirected edges twice, as the edges are
+	 * stored in arrays indexed by int.
+	 */
+	public static final long MAX_EDGES = Integer.MAX_VALUE - 8;
+	/**
+	 * The maximum relative error of a weight rounded to single precision. Rounding a normal double to the nearest
+	 * float has a relative error of at most 2^-24, so this only rejects weights that overflow or become subnormal.
+	 */
+	static final double MAX_FLOAT_WEIGHT_ERROR = 1e-6;
+
+	private static final EdgeChunk END_OF_INPUT = new EdgeChunk(new String[0], 0);
+
+	private final int numThreads;
+	private boolean incomingEdgesAllowed = true;
+	private WeightPrecision weightPrecision = WeightPrecision.DOUBLE;
+
+	public CsrGraphLoader(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * @param incomingEdgesAllowed false to prevent loaded directed graphs from ever building their incoming edges
+	 */
+	public void setIncomingEdgesAllowed(boolean incomingEdgesAllowed) {
+		this.incomingEdgesAllowed = incomingEdgesAllowed;
+	}
+
+	/**
+	 * @param weightPrecision the precision in which the edge weights of weighted graphs are stored
+	 */
+	public void setWeightPrecision(WeightPrecision weightPrecision) {
+		this.weightPrecision = weightPrecision;
+	}
+
+	public CsrGraph load(String vertexFilePath, String edgeFilePath, boolean directed, boolean weighted)
+			throws IOException {
+		long[] vertexIds = GraphFiles.readVertices(vertexFilePath);
+		VertexIndex vertexIndices = GraphFiles.indexVertices(vertexIds);
+		LOG.debug("- Read " + vertexIds.length + " vertices, built " + vertexIndices);
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try (ParallelExecutor parallelExecutor = new ParallelExecutor(numThreads)) {
+			int numVertices = vertexIds.length;
+			AtomicIntegerArray outDegrees = new AtomicIntegerArray(numVertices);
+			boolean floatWeights = weighted && weightPrecision == WeightPrecision.FLOAT;
+			EdgeChunk[] chunks = readEdges(edgeFilePath, executor, vertexIndices, directed, weighted, floatWeights,
+					outDegrees);
+			LOG.debug("- Parsed " + chunks.length + " chunks of edges");
+
+			// The degrees become the cursors at which the edges of every vertex are stored
+			int[] outOffsets = toOffsets(outDegrees);
+			int[] outNeighbours = new int[outOffsets[numVertices]];
+			double[] outWeights = weighted && !floatWeights ? new double[outNeighbours.length] : null;
+			float[] outFloatWeights = floatWeights ? new float[outNeighbours.length] : null;
+			new Scatter(chunks, outDegrees, outNeighbours, outWeights, outFloatWeights, !directed)
+					.run(parallelExecutor);
+			LOG.debug("- Built edge arrays" + (floatWeights ? " with single-precision weights" : ""));
+
+			EdgeNormalizer normalizer = new EdgeNormalizer(outOffsets, outNeighbours, outWeights, outFloatWeights);
+			normalizer.normalize(parallelExecutor);
+			LOG.debug("- Normalized edges");
+
+			return new CsrGraph(vertexIds, vertexIndices, normalizer.getOffsets(), normalizer.getNeighbours(),
+					normalizer.getWeights(), normalizer.getFloatWeights(), directed, incomingEdgesAllowed, numThreads);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Streams the edge file in chunks to the builder threads, which parse them and count vertex degrees.
+	 *
+	 * @return all parsed chunks, in file order
+	 */
+	private EdgeChunk[] readEdges(String edgeFilePath, ExecutorService executor, VertexIndex vertexIndices,
+			boolean directed, boolean weighted, boolean floatWeights, AtomicIntegerArray outDegrees)
+			throws IOException {
+		BlockingQueue<EdgeChunk> queue = new ArrayBlockingQueue<>(numThreads * CHUNKS_QUEUED_PER_THREAD);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Future<?>> builders = new ArrayList<>(numThreads);
+		for (int i = 0; i < numThreads; i++) {
+			builders.add(executor.submit(new Builder(queue, failure, vertexIndices, directed, weighted, floatWeights,
+					outDegrees)));
+		}
+
+		List<EdgeChunk> chunks = new ArrayList<>();
+		long numEdges = 0;
+		try (BufferedReader reader = GraphFiles.openReader(edgeFilePath)) {
+			String[] lines = new String[CHUNK_SIZE];
+			int numLines = 0;
+			String line;
+			while ((line = reader.readLine()) != null && failure.get() == null) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				lines[numLines++] = line;
+				numEdges += directed ? 1 : 2;
+				if (numEdges > MAX_EDGES) {
+					throw new IOException("Graph has too many edges to be loaded in memory, use the semi-external or " +
+							"partitioned execution mode instead: " + edgeFilePath);
+				}
+				if (numLines == CHUNK_SIZE) {
+					chunks.add(enqueue(queue, new EdgeChunk(lines, numLines)));
+					lines = new String[CHUNK_SIZE];
+					numLines = 0;
+				}
+			}
+			if (numLines > 0) {
+				chunks.add(enqueue(queue, new EdgeChunk(lines, numLines)));
+			}
+		} finally {
+			for (int i = 0; i < numThreads; i++) {
+				enqueue(queue, END_OF_INPUT);
+			}
+		}
+
+		for (Future<?> builder : builders) {
+			await(builder);
+		}
+		if (failure.get() != null) {
+			throw new IOException("Failed to parse edge file: " + edgeFilePath, failure.get());
+		}
+		return chunks.toArray(new EdgeChunk[chunks.size()]);
+	}
+
+	private static EdgeChunk enqueue(BlockingQueue<EdgeChunk> queue, EdgeChunk chunk) throws IOException {
+		try {
+			queue.put(chunk);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading graph", e);
+		}
+		return chunk;
+	}
+
+	private static void await(Future<?> future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading graph", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to load graph", e.getCause());
+		}
+	}
+
+	/**
+	 * Computes the offsets of the edges of every vertex, and replaces every degree by the offset of the vertex.
+	 */
+	private static int[] toOffsets(AtomicIntegerArray degrees) {
+		int[] offsets = new int[degrees.length() + 1];
+		for (int i = 0; i < degrees.length(); i++) {
+			offsets[i + 1] = offsets[i] + degrees.get(i);
+			degrees.set(i, offsets[i]);
+		}
+		return offsets;
+	}
+
+	/**
+	 * A block of consecutive lines from the edge file, which a builder thread replaces by the parsed edges.
+	 */
+	private static final class EdgeChunk {
+
+		private String[] lines;
+		private final int size;
+		private int[] sources;
+		private int[] destinations;
+		private double[] weights;
+		private float[] floatWeights;
+
+		private EdgeChunk(String[] lines, int size) {
+			this.lines = lines;
+			this.size = size;
+		}
+
+	}
+
+	/**
+	 * Parses queued chunks of edge lines into vertex indices and counts the out-degree of every vertex.
+	 */
+	private static final class Builder implements Callable<Void> {
+
+		private final BlockingQueue<EdgeChunk> queue;
+		private final AtomicReference<Throwable> failure;
+		private final VertexIndex vertexIndices;
+		private final boolean directed;
+		private final boolean weighted;
+		private final boolean floatWeights;
+		private final AtomicIntegerArray outDegrees;
+
+		private Builder(BlockingQueue<EdgeChunk> queue, AtomicReference<Throwable> failure,
+				VertexIndex vertexIndices, boolean directed, boolean weighted, boolean floatWeights,
+				AtomicIntegerArray outDegrees) {
+			this.queue = queue;
+			this.failure = failure;
+			this.vertexIndices = vertexIndices;
+			this.directed = directed;
+			this.weighted = weighted;
+			this.floatWeights = floatWeights;
+			this.outDegrees = outDegrees;
+		}
+
+		@Override
+		public Void call() throws InterruptedException {
+			EdgeChunk chunk;
+			while ((chunk = queue.take()) != END_OF_INPUT) {
+				// Keep draining the queue after a failure so the reader is never blocked
+				if (failure.get() != null) {
+					continue;
+				}
+				try {
+					parse(chunk);
+				} catch (Throwable t) {
+					failure.compareAndSet(null, t);
+				}
+			}
+			return null;
+		}
+
+		private void parse(EdgeChunk chunk) throws IOException {
+			int[] sources = new int[chunk.size];
+			int[] destinations = new int[chunk.size];
+			double[] weights = weighted && !floatWeights ? new double[chunk.size] : null;
+			float[] singleWeights = floatWeights ? new float[chunk.size] : null;
+
+			for (int i = 0; i < chunk.size; i++) {
+				String line = chunk.lines[i];
+				int start = GraphFiles.skipWhitespace(line, 0);
+				int end = GraphFiles.nextWhitespace(line, start);
+				long sourceId = GraphFiles.parseLong(line, start, end);
+				start = GraphFiles.skipWhitespace(line, end);
+				end = GraphFiles.nextWhitespace(line, start);
+				long destinationId = GraphFiles.parseLong(line, start, end);
+
+				int source = vertexIndices.get(sourceId);
+				int destination = vertexIndices.get(destinationId);
+				if (source < 0 || destination < 0) {
+					throw new IOException("Edge refers to a vertex that is not in the vertex file: \"" + line + "\"");
+				}
+				sources[i] = source;
+				destinations[i] = destination;
+
+				if (weighted) {
+					start = GraphFiles.skipWhitespace(line, end);
+					end = GraphFiles.nextWhitespace(line, start);
+					if (start == end) {
+						throw new IOException("Expected an edge weight in line: \"" + line + "\"");
+					}
+					double weight = Double.parseDouble(line.substring(start, end));
+					if (floatWeights) {
+						singleWeights[i] = toFloat(weight, line);
+					} else {
+						weights[i] = weight;
+					}
+				}
+
+				outDegrees.getAndIncrement(source);
+				if (!directed) {
+					outDegrees.getAndIncrement(destination);
+				}
+			}
+
+			chunk.sources = sources;
+			chunk.destinations = destinations;
+			chunk.weights = weights;
+			chunk.floatWeights = singleWeights;
+			chunk.lines = null;
+		}
+
+		private static float toFloat(double weight, String line) throws IOException {
+			float rounded = (float)weight;
+			if (Math.abs(rounded - weight) > MAX_FLOAT_WEIGHT_ERROR * Math.abs(weight)) {
+				throw new IOException("Edge weight cannot be stored in single precision, use double precision " +
+						"instead: \"" + line + "\"");
+			}
+			return rounded;
+		}
+
+	}
+
+	/**
+	 * Fills the outgoing edge array from the parsed chunks in parallel. Every edge is stored at the cursor of its
+	 * source, which is advanced atomically, so the edges of a vertex are stored in arbitrary order until they are
+	 * normalized. Every chunk is released as soon as its edges are stored.
+	 */
+	private static final class Scatter {
+
+		private final EdgeChunk[] chunks;
+		private final AtomicIntegerArray cursors;
+		private final int[] neighbours;
+		private final double[] weights;
+		private final float[] floatWeights;
+		private final boolean symmetric;
+
+		/**
+		 * @param cursors   the position at which the next edge of every vertex is stored, initially its offset
+		 * @param symmetric store every edge at both of its endpoints, for undirected graphs
+		 */
+		private Scatter(EdgeChunk[] chunks, AtomicIntegerArray cursors, int[] neighbours, double[] weights,
+				float[] floatWeights, boolean symmetric) {
+			this.chunks = chunks;
+			this.cursors = cursors;
+			this.neighbours = neighbours;
+			this.weights = weights;
+			this.floatWeights = floatWeights;
+			this.symmetric = symmetric;
+		}
+
+		private void run(ParallelExecutor executor) {
+			executor.forEach(chunks.length, new ParallelExecutor.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					for (int c = from; c < to; c++) {
+						EdgeChunk chunk = chunks[c];
+						for (int i = 0; i < chunk.size; i++) {
+							add(chunk.sources[i], chunk.destinations[i], chunk, i);
+							if (symmetric) {
+								add(chunk.destinations[i], chunk.sources[i], chunk, i);
+							}
+						}
+						chunks[c] = null;
+					}
+				}
+			});
+		}
+
+		private void add(int from, int to, EdgeChunk chunk, int i) {
+			int position = cursors.getAndIncrement(from);
+			neighbours[position] = to;
+			if (weights != null) {
+				weights[position] = chunk.weights[i];
+			} else if (floatWeights != null) {
+				floatWeights[position] = chunk.floatWeights[i];
+			}
+		}
+
+	}
+
+}
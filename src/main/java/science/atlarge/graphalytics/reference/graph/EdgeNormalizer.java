@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.Swapper;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+
+/**
+ * Normalizes the edges of a graph in CSR format: the neighbours of every vertex are sorted by index, and
+ * self-loops and duplicate edges, which Graphalytics graphs may not contain, are removed. Of a set of duplicate
+ * weighted edges, the edge with the lowest weight is kept.
+ */
+final class EdgeNormalizer {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private int[] offsets;
+	private int[] neighbours;
+	private double[] weights;
+	private float[] floatWeights;
+
+	/**
+	 * @param offsets    start of the edges of every vertex, with a trailing entry for the number of edges
+	 * @param neighbours neighbour index of every edge, grouped by vertex
+	 * @param weights    weight of every edge, or null for unweighted graphs
+	 */
+	EdgeNormalizer(int[] offsets, int[] neighbours, double[] weights) {
+		this(offsets, neighbours, weights, null);
+	}
+
+	/**
+	 * @param floatWeights weight of every edge in single precision, or null if the edges have no such weights
+	 */
+	EdgeNormalizer(int[] offsets, int[] neighbours, double[] weights, float[] floatWeights) {
+		this.offsets = offsets;
+		this.neighbours = neighbours;
+		this.weights = weights;
+		this.floatWeights = floatWeights;
+	}
+
+	/**
+	 * Normalizes the edges in place. If any edges are removed, the edge arrays are replaced by shorter copies.
+	 */
+	void normalize(ParallelExecutor executor) {
+		final int numVertices = offsets.length - 1;
+		final int[] degrees = new int[numVertices];
+		final AtomicLong selfLoops = new AtomicLong();
+		final AtomicLong duplicates = new AtomicLong();
+
+		// Sort and deduplicate the edges of every vertex within their own range of the edge array
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				long removedSelfLoops = 0;
+				long removedDuplicates = 0;
+				for (int v = from; v < to; v++) {
+					int start = offsets[v];
+					int end = offsets[v + 1];
+					sort(start, end);
+
+					int next = start;
+					for (int i = start; i < end; i++) {
+						if (neighbours[i] == v) {
+							removedSelfLoops++;
+						} else if (next > start && neighbours[next - 1] == neighbours[i]) {
+							removedDuplicates++;
+						} else {
+							neighbours[next] = neighbours[i];
+							if (weights != null) {
+								weights[next] = weights[i];
+							} else if (floatWeights != null) {
+								floatWeights[next] = floatWeights[i];
+							}
+							next++;
+						}
+					}
+					degrees[v] = next - start;
+				}
+				selfLoops.addAndGet(removedSelfLoops);
+				duplicates.addAndGet(removedDuplicates);
+			}
+		});
+
+		if (selfLoops.get() == 0 && duplicates.get() == 0) {
+			return;
+		}
+		LOG.warn("Removed " + selfLoops.get() + " self-loops and " + duplicates.get() + " duplicate edges");
+
+		// Close the gaps left by removed edges
+		int[] newOffsets = new int[numVertices + 1];
+		for (int v = 0; v < numVertices; v++) {
+			newOffsets[v + 1] = newOffsets[v] + degrees[v];
+			System.arraycopy(neighbours, offsets[v], neighbours, newOffsets[v], degrees[v]);
+			if (weights != null) {
+				System.arraycopy(weights, offsets[v], weights, newOffsets[v], degrees[v]);
+			} else if (floatWeights != null) {
+				System.arraycopy(floatWeights, offsets[v], floatWeights, newOffsets[v], degrees[v]);
+			}
+		}
+		offsets = newOffsets;
+		neighbours = Arrays.copyOf(neighbours, newOffsets[numVertices]);
+		if (weights != null) {
+			weights = Arrays.copyOf(weights, newOffsets[numVertices]);
+		} else if (floatWeights != null) {
+			floatWeights = Arrays.copyOf(floatWeights, newOffsets[numVertices]);
+		}
+	}
+
+	private void sort(int from, int to) {
+		if (weights == null && floatWeights == null) {
+			IntArrays.quickSort(neighbours, from, to);
+			return;
+		}
+		// Sort by neighbour and then by weight, so the first of a set of duplicate edges has the lowest weight
+		it.unimi.dsi.fastutil.Arrays.quickSort(from, to, new IntComparator() {
+			@Override
+			public int compare(int a, int b) {
+				int result = Integer.compare(neighbours[a], neighbours[b]);
+				if (result != 0) {
+					return result;
+				}
+				return weights != null ? Double.compare(weights[a], weights[b])
+						: Float.compare(floatWeights[a], floatWeights[b]);
+			}
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return compare(a.intValue(), b.intValue());
+			}
+		}, new Swapper() {
+			@Override
+			public void swap(int a, int b) {
+				int neighbour = neighbours[a];
+				neighbours[a] = neighbours[b];
+				neighbours[b] = neighbour;
+				if (weights != null) {
+					double weight = weights[a];
+					weights[a] = weights[b];
+					weights[b] = weight;
+				} else {
+					float weight = floatWeights[a];
+					floatWeights[a] = floatWeights[b];
+					floatWeights[b] = weight;
+				}
+			}
+		});
+	}
+
+	int[] getOffsets() {
+		return offsets;
+	}
+
+	int[] getNeighbours() {
+		return neighbours;
+	}
+
+	double[] getWeights() {
+		return weights;
+	}
+
+	float[] getFloatWeights() {
+		return floatWeights;
+	}
+
+}
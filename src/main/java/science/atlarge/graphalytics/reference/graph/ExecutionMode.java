@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+/**
+ * Determines where the edges of a graph are kept while a job runs. Every mode removes self-loops and duplicate edges
+ * while loading, so a job gives the same output in every mode.
+ */
+public enum ExecutionMode {
+
+	/**
+	 * The graph is loaded into a {@link CsrGraph}.
+	 */
+	IN_MEMORY,
+
+	/**
+	 * The graph is loaded into a {@link SemiExternalGraph}: vertex state is kept in memory, and edges are streamed
+	 * from disk. Algorithms without a semi-external implementation run in memory.
+	 */
+	SEMI_EXTERNAL,
+
+	/**
+	 * The vertices of the graph are partitioned over several worker processes, which exchange the values of boundary
+	 * vertices in every superstep. Algorithms without a partitioned implementation run in memory.
+	 */
+	PARTITIONED
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Reads the vertex and edge files of graphs in the Graphalytics format.
+ */
+public final class GraphFiles {
+
+	private GraphFiles() {
+	}
+
+	/**
+	 * @return the IDs of all vertices, in file order
+	 */
+	public static long[] readVertices(String vertexFilePath) throws IOException {
+		LongArrayList vertexIds = new LongArrayList();
+		try (BufferedReader reader = openReader(vertexFilePath)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int start = skipWhitespace(line, 0);
+				if (start == line.length()) {
+					continue;
+				}
+				vertexIds.add(parseLong(line, start, nextWhitespace(line, start)));
+			}
+		}
+		return vertexIds.toLongArray();
+	}
+
+	/**
+	 * @return a map from vertex ID to the index of the vertex, returning -1 for unknown vertices
+	 */
+	public static VertexIndex indexVertices(long[] vertexIds) throws IOException {
+		try {
+			return VertexIndex.build(vertexIds);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid vertex file: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the edge file sequentially and passes the source and destination of every edge to the handler. Edge
+	 * properties are ignored.
+	 */
+	public static void readEdges(String edgeFilePath, EdgeHandler handler) throws IOException {
+		try (BufferedReader reader = openReader(edgeFilePath)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int start = skipWhitespace(line, 0);
+				if (start == line.length()) {
+					continue;
+				}
+				int end = nextWhitespace(line, start);
+				long sourceId = parseLong(line, start, end);
+				start = skipWhitespace(line, end);
+				end = nextWhitespace(line, start);
+				handler.handle(sourceId, parseLong(line, start, end));
+			}
+		}
+	}
+
+	static BufferedReader openReader(String path) throws IOException {
+		return new BufferedReader(new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8),
+				1 << 20);
+	}
+
+	static int skipWhitespace(String line, int from) {
+		while (from < line.length() && Character.isWhitespace(line.charAt(from))) {
+			from++;
+		}
+		return from;
+	}
+
+	static int nextWhitespace(String line, int from) {
+		while (from < line.length() && !Character.isWhitespace(line.charAt(from))) {
+			from++;
+		}
+		return from;
+	}
+
+	static long parseLong(String line, int start, int end) throws IOException {
+		boolean negative = start < end && line.charAt(start) == '-';
+		int i = negative ? start + 1 : start;
+		if (i == end) {
+			throw new IOException("Expected a vertex ID in line: \"" + line + "\"");
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = line.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw new IOException("Invalid vertex ID in line: \"" + line + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Receives the edges read from an edge file.
+	 */
+	public interface EdgeHandler {
+
+		void handle(long sourceId, long destinationId) throws IOException;
+
+	}
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Structural statistics of a {@link CsrGraph}, computed in a few linear passes after loading and used to select
+ * between implementation variants of algorithms: the degree distribution, the number and size of the weakly
+ * connected components, an estimate of the diameter, and the distribution of edge weights.
+ * <p>
+ * Degrees are out-degrees, i.e., the number of neighbours for undirected graphs. Components are computed exactly with
+ * a union-find forest. The diameter is estimated by a double sweep over outgoing edges: a breadth-first search from
+ * the vertex with the highest degree finds a farthest vertex, and a second search from that vertex finds its
+ * eccentricity, which is a lower bound of the diameter of its component that is tight for most real-world graphs.
+ */
+public class GraphStatistics {
+
+	private final int numVertices;
+	private final long numEdges;
+	private final boolean directed;
+	private final int maxDegree;
+	private final long[] degreeHistogram;
+	private final int numComponents;
+	private final int largestComponentSize;
+	private final int estimatedDiameter;
+	private final double maxWeight;
+	private final double averageWeight;
+	private final long computeMillis;
+
+	private GraphStatistics(int numVertices, long numEdges, boolean directed, int maxDegree, long[] degreeHistogram,
+			int numComponents, int largestComponentSize, int estimatedDiameter, double maxWeight, double averageWeight,
+			long computeMillis) {
+		this.numVertices = numVertices;
+		this.numEdges = numEdges;
+		this.directed = directed;
+		this.maxDegree = maxDegree;
+		this.degreeHistogram = degreeHistogram;
+		this.numComponents = numComponents;
+		this.largestComponentSize = largestComponentSize;
+		this.estimatedDiameter = estimatedDiameter;
+		this.maxWeight = maxWeight;
+		this.averageWeight = averageWeight;
+		this.computeMillis = computeMillis;
+	}
+
+	public static GraphStatistics compute(CsrGraph graph) {
+		long startTime = System.currentTimeMillis();
+		int numVertices = graph.getNumberOfVertices();
+		int[] offsets = graph.getOutOffsets();
+		int[] neighbours = graph.getOutNeighbours();
+
+		// Degree distribution, in buckets of powers of two
+		int maxDegree = 0;
+		int maxDegreeVertex = 0;
+		long[] histogram = new long[33];
+		for (int v = 0; v < numVertices; v++) {
+			int degree = offsets[v + 1] - offsets[v];
+			histogram[degreeBucket(degree)]++;
+			if (degree > maxDegree) {
+				maxDegree = degree;
+				maxDegreeVertex = v;
+			}
+		}
+		histogram = Arrays.copyOf(histogram, degreeBucket(maxDegree) + 1);
+
+		// Weakly connected components
+		int[] parent = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			parent[v] = v;
+		}
+		for (int u = 0; u < numVertices; u++) {
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				int rootU = find(parent, u);
+				int rootV = find(parent, neighbours[i]);
+				if (rootU != rootV) {
+					parent[Math.max(rootU, rootV)] = Math.min(rootU, rootV);
+				}
+			}
+		}
+		// Count the vertices of every component at its root
+		int numComponents = 0;
+		int largestComponentSize = 0;
+		int[] componentSizes = new int[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			int root = find(parent, v);
+			if (componentSizes[root]++ == 0) {
+				numComponents++;
+			}
+			largestComponentSize = Math.max(largestComponentSize, componentSizes[root]);
+		}
+		componentSizes = null;
+
+		// Double sweep, reusing the union-find forest as distance array
+		int estimatedDiameter = 0;
+		if (numVertices > 0) {
+			int[] distances = parent;
+			int[] queue = new int[numVertices];
+			int farthest = sweep(offsets, neighbours, maxDegreeVertex, distances, queue);
+			estimatedDiameter = distances[farthest];
+			int end = sweep(offsets, neighbours, farthest, distances, queue);
+			estimatedDiameter = Math.max(estimatedDiameter, distances[end]);
+		}
+
+		// Edge weights
+		double maxWeight = 0.0;
+		double averageWeight = 0.0;
+		long numWeights = graph.getNumberOfEdges();
+		if (graph.isWeighted() && numWeights > 0) {
+			double sum = 0.0;
+			for (int i = 0; i < numWeights; i++) {
+				double weight = graph.getOutWeight(i);
+				maxWeight = Math.max(maxWeight, weight);
+				sum += weight;
+			}
+			averageWeight = sum / numWeights;
+		}
+
+		return new GraphStatistics(numVertices, graph.getNumberOfEdges(), graph.isDirected(), maxDegree, histogram,
+				numComponents, largestComponentSize, estimatedDiameter, maxWeight, averageWeight,
+				System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * Runs a breadth-first search over outgoing edges.
+	 *
+	 * @return the vertex with the highest distance from the source, and the lowest index among those
+	 */
+	private static int sweep(int[] offsets, int[] neighbours, int source, int[] distances, int[] queue) {
+		Arrays.fill(distances, -1);
+		int head = 0;
+		int tail = 0;
+		distances[source] = 0;
+		queue[tail++] = source;
+		int farthest = source;
+		while (head < tail) {
+			int u = queue[head++];
+			if (distances[u] > distances[farthest] || (distances[u] == distances[farthest] && u < farthest)) {
+				farthest = u;
+			}
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				int v = neighbours[i];
+				if (distances[v] < 0) {
+					distances[v] = distances[u] + 1;
+					queue[tail++] = v;
+				}
+			}
+		}
+		return farthest;
+	}
+
+	private static int find(int[] parent, int v) {
+		while (parent[v] != v) {
+			// Path halving
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * @return 0 for degree 0, and k for degrees in [2^(k-1), 2^k)
+	 */
+	private static int degreeBucket(int degree) {
+		return 32 - Integer.numberOfLeadingZeros(degree);
+	}
+
+	public int getNumberOfVertices() {
+		return numVertices;
+	}
+
+	/**
+	 * @return the number of stored (directed) edges; undirected edges are counted once per direction
+	 */
+	public long getNumberOfEdges() {
+		return numEdges;
+	}
+
+	public boolean isDirected() {
+		return directed;
+	}
+
+	public double getAverageDegree() {
+		return numVertices == 0 ? 0.0 : (double)numEdges / numVertices;
+	}
+
+	public int getMaxDegree() {
+		return maxDegree;
+	}
+
+	/**
+	 * @return the number of vertices per degree bucket: bucket 0 holds the vertices without (outgoing) edges, and
+	 * bucket k > 0 the vertices with degrees in [2^(k-1), 2^k)
+	 */
+	public long[] getDegreeHistogram() {
+		return degreeHistogram.clone();
+	}
+
+	public int getNumberOfComponents() {
+		return numComponents;
+	}
+
+	public int getLargestComponentSize() {
+		return largestComponentSize;
+	}
+
+	/**
+	 * @return a lower bound of the diameter, in hops along outgoing edges
+	 */
+	public int getEstimatedDiameter() {
+		return estimatedDiameter;
+	}
+
+	/**
+	 * @return the highest edge weight, or 0 for unweighted graphs
+	 */
+	public double getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * @return the average edge weight, or 0 for unweighted graphs
+	 */
+	public double getAverageWeight() {
+		return averageWeight;
+	}
+
+	/**
+	 * @return the time spent computing the statistics, in milliseconds
+	 */
+	public long getComputeMillis() {
+		return computeMillis;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder histogram = new StringBuilder();
+		for (int k = 0; k < degreeHistogram.length; k++) {
+			if (degreeHistogram[k] == 0) {
+				continue;
+			}
+			histogram.append(histogram.length() == 0 ? "" : ", ");
+			if (k <= 1) {
+				histogram.append(k);
+			} else {
+				histogram.append(1L << (k - 1)).append('-').append((1L << k) - 1);
+			}
+			histogram.append(": ").append(degreeHistogram[k]);
+		}
+		String weights = averageWeight > 0.0
+				? String.format(Locale.ROOT, ", edge weights %.4g on average, %.4g at most", averageWeight, maxWeight)
+				: "";
+		return String.format(Locale.ROOT, "%d vertices, %d edges%s, average degree %.2f, maximum degree %d, " +
+						"degree distribution [%s], %d components (largest: %d vertices), estimated diameter %d%s",
+				numVertices, numEdges, directed ? "" : " (both directions)", getAverageDegree(), maxDegree, histogram,
+				numComponents, largestComponentSize, estimatedDiameter, weights);
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Locale;
+
+/**
+ * The volume of disk I/O of a {@link SemiExternalGraph} and the time spent waiting for it.
+ */
+public class IoStatistics {
+
+	private long bytesRead;
+	private long bytesWritten;
+	private long nanos;
+
+	void addRead(long bytes, long nanos) {
+		this.bytesRead += bytes;
+		this.nanos += nanos;
+	}
+
+	void addWritten(long bytes, long nanos) {
+		this.bytesWritten += bytes;
+		this.nanos += nanos;
+	}
+
+	void add(IoStatistics statistics) {
+		this.bytesRead += statistics.bytesRead;
+		this.bytesWritten += statistics.bytesWritten;
+		this.nanos += statistics.nanos;
+	}
+
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return the time spent in reads and writes, in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return the number of bytes read and written per second spent in reads and writes
+	 */
+	public double getBandwidth() {
+		return nanos == 0 ? 0.0 : (bytesRead + bytesWritten) * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		String volume;
+		if (bytesWritten == 0) {
+			volume = "read " + MemoryEstimator.formatBytes(bytesRead);
+		} else if (bytesRead == 0) {
+			volume = "wrote " + MemoryEstimator.formatBytes(bytesWritten);
+		} else {
+			volume = "read " + MemoryEstimator.formatBytes(bytesRead) + ", wrote " +
+					MemoryEstimator.formatBytes(bytesWritten);
+		}
+		return volume + String.format(Locale.ROOT, " in %.3f s (%.1f MiB/s)", nanos / 1e9,
+				getBandwidth() / (1024 * 1024));
+	}
+
+}
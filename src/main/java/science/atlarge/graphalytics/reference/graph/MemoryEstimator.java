@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Arrays;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+
+/**
+ * Estimates the peak heap usage of loading a graph into a {@link CsrGraph} and running an algorithm on it. The
+ * estimate covers the arrays and hash tables whose size depends on the graph, and is based on the number of vertices
+ * and edges of the graph before it is loaded.
+ */
+public class MemoryEstimator {
+
+	/**
+	 * Approximate footprint of an unparsed line of the edge file, including the String object.
+	 */
+	private static final long BYTES_PER_EDGE_LINE = 64;
+
+	private final long numVertices;
+	private final long numEdges;
+	private final boolean directed;
+	private final boolean weighted;
+	private final int numThreads;
+	private WeightPrecision weightPrecision = WeightPrecision.DOUBLE;
+
+	/**
+	 * @param numEdges the number of edges in the edge file; undirected edges are counted once
+	 */
+	public MemoryEstimator(long numVertices, long numEdges, boolean directed, boolean weighted, int numThreads) {
+		this.numVertices = numVertices;
+		this.numEdges = numEdges;
+		this.directed = directed;
+		this.weighted = weighted;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * @param weightPrecision the precision in which the edge weights of a weighted graph are stored
+	 */
+	public void setWeightPrecision(WeightPrecision weightPrecision) {
+		this.weightPrecision = weightPrecision;
+	}
+
+	/**
+	 * @return true if the graph has few enough edges to be stored in a {@link CsrGraph}, regardless of the heap size
+	 */
+	public boolean fitsInCsrGraph() {
+		return getNumberOfStoredEdges() <= CsrGraphLoader.MAX_EDGES;
+	}
+
+	/**
+	 * @return the estimated peak heap usage, in bytes
+	 */
+	public long estimatePeakBytes(Algorithm algorithm, boolean withIncomingEdges) {
+		long graphBytes = estimateGraphBytes();
+		long incomingEdgeBytes = withIncomingEdges && directed ? estimateIncomingEdgeBytes() : 0;
+		// Building the incoming edges temporarily needs a cursor per vertex
+		long transposeBytes = withIncomingEdges && directed ? 4 * numVertices : 0;
+		long processingBytes = estimateAlgorithmBytes(algorithm) + estimateOutputBytes();
+
+		return Math.max(estimateLoadBytes(),
+				graphBytes + incomingEdgeBytes + Math.max(transposeBytes, processingBytes));
+	}
+
+	/**
+	 * Estimates the peak heap usage of running several algorithms concurrently on one loaded graph. At most the given
+	 * number of jobs hold their working state at the same time, and the output of every job is kept until all jobs
+	 * have completed.
+	 *
+	 * @return the estimated peak heap usage, in bytes
+	 */
+	public long estimateConcurrentPeakBytes(List<Algorithm> algorithms, int concurrentRuns,
+			boolean withIncomingEdges) {
+		long graphBytes = estimateGraphBytes();
+		long incomingEdgeBytes = withIncomingEdges && directed ? estimateIncomingEdgeBytes() : 0;
+		long transposeBytes = withIncomingEdges && directed ? 4 * numVertices : 0;
+
+		long[] algorithmBytes = new long[algorithms.size()];
+		for (int i = 0; i < algorithmBytes.length; i++) {
+			algorithmBytes[i] = estimateAlgorithmBytes(algorithms.get(i));
+		}
+		Arrays.sort(algorithmBytes);
+		long processingBytes = algorithms.size() * estimateOutputBytes();
+		for (int i = 0; i < Math.min(concurrentRuns, algorithmBytes.length); i++) {
+			processingBytes += algorithmBytes[algorithmBytes.length - 1 - i];
+		}
+
+		return Math.max(estimateLoadBytes(),
+				graphBytes + incomingEdgeBytes + Math.max(transposeBytes, processingBytes));
+	}
+
+	/**
+	 * @return the estimated peak memory usage of running an algorithm on a {@link SemiExternalGraph}, in bytes
+	 */
+	public long estimateSemiExternalPeakBytes(Algorithm algorithm, int blockBytes, long partitionBytes) {
+		// Vertex IDs, the index of every vertex, out-degrees, and a block on and off the heap
+		long graphBytes = 8 * numVertices + hashTableBytes(12) + 4 * numVertices + 2L * blockBytes;
+		// Edge offsets, a partition of edges with a cursor per vertex, and a second block while sorting the edges
+		long loadBytes = graphBytes + 8 * (numVertices + 1) + Math.min(partitionBytes, 4 * numEdges) + 4 * numVertices +
+				blockBytes;
+		if (algorithm == Algorithm.CDLP) {
+			// Neighbour list offsets, and a partition of neighbour lists with a cursor per vertex while building them
+			long neighbourListBytes = 8 * (numVertices + 1);
+			long partitionBufferBytes = Math.min(partitionBytes, 8 * numEdges) + 4 * numVertices;
+			graphBytes += neighbourListBytes + partitionBufferBytes;
+		}
+		return Math.max(loadBytes, graphBytes + estimateAlgorithmBytes(algorithm) + estimateOutputBytes());
+	}
+
+	/**
+	 * @return the estimated peak heap usage while loading the graph, in bytes
+	 */
+	public long estimateLoadBytes() {
+		long chunksInFlight = (long)numThreads * (CsrGraphLoader.CHUNKS_QUEUED_PER_THREAD + 1) + 1;
+		long unparsedBytes = Math.min(numEdges, chunksInFlight * CsrGraphLoader.CHUNK_SIZE) * BYTES_PER_EDGE_LINE;
+		long parsedBytes = numEdges * (8 + getWeightBytes());
+		// Degrees counted while parsing, and degrees after removing self-loops and duplicates while normalizing
+		long degreeBytes = 8 * numVertices;
+		return estimateGraphBytes() + unparsedBytes + parsedBytes + degreeBytes;
+	}
+
+	/**
+	 * @return the estimated size of the loaded graph without incoming edges, in bytes
+	 */
+	public long estimateGraphBytes() {
+		long storedEdges = getNumberOfStoredEdges();
+		return 8 * numVertices + hashTableBytes(12) + 4 * (numVertices + 1) + storedEdges * (4 + getWeightBytes());
+	}
+
+	/**
+	 * @return the estimated size of the incoming edges of a directed graph, in bytes
+	 */
+	public long estimateIncomingEdgeBytes() {
+		return 4 * (numVertices + 1) + 4 * getNumberOfStoredEdges();
+	}
+
+	private long estimateAlgorithmBytes(Algorithm algorithm) {
+		switch (algorithm) {
+			case BFS:
+				return 12 * numVertices;
+			case CDLP:
+				return 16 * numVertices;
+			case WCC:
+				return 12 * numVertices;
+			case PR:
+				return 24 * numVertices;
+			case LCC:
+				return 8 * numVertices;
+			case SSSP:
+				return 16 * numVertices;
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * @return the estimated size of the map from vertex ID to result, in bytes
+	 */
+	private long estimateOutputBytes() {
+		return hashTableBytes(16);
+	}
+
+	private int getWeightBytes() {
+		return weighted ? weightPrecision.getBytes() : 0;
+	}
+
+	/**
+	 * @return the number of edges stored in a {@link CsrGraph}, in which undirected edges are stored twice
+	 */
+	public long getNumberOfStoredEdges() {
+		return directed ? numEdges : 2 * numEdges;
+	}
+
+	private long hashTableBytes(int bytesPerEntry) {
+		int expected = (int)Math.min(numVertices, 1 << 30);
+		return (long)bytesPerEntry * HashCommon.arraySize(expected, Hash.DEFAULT_LOAD_FACTOR);
+	}
+
+	public static String formatBytes(long bytes) {
+		if (bytes < 1024 * 1024) {
+			return String.format("%.1f KiB", bytes / 1024.0);
+		} else if (bytes < 1024L * 1024 * 1024) {
+			return String.format("%.1f MiB", bytes / (1024.0 * 1024));
+		}
+		return String.format("%.2f GiB", bytes / (1024.0 * 1024 * 1024));
+	}
+
+}
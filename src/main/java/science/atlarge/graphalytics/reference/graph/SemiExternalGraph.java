@@ -0,0 +1,365 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A graph whose vertices are kept in memory and whose edges are stored on disk, for graphs that do not fit in
+ * memory. The edges are stored once, as pairs of vertex indices in a binary edge file, and jobs stream over all edges
+ * in large sequential blocks, keeping only per-vertex state in memory. Jobs that need the neighbours of every vertex
+ * together can stream over neighbour lists instead, which are built from the edge file on request.
+ * <p>
+ * A semi-external graph owns its files and deletes them when it is closed. It is not thread-safe.
+ */
+public class SemiExternalGraph implements AutoCloseable {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	private final long[] vertexIds;
+	private final VertexIndex vertexIndices;
+	private final int[] outDegrees;
+	private final boolean directed;
+	private final Path edgeFile;
+	private final long numEdges;
+	private final long partitionBytes;
+
+	private final ByteBuffer buffer;
+	private final int[] block;
+	private final IoStatistics ioStatistics = new IoStatistics();
+
+	private Path neighbourFile;
+	private long[] neighbourOffsets;
+
+	/**
+	 * @param outDegrees     the number of outgoing edges of every vertex; for undirected graphs, the number of edges
+	 * @param edgeFile       the binary edge file, containing numEdges pairs of source and destination indices
+	 * @param blockBytes     the size of the blocks in which files are read and written
+	 * @param partitionBytes the maximum size of the neighbour lists assembled in memory while building them
+	 */
+	SemiExternalGraph(long[] vertexIds, VertexIndex vertexIndices, int[] outDegrees, boolean directed, Path edgeFile,
+			long numEdges, int blockBytes, long partitionBytes) {
+		this.vertexIds = vertexIds;
+		this.vertexIndices = vertexIndices;
+		this.outDegrees = outDegrees;
+		this.directed = directed;
+		this.edgeFile = edgeFile;
+		this.numEdges = numEdges;
+		this.partitionBytes = partitionBytes;
+		this.buffer = allocateBuffer(blockBytes);
+		// Blocks hold whole edges, i.e., an even number of indices
+		this.block = new int[buffer.capacity() / 4];
+	}
+
+	/**
+	 * @return a direct buffer for reading and writing blocks of indices
+	 */
+	static ByteBuffer allocateBuffer(int blockBytes) {
+		int capacity = Math.max(8, blockBytes / 8 * 8);
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public int getNumberOfVertices() {
+		return vertexIds.length;
+	}
+
+	/**
+	 * @return the number of edges in the edge file; undirected edges are counted once
+	 */
+	public long getNumberOfEdges() {
+		return numEdges;
+	}
+
+	public boolean isDirected() {
+		return directed;
+	}
+
+	public long getVertexId(int index) {
+		return vertexIds[index];
+	}
+
+	/**
+	 * @return the index of the vertex with the given ID, or -1 if the graph does not contain the vertex
+	 */
+	public int getVertexIndex(long vertexId) {
+		return vertexIndices.get(vertexId);
+	}
+
+	/**
+	 * @return the number of outgoing edges of a vertex; for undirected graphs, the number of edges of the vertex
+	 */
+	public int getOutDegree(int index) {
+		return outDegrees[index];
+	}
+
+	public Path getEdgeFile() {
+		return edgeFile;
+	}
+
+	/**
+	 * @return the total I/O of this graph since it was loaded, excluding the conversion of the edge file
+	 */
+	public IoStatistics getIoStatistics() {
+		return ioStatistics;
+	}
+
+	/**
+	 * Streams over all edges in the order of the edge file. Every edge is visited once, also for undirected graphs.
+	 *
+	 * @return the I/O of this pass
+	 */
+	public IoStatistics forEachEdge(EdgeVisitor visitor) throws IOException {
+		IoStatistics statistics = new IoStatistics();
+		forEachEdge(edgeFile, numEdges, buffer, block, visitor, statistics);
+		ioStatistics.add(statistics);
+		return statistics;
+	}
+
+	/**
+	 * Streams over the edges of a binary edge file in blocks.
+	 *
+	 * @param block an array of even length, receiving the edges of every block
+	 */
+	static void forEachEdge(Path file, long numEdges, ByteBuffer buffer, int[] block, EdgeVisitor visitor,
+			IoStatistics statistics) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long remaining = 2 * numEdges;
+			while (remaining > 0) {
+				int count = (int)Math.min(remaining, block.length);
+				readInts(channel, buffer, block, count, statistics, file);
+				visitor.visit(block, count / 2);
+				remaining -= count;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the neighbour lists have been built
+	 */
+	public boolean hasNeighbourLists() {
+		return neighbourFile != null;
+	}
+
+	/**
+	 * Builds the neighbour lists from the edge file, if they have not been built yet. The neighbour list of a vertex
+	 * contains the destinations of its outgoing edges and the sources of its incoming edges, in no particular order.
+	 * The lists are assembled in memory in partitions of consecutive vertices, each taking one pass over the edge
+	 * file, and written to a neighbour file sequentially.
+	 */
+	public void buildNeighbourLists() throws IOException {
+		if (neighbourFile != null) {
+			return;
+		}
+		int numVertices = vertexIds.length;
+		IoStatistics statistics = new IoStatistics();
+
+		// Count the neighbours of every vertex
+		final long[] offsets = new long[numVertices + 1];
+		statistics.add(forEachEdge(new EdgeVisitor() {
+			@Override
+			public void visit(int[] edges, int count) {
+				for (int i = 0; i < 2 * count; i += 2) {
+					offsets[edges[i] + 1]++;
+					offsets[edges[i + 1] + 1]++;
+				}
+			}
+		}));
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+
+		long capacity = Math.min(Math.max(partitionBytes / 4, block.length), MAX_ARRAY_LENGTH);
+		int numPartitions = 0;
+		IoStatistics writes = new IoStatistics();
+		Path file = Files.createTempFile(edgeFile.getParent(), edgeFile.getFileName() + "-", ".neighbours");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			for (int from = 0; from < numVertices; numPartitions++) {
+				int to = partitionEnd(offsets, from, capacity);
+				final int first = from;
+				final int last = to;
+				final int[] partition = new int[(int)(offsets[to] - offsets[from])];
+				final int[] cursors = new int[to - from];
+				for (int v = from; v < to; v++) {
+					cursors[v - from] = (int)(offsets[v] - offsets[from]);
+				}
+
+				statistics.add(forEachEdge(new EdgeVisitor() {
+					@Override
+					public void visit(int[] edges, int count) {
+						for (int i = 0; i < 2 * count; i += 2) {
+							int source = edges[i];
+							int destination = edges[i + 1];
+							if (source >= first && source < last) {
+								partition[cursors[source - first]++] = destination;
+							}
+							if (destination >= first && destination < last) {
+								partition[cursors[destination - first]++] = source;
+							}
+						}
+					}
+				}));
+				writeInts(channel, buffer, partition, partition.length, writes);
+				from = to;
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(file);
+			throw e;
+		}
+		ioStatistics.add(writes);
+		statistics.add(writes);
+
+		neighbourFile = file;
+		neighbourOffsets = offsets;
+		LOG.info("Built neighbour lists in " + numPartitions + " partitions: " + statistics + ".");
+	}
+
+	/**
+	 * Streams over the neighbour lists of all vertices in order of vertex index. The lists must have been built by
+	 * {@link #buildNeighbourLists()}.
+	 *
+	 * @return the I/O of this pass
+	 */
+	public IoStatistics forEachNeighbourList(NeighbourVisitor visitor) throws IOException {
+		if (neighbourFile == null) {
+			throw new IllegalStateException("The neighbour lists have not been built");
+		}
+		int numVertices = vertexIds.length;
+		IoStatistics statistics = new IoStatistics();
+		try (FileChannel channel = FileChannel.open(neighbourFile, StandardOpenOption.READ)) {
+			// Read the lists of as many consecutive vertices as fit in a block, or a single vertex with a longer list
+			for (int from = 0; from < numVertices; ) {
+				int to = partitionEnd(neighbourOffsets, from, block.length);
+				int size = (int)(neighbourOffsets[to] - neighbourOffsets[from]);
+				int[] lists = size <= block.length ? block : new int[size];
+				readInts(channel, buffer, lists, size, statistics, neighbourFile);
+				for (int v = from; v < to; v++) {
+					visitor.visit(v, lists, (int)(neighbourOffsets[v] - neighbourOffsets[from]),
+							(int)(neighbourOffsets[v + 1] - neighbourOffsets[from]));
+				}
+				from = to;
+			}
+		}
+		ioStatistics.add(statistics);
+		return statistics;
+	}
+
+	/**
+	 * @return the end of the longest range of vertices starting at from whose lists fit in the given capacity, which
+	 * contains at least one vertex
+	 */
+	static int partitionEnd(long[] offsets, int from, long capacity) {
+		int numVertices = offsets.length - 1;
+		int to = from + 1;
+		while (to < numVertices && offsets[to + 1] - offsets[from] <= capacity) {
+			to++;
+		}
+		return to;
+	}
+
+	static void readInts(FileChannel channel, ByteBuffer buffer, int[] values, int count, IoStatistics statistics,
+			Path file) throws IOException {
+		for (int done = 0; done < count; ) {
+			int n = Math.min(count - done, buffer.capacity() / 4);
+			buffer.clear();
+			buffer.limit(4 * n);
+			long startTime = System.nanoTime();
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException("Unexpected end of file: " + file);
+				}
+			}
+			statistics.addRead(4L * n, System.nanoTime() - startTime);
+			buffer.flip();
+			buffer.asIntBuffer().get(values, done, n);
+			done += n;
+		}
+	}
+
+	static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int count, IoStatistics statistics)
+			throws IOException {
+		for (int done = 0; done < count; ) {
+			int n = Math.min(count - done, buffer.capacity() / 4);
+			buffer.clear();
+			buffer.asIntBuffer().put(values, done, n);
+			buffer.limit(4 * n);
+			long startTime = System.nanoTime();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			statistics.addWritten(4L * n, System.nanoTime() - startTime);
+			done += n;
+		}
+	}
+
+	/**
+	 * Deletes the files of the graph.
+	 */
+	@Override
+	public void close() {
+		delete(edgeFile);
+		if (neighbourFile != null) {
+			delete(neighbourFile);
+		}
+	}
+
+	private static void delete(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOG.warn("Failed to delete " + file, e);
+		}
+	}
+
+	/**
+	 * Visits a block of edges read from the edge file.
+	 */
+	public interface EdgeVisitor {
+
+		/**
+		 * @param edges the source and destination of every edge, interleaved: edge i runs from edges[2 * i] to
+		 *              edges[2 * i + 1]
+		 * @param count the number of edges in the block
+		 */
+		void visit(int[] edges, int count);
+
+	}
+
+	/**
+	 * Visits the neighbour list of a vertex.
+	 */
+	public interface NeighbourVisitor {
+
+		/**
+		 * @param vertex     the index of the vertex
+		 * @param neighbours an array holding the neighbours of the vertex at indices [from, to)
+		 */
+		void visit(int vertex, int[] neighbours, int from, int to);
+
+	}
+
+}
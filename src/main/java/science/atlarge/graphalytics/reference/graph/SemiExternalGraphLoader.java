@@ -0,0 +1,284 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Loads a graph in the Graphalytics vertex/edge file format into a {@link SemiExternalGraph}. The vertices are read
+ * into memory, and the edge file is converted in a sequential pass into a binary edge file of vertex indices.
+ * <p>
+ * Self-loops and duplicate edges are removed, so that jobs see the same graph as in memory. To find the duplicates,
+ * the binary edges are sorted by source and destination in partitions of consecutive sources that fit in the
+ * partition size, each taking one pass over the unsorted edges, and written to the final edge file in that order.
+ * Undirected edges are stored from their lower to their higher vertex index, so that both directions of an edge are
+ * recognised as duplicates. Edge weights are ignored.
+ */
+public class SemiExternalGraphLoader {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final Path directory;
+	private final int blockBytes;
+	private final long partitionBytes;
+
+	/**
+	 * @param directory      the directory in which the binary files of the graph are stored
+	 * @param blockBytes     the size of the blocks in which the binary files are read and written
+	 * @param partitionBytes the maximum size of the edges or neighbour lists assembled in memory at once
+	 */
+	public SemiExternalGraphLoader(Path directory, int blockBytes, long partitionBytes) {
+		this.directory = directory;
+		this.blockBytes = blockBytes;
+		this.partitionBytes = partitionBytes;
+	}
+
+	/**
+	 * @param name the name of the graph, used to name its binary files
+	 */
+	public SemiExternalGraph load(String name, String vertexFilePath, String edgeFilePath, boolean directed)
+			throws IOException {
+		long[] vertexIds = GraphFiles.readVertices(vertexFilePath);
+		VertexIndex vertexIndices = GraphFiles.indexVertices(vertexIds);
+		LOG.debug("- Read " + vertexIds.length + " vertices, built " + vertexIndices);
+
+		// Count the edges of every source, which become the degrees of the vertices once duplicates are removed
+		Path unsortedFile = createEdgeFile(name);
+		int[] degrees = new int[vertexIds.length];
+		IoStatistics statistics = new IoStatistics();
+		long numUnsortedEdges = 0;
+		long numSelfLoops = 0;
+
+		try (BufferedReader reader = GraphFiles.openReader(edgeFilePath);
+				FileChannel channel = FileChannel.open(unsortedFile, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = SemiExternalGraph.allocateBuffer(blockBytes);
+			int[] block = new int[buffer.capacity() / 4];
+			int size = 0;
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int start = GraphFiles.skipWhitespace(line, 0);
+				if (start == line.length()) {
+					continue;
+				}
+				int end = GraphFiles.nextWhitespace(line, start);
+				long sourceId = GraphFiles.parseLong(line, start, end);
+				start = GraphFiles.skipWhitespace(line, end);
+				end = GraphFiles.nextWhitespace(line, start);
+				long destinationId = GraphFiles.parseLong(line, start, end);
+
+				int source = vertexIndices.get(sourceId);
+				int destination = vertexIndices.get(destinationId);
+				if (source < 0 || destination < 0) {
+					throw new IOException("Edge refers to a vertex that is not in the vertex file: \"" + line + "\"");
+				}
+				if (source == destination) {
+					numSelfLoops++;
+					continue;
+				}
+
+				if (!directed && destination < source) {
+					int lower = destination;
+					destination = source;
+					source = lower;
+				}
+				degrees[source]++;
+				block[size++] = source;
+				block[size++] = destination;
+				numUnsortedEdges++;
+				if (size == block.length) {
+					SemiExternalGraph.writeInts(channel, buffer, block, size, statistics);
+					size = 0;
+				}
+			}
+			SemiExternalGraph.writeInts(channel, buffer, block, size, statistics);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(unsortedFile);
+			throw e;
+		}
+
+		if (numSelfLoops > 0) {
+			LOG.warn("Removed " + numSelfLoops + " self-loops");
+		}
+
+		Path edgeFile = null;
+		long numEdges;
+		try {
+			edgeFile = createEdgeFile(name);
+			numEdges = sortEdges(unsortedFile, numUnsortedEdges, degrees, directed, edgeFile, statistics);
+		} catch (IOException | RuntimeException e) {
+			if (edgeFile != null) {
+				Files.deleteIfExists(edgeFile);
+			}
+			throw e;
+		} finally {
+			Files.deleteIfExists(unsortedFile);
+		}
+		LOG.info("Converted " + numEdges + " edges to " + edgeFile + ": " + statistics + ".");
+
+		return new SemiExternalGraph(vertexIds, vertexIndices, degrees, directed, edgeFile, numEdges, blockBytes,
+				partitionBytes);
+	}
+
+	/**
+	 * Writes the edges of an in-memory graph to a binary edge file, e.g., to test semi-external jobs on small graphs.
+	 * Undirected edges, which a {@link CsrGraph} stores in both directions, are written once.
+	 *
+	 * @param name the name of the graph, used to name its binary files
+	 */
+	public SemiExternalGraph load(String name, CsrGraph graph) throws IOException {
+		int numVertices = graph.getNumberOfVertices();
+		long[] vertexIds = new long[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			vertexIds[v] = graph.getVertexId(v);
+		}
+		VertexIndex vertexIndices = GraphFiles.indexVertices(vertexIds);
+		int[] offsets = graph.getOutOffsets();
+		int[] neighbours = graph.getOutNeighbours();
+		boolean directed = graph.isDirected();
+
+		Path edgeFile = createEdgeFile(name);
+		int[] outDegrees = new int[numVertices];
+		IoStatistics statistics = new IoStatistics();
+		long numEdges = 0;
+
+		try (FileChannel channel = FileChannel.open(edgeFile, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = SemiExternalGraph.allocateBuffer(blockBytes);
+			int[] block = new int[buffer.capacity() / 4];
+			int size = 0;
+
+			for (int u = 0; u < numVertices; u++) {
+				outDegrees[u] = offsets[u + 1] - offsets[u];
+				for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+					if (!directed && neighbours[i] < u) {
+						continue;
+					}
+					block[size++] = u;
+					block[size++] = neighbours[i];
+					numEdges++;
+					if (size == block.length) {
+						SemiExternalGraph.writeInts(channel, buffer, block, size, statistics);
+						size = 0;
+					}
+				}
+			}
+			SemiExternalGraph.writeInts(channel, buffer, block, size, statistics);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(edgeFile);
+			throw e;
+		}
+
+		return new SemiExternalGraph(vertexIds, vertexIndices, outDegrees, directed, edgeFile, numEdges, blockBytes,
+				partitionBytes);
+	}
+
+	/**
+	 * Writes the edges of an unsorted edge file to an edge file sorted by source and destination, without duplicates.
+	 *
+	 * @param degrees the number of edges of every source in the unsorted file, which are replaced by the degrees of
+	 *                the vertices in the sorted file
+	 * @return the number of edges in the sorted file
+	 */
+	private long sortEdges(Path unsortedFile, long numUnsortedEdges, final int[] degrees, boolean directed,
+			Path edgeFile, IoStatistics statistics) throws IOException {
+		int numVertices = degrees.length;
+		long[] offsets = new long[numVertices + 1];
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] = offsets[v] + degrees[v];
+		}
+		Arrays.fill(degrees, 0);
+
+		ByteBuffer buffer = SemiExternalGraph.allocateBuffer(blockBytes);
+		int[] block = new int[buffer.capacity() / 4];
+		int[] sortedBlock = new int[block.length];
+		long capacity = Math.min(Math.max(partitionBytes / 4, block.length), SemiExternalGraph.MAX_ARRAY_LENGTH);
+		long numEdges = 0;
+		int numPartitions = 0;
+
+		try (FileChannel channel = FileChannel.open(edgeFile, StandardOpenOption.WRITE)) {
+			int size = 0;
+			for (int from = 0; from < numVertices; numPartitions++) {
+				int to = SemiExternalGraph.partitionEnd(offsets, from, capacity);
+				final int first = from;
+				final int last = to;
+				final int[] partition = new int[(int)(offsets[to] - offsets[from])];
+				final int[] cursors = new int[to - from];
+				for (int v = from; v < to; v++) {
+					cursors[v - from] = (int)(offsets[v] - offsets[from]);
+				}
+
+				SemiExternalGraph.forEachEdge(unsortedFile, numUnsortedEdges, buffer, block,
+						new SemiExternalGraph.EdgeVisitor() {
+					@Override
+					public void visit(int[] edges, int count) {
+						for (int i = 0; i < 2 * count; i += 2) {
+							int source = edges[i];
+							if (source >= first && source < last) {
+								partition[cursors[source - first]++] = edges[i + 1];
+							}
+						}
+					}
+				}, statistics);
+
+				for (int v = from; v < to; v++) {
+					int start = (int)(offsets[v] - offsets[from]);
+					int end = (int)(offsets[v + 1] - offsets[from]);
+					Arrays.sort(partition, start, end);
+					for (int i = start; i < end; i++) {
+						if (i > start && partition[i] == partition[i - 1]) {
+							continue;
+						}
+						degrees[v]++;
+						if (!directed) {
+							degrees[partition[i]]++;
+						}
+						sortedBlock[size++] = v;
+						sortedBlock[size++] = partition[i];
+						numEdges++;
+						if (size == sortedBlock.length) {
+							SemiExternalGraph.writeInts(channel, buffer, sortedBlock, size, statistics);
+							size = 0;
+						}
+					}
+				}
+				from = to;
+			}
+			SemiExternalGraph.writeInts(channel, buffer, sortedBlock, size, statistics);
+		}
+
+		if (numEdges < numUnsortedEdges) {
+			LOG.warn("Removed " + (numUnsortedEdges - numEdges) + " duplicate edges");
+		}
+		LOG.debug("- Sorted the edges in " + numPartitions + " partitions");
+		return numEdges;
+	}
+
+	private Path createEdgeFile(String name) throws IOException {
+		Files.createDirectories(directory);
+		return Files.createTempFile(directory, name.replaceAll("[^A-Za-z0-9._-]", "_") + "-", ".edges");
+	}
+
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+/**
+ * Maps the IDs of the vertices of a graph to their dense index, i.e., their position in the vertex file. The index is
+ * built once when the graph is loaded, using the cheapest strategy for the distribution of the IDs:
+ * <ul>
+ * <li>{@link Strategy#OFFSET}: the IDs are consecutive in file order, so the index of an ID is its offset from the
+ * first ID, without any lookup table;</li>
+ * <li>{@link Strategy#DIRECT}: the IDs are dense, i.e., span at most four times as many values as there are
+ * vertices, and are looked up in a table indexed by offset;</li>
+ * <li>{@link Strategy#SORTED}: the IDs are sparse but regularly spaced, and are found by interpolation search in
+ * the sorted IDs, which are the IDs themselves if the vertex file is sorted;</li>
+ * <li>{@link Strategy#HASH}: otherwise, the IDs are looked up in a hash table.</li>
+ * </ul>
+ * Vertex indices are immutable and can be used by many threads at once.
+ */
+public abstract class VertexIndex {
+
+	/**
+	 * The maximum number of values spanned by the IDs, relative to the number of vertices, for a direct table. At
+	 * this span, the table is still smaller than a hash table.
+	 */
+	private static final int MAX_DIRECT_SPAN = 4;
+	/**
+	 * The maximum average number of probes of interpolation search, measured on a sample of the IDs, for a sorted
+	 * index. Every probe is likely a cache miss, so interpolation search is only as fast as a hash table if it finds
+	 * most IDs at the first probe, i.e., if the IDs are regularly spaced. Randomly spread IDs take three to five
+	 * probes.
+	 */
+	private static final double MAX_SORTED_PROBES = 2.0;
+	private static final int PROBE_SAMPLE_SIZE = 1024;
+
+	/**
+	 * The strategies with which IDs are mapped to indices.
+	 */
+	public enum Strategy {
+		OFFSET,
+		DIRECT,
+		SORTED,
+		HASH
+	}
+
+	final long[] vertexIds;
+
+	VertexIndex(long[] vertexIds) {
+		this.vertexIds = vertexIds;
+	}
+
+	/**
+	 * Builds the index of the given vertices, selecting the strategy from the distribution of their IDs.
+	 *
+	 * @param vertexIds the ID of every vertex, by index; the array is kept by the index and must not be modified
+	 * @throws IllegalArgumentException if an ID occurs more than once
+	 */
+	public static VertexIndex build(long[] vertexIds) {
+		int numVertices = vertexIds.length;
+		if (numVertices == 0) {
+			return new Offset(vertexIds);
+		}
+		long min = vertexIds[0];
+		long max = vertexIds[0];
+		boolean consecutive = true;
+		boolean sorted = true;
+		for (int i = 1; i < numVertices; i++) {
+			long id = vertexIds[i];
+			sorted &= id > vertexIds[i - 1];
+			consecutive &= sorted && id - vertexIds[i - 1] == 1;
+			min = Math.min(min, id);
+			max = Math.max(max, id);
+		}
+
+		if (consecutive) {
+			return new Offset(vertexIds);
+		}
+		// The difference overflows if the IDs span more than the range of a long
+		long span = max - min;
+		if (span >= 0 && span < Math.min((long)MAX_DIRECT_SPAN * numVertices, Integer.MAX_VALUE - 8)) {
+			return new Direct(vertexIds, min, (int)span + 1);
+		}
+
+		Sorted sortedIndex = sorted ? new Sorted(vertexIds, vertexIds, null) : Sorted.sort(vertexIds);
+		if (sortedIndex.averageProbes() <= MAX_SORTED_PROBES) {
+			return sortedIndex;
+		}
+		return new HashTable(vertexIds);
+	}
+
+	/**
+	 * @return the index of the vertex with the given ID, or -1 if there is no such vertex
+	 */
+	public abstract int get(long id);
+
+	public abstract Strategy getStrategy();
+
+	/**
+	 * @return the size of the lookup structures of the index, excluding the vertex IDs, in bytes
+	 */
+	public abstract long getSizeInBytes();
+
+	public int size() {
+		return vertexIds.length;
+	}
+
+	@Override
+	public String toString() {
+		return getStrategy().name().toLowerCase() + " index of " + vertexIds.length +
+				" vertices (" + MemoryEstimator.formatBytes(getSizeInBytes()) + ")";
+	}
+
+	static IllegalArgumentException duplicate(long id) {
+		return new IllegalArgumentException("Duplicate vertex ID: " + id);
+	}
+
+	/**
+	 * Consecutive IDs in file order.
+	 */
+	static final class Offset extends VertexIndex {
+
+		private final long first;
+		private final long last;
+
+		Offset(long[] vertexIds) {
+			super(vertexIds);
+			this.first = vertexIds.length > 0 ? vertexIds[0] : 0;
+			this.last = first + vertexIds.length - 1;
+		}
+
+		@Override
+		public int get(long id) {
+			return id >= first && id <= last ? (int)(id - first) : -1;
+		}
+
+		@Override
+		public Strategy getStrategy() {
+			return Strategy.OFFSET;
+		}
+
+		@Override
+		public long getSizeInBytes() {
+			return 0;
+		}
+
+	}
+
+	/**
+	 * A table of indices, indexed by the offset of an ID from the smallest ID.
+	 */
+	static final class Direct extends VertexIndex {
+
+		private final long min;
+		private final int[] indices;
+
+		Direct(long[] vertexIds, long min, int span) {
+			super(vertexIds);
+			this.min = min;
+			this.indices = new int[span];
+			Arrays.fill(indices, -1);
+			for (int i = 0; i < vertexIds.length; i++) {
+				int offset = (int)(vertexIds[i] - min);
+				if (indices[offset] >= 0) {
+					throw duplicate(vertexIds[i]);
+				}
+				indices[offset] = i;
+			}
+		}
+
+		@Override
+		public int get(long id) {
+			// The offset overflows to a negative value for IDs far from the smallest ID
+			long offset = id - min;
+			return offset >= 0 && offset < indices.length ? indices[(int)offset] : -1;
+		}
+
+		@Override
+		public Strategy getStrategy() {
+			return Strategy.DIRECT;
+		}
+
+		@Override
+		public long getSizeInBytes() {
+			return 4L * indices.length;
+		}
+
+	}
+
+	/**
+	 * Sorted IDs, searched by interpolation: every probe estimates the position of the ID from the values at the ends
+	 * of the remaining range. Interpolation is only efficient for evenly spread IDs, so the search falls back to
+	 * bisection after a few probes.
+	 */
+	static final class Sorted extends VertexIndex {
+
+		private static final int MAX_INTERPOLATION_PROBES = 8;
+
+		private final long[] keys;
+		/**
+		 * The index of the vertex of every key, or null if the keys are the vertex IDs themselves.
+		 */
+		private final int[] positions;
+
+		Sorted(long[] vertexIds, long[] keys, int[] positions) {
+			super(vertexIds);
+			this.keys = keys;
+			this.positions = positions;
+		}
+
+		static Sorted sort(long[] vertexIds) {
+			int[] positions = new int[vertexIds.length];
+			for (int i = 0; i < positions.length; i++) {
+				positions[i] = i;
+			}
+			LongArrays.radixSortIndirect(positions, vertexIds, false);
+			long[] keys = new long[vertexIds.length];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = vertexIds[positions[i]];
+			}
+			for (int i = 1; i < keys.length; i++) {
+				if (keys[i] == keys[i - 1]) {
+					throw duplicate(keys[i]);
+				}
+			}
+			return new Sorted(vertexIds, keys, positions);
+		}
+
+		@Override
+		public int get(long id) {
+			int position = search(id, null);
+			return position < 0 || positions == null ? position : positions[position];
+		}
+
+		/**
+		 * @param probes counts the number of probes, if not null
+		 * @return the position of the key, or -1 if it is not found
+		 */
+		private int search(long id, int[] probes) {
+			int low = 0;
+			int high = keys.length - 1;
+			int numProbes = 0;
+			while (low <= high) {
+				long lowKey = keys[low];
+				long highKey = keys[high];
+				if (id < lowKey || id > highKey) {
+					return -1;
+				}
+				int mid;
+				if (numProbes++ < MAX_INTERPOLATION_PROBES && highKey != lowKey) {
+					// In floating point, as the differences of the keys may overflow
+					mid = low + (int)((high - low) * (((double)id - lowKey) / ((double)highKey - lowKey)));
+					mid = Math.min(Math.max(mid, low), high);
+				} else {
+					mid = (low + high) >>> 1;
+				}
+				if (probes != null) {
+					probes[0]++;
+				}
+				long key = keys[mid];
+				if (key < id) {
+					low = mid + 1;
+				} else if (key > id) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * @return the average number of probes to find evenly spaced keys
+		 */
+		double averageProbes() {
+			int samples = Math.min(PROBE_SAMPLE_SIZE, keys.length);
+			int[] probes = new int[1];
+			for (int i = 0; i < samples; i++) {
+				search(keys[(int)((long)i * keys.length / samples)], probes);
+			}
+			return (double)probes[0] / samples;
+		}
+
+		@Override
+		public Strategy getStrategy() {
+			return Strategy.SORTED;
+		}
+
+		@Override
+		public long getSizeInBytes() {
+			return positions == null ? 0 : 12L * keys.length;
+		}
+
+	}
+
+	/**
+	 * A hash table, for IDs that are neither dense nor regularly spaced.
+	 */
+	static final class HashTable extends VertexIndex {
+
+		private final Long2IntOpenHashMap indices;
+
+		HashTable(long[] vertexIds) {
+			super(vertexIds);
+			this.indices = new Long2IntOpenHashMap(vertexIds.length);
+			indices.defaultReturnValue(-1);
+			for (int i = 0; i < vertexIds.length; i++) {
+				if (indices.put(vertexIds[i], i) != -1) {
+					throw duplicate(vertexIds[i]);
+				}
+			}
+		}
+
+		@Override
+		public int get(long id) {
+			return indices.get(id);
+		}
+
+		@Override
+		public Strategy getStrategy() {
+			return Strategy.HASH;
+		}
+
+		@Override
+		public long getSizeInBytes() {
+			return 12L * HashCommon.arraySize(vertexIds.length, Hash.DEFAULT_LOAD_FACTOR);
+		}
+
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+/**
+ * Determines the precision in which the edge weights of a {@link CsrGraph} are stored. Weights are always widened to
+ * doubles when they are used, so jobs accumulate distances in double precision in either mode.
+ */
+public enum WeightPrecision {
+
+	/**
+	 * Weights are stored as 64-bit doubles, exactly as parsed from the edge file.
+	 */
+	DOUBLE(8),
+
+	/**
+	 * Weights are stored as 32-bit floats, halving the memory and bandwidth used by weights. Every weight is rounded
+	 * to the nearest float, i.e., with a relative error of at most 2^-24; weights that would overflow or lose more
+	 * precision because they are subnormal are rejected when the graph is loaded.
+	 */
+	FLOAT(4);
+
+	private final int bytes;
+
+	WeightPrecision(int bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * @return the number of bytes in which a weight is stored
+	 */
+	public int getBytes() {
+		return bytes;
+	}
+
+}
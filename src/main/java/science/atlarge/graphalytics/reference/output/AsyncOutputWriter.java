@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.output;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import science.atlarge.graphalytics.reference.util.DriverLog;
+import science.atlarge.graphalytics.reference.util.Profiling;
+
+/**
+ * Writes the output of a job on a dedicated I/O thread, so that writing the output does not count towards the
+ * processing time of a run. The output is written as one "vertex value" line per vertex, optionally compressed.
+ */
+public class AsyncOutputWriter implements AutoCloseable {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private final OutputCompression compression;
+	private final ExecutorService executor;
+	private Future<Long> pendingOutput;
+
+	public AsyncOutputWriter(OutputCompression compression) {
+		this.compression = compression;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "reference-output");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Starts writing the output of a job in the background. The output must not be modified until writing has
+	 * completed.
+	 *
+	 * @param path      the path of the output file, without the suffix of the compression format
+	 * @param algorithm the name of the algorithm that produced the output, which labels its profiling event
+	 */
+	public void submit(final String path, final Map<Long, ? extends Object> output, final String algorithm) {
+		if (pendingOutput != null) {
+			throw new IllegalStateException("Output is already being written");
+		}
+		pendingOutput = executor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws IOException {
+				long startTime = System.currentTimeMillis();
+				LOG.info(DriverLog.OUTPUT, DriverLog.OUTPUT_STARTS + startTime);
+				Profiling.Span span = Profiling.beginOutput(algorithm);
+				write(path + compression.getFileSuffix(), output);
+				span.end(output.size(), 0);
+				long endTime = System.currentTimeMillis();
+				LOG.info(DriverLog.OUTPUT, DriverLog.OUTPUT_ENDS + endTime);
+				return endTime - startTime;
+			}
+		});
+	}
+
+	/**
+	 * Waits until the submitted output has been written.
+	 *
+	 * @return the time spent writing the output, in milliseconds
+	 * @throws IOException if the output could not be written
+	 */
+	public long awaitCompletion() throws IOException {
+		if (pendingOutput == null) {
+			throw new IllegalStateException("No output has been submitted");
+		}
+		try {
+			return pendingOutput.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for output to be written", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			}
+			throw new IOException("Failed to write output", e.getCause());
+		}
+	}
+
+	private void write(String path, Map<Long, ? extends Object> output) throws IOException {
+		OutputStream out = new FileOutputStream(path);
+		if (compression == OutputCompression.GZIP) {
+			try {
+				out = new GZIPOutputStream(out, BUFFER_SIZE);
+			} catch (IOException e) {
+				out.close();
+				throw e;
+			}
+		}
+		try (Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			String lineSeparator = System.lineSeparator();
+			for (Map.Entry<Long, ? extends Object> entry : output.entrySet()) {
+				w.write(String.valueOf(entry.getKey()));
+				w.write(' ');
+				w.write(String.valueOf(entry.getValue()));
+				w.write(lineSeparator);
+			}
+		}
+	}
+
+	/**
+	 * Stops the I/O thread. Output that is still being written is abandoned.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.output;
+
+/**
+ * Compression applied to output files.
+ */
+public enum OutputCompression {
+
+	/**
+	 * Plain text output, as expected by the Graphalytics output validator.
+	 */
+	NONE(""),
+
+	/**
+	 * Gzip-compressed output, written to a file with a ".gz" suffix.
+	 */
+	GZIP(".gz");
+
+	private final String fileSuffix;
+
+	OutputCompression(String fileSuffix) {
+		this.fileSuffix = fileSuffix;
+	}
+
+	public String getFileSuffix() {
+		return fileSuffix;
+	}
+
+}
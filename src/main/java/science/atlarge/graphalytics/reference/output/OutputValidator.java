@@ -0,0 +1,899 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.reference.graph.VertexIndex;
+import science.atlarge.graphalytics.reference.output.ValidationReport.Kind;
+import science.atlarge.graphalytics.reference.output.ValidationReport.Mismatch;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+
+/**
+ * Validates an output file against a reference output without loading either into boxed maps. Both files are
+ * memory-mapped and parsed in parallel, in chunks split at line boundaries. The reference output is parsed twice, to
+ * count and then to store its lines, into primitive arrays of vertex IDs and values; the vertex IDs are indexed by a
+ * {@link VertexIndex}, and the values of the output are stored by the index of their vertex. The values are then
+ * compared by the rule of the algorithm:
+ * <ul>
+ * <li>{@link Rule#EXACT} for BFS and CDLP: every value must equal the reference value;</li>
+ * <li>{@link Rule#EQUIVALENCE} for WCC: the values are component labels, which may differ from the reference labels
+ * as long as they group the vertices into the same components;</li>
+ * <li>{@link Rule#EPSILON} for PR, LCC and SSSP: every value must be within a relative error of the reference
+ * value.</li>
+ * </ul>
+ * Mismatching vertices are counted in bitmaps, and only the first few are reported in detail, so memory usage is
+ * bounded by a few arrays with an entry per vertex.
+ */
+public class OutputValidator {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/**
+	 * The default maximum relative error of floating-point values, as used by Graphalytics.
+	 */
+	public static final double DEFAULT_EPSILON = 1e-4;
+	public static final int DEFAULT_MAX_REPORTED_MISMATCHES = 20;
+	static final int DEFAULT_CHUNK_BYTES = 16 << 20;
+	private static final int MAX_VERTICES = Integer.MAX_VALUE - 8;
+
+	/**
+	 * The rules by which output values are compared with reference values.
+	 */
+	public enum Rule {
+
+		EXACT,
+		EQUIVALENCE,
+		EPSILON;
+
+		/**
+		 * @return the rule by which the output of the algorithm is validated
+		 */
+		public static Rule of(Algorithm algorithm) {
+			switch (algorithm) {
+				case BFS:
+				case CDLP:
+					return EXACT;
+				case WCC:
+					return EQUIVALENCE;
+				case PR:
+				case LCC:
+				case SSSP:
+					return EPSILON;
+				default:
+					throw new IllegalArgumentException("No validation rule for algorithm: " + algorithm);
+			}
+		}
+
+		/**
+		 * @return true if the values are floating-point numbers, which are stored as the bits of doubles
+		 */
+		boolean hasFloatingPointValues() {
+			return this == EPSILON;
+		}
+
+	}
+
+	private final int numThreads;
+	private double epsilon = DEFAULT_EPSILON;
+	private int maxReportedMismatches = DEFAULT_MAX_REPORTED_MISMATCHES;
+	private int chunkBytes = DEFAULT_CHUNK_BYTES;
+
+	public OutputValidator(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * @param epsilon the maximum relative error of floating-point values
+	 */
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * @param maxReportedMismatches the maximum number of mismatches reported in detail
+	 */
+	public void setMaxReportedMismatches(int maxReportedMismatches) {
+		this.maxReportedMismatches = maxReportedMismatches;
+	}
+
+	/**
+	 * @param chunkBytes the size of the chunks in which files are parsed in parallel
+	 */
+	void setChunkBytes(int chunkBytes) {
+		this.chunkBytes = chunkBytes;
+	}
+
+	/**
+	 * Validates an output file from the command line, exiting with status 0 if it is valid and 1 if it is not.
+	 *
+	 * @param args the algorithm, the reference output file, the output file, and optionally the number of threads
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3 && args.length != 4) {
+			System.err.println("Usage: " + OutputValidator.class.getName() + " <algorithm> <reference-output> " +
+					"<output> [<threads>]");
+			System.exit(2);
+		}
+		Algorithm algorithm = Algorithm.valueOf(args[0].toUpperCase(Locale.ROOT));
+		int numThreads = args.length == 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		ValidationReport report = new OutputValidator(numThreads).validate(Paths.get(args[1]), Paths.get(args[2]),
+				algorithm);
+		System.out.println(report);
+		for (Mismatch mismatch : report.getMismatches()) {
+			System.out.println("  " + mismatch);
+		}
+		System.exit(report.isValid() ? 0 : 1);
+	}
+
+	public ValidationReport validate(Path referenceFile, Path outputFile, Algorithm algorithm) throws IOException {
+		return validate(referenceFile, outputFile, Rule.of(algorithm));
+	}
+
+	/**
+	 * @throws IOException if a file cannot be read or contains a malformed line, or if the reference output contains
+	 *                     a vertex more than once
+	 */
+	public ValidationReport validate(Path referenceFile, Path outputFile, Rule rule) throws IOException {
+		long startTime = System.currentTimeMillis();
+		try (ParallelExecutor executor = new ParallelExecutor(numThreads)) {
+			Reference reference = readReference(referenceFile, rule, executor);
+			Output output = readOutput(outputFile, reference, rule, executor);
+
+			Bitmap wrong = rule == Rule.EQUIVALENCE
+					? compareComponents(reference, output, executor)
+					: compareValues(reference, output, rule, executor);
+			ValidationReport report = report(reference, output, wrong, rule);
+			LOG.info("Validated " + outputFile + " in " + (System.currentTimeMillis() - startTime) + " ms: " +
+					report + ".");
+			return report;
+		}
+	}
+
+	/**
+	 * The vertices and values of the reference output.
+	 */
+	private static final class Reference {
+
+		private final long[] vertexIds;
+		private final long[] values;
+		private final VertexIndex vertexIndices;
+
+		private Reference(long[] vertexIds, long[] values, VertexIndex vertexIndices) {
+			this.vertexIds = vertexIds;
+			this.values = values;
+			this.vertexIndices = vertexIndices;
+		}
+
+		private int size() {
+			return vertexIds.length;
+		}
+
+	}
+
+	/**
+	 * The values of the output by the index of their vertex in the reference output, and the vertices of the output
+	 * that are not in the reference output exactly once.
+	 */
+	private static final class Output {
+
+		private final long[] values;
+		private final Bitmap present;
+		private final long numUnexpected;
+		private final long numDuplicates;
+		private final List<Mismatch> mismatches;
+
+		private Output(long[] values, Bitmap present, long numUnexpected, long numDuplicates,
+				List<Mismatch> mismatches) {
+			this.values = values;
+			this.present = present;
+			this.numUnexpected = numUnexpected;
+			this.numDuplicates = numDuplicates;
+			this.mismatches = mismatches;
+		}
+
+	}
+
+	private Reference readReference(final Path file, final Rule rule, ParallelExecutor executor) throws IOException {
+		try (final ChunkedFile chunks = ChunkedFile.open(file, chunkBytes)) {
+			// Count the lines of every chunk, so that every chunk can be parsed directly into the arrays
+			final int[] lineCounts = new int[chunks.size()];
+			forEachChunk(executor, chunks.size(), new ChunkTask() {
+				@Override
+				public void run(int chunk) throws IOException {
+					lineCounts[chunk] = countLines(chunks.map(chunk));
+				}
+			});
+			final int[] firstLines = new int[chunks.size()];
+			long numLines = 0;
+			for (int c = 0; c < chunks.size(); c++) {
+				firstLines[c] = (int)Math.min(numLines, MAX_VERTICES);
+				numLines += lineCounts[c];
+			}
+			if (numLines > MAX_VERTICES) {
+				throw new IOException("Reference output has too many vertices to be validated: " + file);
+			}
+
+			final long[] vertexIds = new long[(int)numLines];
+			final long[] values = new long[(int)numLines];
+			forEachChunk(executor, chunks.size(), new ChunkTask() {
+				@Override
+				public void run(int chunk) throws IOException {
+					LineParser parser = new LineParser(chunks.map(chunk), chunks.getStart(chunk), file);
+					for (int line = firstLines[chunk]; parser.nextLine(); line++) {
+						vertexIds[line] = parser.parseLong();
+						values[line] = parser.parseValue(rule);
+						parser.endLine();
+					}
+				}
+			});
+
+			try {
+				return new Reference(vertexIds, values, VertexIndex.build(vertexIds));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid reference output " + file + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private Output readOutput(final Path file, final Reference reference, final Rule rule,
+			ParallelExecutor executor) throws IOException {
+		final long[] values = new long[reference.size()];
+		final Bitmap present = new Bitmap(reference.size());
+		final AtomicLong numUnexpected = new AtomicLong();
+		final AtomicLong numDuplicates = new AtomicLong();
+		try (final ChunkedFile chunks = ChunkedFile.open(file, chunkBytes)) {
+			final List<List<Mismatch>> chunkMismatches = new ArrayList<>(
+					Collections.<List<Mismatch>>nCopies(chunks.size(), null));
+			forEachChunk(executor, chunks.size(), new ChunkTask() {
+				@Override
+				public void run(int chunk) throws IOException {
+					List<Mismatch> mismatches = new ArrayList<>();
+					long unexpected = 0;
+					long duplicates = 0;
+					LineParser parser = new LineParser(chunks.map(chunk), chunks.getStart(chunk), file);
+					while (parser.nextLine()) {
+						long vertexId = parser.parseLong();
+						long value = parser.parseValue(rule);
+						parser.endLine();
+
+						int index = reference.vertexIndices.get(vertexId);
+						Kind kind;
+						if (index < 0) {
+							unexpected++;
+							kind = Kind.UNEXPECTED;
+						} else if (!present.set(index)) {
+							duplicates++;
+							kind = Kind.DUPLICATE;
+						} else {
+							values[index] = value;
+							continue;
+						}
+						if (mismatches.size() < maxReportedMismatches) {
+							mismatches.add(new Mismatch(kind, vertexId,
+									index < 0 ? null : format(reference.values[index], rule), format(value, rule)));
+						}
+					}
+					numUnexpected.addAndGet(unexpected);
+					numDuplicates.addAndGet(duplicates);
+					chunkMismatches.set(chunk, mismatches);
+				}
+			});
+
+			List<Mismatch> mismatches = new ArrayList<>();
+			for (List<Mismatch> chunk : chunkMismatches) {
+				mismatches.addAll(chunk.subList(0, Math.min(chunk.size(), maxReportedMismatches - mismatches.size())));
+			}
+			return new Output(values, present, numUnexpected.get(), numDuplicates.get(), mismatches);
+		}
+	}
+
+	/**
+	 * @return the vertices of which the output value does not match the reference value
+	 */
+	private Bitmap compareValues(final Reference reference, final Output output, final Rule rule,
+			ParallelExecutor executor) {
+		final Bitmap wrong = new Bitmap(reference.size());
+		executor.forEach(reference.size(), new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					if (output.present.get(v) && !matches(reference.values[v], output.values[v], rule, epsilon)) {
+						wrong.set(v);
+					}
+				}
+			}
+		});
+		return wrong;
+	}
+
+	static boolean matches(long expected, long actual, Rule rule, double epsilon) {
+		if (expected == actual || !rule.hasFloatingPointValues()) {
+			return expected == actual;
+		}
+		double expectedValue = Double.longBitsToDouble(expected);
+		double actualValue = Double.longBitsToDouble(actual);
+		if (expectedValue == actualValue) {
+			// Positive and negative zero
+			return true;
+		}
+		if (Double.isNaN(expectedValue) || Double.isNaN(actualValue)) {
+			return Double.isNaN(expectedValue) && Double.isNaN(actualValue);
+		}
+		if (Double.isInfinite(expectedValue) || Double.isInfinite(actualValue)) {
+			// Unequal infinities, or an infinity and a finite value, of which the relative error is not meaningful
+			return false;
+		}
+		return Math.abs(expectedValue - actualValue) <= epsilon * Math.abs(expectedValue);
+	}
+
+	/**
+	 * Compares component labels, which match if the reference and the output group the vertices into the same
+	 * components. Every label is mapped to the label of the first vertex, in reference order, that has it in the
+	 * other output; a vertex is wrong if the label of either output is not mapped to its label in the other output.
+	 *
+	 * @return the vertices of which the output label does not match the reference label
+	 */
+	private Bitmap compareComponents(final Reference reference, final Output output, ParallelExecutor executor) {
+		final int numVertices = reference.size();
+		final Bitmap wrong = new Bitmap(numVertices);
+
+		// Labels are usually the ID of a vertex in the component, in which case the labels can be mapped by index
+		final AtomicBoolean vertexLabels = new AtomicBoolean(true);
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to && vertexLabels.get(); v++) {
+					if (output.present.get(v) && (reference.vertexIndices.get(reference.values[v]) < 0 ||
+							reference.vertexIndices.get(output.values[v]) < 0)) {
+						vertexLabels.set(false);
+					}
+				}
+			}
+		});
+		if (vertexLabels.get()) {
+			compareVertexLabels(reference, output, wrong, executor);
+		} else {
+			compareArbitraryLabels(reference.values, output.values, output.present, wrong, executor);
+			compareArbitraryLabels(output.values, reference.values, output.present, wrong, executor);
+		}
+		return wrong;
+	}
+
+	private static void compareVertexLabels(final Reference reference, final Output output, final Bitmap wrong,
+			ParallelExecutor executor) {
+		final VertexIndex vertexIndices = reference.vertexIndices;
+		final int numVertices = reference.size();
+		// The first vertex, plus one, with every label in the reference and in the output
+		final AtomicIntegerArray referenceFirst = new AtomicIntegerArray(numVertices);
+		final AtomicIntegerArray outputFirst = new AtomicIntegerArray(numVertices);
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					if (output.present.get(v)) {
+						lowerTo(referenceFirst, vertexIndices.get(reference.values[v]), v + 1);
+						lowerTo(outputFirst, vertexIndices.get(output.values[v]), v + 1);
+					}
+				}
+			}
+		});
+		executor.forEach(numVertices, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int v = from; v < to; v++) {
+					if (!output.present.get(v)) {
+						continue;
+					}
+					int referenceRepresentative = referenceFirst.get(vertexIndices.get(reference.values[v])) - 1;
+					int outputRepresentative = outputFirst.get(vertexIndices.get(output.values[v])) - 1;
+					if (output.values[referenceRepresentative] != output.values[v] ||
+							reference.values[outputRepresentative] != reference.values[v]) {
+						wrong.set(v);
+					}
+				}
+			}
+		});
+	}
+
+	private static void lowerTo(AtomicIntegerArray array, int index, int value) {
+		int current;
+		while (((current = array.get(index)) == 0 || value < current) && !array.compareAndSet(index, current, value)) {
+			// Retry until the value is no longer lower than the current value
+		}
+	}
+
+	/**
+	 * Maps the labels of one output to the labels of the other in hash tables, in which the first vertex with a label
+	 * determines the label it maps to. The labels are partitioned over the threads by their hash: first, every thread
+	 * sorts the vertices of its range of vertices into the partitions of their labels, after which every thread maps
+	 * the labels of its partition, visiting the vertices of every range in order. Every vertex is thus visited once in
+	 * each step.
+	 */
+	private static void compareArbitraryLabels(final long[] labels, final long[] otherLabels, final Bitmap present,
+			final Bitmap wrong, ParallelExecutor executor) {
+		final int numPartitions = executor.getNumThreads();
+		final long rangeSize = ((long)labels.length + numPartitions - 1) / numPartitions;
+		// The present vertices of every range, by the partition of their label
+		final IntArrayList[][] ranges = new IntArrayList[numPartitions][];
+		executor.forEach(numPartitions, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int range = from; range < to; range++) {
+					IntArrayList[] partitions = new IntArrayList[numPartitions];
+					for (int partition = 0; partition < numPartitions; partition++) {
+						partitions[partition] = new IntArrayList();
+					}
+					int end = (int)Math.min(labels.length, (range + 1) * rangeSize);
+					for (int v = (int)(range * rangeSize); v < end; v++) {
+						if (present.get(v)) {
+							partitions[(int)((HashCommon.mix(labels[v]) >>> 1) % numPartitions)].add(v);
+						}
+					}
+					ranges[range] = partitions;
+				}
+			}
+		});
+		executor.forEach(numPartitions, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int partition = from; partition < to; partition++) {
+					Long2LongOpenHashMap mapping = new Long2LongOpenHashMap();
+					for (IntArrayList[] range : ranges) {
+						IntArrayList vertices = range[partition];
+						for (int i = 0; i < vertices.size(); i++) {
+							int v = vertices.getInt(i);
+							long label = labels[v];
+							if (!mapping.containsKey(label)) {
+								mapping.put(label, otherLabels[v]);
+							} else if (mapping.get(label) != otherLabels[v]) {
+								wrong.set(v);
+							}
+						}
+						// Release the vertices of the range in this partition
+						range[partition] = null;
+					}
+				}
+			}
+		});
+	}
+
+	private ValidationReport report(Reference reference, Output output, Bitmap wrong, Rule rule) {
+		List<Mismatch> mismatches = new ArrayList<>();
+		for (int v = 0; v < reference.size() && mismatches.size() < maxReportedMismatches; v++) {
+			if (!output.present.get(v)) {
+				mismatches.add(new Mismatch(Kind.MISSING, reference.vertexIds[v], format(reference.values[v], rule),
+						null));
+			} else if (wrong.get(v)) {
+				mismatches.add(new Mismatch(Kind.WRONG_VALUE, reference.vertexIds[v],
+						format(reference.values[v], rule), format(output.values[v], rule)));
+			}
+		}
+		mismatches.addAll(output.mismatches.subList(0,
+				Math.min(output.mismatches.size(), maxReportedMismatches - mismatches.size())));
+		return new ValidationReport(rule, reference.size(), wrong.count(), reference.size() - output.present.count(),
+				output.numUnexpected, output.numDuplicates, mismatches);
+	}
+
+	private static String format(long value, Rule rule) {
+		return rule.hasFloatingPointValues() ? String.valueOf(Double.longBitsToDouble(value)) : String.valueOf(value);
+	}
+
+	/**
+	 * The number of lines with content in a chunk, in the way they are found by {@link LineParser#nextLine()}.
+	 */
+	static int countLines(ByteBuffer buffer) {
+		int count = 0;
+		boolean content = false;
+		for (int i = 0; i < buffer.limit(); i++) {
+			byte b = buffer.get(i);
+			if (b == '\n') {
+				count += content ? 1 : 0;
+				content = false;
+			} else if (!isWhitespace(b)) {
+				content = true;
+			}
+		}
+		return count + (content ? 1 : 0);
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private interface ChunkTask {
+
+		void run(int chunk) throws IOException;
+
+	}
+
+	/**
+	 * Runs a task for every chunk of a file in parallel.
+	 */
+	private static void forEachChunk(ParallelExecutor executor, int numChunks, final ChunkTask task)
+			throws IOException {
+		try {
+			executor.forEach(numChunks, new ParallelExecutor.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					for (int chunk = from; chunk < to; chunk++) {
+						try {
+							task.run(chunk);
+						} catch (IOException e) {
+							throw new ChunkFailure(e);
+						}
+					}
+				}
+			});
+		} catch (ChunkFailure e) {
+			throw (IOException)e.getCause();
+		}
+	}
+
+	/**
+	 * Carries the failure of a chunk out of a parallel loop.
+	 */
+	private static final class ChunkFailure extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private ChunkFailure(IOException cause) {
+			super(cause);
+		}
+
+	}
+
+	/**
+	 * A file split into chunks of about the same size, which start at the beginning of a line.
+	 */
+	private static final class ChunkedFile implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final long[] starts;
+
+		private ChunkedFile(FileChannel channel, long[] starts) {
+			this.channel = channel;
+			this.starts = starts;
+		}
+
+		static ChunkedFile open(Path file, int chunkBytes) throws IOException {
+			if (file.getFileName().toString().endsWith(OutputCompression.GZIP.getFileSuffix())) {
+				throw new IOException("Compressed output cannot be validated: " + file);
+			}
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				long size = channel.size();
+				int numChunks = (int)Math.max(1, (size + chunkBytes - 1) / chunkBytes);
+				long[] starts = new long[numChunks + 1];
+				ByteBuffer buffer = ByteBuffer.allocate(4096);
+				for (int c = 1; c < numChunks; c++) {
+					starts[c] = Math.max(starts[c - 1], nextLineStart(channel, buffer, (long)c * chunkBytes));
+				}
+				starts[numChunks] = size;
+				for (int c = 0; c < numChunks; c++) {
+					if (starts[c + 1] - starts[c] > Integer.MAX_VALUE) {
+						throw new IOException("Line too long in " + file);
+					}
+				}
+				return new ChunkedFile(channel, starts);
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * @return the position after the first line break at or after the given position, or the size of the file
+		 */
+		private static long nextLineStart(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+			while (true) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read <= 0) {
+					return channel.size();
+				}
+				for (int i = 0; i < read; i++) {
+					if (buffer.get(i) == '\n') {
+						return position + i + 1;
+					}
+				}
+				position += read;
+			}
+		}
+
+		int size() {
+			return starts.length - 1;
+		}
+
+		long getStart(int chunk) {
+			return starts[chunk];
+		}
+
+		MappedByteBuffer map(int chunk) throws IOException {
+			return channel.map(FileChannel.MapMode.READ_ONLY, starts[chunk], starts[chunk + 1] - starts[chunk]);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+	}
+
+	/**
+	 * Parses "vertex value" lines from a chunk of an output file.
+	 */
+	static final class LineParser {
+
+		private static final double[] POWERS_OF_TEN = {
+				1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+				1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+		};
+		private static final int MAX_MANTISSA_DIGITS = 18;
+
+		private final ByteBuffer buffer;
+		private final long offset;
+		private final Path file;
+		private final int limit;
+		private int position;
+
+		/**
+		 * @param offset the position of the chunk in the file, to locate malformed lines
+		 */
+		LineParser(ByteBuffer buffer, long offset, Path file) {
+			this.buffer = buffer;
+			this.offset = offset;
+			this.file = file;
+			this.limit = buffer.limit();
+		}
+
+		/**
+		 * Skips to the start of the next line with content.
+		 *
+		 * @return false if there are no more lines
+		 */
+		boolean nextLine() {
+			while (position < limit && isWhitespace(buffer.get(position))) {
+				position++;
+			}
+			return position < limit;
+		}
+
+		/**
+		 * Expects the end of the current line.
+		 */
+		void endLine() throws IOException {
+			skipSpaces();
+			if (position < limit && buffer.get(position) != '\n') {
+				throw error("Unexpected characters");
+			}
+		}
+
+		long parseValue(Rule rule) throws IOException {
+			return rule.hasFloatingPointValues() ? Double.doubleToLongBits(parseDouble()) : parseLong();
+		}
+
+		long parseLong() throws IOException {
+			skipSpaces();
+			int start = position;
+			boolean negative = position < limit && buffer.get(position) == '-';
+			if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+				position++;
+			}
+			// Accumulate negatively, as the range of negative longs is larger
+			long bound = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+			long value = 0;
+			int digits = 0;
+			while (position < limit && isDigit(buffer.get(position))) {
+				int digit = buffer.get(position++) - '0';
+				if (value < bound / 10 || value * 10 < bound + digit) {
+					position = start;
+					throw error("Number out of range");
+				}
+				value = value * 10 - digit;
+				digits++;
+			}
+			if (digits == 0 || !atTokenEnd()) {
+				position = start;
+				throw error("Invalid integer");
+			}
+			return negative ? value : -value;
+		}
+
+		double parseDouble() throws IOException {
+			skipSpaces();
+			int start = position;
+			boolean negative = position < limit && buffer.get(position) == '-';
+			if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+				position++;
+			}
+			if (position < limit && Character.isLetter(buffer.get(position))) {
+				return parseSpecialValue(start, negative);
+			}
+
+			// Digits beyond the precision of the mantissa only matter for the exact rounding done by the slow path
+			long mantissa = 0;
+			int mantissaDigits = 0;
+			int exponent = 0;
+			boolean truncated = false;
+			boolean digits = false;
+			boolean fraction = false;
+			while (position < limit) {
+				byte b = buffer.get(position);
+				if (b == '.' && !fraction) {
+					fraction = true;
+				} else if (isDigit(b)) {
+					digits = true;
+					int digit = b - '0';
+					if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+						if (mantissa != 0 || digit != 0) {
+							mantissa = mantissa * 10 + digit;
+							mantissaDigits++;
+						}
+						exponent -= fraction ? 1 : 0;
+					} else {
+						truncated |= digit != 0;
+						exponent += fraction ? 0 : 1;
+					}
+				} else {
+					break;
+				}
+				position++;
+			}
+			if (digits && position < limit && (buffer.get(position) == 'e' || buffer.get(position) == 'E')) {
+				position++;
+				exponent += parseExponent(start);
+			}
+			if (!digits || !atTokenEnd()) {
+				position = start;
+				throw error("Invalid number");
+			}
+
+			if (!truncated && mantissa < 1L << 53 && exponent >= -22 && exponent <= 22) {
+				// Both operands are exact, so a single division or multiplication rounds correctly
+				double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+				return negative ? -value : value;
+			}
+			return Double.parseDouble(token(start));
+		}
+
+		private int parseExponent(int start) throws IOException {
+			boolean negative = position < limit && buffer.get(position) == '-';
+			if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+				position++;
+			}
+			int exponent = 0;
+			int digits = 0;
+			while (position < limit && isDigit(buffer.get(position))) {
+				// Saturate far beyond the range of doubles
+				exponent = Math.min(exponent * 10 + buffer.get(position++) - '0', 1 << 20);
+				digits++;
+			}
+			if (digits == 0) {
+				position = start;
+				throw error("Invalid number");
+			}
+			return negative ? -exponent : exponent;
+		}
+
+		private double parseSpecialValue(int start, boolean negative) throws IOException {
+			int wordStart = position;
+			while (!atTokenEnd()) {
+				position++;
+			}
+			String word = token(wordStart).toLowerCase(Locale.ROOT);
+			if (word.equals("infinity") || word.equals("inf")) {
+				return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			} else if (word.equals("nan")) {
+				return Double.NaN;
+			}
+			position = start;
+			throw error("Invalid number");
+		}
+
+		private String token(int start) {
+			byte[] bytes = new byte[position - start];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = buffer.get(start + i);
+			}
+			return new String(bytes, StandardCharsets.US_ASCII);
+		}
+
+		private void skipSpaces() {
+			while (position < limit && (buffer.get(position) == ' ' || buffer.get(position) == '\t' ||
+					buffer.get(position) == '\r')) {
+				position++;
+			}
+		}
+
+		private boolean atTokenEnd() {
+			return position == limit || isWhitespace(buffer.get(position));
+		}
+
+		private static boolean isDigit(byte b) {
+			return b >= '0' && b <= '9';
+		}
+
+		private IOException error(String message) {
+			return new IOException(message + " at byte " + (offset + position) + " of " + file);
+		}
+
+	}
+
+	/**
+	 * A set of vertex indices that can be updated by many threads at once.
+	 */
+	private static final class Bitmap {
+
+		private final AtomicLongArray words;
+
+		private Bitmap(int size) {
+			this.words = new AtomicLongArray((size + 63) >>> 6);
+		}
+
+		/**
+		 * @return false if the index was already in the set
+		 */
+		private boolean set(int index) {
+			int word = index >>> 6;
+			long bit = 1L << index;
+			long current;
+			do {
+				current = words.get(word);
+				if ((current & bit) != 0) {
+					return false;
+				}
+			} while (!words.compareAndSet(word, current, current | bit));
+			return true;
+		}
+
+		private boolean get(int index) {
+			return (words.get(index >>> 6) & 1L << index) != 0;
+		}
+
+		private long count() {
+			long count = 0;
+			for (int i = 0; i < words.length(); i++) {
+				count += Long.bitCount(words.get(i));
+			}
+			return count;
+		}
+
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.output;
+
+import java.util.List;
+import java.util.Locale;
+
+import science.atlarge.graphalytics.reference.output.OutputValidator.Rule;
+
+/**
+ * The outcome of validating an output file against a reference output: the number of vertices of every kind of
+ * mismatch, and the first few mismatches in detail.
+ */
+public class ValidationReport {
+
+	/**
+	 * The ways in which the output of a vertex can differ from the reference output.
+	 */
+	public enum Kind {
+
+		/**
+		 * The value of the vertex does not match the reference value under the rule of the algorithm.
+		 */
+		WRONG_VALUE,
+
+		/**
+		 * The vertex is in the reference output, but not in the output.
+		 */
+		MISSING,
+
+		/**
+		 * The vertex is in the output, but not in the reference output.
+		 */
+		UNEXPECTED,
+
+		/**
+		 * The vertex occurs more than once in the output.
+		 */
+		DUPLICATE
+
+	}
+
+	/**
+	 * A vertex whose output differs from the reference output.
+	 */
+	public static final class Mismatch {
+
+		private final Kind kind;
+		private final long vertexId;
+		private final String expected;
+		private final String actual;
+
+		Mismatch(Kind kind, long vertexId, String expected, String actual) {
+			this.kind = kind;
+			this.vertexId = vertexId;
+			this.expected = expected;
+			this.actual = actual;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		public long getVertexId() {
+			return vertexId;
+		}
+
+		/**
+		 * @return the reference value of the vertex, or null if the vertex is not in the reference output
+		 */
+		public String getExpected() {
+			return expected;
+		}
+
+		/**
+		 * @return the value of the vertex in the output, or null if the vertex is not in the output
+		 */
+		public String getActual() {
+			return actual;
+		}
+
+		@Override
+		public String toString() {
+			return kind.name().toLowerCase(Locale.ROOT).replace('_', ' ') + ": vertex " + vertexId + ", expected " +
+					(expected != null ? expected : "none") + ", actual " + (actual != null ? actual : "none");
+		}
+
+	}
+
+	private final Rule rule;
+	private final long numVertices;
+	private final long numWrongValues;
+	private final long numMissing;
+	private final long numUnexpected;
+	private final long numDuplicates;
+	private final List<Mismatch> mismatches;
+
+	ValidationReport(Rule rule, long numVertices, long numWrongValues, long numMissing, long numUnexpected,
+			long numDuplicates, List<Mismatch> mismatches) {
+		this.rule = rule;
+		this.numVertices = numVertices;
+		this.numWrongValues = numWrongValues;
+		this.numMissing = numMissing;
+		this.numUnexpected = numUnexpected;
+		this.numDuplicates = numDuplicates;
+		this.mismatches = mismatches;
+	}
+
+	/**
+	 * @return true if the output contains every vertex of the reference output exactly once, no other vertices, and
+	 * only matching values
+	 */
+	public boolean isValid() {
+		return numWrongValues == 0 && numMissing == 0 && numUnexpected == 0 && numDuplicates == 0;
+	}
+
+	public Rule getRule() {
+		return rule;
+	}
+
+	/**
+	 * @return the number of vertices in the reference output
+	 */
+	public long getNumberOfVertices() {
+		return numVertices;
+	}
+
+	public long getNumberOfWrongValues() {
+		return numWrongValues;
+	}
+
+	public long getNumberOfMissingVertices() {
+		return numMissing;
+	}
+
+	public long getNumberOfUnexpectedVertices() {
+		return numUnexpected;
+	}
+
+	public long getNumberOfDuplicateVertices() {
+		return numDuplicates;
+	}
+
+	/**
+	 * @return the first mismatches, up to the maximum number reported: wrong values and missing vertices by their
+	 * position in the reference output, followed by unexpected and duplicate vertices by their position in the output
+	 */
+	public List<Mismatch> getMismatches() {
+		return mismatches;
+	}
+
+	@Override
+	public String toString() {
+		String ruleName = rule.name().toLowerCase(Locale.ROOT);
+		if (isValid()) {
+			return "valid: all " + numVertices + " vertices match (" + ruleName + " rule)";
+		}
+		return "invalid: " + numWrongValues + " wrong values, " + numMissing + " missing, " + numUnexpected +
+				" unexpected and " + numDuplicates + " duplicate vertices, of " + numVertices + " vertices (" +
+				ruleName + " rule)";
+	}
+
+}
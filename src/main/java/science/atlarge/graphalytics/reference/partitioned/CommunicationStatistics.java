@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.util.Locale;
+
+import science.atlarge.graphalytics.reference.graph.MemoryEstimator;
+
+/**
+ * The communication of one superstep of a partitioned run: the values and bytes sent by the workers, and the time
+ * the slowest worker spent exchanging them, including waiting for the other workers.
+ */
+public class CommunicationStatistics {
+
+	private long valuesSent;
+	private long bytesSent;
+	private long nanos;
+
+	public CommunicationStatistics(long valuesSent, long bytesSent, long nanos) {
+		this.valuesSent = valuesSent;
+		this.bytesSent = bytesSent;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * Adds the communication of another worker in the same superstep.
+	 */
+	public void add(CommunicationStatistics statistics) {
+		valuesSent += statistics.valuesSent;
+		bytesSent += statistics.bytesSent;
+		nanos = Math.max(nanos, statistics.nanos);
+	}
+
+	public long getValuesSent() {
+		return valuesSent;
+	}
+
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "sent %d values in %s, exchange took %.3f s", valuesSent,
+				MemoryEstimator.formatBytes(bytesSent), nanos / 1e9);
+	}
+
+}
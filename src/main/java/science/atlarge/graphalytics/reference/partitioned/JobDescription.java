@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+
+/**
+ * Describes a partitioned run to the workers: the graph, the algorithm and its parameters, and the partitioning.
+ */
+public class JobDescription {
+
+	private final String vertexFilePath;
+	private final String edgeFilePath;
+	private final boolean directed;
+	private final Algorithm algorithm;
+	private final Partitioning partitioning;
+	private final int numWorkers;
+
+	// Parameters of the algorithm
+	private final long sourceVertex;
+	private final int numIterations;
+	private final float dampingFactor;
+
+	private JobDescription(String vertexFilePath, String edgeFilePath, boolean directed, Algorithm algorithm,
+			Partitioning partitioning, int numWorkers, long sourceVertex, int numIterations, float dampingFactor) {
+		this.vertexFilePath = vertexFilePath;
+		this.edgeFilePath = edgeFilePath;
+		this.directed = directed;
+		this.algorithm = algorithm;
+		this.partitioning = partitioning;
+		this.numWorkers = numWorkers;
+		this.sourceVertex = sourceVertex;
+		this.numIterations = numIterations;
+		this.dampingFactor = dampingFactor;
+	}
+
+	/**
+	 * @param parameters the parameters of the algorithm, or null for algorithms without parameters
+	 */
+	public static JobDescription create(String vertexFilePath, String edgeFilePath, boolean directed,
+			Algorithm algorithm, Object parameters, Partitioning partitioning, int numWorkers) {
+		long sourceVertex = 0;
+		int numIterations = 0;
+		float dampingFactor = 0.0f;
+		switch (algorithm) {
+			case BFS:
+				sourceVertex = ((BreadthFirstSearchParameters)parameters).getSourceVertex();
+				break;
+			case CDLP:
+				numIterations = ((CommunityDetectionLPParameters)parameters).getMaxIterations();
+				break;
+			case PR:
+				numIterations = ((PageRankParameters)parameters).getNumberOfIterations();
+				dampingFactor = ((PageRankParameters)parameters).getDampingFactor();
+				break;
+			case WCC:
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported algorithm in partitioned mode: " + algorithm);
+		}
+		return new JobDescription(vertexFilePath, edgeFilePath, directed, algorithm, partitioning, numWorkers,
+				sourceVertex, numIterations, dampingFactor);
+	}
+
+	public static JobDescription read(DataInput in) throws IOException {
+		return new JobDescription(in.readUTF(), in.readUTF(), in.readBoolean(), Algorithm.valueOf(in.readUTF()),
+				Partitioning.valueOf(in.readUTF()), in.readInt(), in.readLong(), in.readInt(), in.readFloat());
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeUTF(vertexFilePath);
+		out.writeUTF(edgeFilePath);
+		out.writeBoolean(directed);
+		out.writeUTF(algorithm.name());
+		out.writeUTF(partitioning.name());
+		out.writeInt(numWorkers);
+		out.writeLong(sourceVertex);
+		out.writeInt(numIterations);
+		out.writeFloat(dampingFactor);
+	}
+
+	public String getVertexFilePath() {
+		return vertexFilePath;
+	}
+
+	public String getEdgeFilePath() {
+		return edgeFilePath;
+	}
+
+	public boolean isDirected() {
+		return directed;
+	}
+
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public Partitioning getPartitioning() {
+		return partitioning;
+	}
+
+	public int getNumberOfWorkers() {
+		return numWorkers;
+	}
+
+	public BreadthFirstSearchParameters getBreadthFirstSearchParameters() {
+		return new BreadthFirstSearchParameters(sourceVertex);
+	}
+
+	public CommunityDetectionLPParameters getCommunityDetectionLPParameters() {
+		return new CommunityDetectionLPParameters(numIterations);
+	}
+
+	public PageRankParameters getPageRankParameters() {
+		return new PageRankParameters(dampingFactor, numIterations);
+	}
+
+	/**
+	 * @return true if the algorithm needs the outgoing and incoming edges of every vertex, rather than only its
+	 * incoming edges
+	 */
+	boolean usesAllNeighbours() {
+		return algorithm == Algorithm.WCC || algorithm == Algorithm.CDLP;
+	}
+
+}
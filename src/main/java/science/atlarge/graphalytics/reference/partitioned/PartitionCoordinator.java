@@ -0,0 +1,353 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.reference.algorithms.wcc.PartitionedWeaklyConnectedComponentsJob;
+import science.atlarge.graphalytics.reference.util.Progress;
+
+/**
+ * Coordinates a partitioned run: launches the workers, tells them the job and each other's addresses, starts the job
+ * once every worker has loaded its partition, and collects the output and communication statistics of the workers.
+ * While the job runs, the coordinator adds the work that the workers report after every superstep to the
+ * {@link Progress} of the run. The coordinator listens on the loopback interface, so all workers run on the local
+ * machine.
+ */
+public class PartitionCoordinator implements AutoCloseable {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/**
+	 * The time the coordinator waits for all workers to register after launching them.
+	 */
+	private static final int REGISTRATION_TIMEOUT_MILLIS = 60000;
+
+	private final int numWorkers;
+	private final WorkerLauncher launcher;
+	private final Socket[] sockets;
+	private final DataInputStream[] inputs;
+	private final DataOutputStream[] outputs;
+
+	private JobDescription job;
+	private List<CommunicationStatistics> statistics;
+	private int lastSuperstep;
+
+	public PartitionCoordinator(int numWorkers, WorkerLauncher launcher) {
+		if (numWorkers < 1) {
+			throw new IllegalArgumentException("Number of workers must be positive: " + numWorkers);
+		}
+		this.numWorkers = numWorkers;
+		this.launcher = launcher;
+		this.sockets = new Socket[numWorkers];
+		this.inputs = new DataInputStream[numWorkers];
+		this.outputs = new DataOutputStream[numWorkers];
+	}
+
+	/**
+	 * Launches the workers and waits until all of them have loaded their partition of the graph.
+	 */
+	public void start(JobDescription job) throws IOException {
+		if (job.getNumberOfWorkers() != numWorkers) {
+			throw new IllegalArgumentException("The job is partitioned for " + job.getNumberOfWorkers() +
+					" workers, not " + numWorkers);
+		}
+		this.job = job;
+
+		try (ServerSocket serverSocket = new ServerSocket(0, numWorkers, InetAddress.getLoopbackAddress())) {
+			serverSocket.setSoTimeout(REGISTRATION_TIMEOUT_MILLIS);
+			String host = serverSocket.getInetAddress().getHostAddress();
+			for (int p = 0; p < numWorkers; p++) {
+				launcher.launch(p, host, serverSocket.getLocalPort());
+			}
+
+			int[] ports = new int[numWorkers];
+			for (int i = 0; i < numWorkers; i++) {
+				Socket socket;
+				try {
+					socket = serverSocket.accept();
+				} catch (SocketTimeoutException e) {
+					throw new IOException("Timed out waiting for workers to register, " + i + " of " + numWorkers +
+							" workers registered", e);
+				}
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				int p = in.readInt();
+				if (p < 0 || p >= numWorkers || sockets[p] != null) {
+					socket.close();
+					throw new IOException("Unexpected registration of worker " + p);
+				}
+				ports[p] = in.readInt();
+				sockets[p] = socket;
+				inputs[p] = in;
+				outputs[p] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			}
+			LOG.debug("- All " + numWorkers + " workers registered");
+
+			for (DataOutputStream out : outputs) {
+				job.write(out);
+				for (int p = 0; p < numWorkers; p++) {
+					out.writeUTF(sockets[p].getInetAddress().getHostAddress());
+					out.writeInt(ports[p]);
+				}
+				out.flush();
+			}
+		}
+
+		StringBuilder failures = new StringBuilder();
+		for (int p = 0; p < numWorkers; p++) {
+			expect(p, PartitionWorker.READY, failures);
+		}
+		checkFailures(failures);
+		LOG.info("All " + numWorkers + " workers loaded their partition.");
+	}
+
+	/**
+	 * Starts the job on all workers and waits for its output. The workers are read concurrently, so that the progress
+	 * they report never blocks them.
+	 *
+	 * @return the output of the job for all vertices
+	 */
+	public Map<Long, ? extends Object> process() throws IOException {
+		for (DataOutputStream out : outputs) {
+			out.writeByte(PartitionWorker.START);
+			out.flush();
+		}
+
+		final Progress progress = Progress.get();
+		lastSuperstep = -1;
+		List<WorkerOutput> workerOutputs = new ArrayList<>(numWorkers);
+		ExecutorService readers = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "reference-coordinator");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<WorkerOutput>> futures = new ArrayList<>(numWorkers);
+			for (int p = 0; p < numWorkers; p++) {
+				final int worker = p;
+				futures.add(readers.submit(new Callable<WorkerOutput>() {
+					@Override
+					public WorkerOutput call() throws IOException {
+						return readOutput(worker, progress);
+					}
+				}));
+			}
+			for (Future<WorkerOutput> future : futures) {
+				workerOutputs.add(await(future));
+			}
+		} finally {
+			readers.shutdownNow();
+		}
+
+		boolean ranks = job.getAlgorithm() == Algorithm.PR;
+		Long2DoubleMap doubleOutput = ranks ? new Long2DoubleOpenHashMap() : null;
+		Long2LongMap longOutput = ranks ? null : new Long2LongOpenHashMap();
+		statistics = null;
+		StringBuilder failures = new StringBuilder();
+		for (int p = 0; p < numWorkers; p++) {
+			WorkerOutput output = workerOutputs.get(p);
+			if (output.failure != null) {
+				failures.append(failures.length() == 0 ? "" : "; ").append("worker ").append(p).append(": ")
+						.append(output.failure);
+				continue;
+			}
+			for (int v = 0; v < output.vertexIds.length; v++) {
+				if (ranks) {
+					doubleOutput.put(output.vertexIds[v], Double.longBitsToDouble(output.values[v]));
+				} else {
+					longOutput.put(output.vertexIds[v], output.values[v]);
+				}
+			}
+
+			boolean first = statistics == null;
+			if (first) {
+				statistics = new ArrayList<>(output.statistics);
+			} else if (statistics.size() != output.statistics.size()) {
+				throw new IOException("Worker " + p + " ran " + output.statistics.size() + " supersteps, other " +
+						"workers ran " + statistics.size());
+			} else {
+				for (int s = 0; s < statistics.size(); s++) {
+					statistics.get(s).add(output.statistics.get(s));
+				}
+			}
+		}
+		checkFailures(failures);
+
+		if (job.getAlgorithm() == Algorithm.WCC) {
+			PartitionedWeaklyConnectedComponentsJob.numberComponents(longOutput);
+		}
+		return ranks ? doubleOutput : longOutput;
+	}
+
+	/**
+	 * Reads the progress reports of a worker until it sends its output or fails.
+	 */
+	private WorkerOutput readOutput(int worker, Progress progress) throws IOException {
+		DataInputStream in = inputs[worker];
+		WorkerOutput output = new WorkerOutput();
+		byte status;
+		while ((status = in.readByte()) == PartitionWorker.PROGRESS) {
+			int superstep = in.readInt();
+			progress.addProcessed(in.readLong(), in.readLong());
+			// The workers run in lockstep, so the first worker to complete a superstep moves the iteration
+			synchronized (this) {
+				if (superstep > lastSuperstep) {
+					lastSuperstep = superstep;
+					progress.beginIteration(superstep);
+				}
+			}
+		}
+		if (status == PartitionWorker.FAILED) {
+			output.failure = in.readUTF();
+			return output;
+		} else if (status != PartitionWorker.SUCCEEDED) {
+			throw new IOException("Unexpected message from worker " + worker + ": " + status);
+		}
+
+		int numVertices = in.readInt();
+		output.vertexIds = new long[numVertices];
+		output.values = new long[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			output.vertexIds[v] = in.readLong();
+			output.values[v] = in.readLong();
+		}
+		int numSupersteps = in.readInt();
+		output.statistics = new ArrayList<>(numSupersteps);
+		for (int s = 0; s < numSupersteps; s++) {
+			output.statistics.add(new CommunicationStatistics(in.readLong(), in.readLong(), in.readLong()));
+		}
+		return output;
+	}
+
+	private static WorkerOutput await(Future<WorkerOutput> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the workers", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IOException("Failed to read the output of a worker", e.getCause());
+		}
+	}
+
+	/**
+	 * @return the communication of all workers in every superstep of the job, in order
+	 */
+	public List<CommunicationStatistics> getCommunicationStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @return the total communication of all workers over all supersteps of the job
+	 */
+	public CommunicationStatistics getTotalCommunication() {
+		CommunicationStatistics total = new CommunicationStatistics(0, 0, 0);
+		long nanos = 0;
+		for (CommunicationStatistics superstep : statistics) {
+			total.add(new CommunicationStatistics(superstep.getValuesSent(), superstep.getBytesSent(), 0));
+			nanos += superstep.getNanos();
+		}
+		total.add(new CommunicationStatistics(0, 0, nanos));
+		return total;
+	}
+
+	/**
+	 * Reads the status of a worker. A worker that fails disconnects from the other workers, which then fail as well,
+	 * so the failures of all workers are collected to report the original cause.
+	 *
+	 * @return true if the worker sent the expected message, false if it failed
+	 */
+	private boolean expect(int worker, byte message, StringBuilder failures) throws IOException {
+		byte status = inputs[worker].readByte();
+		if (status == PartitionWorker.FAILED) {
+			failures.append(failures.length() == 0 ? "" : "; ").append("worker ").append(worker).append(": ")
+					.append(inputs[worker].readUTF());
+			return false;
+		} else if (status != message) {
+			throw new IOException("Unexpected message from worker " + worker + ": " + status);
+		}
+		return true;
+	}
+
+	private static void checkFailures(CharSequence failures) throws IOException {
+		if (failures.length() > 0) {
+			throw new IOException("Partitioned run failed: " + failures);
+		}
+	}
+
+	/**
+	 * Disconnects from the workers and stops any workers that are still running.
+	 */
+	@Override
+	public void close() {
+		for (Socket socket : sockets) {
+			if (socket != null) {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					LOG.warn("Failed to close the connection to a worker", e);
+				}
+			}
+		}
+		launcher.close();
+	}
+
+	/**
+	 * The output of one worker, or the reason it failed.
+	 */
+	private static final class WorkerOutput {
+
+		private String failure;
+		private long[] vertexIds;
+		private long[] values;
+		private List<CommunicationStatistics> statistics;
+
+	}
+
+}
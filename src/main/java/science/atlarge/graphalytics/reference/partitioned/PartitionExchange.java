@@ -0,0 +1,437 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Exchanges the values of boundary vertices between the workers of a partitioned run over TCP sockets. Every worker
+ * is connected to every other worker. In every superstep, a worker sends the values of its vertices that other
+ * workers have as neighbours to those workers, and receives the values of its ghost vertices, i.e., the neighbours
+ * of its vertices owned by other workers. Only values that changed since the previous superstep are sent, unless
+ * sending all values is smaller. Every message also carries a value to aggregate over all workers, e.g., the number
+ * of vertices that changed, which doubles as a barrier between supersteps.
+ * <p>
+ * Messages are sent on background threads while the messages of the other workers are received, so that workers
+ * cannot block each other on full socket buffers.
+ */
+public class PartitionExchange implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final byte DENSE = 0;
+	private static final byte SPARSE = 1;
+
+	private final int workerId;
+	private final int numWorkers;
+	private final Socket[] sockets;
+	private final DataInputStream[] inputs;
+	private final DataOutputStream[] outputs;
+	private final CountingOutputStream[] outputCounters;
+	private final ExecutorService senders;
+
+	/**
+	 * For every other worker, the local indices of the vertices whose values it receives.
+	 */
+	private int[][] sendIndices = new int[0][];
+	/**
+	 * For every other worker, the indices in the value arrays of the ghost vertices it sends values for.
+	 */
+	private int[][] receiveIndices = new int[0][];
+	private long[] lastSent = new long[0];
+	private boolean sentAll;
+
+	private final List<CommunicationStatistics> statistics = new ArrayList<>();
+
+	/**
+	 * @param sockets a connected socket to every other worker, indexed by worker ID, and null for this worker
+	 */
+	public PartitionExchange(int workerId, Socket[] sockets) throws IOException {
+		this.workerId = workerId;
+		this.numWorkers = sockets.length;
+		this.sockets = sockets;
+		this.inputs = new DataInputStream[numWorkers];
+		this.outputs = new DataOutputStream[numWorkers];
+		this.outputCounters = new CountingOutputStream[numWorkers];
+		for (int p = 0; p < numWorkers; p++) {
+			if (p != workerId) {
+				sockets[p].setTcpNoDelay(true);
+				inputs[p] = new DataInputStream(new BufferedInputStream(sockets[p].getInputStream(), BUFFER_SIZE));
+				outputCounters[p] = new CountingOutputStream(sockets[p].getOutputStream());
+				outputs[p] = new DataOutputStream(new BufferedOutputStream(outputCounters[p], BUFFER_SIZE));
+			}
+		}
+		this.senders = Executors.newFixedThreadPool(Math.max(1, numWorkers - 1), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "reference-exchange");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Connects a worker to all other workers: it connects to the workers with a lower ID, and accepts connections
+	 * from the workers with a higher ID on its server socket.
+	 *
+	 * @param addresses the address of the server socket of every worker, indexed by worker ID
+	 */
+	public static PartitionExchange connect(int workerId, ServerSocket serverSocket, InetSocketAddress[] addresses)
+			throws IOException {
+		Socket[] sockets = new Socket[addresses.length];
+		try {
+			for (int p = 0; p < workerId; p++) {
+				sockets[p] = new Socket(addresses[p].getAddress(), addresses[p].getPort());
+				new DataOutputStream(sockets[p].getOutputStream()).writeInt(workerId);
+			}
+			for (int i = workerId + 1; i < addresses.length; i++) {
+				Socket socket = serverSocket.accept();
+				int p = new DataInputStream(socket.getInputStream()).readInt();
+				if (p <= workerId || p >= addresses.length || sockets[p] != null) {
+					socket.close();
+					throw new IOException("Unexpected connection from worker " + p);
+				}
+				sockets[p] = socket;
+			}
+		} catch (IOException e) {
+			for (Socket socket : sockets) {
+				if (socket != null) {
+					socket.close();
+				}
+			}
+			throw e;
+		}
+		return new PartitionExchange(workerId, sockets);
+	}
+
+	public int getWorkerId() {
+		return workerId;
+	}
+
+	public int getNumberOfWorkers() {
+		return numWorkers;
+	}
+
+	/**
+	 * Sends an array to every other worker and receives an array from every other worker.
+	 *
+	 * @param outgoing the array to send to every worker, indexed by worker ID
+	 * @return the array received from every worker, indexed by worker ID, including the outgoing array of this worker
+	 */
+	public long[][] allToAll(final long[][] outgoing) throws IOException {
+		List<Future<?>> sends = new ArrayList<>();
+		for (int p = 0; p < numWorkers; p++) {
+			if (p != workerId) {
+				final DataOutputStream out = outputs[p];
+				final long[] array = outgoing[p];
+				sends.add(senders.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						out.writeInt(array.length);
+						for (long value : array) {
+							out.writeLong(value);
+						}
+						out.flush();
+						return null;
+					}
+				}));
+			}
+		}
+
+		long[][] incoming = new long[numWorkers][];
+		incoming[workerId] = outgoing[workerId];
+		for (int p = 0; p < numWorkers; p++) {
+			if (p != workerId) {
+				DataInputStream in = inputs[p];
+				long[] array = new long[in.readInt()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = in.readLong();
+				}
+				incoming[p] = array;
+			}
+		}
+		await(sends);
+		return incoming;
+	}
+
+	/**
+	 * Sets up the exchange of the values of boundary vertices.
+	 *
+	 * @param sendIndices    for every other worker, the local indices of the vertices whose values it receives
+	 * @param receiveIndices for every other worker, the indices in the value arrays of the ghost vertices it owns, in
+	 *                       the order in which it sends them
+	 */
+	void configure(int[][] sendIndices, int[][] receiveIndices, int numLocalVertices) {
+		this.sendIndices = sendIndices;
+		this.receiveIndices = receiveIndices;
+		this.lastSent = new long[numLocalVertices];
+		this.sentAll = false;
+	}
+
+	/**
+	 * Sends the values of the boundary vertices to the other workers, and receives the values of the ghost vertices.
+	 *
+	 * @return the sum of the aggregate of all workers
+	 */
+	public long exchange(final long[] values, long aggregate) throws IOException {
+		long[] aggregates = exchange(new Values() {
+			@Override
+			public long get(int index) {
+				return values[index];
+			}
+
+			@Override
+			public void set(int index, long bits) {
+				values[index] = bits;
+			}
+		}, aggregate);
+
+		long sum = 0;
+		for (long value : aggregates) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	/**
+	 * Sends the values of the boundary vertices to the other workers, and receives the values of the ghost vertices.
+	 *
+	 * @return the sum of the aggregate of all workers, added in order of worker ID so every worker gets the same sum
+	 */
+	public double exchange(final double[] values, double aggregate) throws IOException {
+		long[] aggregates = exchange(new Values() {
+			@Override
+			public long get(int index) {
+				return Double.doubleToRawLongBits(values[index]);
+			}
+
+			@Override
+			public void set(int index, long bits) {
+				values[index] = Double.longBitsToDouble(bits);
+			}
+		}, Double.doubleToRawLongBits(aggregate));
+
+		double sum = 0.0;
+		for (long bits : aggregates) {
+			sum += Double.longBitsToDouble(bits);
+		}
+		return sum;
+	}
+
+	private long[] exchange(Values values, final long aggregate) throws IOException {
+		long startTime = System.nanoTime();
+		long bytesBefore = getTotalBytesSent();
+
+		final Message[] messages = new Message[numWorkers];
+		long valuesSent = 0;
+		for (int p = 0; p < numWorkers; p++) {
+			if (p != workerId) {
+				messages[p] = encode(values, sendIndices[p]);
+				valuesSent += messages[p].values.length;
+			}
+		}
+		for (int p = 0; p < numWorkers; p++) {
+			if (p != workerId) {
+				for (int index : sendIndices[p]) {
+					lastSent[index] = values.get(index);
+				}
+			}
+		}
+		sentAll = true;
+
+		List<Future<?>> sends = new ArrayList<>();
+		for (int p = 0; p < numWorkers; p++) {
+			if (p != workerId) {
+				final DataOutputStream out = outputs[p];
+				final Message message = messages[p];
+				sends.add(senders.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						message.write(out, aggregate);
+						return null;
+					}
+				}));
+			}
+		}
+
+		long[] aggregates = new long[numWorkers];
+		aggregates[workerId] = aggregate;
+		for (int p = 0; p < numWorkers; p++) {
+			if (p != workerId) {
+				aggregates[p] = receive(inputs[p], receiveIndices[p], values, p);
+			}
+		}
+		await(sends);
+
+		statistics.add(new CommunicationStatistics(valuesSent, getTotalBytesSent() - bytesBefore,
+				System.nanoTime() - startTime));
+		return aggregates;
+	}
+
+	/**
+	 * @return a message with the values that changed since they were last sent, or all values if that is smaller
+	 */
+	private Message encode(Values values, int[] indices) {
+		int numChanged = 0;
+		if (sentAll) {
+			for (int index : indices) {
+				if (values.get(index) != lastSent[index]) {
+					numChanged++;
+				}
+			}
+		}
+
+		// A sparse message takes 12 bytes per changed value, a dense message 8 bytes per value
+		if (!sentAll || 12L * numChanged >= 8L * indices.length) {
+			long[] dense = new long[indices.length];
+			for (int i = 0; i < indices.length; i++) {
+				dense[i] = values.get(indices[i]);
+			}
+			return new Message(null, dense);
+		}
+
+		int[] positions = new int[numChanged];
+		long[] sparse = new long[numChanged];
+		int count = 0;
+		for (int i = 0; i < indices.length; i++) {
+			long value = values.get(indices[i]);
+			if (value != lastSent[indices[i]]) {
+				positions[count] = i;
+				sparse[count++] = value;
+			}
+		}
+		return new Message(positions, sparse);
+	}
+
+	private static long receive(DataInputStream in, int[] indices, Values values, int worker) throws IOException {
+		long aggregate = in.readLong();
+		byte encoding = in.readByte();
+		int count = in.readInt();
+		if (encoding == DENSE && count == indices.length) {
+			for (int i = 0; i < count; i++) {
+				values.set(indices[i], in.readLong());
+			}
+		} else if (encoding == SPARSE && count <= indices.length) {
+			for (int i = 0; i < count; i++) {
+				int position = in.readInt();
+				values.set(indices[position], in.readLong());
+			}
+		} else {
+			throw new IOException("Unexpected message from worker " + worker);
+		}
+		return aggregate;
+	}
+
+	/**
+	 * @return the communication of every superstep so far, in order
+	 */
+	public List<CommunicationStatistics> getStatistics() {
+		return statistics;
+	}
+
+	private long getTotalBytesSent() {
+		long bytes = 0;
+		for (CountingOutputStream counter : outputCounters) {
+			if (counter != null) {
+				bytes += counter.getByteCount();
+			}
+		}
+		return bytes;
+	}
+
+	private static void await(List<Future<?>> futures) throws IOException {
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while exchanging values", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to send values", e.getCause());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		senders.shutdownNow();
+		for (Socket socket : sockets) {
+			if (socket != null) {
+				socket.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads and writes values as raw bits.
+	 */
+	private interface Values {
+
+		long get(int index);
+
+		void set(int index, long bits);
+
+	}
+
+	/**
+	 * The values sent to one worker in one superstep.
+	 */
+	private static final class Message {
+
+		/**
+		 * The positions of the values in the list of vertices the worker receives, or null if all values are sent.
+		 */
+		private final int[] positions;
+		private final long[] values;
+
+		private Message(int[] positions, long[] values) {
+			this.positions = positions;
+			this.values = values;
+		}
+
+		private void write(DataOutputStream out, long aggregate) throws IOException {
+			out.writeLong(aggregate);
+			out.writeByte(positions == null ? DENSE : SPARSE);
+			out.writeInt(values.length);
+			for (int i = 0; i < values.length; i++) {
+				if (positions != null) {
+					out.writeInt(positions[i]);
+				}
+				out.writeLong(values[i]);
+			}
+			out.flush();
+		}
+
+	}
+
+}
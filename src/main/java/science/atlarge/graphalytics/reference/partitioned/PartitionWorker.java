@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+
+import science.atlarge.graphalytics.reference.algorithms.bfs.PartitionedBreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.PartitionedCommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PartitionedPageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.PartitionedWeaklyConnectedComponentsJob;
+
+/**
+ * A worker of a partitioned run. The worker registers with the coordinator, receives the job, connects to the other
+ * workers and loads its partition of the graph. Once all workers are ready, the coordinator starts the job, and the
+ * worker reports its progress after every superstep, and returns the output for its vertices and the communication of
+ * every superstep.
+ */
+public class PartitionWorker {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	static final byte READY = 1;
+	static final byte START = 2;
+	static final byte SUCCEEDED = 3;
+	static final byte FAILED = 4;
+	static final byte PROGRESS = 5;
+
+	/**
+	 * The time a worker waits for the other workers to connect to it.
+	 */
+	private static final int CONNECT_TIMEOUT_MILLIS = 60000;
+
+	private final String coordinatorHost;
+	private final int coordinatorPort;
+	private final int workerId;
+
+	public PartitionWorker(String coordinatorHost, int coordinatorPort, int workerId) {
+		this.coordinatorHost = coordinatorHost;
+		this.coordinatorPort = coordinatorPort;
+		this.workerId = workerId;
+	}
+
+	/**
+	 * Runs a worker in its own JVM.
+	 *
+	 * @param args the host and port of the coordinator, and the ID of the worker
+	 */
+	public static void main(String[] args) {
+		if (args.length != 3) {
+			System.err.println("Usage: " + PartitionWorker.class.getName() + " <coordinator-host> <coordinator-port> " +
+					"<worker-id>");
+			System.exit(2);
+		}
+		boolean succeeded = new PartitionWorker(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2])).run();
+		System.exit(succeeded ? 0 : 1);
+	}
+
+	/**
+	 * @return true if the job completed and its output was sent to the coordinator
+	 */
+	public boolean run() {
+		try (Socket coordinator = new Socket(coordinatorHost, coordinatorPort);
+				ServerSocket serverSocket = new ServerSocket(0, 50, coordinator.getLocalAddress())) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+			out.writeInt(workerId);
+			out.writeInt(serverSocket.getLocalPort());
+			out.flush();
+
+			JobDescription job = JobDescription.read(in);
+			InetSocketAddress[] addresses = new InetSocketAddress[job.getNumberOfWorkers()];
+			for (int p = 0; p < addresses.length; p++) {
+				addresses[p] = new InetSocketAddress(in.readUTF(), in.readInt());
+			}
+
+			try {
+				return run(job, addresses, serverSocket, in, out);
+			} catch (IOException | RuntimeException e) {
+				LOG.error("Worker " + workerId + " failed", e);
+				out.writeByte(FAILED);
+				out.writeUTF(String.valueOf(e));
+				out.flush();
+				return false;
+			}
+		} catch (IOException e) {
+			LOG.error("Worker " + workerId + " lost the connection to the coordinator", e);
+			return false;
+		}
+	}
+
+	private boolean run(JobDescription job, InetSocketAddress[] addresses, ServerSocket serverSocket,
+			DataInputStream in, final DataOutputStream out) throws IOException {
+		serverSocket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+		// Closing the exchange on failure disconnects the other workers, so they fail rather than wait
+		try (PartitionExchange exchange = PartitionExchange.connect(workerId, serverSocket, addresses)) {
+			PartitionedGraph graph = new PartitionedGraphLoader(job, exchange).load();
+			out.writeByte(READY);
+			out.flush();
+			if (in.readByte() != START) {
+				throw new IOException("Unexpected message from the coordinator");
+			}
+			graph.setProgressListener(new PartitionedGraph.ProgressListener() {
+				@Override
+				public void superstepCompleted(int superstep, long vertices, long edges) throws IOException {
+					out.writeByte(PROGRESS);
+					out.writeInt(superstep);
+					out.writeLong(vertices);
+					out.writeLong(edges);
+					out.flush();
+				}
+			});
+
+			Map<Long, ? extends Object> output;
+			switch (job.getAlgorithm()) {
+				case BFS:
+					output = new PartitionedBreadthFirstSearchJob(graph, job.getBreadthFirstSearchParameters()).run();
+					break;
+				case CDLP:
+					output = new PartitionedCommunityDetectionLPJob(graph,
+							job.getCommunityDetectionLPParameters()).run();
+					break;
+				case WCC:
+					output = new PartitionedWeaklyConnectedComponentsJob(graph).run();
+					break;
+				case PR:
+					output = new PartitionedPageRankJob(graph, job.getPageRankParameters()).run();
+					break;
+				default:
+					throw new IOException("Unsupported algorithm in partitioned mode: " + job.getAlgorithm());
+			}
+
+			out.writeByte(SUCCEEDED);
+			out.writeInt(graph.getNumberOfLocalVertices());
+			for (int v = 0; v < graph.getNumberOfLocalVertices(); v++) {
+				long vertexId = graph.getVertexId(v);
+				out.writeLong(vertexId);
+				if (output instanceof Long2DoubleMap) {
+					out.writeLong(Double.doubleToRawLongBits(((Long2DoubleMap)output).get(vertexId)));
+				} else {
+					out.writeLong(((Long2LongMap)output).get(vertexId));
+				}
+			}
+			List<CommunicationStatistics> statistics = graph.getCommunicationStatistics();
+			out.writeInt(statistics.size());
+			for (CommunicationStatistics superstep : statistics) {
+				out.writeLong(superstep.getValuesSent());
+				out.writeLong(superstep.getBytesSent());
+				out.writeLong(superstep.getNanos());
+			}
+			out.flush();
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The partition of a graph owned by one worker of a partitioned run. The worker stores its own vertices, the local
+ * vertices, and for every local vertex the list of neighbours it reads values from. Neighbours owned by other
+ * workers are represented by ghost vertices, whose values are received from their owners in every superstep.
+ * <p>
+ * Neighbours are referenced by their position in the value arrays of a job: local vertex v has position v, and ghost
+ * vertex g has position L + g, where L is the number of local vertices. Value arrays therefore hold L + G elements,
+ * and {@link #exchange(long[], long)} fills in the values of the ghost vertices.
+ */
+public class PartitionedGraph implements AutoCloseable {
+
+	private final long numVertices;
+	private final boolean directed;
+	private final long[] vertexIds;
+	private final long[] globalIndices;
+	private final int[] outDegrees;
+	private final int[] offsets;
+	private final int[] neighbours;
+	private final int numGhosts;
+	private final PartitionExchange exchange;
+	private ProgressListener progressListener;
+
+	/**
+	 * @param numVertices   the number of vertices of the whole graph
+	 * @param vertexIds     the IDs of the local vertices
+	 * @param globalIndices the positions of the local vertices in the vertex file
+	 * @param outDegrees    the number of outgoing edges of every local vertex; for undirected graphs, the number of
+	 *                      edges
+	 * @param offsets       the start of the neighbour list of every local vertex in neighbours, and its end
+	 * @param neighbours    the positions of the neighbours of the local vertices in the value arrays
+	 */
+	PartitionedGraph(long numVertices, boolean directed, long[] vertexIds, long[] globalIndices, int[] outDegrees,
+			int[] offsets, int[] neighbours, int numGhosts, PartitionExchange exchange) {
+		this.numVertices = numVertices;
+		this.directed = directed;
+		this.vertexIds = vertexIds;
+		this.globalIndices = globalIndices;
+		this.outDegrees = outDegrees;
+		this.offsets = offsets;
+		this.neighbours = neighbours;
+		this.numGhosts = numGhosts;
+		this.exchange = exchange;
+	}
+
+	/**
+	 * @return the number of vertices of the whole graph
+	 */
+	public long getNumberOfVertices() {
+		return numVertices;
+	}
+
+	public boolean isDirected() {
+		return directed;
+	}
+
+	public int getNumberOfLocalVertices() {
+		return vertexIds.length;
+	}
+
+	public int getNumberOfGhostVertices() {
+		return numGhosts;
+	}
+
+	public long getVertexId(int localVertex) {
+		return vertexIds[localVertex];
+	}
+
+	/**
+	 * @return the position of a local vertex in the vertex file, which identifies it among all vertices
+	 */
+	public long getGlobalIndex(int localVertex) {
+		return globalIndices[localVertex];
+	}
+
+	/**
+	 * @return the number of outgoing edges of a local vertex; for undirected graphs, the number of edges
+	 */
+	public int getOutDegree(int localVertex) {
+		return outDegrees[localVertex];
+	}
+
+	/**
+	 * @return the start of the neighbour list of every local vertex in {@link #getNeighbours()}, followed by the end
+	 * of the last list
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * @return the positions of the neighbours of the local vertices in the value arrays. For jobs that read only
+	 * incoming edges, the neighbours of a vertex in a directed graph are the sources of its incoming edges; otherwise
+	 * they include the destinations of its outgoing edges as well.
+	 */
+	public int[] getNeighbours() {
+		return neighbours;
+	}
+
+	/**
+	 * @return the length of the value arrays of jobs, i.e., the number of local and ghost vertices
+	 */
+	public int getValueArrayLength() {
+		return vertexIds.length + numGhosts;
+	}
+
+	/**
+	 * Sends the values of local vertices to the workers that have them as ghost vertices, and receives the values of
+	 * the ghost vertices. This is a barrier: it returns once all workers have exchanged their values.
+	 *
+	 * @return the sum of the aggregate of all workers
+	 */
+	public long exchange(long[] values, long aggregate) throws IOException {
+		return exchange.exchange(values, aggregate);
+	}
+
+	/**
+	 * @see #exchange(long[], long)
+	 */
+	public double exchange(double[] values, double aggregate) throws IOException {
+		return exchange.exchange(values, aggregate);
+	}
+
+	/**
+	 * Receives the progress of the job on this worker, e.g., to forward it to the coordinator.
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Reports the local work of a superstep, once the job has processed its local vertices in it.
+	 *
+	 * @param superstep the superstep, counting from 0
+	 * @param vertices  the number of local vertices processed in the superstep
+	 * @param edges     the number of neighbour list entries processed in the superstep
+	 */
+	public void reportProgress(int superstep, long vertices, long edges) throws IOException {
+		if (progressListener != null) {
+			progressListener.superstepCompleted(superstep, vertices, edges);
+		}
+	}
+
+	/**
+	 * @return the communication of every superstep so far, in order
+	 */
+	public List<CommunicationStatistics> getCommunicationStatistics() {
+		return exchange.getStatistics();
+	}
+
+	/**
+	 * Closes the connections to the other workers.
+	 */
+	@Override
+	public void close() throws IOException {
+		exchange.close();
+	}
+
+	/**
+	 * Receives the local work of every superstep of a job.
+	 */
+	public interface ProgressListener {
+
+		void superstepCompleted(int superstep, long vertices, long edges) throws IOException;
+
+	}
+
+}
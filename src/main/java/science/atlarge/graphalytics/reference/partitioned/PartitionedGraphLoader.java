@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import science.atlarge.graphalytics.reference.graph.GraphFiles;
+import science.atlarge.graphalytics.reference.graph.VertexIndex;
+
+/**
+ * Loads the partition of a graph owned by one worker. Every worker reads the vertex and edge files of the whole graph
+ * and keeps the vertices it owns and the edges that touch them. The workers then exchange the IDs of their ghost
+ * vertices, so that every worker knows which values to send to which worker in every superstep.
+ * <p>
+ * Self-loops and duplicate edges are removed, so that jobs see the same graph as in memory. Edge weights are ignored.
+ */
+public class PartitionedGraphLoader {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final JobDescription job;
+	private final PartitionExchange exchange;
+
+	/**
+	 * @param exchange the connections of this worker to all other workers
+	 */
+	public PartitionedGraphLoader(JobDescription job, PartitionExchange exchange) {
+		this.job = job;
+		this.exchange = exchange;
+	}
+
+	public PartitionedGraph load() throws IOException {
+		final int workerId = exchange.getWorkerId();
+		int numWorkers = exchange.getNumberOfWorkers();
+		final boolean directed = job.isDirected();
+		final boolean allNeighbours = job.usesAllNeighbours() || !directed;
+
+		long[] allVertexIds = GraphFiles.readVertices(job.getVertexFilePath());
+		final Partitioner partitioner = Partitioner.create(job.getPartitioning(), numWorkers, allVertexIds);
+
+		// Keep the vertices owned by this worker, in file order
+		LongArrayList vertexIdList = new LongArrayList();
+		LongArrayList globalIndices = new LongArrayList();
+		for (int i = 0; i < allVertexIds.length; i++) {
+			if (partitioner.getPartition(allVertexIds[i]) == workerId) {
+				vertexIdList.add(allVertexIds[i]);
+				globalIndices.add(i);
+			}
+		}
+		long numVertices = allVertexIds.length;
+		allVertexIds = null;
+		long[] vertexIds = vertexIdList.toLongArray();
+		vertexIdList = null;
+		final VertexIndex localIndices = GraphFiles.indexVertices(vertexIds);
+		final int numLocalVertices = vertexIds.length;
+		LOG.debug("- Read " + numVertices + " vertices, " + numLocalVertices + " owned by worker " + workerId);
+
+		// Collect the neighbour lists of the local vertices as pairs of local vertex and neighbour ID, and for directed
+		// graphs the outgoing edges of the local vertices separately, to count their distinct destinations
+		final IntArrayList listVertices = new IntArrayList();
+		final LongArrayList listNeighbours = new LongArrayList();
+		final IntArrayList outVertices = new IntArrayList();
+		final LongArrayList outNeighbours = new LongArrayList();
+		final long[] numSelfLoops = new long[1];
+		GraphFiles.readEdges(job.getEdgeFilePath(), new GraphFiles.EdgeHandler() {
+			@Override
+			public void handle(long sourceId, long destinationId) throws IOException {
+				if (sourceId == destinationId) {
+					numSelfLoops[0]++;
+					return;
+				}
+				if (partitioner.getPartition(destinationId) == workerId) {
+					listVertices.add(localVertex(localIndices, destinationId));
+					listNeighbours.add(sourceId);
+				}
+				if (partitioner.getPartition(sourceId) == workerId) {
+					int source = localVertex(localIndices, sourceId);
+					if (directed) {
+						outVertices.add(source);
+						outNeighbours.add(destinationId);
+					} else {
+						listVertices.add(source);
+						listNeighbours.add(destinationId);
+					}
+				}
+			}
+		});
+		if (numSelfLoops[0] > 0) {
+			LOG.warn("Removed " + numSelfLoops[0] + " self-loops");
+		}
+
+		// Group the pairs into neighbour lists without duplicates, as the in-memory graph does
+		int[] offsets;
+		long[] neighbourIds;
+		int[] outDegrees = new int[numLocalVertices];
+		long numDuplicates;
+		if (!directed) {
+			neighbourIds = new long[listVertices.size()];
+			offsets = groupNeighbours(listVertices, listNeighbours, numLocalVertices, neighbourIds);
+			for (int v = 0; v < numLocalVertices; v++) {
+				outDegrees[v] = offsets[v + 1] - offsets[v];
+			}
+			// Every duplicate undirected edge was collected at both of its endpoints
+			numDuplicates = (listVertices.size() - offsets[numLocalVertices]) / 2;
+		} else {
+			long[] inIds = new long[listVertices.size()];
+			int[] inOffsets = groupNeighbours(listVertices, listNeighbours, numLocalVertices, inIds);
+			long[] outIds = new long[outVertices.size()];
+			int[] outOffsets = groupNeighbours(outVertices, outNeighbours, numLocalVertices, outIds);
+			for (int v = 0; v < numLocalVertices; v++) {
+				outDegrees[v] = outOffsets[v + 1] - outOffsets[v];
+			}
+			numDuplicates = outVertices.size() - outOffsets[numLocalVertices];
+			if (!allNeighbours) {
+				offsets = inOffsets;
+				neighbourIds = inIds;
+			} else {
+				// Concatenate the incoming and outgoing neighbours of every vertex
+				offsets = new int[numLocalVertices + 1];
+				neighbourIds = new long[inOffsets[numLocalVertices] + outOffsets[numLocalVertices]];
+				for (int v = 0; v < numLocalVertices; v++) {
+					int size = offsets[v];
+					for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+						neighbourIds[size++] = inIds[i];
+					}
+					for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+						neighbourIds[size++] = outIds[i];
+					}
+					offsets[v + 1] = size;
+				}
+			}
+		}
+		if (numDuplicates > 0) {
+			LOG.warn("Removed " + numDuplicates + " duplicate edges");
+		}
+		listVertices.clear();
+		listVertices.trim();
+		listNeighbours.clear();
+		listNeighbours.trim();
+		outVertices.clear();
+		outVertices.trim();
+		outNeighbours.clear();
+		outNeighbours.trim();
+
+		// Resolve the neighbour IDs to local vertices or ghost vertices, grouping ghost vertices by owner
+		int numEntries = offsets[numLocalVertices];
+		int[] neighbours = new int[numEntries];
+		Long2IntOpenHashMap ghostIndices = new Long2IntOpenHashMap();
+		ghostIndices.defaultReturnValue(-1);
+		LongArrayList[] requests = new LongArrayList[numWorkers];
+		IntArrayList[] receiveIndices = new IntArrayList[numWorkers];
+		for (int p = 0; p < numWorkers; p++) {
+			requests[p] = new LongArrayList();
+			receiveIndices[p] = new IntArrayList();
+		}
+		for (int i = 0; i < numEntries; i++) {
+			long neighbourId = neighbourIds[i];
+			int owner = partitioner.getPartition(neighbourId);
+			if (owner == workerId) {
+				neighbours[i] = localVertex(localIndices, neighbourId);
+				continue;
+			}
+			int ghost = ghostIndices.get(neighbourId);
+			if (ghost < 0) {
+				ghost = ghostIndices.size();
+				ghostIndices.put(neighbourId, ghost);
+				requests[owner].add(neighbourId);
+				receiveIndices[owner].add(numLocalVertices + ghost);
+			}
+			neighbours[i] = numLocalVertices + ghost;
+		}
+		neighbourIds = null;
+
+		// Ask the owners of the ghost vertices to send their values, and learn which values to send to whom
+		long[][] outgoing = new long[numWorkers][];
+		for (int p = 0; p < numWorkers; p++) {
+			outgoing[p] = requests[p].toLongArray();
+		}
+		long[][] incoming = exchange.allToAll(outgoing);
+		int[][] sendIndices = new int[numWorkers][];
+		int[][] receiveArrays = new int[numWorkers][];
+		for (int p = 0; p < numWorkers; p++) {
+			sendIndices[p] = new int[p == workerId ? 0 : incoming[p].length];
+			for (int i = 0; i < sendIndices[p].length; i++) {
+				sendIndices[p][i] = localVertex(localIndices, incoming[p][i]);
+			}
+			receiveArrays[p] = p == workerId ? new int[0] : receiveIndices[p].toIntArray();
+		}
+		exchange.configure(sendIndices, receiveArrays, numLocalVertices);
+
+		LOG.info("Loaded partition " + workerId + " of " + numWorkers + ": " + numLocalVertices + " vertices, " +
+				ghostIndices.size() + " ghost vertices, " + numEntries + " neighbour list entries.");
+
+		return new PartitionedGraph(numVertices, directed, vertexIds, globalIndices.toLongArray(),
+				outDegrees, offsets, neighbours, ghostIndices.size(), exchange);
+	}
+
+	/**
+	 * Groups pairs of local vertex and neighbour ID by vertex, sorts the neighbours of every vertex, and removes
+	 * duplicate neighbours.
+	 *
+	 * @param grouped receives the neighbours of all vertices, grouped by vertex; must hold all pairs
+	 * @return the offsets of the groups in grouped
+	 */
+	private static int[] groupNeighbours(IntArrayList vertices, LongArrayList neighbourIds, int numVertices,
+			long[] grouped) {
+		int numPairs = vertices.size();
+		int[] offsets = new int[numVertices + 1];
+		for (int i = 0; i < numPairs; i++) {
+			offsets[vertices.getInt(i) + 1]++;
+		}
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		int[] cursors = Arrays.copyOf(offsets, numVertices);
+		for (int i = 0; i < numPairs; i++) {
+			grouped[cursors[vertices.getInt(i)]++] = neighbourIds.getLong(i);
+		}
+
+		// Sort every group and compact the distinct neighbours towards the start of the array
+		int size = 0;
+		for (int v = 0; v < numVertices; v++) {
+			int from = offsets[v];
+			int to = offsets[v + 1];
+			Arrays.sort(grouped, from, to);
+			offsets[v] = size;
+			for (int i = from; i < to; i++) {
+				if (i == from || grouped[i] != grouped[size - 1]) {
+					grouped[size++] = grouped[i];
+				}
+			}
+		}
+		offsets[numVertices] = size;
+		return offsets;
+	}
+
+	private static int localVertex(VertexIndex localIndices, long vertexId) throws IOException {
+		int vertex = localIndices.get(vertexId);
+		if (vertex < 0) {
+			throw new IOException("Edge refers to a vertex that is not in the vertex file: " + vertexId);
+		}
+		return vertex;
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Assigns vertices to partitions.
+ */
+public abstract class Partitioner {
+
+	private final int numPartitions;
+
+	private Partitioner(int numPartitions) {
+		this.numPartitions = numPartitions;
+	}
+
+	/**
+	 * @param vertexIds the IDs of all vertices of the graph, which are not modified
+	 */
+	public static Partitioner create(Partitioning partitioning, int numPartitions, long[] vertexIds) {
+		switch (partitioning) {
+			case HASH:
+				return new HashPartitioner(numPartitions);
+			case RANGE:
+				return new RangePartitioner(numPartitions, vertexIds);
+			default:
+				throw new IllegalArgumentException("Unsupported partitioning: " + partitioning);
+		}
+	}
+
+	public int getNumberOfPartitions() {
+		return numPartitions;
+	}
+
+	/**
+	 * @return the partition that owns the vertex with the given ID
+	 */
+	public abstract int getPartition(long vertexId);
+
+	private static final class HashPartitioner extends Partitioner {
+
+		private HashPartitioner(int numPartitions) {
+			super(numPartitions);
+		}
+
+		@Override
+		public int getPartition(long vertexId) {
+			return (int)((HashCommon.mix(vertexId) & Long.MAX_VALUE) % getNumberOfPartitions());
+		}
+
+	}
+
+	private static final class RangePartitioner extends Partitioner {
+
+		/**
+		 * The lowest ID of every partition but the first.
+		 */
+		private final long[] splitters;
+
+		private RangePartitioner(int numPartitions, long[] vertexIds) {
+			super(numPartitions);
+			long[] sortedIds = vertexIds.clone();
+			Arrays.sort(sortedIds);
+			splitters = new long[numPartitions - 1];
+			for (int p = 1; p < numPartitions; p++) {
+				splitters[p - 1] = sortedIds.length == 0 ? Long.MAX_VALUE
+						: sortedIds[(int)((long)p * sortedIds.length / numPartitions)];
+			}
+		}
+
+		@Override
+		public int getPartition(long vertexId) {
+			// The number of splitters that are not greater than the ID
+			int position = Arrays.binarySearch(splitters, vertexId);
+			if (position < 0) {
+				return -position - 1;
+			}
+			while (position < splitters.length && splitters[position] == vertexId) {
+				position++;
+			}
+			return position;
+		}
+
+	}
+
+}
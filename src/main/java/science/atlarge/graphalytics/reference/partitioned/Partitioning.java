@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+/**
+ * Determines how the vertices of a graph are assigned to the workers of a partitioned run.
+ */
+public enum Partitioning {
+
+	/**
+	 * Vertices are assigned by a hash of their ID, which balances the number of vertices and usually the number of
+	 * edges, but places most neighbours in other partitions.
+	 */
+	HASH,
+
+	/**
+	 * Every worker gets a contiguous range of vertex IDs of about the same number of vertices. Graphs whose IDs
+	 * reflect locality, e.g., generated graphs, keep more neighbours within a partition.
+	 */
+	RANGE
+
+}
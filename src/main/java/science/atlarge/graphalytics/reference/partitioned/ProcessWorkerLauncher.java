@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Launches every worker in a separate JVM on the local machine, with the class path of the current JVM. The output
+ * of worker i is written to worker-i.log in the log directory.
+ */
+public class ProcessWorkerLauncher implements WorkerLauncher {
+
+	private final List<String> jvmOptions;
+	private final Path logDirectory;
+	private final List<Process> processes = new ArrayList<>();
+
+	/**
+	 * @param jvmOptions   the options passed to the JVM of every worker, e.g., its heap size
+	 * @param logDirectory the directory to which the output of the workers is written
+	 */
+	public ProcessWorkerLauncher(List<String> jvmOptions, Path logDirectory) {
+		this.jvmOptions = jvmOptions;
+		this.logDirectory = logDirectory;
+	}
+
+	@Override
+	public void launch(int workerId, String host, int port) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(jvmOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(PartitionWorker.class.getName());
+		command.add(host);
+		command.add(String.valueOf(port));
+		command.add(String.valueOf(workerId));
+
+		Files.createDirectories(logDirectory);
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(logDirectory.resolve("worker-" + workerId + ".log").toFile());
+		processes.add(builder.start());
+	}
+
+	public Path getLogDirectory() {
+		return logDirectory;
+	}
+
+	@Override
+	public void close() {
+		for (Process process : processes) {
+			process.destroy();
+		}
+		processes.clear();
+	}
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.IOException;
+
+/**
+ * Starts the workers of a partitioned run. A launched worker runs {@link PartitionWorker} with the given worker ID,
+ * which registers with the coordinator at the given host and port.
+ */
+public interface WorkerLauncher extends AutoCloseable {
+
+	void launch(int workerId, String host, int port) throws IOException;
+
+	/**
+	 * Stops all workers that are still running.
+	 */
+	@Override
+	void close();
+
+}
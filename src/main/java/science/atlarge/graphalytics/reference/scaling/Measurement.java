@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.scaling;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+
+/**
+ * The result of one configuration of the scaling suite: an algorithm in a representation, on a graph of a scale,
+ * with a number of threads. Times are the medians of the repetitions of the configuration, and the peak RSS is the
+ * highest of the repetitions. Jobs that run sequentially in a representation are only measured with one thread, and
+ * have no speedup.
+ */
+public final class Measurement {
+
+	private final Algorithm algorithm;
+	private final Representation representation;
+	private final int scale;
+	private final long numVertices;
+	private final long numEdges;
+	private final int numThreads;
+	private final long loadMillis;
+	private final long processingMillis;
+	private final long peakRssBytes;
+	private final long gcMillis;
+	private final boolean sequential;
+
+	/**
+	 * @param peakRssBytes the peak resident set size, or -1 if it is not available
+	 * @param sequential   true if the job ignores the number of threads and processes the graph on a single thread
+	 */
+	public Measurement(Algorithm algorithm, Representation representation, int scale, long numVertices,
+			long numEdges, int numThreads, long loadMillis, long processingMillis, long peakRssBytes, long gcMillis,
+			boolean sequential) {
+		this.algorithm = algorithm;
+		this.representation = representation;
+		this.scale = scale;
+		this.numVertices = numVertices;
+		this.numEdges = numEdges;
+		this.numThreads = numThreads;
+		this.loadMillis = loadMillis;
+		this.processingMillis = processingMillis;
+		this.peakRssBytes = peakRssBytes;
+		this.gcMillis = gcMillis;
+		this.sequential = sequential;
+	}
+
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	public Representation getRepresentation() {
+		return representation;
+	}
+
+	public int getScale() {
+		return scale;
+	}
+
+	public long getNumberOfVertices() {
+		return numVertices;
+	}
+
+	public long getNumberOfEdges() {
+		return numEdges;
+	}
+
+	public int getNumberOfThreads() {
+		return numThreads;
+	}
+
+	public long getLoadMillis() {
+		return loadMillis;
+	}
+
+	public long getProcessingMillis() {
+		return processingMillis;
+	}
+
+	public long getPeakRssBytes() {
+		return peakRssBytes;
+	}
+
+	public long getGcMillis() {
+		return gcMillis;
+	}
+
+	public boolean isSequential() {
+		return sequential;
+	}
+
+	/**
+	 * @return the number of edges and vertices processed per second, as defined by Graphalytics
+	 */
+	public double getEvps() {
+		return (numVertices + numEdges) * 1000.0 / Math.max(1, processingMillis);
+	}
+
+	/**
+	 * @return true if the other measurement is of the same algorithm, representation and scale, i.e., differs at
+	 * most in the number of threads
+	 */
+	boolean isSeriesOf(Measurement other) {
+		return algorithm == other.algorithm && representation == other.representation && scale == other.scale;
+	}
+
+	/**
+	 * @return true if the other measurement is of the same configuration
+	 */
+	boolean isConfigurationOf(Measurement other) {
+		return isSeriesOf(other) && numThreads == other.numThreads;
+	}
+
+	@Override
+	public String toString() {
+		return algorithm + " " + representation.name().toLowerCase().replace('_', '-') + " scale " + scale + " " +
+				numThreads + " threads" + (sequential ? " (sequential)" : "");
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.scaling;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+
+/**
+ * The representations of a graph in which the scaling suite runs the jobs.
+ */
+public enum Representation {
+
+	/**
+	 * The in-memory CSR graph, with incoming edges for the jobs that use them and the variants selected from
+	 * statistics of the graph, as in the default execution mode of the platform.
+	 */
+	IN_MEMORY,
+
+	/**
+	 * The in-memory CSR graph without incoming edges, as the platform uses for directed graphs that do not fit in
+	 * memory otherwise.
+	 */
+	OUTGOING_ONLY,
+
+	/**
+	 * The semi-external graph, of which the edges are streamed from a binary file.
+	 */
+	SEMI_EXTERNAL;
+
+	/**
+	 * @return true if the representation has an implementation of the algorithm, and differs from the in-memory
+	 * representation for graphs of the given directedness
+	 */
+	public boolean supports(Algorithm algorithm, boolean directed) {
+		switch (this) {
+			case OUTGOING_ONLY:
+				// Undirected graphs have no separate incoming edges
+				return directed && (algorithm == Algorithm.BFS || algorithm == Algorithm.WCC ||
+						algorithm == Algorithm.PR || algorithm == Algorithm.SSSP);
+			case SEMI_EXTERNAL:
+				return algorithm == Algorithm.BFS || algorithm == Algorithm.CDLP || algorithm == Algorithm.WCC ||
+						algorithm == Algorithm.PR;
+			default:
+				return true;
+		}
+	}
+
+}
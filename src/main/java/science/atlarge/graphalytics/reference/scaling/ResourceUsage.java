@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.scaling;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Measures the resource usage of the process during a measurement: the peak resident set size (RSS), read from
+ * /proc/self/status on Linux, and the time spent in garbage collection. The peak RSS of a process only grows, so it is
+ * reset before every measurement by writing to /proc/self/clear_refs (Linux 4.0 or newer); if it cannot be reset or
+ * read, it is reported as unavailable rather than as the peak of an earlier measurement.
+ */
+final class ResourceUsage {
+
+	private static final Path STATUS_FILE = Paths.get("/proc/self/status");
+	private static final Path CLEAR_REFS_FILE = Paths.get("/proc/self/clear_refs");
+	/**
+	 * The value written to clear_refs to reset the peak RSS.
+	 */
+	private static final byte[] RESET_PEAK_RSS = "5".getBytes(StandardCharsets.US_ASCII);
+
+	private ResourceUsage() {
+	}
+
+	/**
+	 * Resets the peak RSS to the current RSS.
+	 *
+	 * @return false if the peak RSS cannot be reset on this system
+	 */
+	static boolean resetPeakRss() {
+		try {
+			Files.write(CLEAR_REFS_FILE, RESET_PEAK_RSS);
+			return true;
+		} catch (IOException | SecurityException | UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the peak RSS of the process since it was last reset, in bytes, or -1 if it is not available
+	 */
+	static long getPeakRssBytes() {
+		try {
+			for (String line : Files.readAllLines(STATUS_FILE, StandardCharsets.US_ASCII)) {
+				if (line.startsWith("VmHWM:")) {
+					// E.g., "VmHWM:	  123456 kB"
+					String[] fields = line.substring("VmHWM:".length()).trim().split("\\s+");
+					return Long.parseLong(fields[0]) * 1024;
+				}
+			}
+		} catch (IOException | SecurityException | NumberFormatException e) {
+			// Not available on this system
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the total time spent in garbage collection by the JVM so far, in milliseconds
+	 */
+	static long getGcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, collector.getCollectionTime());
+		}
+		return total;
+	}
+
+}
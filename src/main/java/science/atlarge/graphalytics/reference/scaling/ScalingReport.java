@@ -0,0 +1,514 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.scaling;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.reference.graph.MemoryEstimator;
+
+/**
+ * Summarizes the measurements of the scaling suite, as CSV and as a self-contained HTML page, and compares them with
+ * the measurements of a baseline, e.g., the CSV file of an earlier run.
+ * <p>
+ * Strong scaling is reported per algorithm, representation and scale, as the speedup over the measurement with the
+ * fewest threads and the parallel efficiency (speedup per added thread). Weak scaling is reported for measurements
+ * of which the graph grew with the number of threads, i.e., every doubling of the threads added one to the scale, as
+ * the processing time of the smallest configuration relative to the processing time of the measurement. Sequential
+ * jobs are measured with one thread only, so neither is reported for them, and they are marked as sequential.
+ */
+public class ScalingReport {
+
+	/**
+	 * Times below this are not compared with the baseline, as they are dominated by noise.
+	 */
+	static final long MIN_COMPARED_MILLIS = 10;
+
+	private static final String[] COLUMNS = {"algorithm", "representation", "scale", "vertices", "edges", "threads",
+			"sequential", "load_s", "processing_s", "evps", "peak_rss_bytes", "gc_s", "speedup", "efficiency",
+			"weak_efficiency", "regressions"};
+	/**
+	 * The columns from which measurements are read; the sequential column is optional, for reports that predate it.
+	 */
+	private static final String[] MEASURED_COLUMNS = {"algorithm", "representation", "scale", "vertices", "edges",
+			"threads", "load_s", "processing_s", "peak_rss_bytes", "gc_s"};
+	private static final String[] CHART_COLOURS = {"#1f77b4", "#ff7f0e", "#2ca02c", "#d62728", "#9467bd", "#8c564b",
+			"#e377c2", "#7f7f7f", "#bcbd22", "#17becf"};
+
+	private final List<Measurement> measurements;
+
+	public ScalingReport(List<Measurement> measurements) {
+		this.measurements = measurements;
+	}
+
+	/**
+	 * A metric of a measurement that is worse than in the baseline by more than the tolerance.
+	 */
+	public static final class Regression {
+
+		private final Measurement measurement;
+		private final String metric;
+		private final double baselineValue;
+		private final double value;
+
+		Regression(Measurement measurement, String metric, double baselineValue, double value) {
+			this.measurement = measurement;
+			this.metric = metric;
+			this.baselineValue = baselineValue;
+			this.value = value;
+		}
+
+		public Measurement getMeasurement() {
+			return measurement;
+		}
+
+		public String getMetric() {
+			return metric;
+		}
+
+		public double getBaselineValue() {
+			return baselineValue;
+		}
+
+		public double getValue() {
+			return value;
+		}
+
+		/**
+		 * @return the metric and its relative change, e.g., "processing time +23%"
+		 */
+		public String getDescription() {
+			return String.format(Locale.ROOT, "%s %+.0f%%", metric, (value / baselineValue - 1.0) * 100.0);
+		}
+
+		@Override
+		public String toString() {
+			return measurement + ": " + getDescription();
+		}
+
+	}
+
+	public List<Measurement> getMeasurements() {
+		return measurements;
+	}
+
+	/**
+	 * @return the speedup of the measurement over the measurement of the same series with the fewest threads, or NaN
+	 * if the job is sequential
+	 */
+	public double getSpeedup(Measurement measurement) {
+		if (measurement.isSequential()) {
+			return Double.NaN;
+		}
+		Measurement base = getSeriesBase(measurement);
+		return (double)Math.max(1, base.getProcessingMillis()) / Math.max(1, measurement.getProcessingMillis());
+	}
+
+	/**
+	 * @return the speedup divided by the relative number of threads, or NaN if the job is sequential
+	 */
+	public double getEfficiency(Measurement measurement) {
+		Measurement base = getSeriesBase(measurement);
+		return getSpeedup(measurement) * base.getNumberOfThreads() / measurement.getNumberOfThreads();
+	}
+
+	/**
+	 * @return the weak-scaling efficiency of the measurement, or NaN if its scale did not grow with its threads or the
+	 * job is sequential
+	 */
+	public double getWeakScalingEfficiency(Measurement measurement) {
+		if (measurement.isSequential()) {
+			return Double.NaN;
+		}
+		Measurement base = null;
+		for (Measurement other : measurements) {
+			if (other.getAlgorithm() == measurement.getAlgorithm() &&
+					other.getRepresentation() == measurement.getRepresentation() && (base == null ||
+					other.getNumberOfThreads() < base.getNumberOfThreads() ||
+					(other.getNumberOfThreads() == base.getNumberOfThreads() && other.getScale() < base.getScale()))) {
+				base = other;
+			}
+		}
+		int ratio = measurement.getNumberOfThreads() / base.getNumberOfThreads();
+		if (measurement.getNumberOfThreads() % base.getNumberOfThreads() != 0 || Integer.bitCount(ratio) != 1 ||
+				Integer.numberOfTrailingZeros(ratio) != measurement.getScale() - base.getScale()) {
+			return Double.NaN;
+		}
+		return (double)Math.max(1, base.getProcessingMillis()) / Math.max(1, measurement.getProcessingMillis());
+	}
+
+	private Measurement getSeriesBase(Measurement measurement) {
+		Measurement base = measurement;
+		for (Measurement other : measurements) {
+			if (other.isSeriesOf(measurement) && other.getNumberOfThreads() < base.getNumberOfThreads()) {
+				base = other;
+			}
+		}
+		return base;
+	}
+
+	/**
+	 * Compares the processing time, load time and peak RSS of every measurement with the measurement of the same
+	 * configuration in the baseline, if there is one.
+	 *
+	 * @param tolerance the relative increase of a metric that is not yet a regression, e.g., 0.1 for 10%
+	 */
+	public List<Regression> compareWith(List<Measurement> baseline, double tolerance) {
+		List<Regression> regressions = new ArrayList<>();
+		for (Measurement measurement : measurements) {
+			for (Measurement base : baseline) {
+				if (!base.isConfigurationOf(measurement)) {
+					continue;
+				}
+				if (base.getProcessingMillis() >= MIN_COMPARED_MILLIS &&
+						measurement.getProcessingMillis() > base.getProcessingMillis() * (1.0 + tolerance)) {
+					regressions.add(new Regression(measurement, "processing time", base.getProcessingMillis(),
+							measurement.getProcessingMillis()));
+				}
+				if (base.getLoadMillis() >= MIN_COMPARED_MILLIS &&
+						measurement.getLoadMillis() > base.getLoadMillis() * (1.0 + tolerance)) {
+					regressions.add(new Regression(measurement, "load time", base.getLoadMillis(),
+							measurement.getLoadMillis()));
+				}
+				if (base.getPeakRssBytes() > 0 && measurement.getPeakRssBytes() > 0 &&
+						measurement.getPeakRssBytes() > base.getPeakRssBytes() * (1.0 + tolerance)) {
+					regressions.add(new Regression(measurement, "peak RSS", base.getPeakRssBytes(),
+							measurement.getPeakRssBytes()));
+				}
+				break;
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * Writes a line per measurement, with the regressions of the measurement, if any, separated by semicolons.
+	 */
+	public void writeCsv(Path file, List<Regression> regressions) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write(join(Arrays.asList(COLUMNS), ","));
+			writer.newLine();
+			for (Measurement m : measurements) {
+				List<String> fields = Arrays.asList(m.getAlgorithm().name(), name(m.getRepresentation()),
+						Integer.toString(m.getScale()), Long.toString(m.getNumberOfVertices()),
+						Long.toString(m.getNumberOfEdges()), Integer.toString(m.getNumberOfThreads()),
+						Boolean.toString(m.isSequential()), seconds(m.getLoadMillis()), seconds(m.getProcessingMillis()),
+						String.format(Locale.ROOT, "%.0f", m.getEvps()), Long.toString(m.getPeakRssBytes()),
+						seconds(m.getGcMillis()), ratio(getSpeedup(m)), ratio(getEfficiency(m)),
+						ratio(getWeakScalingEfficiency(m)), join(describe(m, regressions), ";"));
+				writer.write(join(fields, ","));
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Reads the measurements from a CSV file written by {@link #writeCsv}; derived columns are ignored.
+	 */
+	public static List<Measurement> readCsv(Path file) throws IOException {
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		if (lines.isEmpty()) {
+			throw new IOException("Empty scaling report: " + file);
+		}
+		List<String> header = Arrays.asList(lines.get(0).split(",", -1));
+		int[] columns = new int[MEASURED_COLUMNS.length];
+		for (int c = 0; c < columns.length; c++) {
+			columns[c] = header.indexOf(MEASURED_COLUMNS[c]);
+			if (columns[c] < 0) {
+				throw new IOException("Missing column " + MEASURED_COLUMNS[c] + " in scaling report: " + file);
+			}
+		}
+		int sequentialColumn = header.indexOf("sequential");
+
+		List<Measurement> measurements = new ArrayList<>();
+		for (int i = 1; i < lines.size(); i++) {
+			if (lines.get(i).trim().isEmpty()) {
+				continue;
+			}
+			String[] fields = lines.get(i).split(",", -1);
+			try {
+				measurements.add(new Measurement(Algorithm.valueOf(fields[columns[0]]),
+						Representation.valueOf(fields[columns[1]].toUpperCase(Locale.ROOT).replace('-', '_')),
+						Integer.parseInt(fields[columns[2]]), Long.parseLong(fields[columns[3]]),
+						Long.parseLong(fields[columns[4]]), Integer.parseInt(fields[columns[5]]),
+						millis(fields[columns[6]]), millis(fields[columns[7]]), Long.parseLong(fields[columns[8]]),
+						millis(fields[columns[9]]),
+						sequentialColumn >= 0 && Boolean.parseBoolean(fields[sequentialColumn])));
+			} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException("Invalid line " + (i + 1) + " in scaling report " + file + ": " + lines.get(i),
+						e);
+			}
+		}
+		return measurements;
+	}
+
+	/**
+	 * Writes a self-contained HTML page with a chart of the strong scaling and a table of the measurements of every
+	 * algorithm, preceded by the regressions. Sequential jobs are left out of the chart.
+	 *
+	 * @param description a line describing the machine and the settings of the suite
+	 * @param regressions the regressions against the baseline, or null if there is no baseline
+	 */
+	public void writeHtml(Path file, String description, List<Regression> regressions) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Scaling report</title>\n");
+			writer.write("<style>\nbody { font-family: sans-serif; margin: 2em; }\n" +
+					"table { border-collapse: collapse; margin-bottom: 2em; }\n" +
+					"th, td { border: 1px solid #ccc; padding: 0.2em 0.6em; text-align: right; }\n" +
+					"th { background: #eee; }\ntr.regression td { background: #fdd; }\n" +
+					"p.ok { color: #070; }\np.regressions { color: #a00; font-weight: bold; }\n" +
+					"svg text { font-size: 11px; }\n</style>\n</head>\n<body>\n");
+			writer.write("<h1>Scaling report</h1>\n<p>" + escape(description) + "</p>\n");
+
+			if (regressions != null) {
+				writer.write("<h2>Regressions</h2>\n");
+				if (regressions.isEmpty()) {
+					writer.write("<p class=\"ok\">No regressions against the baseline.</p>\n");
+				} else {
+					writer.write("<p class=\"regressions\">" + regressions.size() +
+							" regressions against the baseline.</p>\n<table>\n<tr><th>Measurement</th><th>Metric</th>" +
+							"<th>Baseline</th><th>Value</th><th>Change</th></tr>\n");
+					for (Regression regression : regressions) {
+						boolean bytes = regression.getMetric().equals("peak RSS");
+						writer.write("<tr class=\"regression\"><td>" + escape(regression.getMeasurement().toString()) +
+								"</td><td>" + escape(regression.getMetric()) + "</td><td>" +
+								formatMetric(regression.getBaselineValue(), bytes) + "</td><td>" +
+								formatMetric(regression.getValue(), bytes) + "</td><td>" +
+								String.format(Locale.ROOT, "%+.0f%%",
+										(regression.getValue() / regression.getBaselineValue() - 1.0) * 100.0) +
+								"</td></tr>\n");
+					}
+					writer.write("</table>\n");
+				}
+			}
+
+			for (Algorithm algorithm : Algorithm.values()) {
+				List<Measurement> algorithmMeasurements = new ArrayList<>();
+				List<Measurement> parallelMeasurements = new ArrayList<>();
+				List<String> sequentialRepresentations = new ArrayList<>();
+				for (Measurement m : measurements) {
+					if (m.getAlgorithm() != algorithm) {
+						continue;
+					}
+					algorithmMeasurements.add(m);
+					if (!m.isSequential()) {
+						parallelMeasurements.add(m);
+					} else if (!sequentialRepresentations.contains(name(m.getRepresentation()))) {
+						sequentialRepresentations.add(name(m.getRepresentation()));
+					}
+				}
+				if (!algorithmMeasurements.isEmpty()) {
+					writer.write("<h2>" + algorithm + "</h2>\n");
+					if (!parallelMeasurements.isEmpty()) {
+						writeChart(writer, parallelMeasurements);
+					}
+					if (!sequentialRepresentations.isEmpty()) {
+						writer.write("<p>Sequential in " + join(sequentialRepresentations, ", ") +
+								": measured with one thread only.</p>\n");
+					}
+					writeTable(writer, algorithmMeasurements, regressions);
+				}
+			}
+			writer.write("</body>\n</html>\n");
+		}
+	}
+
+	/**
+	 * Draws the speedup of every series against the number of threads, on a logarithmic thread axis, together with
+	 * the ideal speedup.
+	 */
+	private void writeChart(Writer writer, List<Measurement> algorithmMeasurements) throws IOException {
+		final int width = 640;
+		final int height = 320;
+		final int left = 50;
+		final int right = 220;
+		final int top = 20;
+		final int bottom = 40;
+		int minThreads = Integer.MAX_VALUE;
+		int maxThreads = 0;
+		double maxSpeedup = 1.0;
+		List<Measurement> series = new ArrayList<>();
+		for (Measurement m : algorithmMeasurements) {
+			minThreads = Math.min(minThreads, m.getNumberOfThreads());
+			maxThreads = Math.max(maxThreads, m.getNumberOfThreads());
+			maxSpeedup = Math.max(maxSpeedup, getSpeedup(m));
+			boolean seen = false;
+			for (Measurement first : series) {
+				seen |= first.isSeriesOf(m);
+			}
+			if (!seen) {
+				series.add(m);
+			}
+		}
+		maxSpeedup = Math.max(maxSpeedup, (double)maxThreads / minThreads);
+		double xRange = Math.max(1e-9, Math.log((double)maxThreads / minThreads));
+		int plotWidth = width - left - right;
+		int plotHeight = height - top - bottom;
+
+		writer.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width + "\" height=\"" + height + "\">\n");
+		writer.write(String.format(Locale.ROOT, "<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\" fill=\"none\" " +
+				"stroke=\"#999\"/>\n", left, top, plotWidth, plotHeight));
+		writer.write(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" text-anchor=\"middle\">threads</text>\n",
+				left + plotWidth / 2, height - 5));
+		writer.write(String.format(Locale.ROOT, "<text x=\"12\" y=\"%d\" transform=\"rotate(-90 12 %d)\" " +
+				"text-anchor=\"middle\">speedup</text>\n", top + plotHeight / 2, top + plotHeight / 2));
+		writer.write(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" text-anchor=\"end\">%.1f</text>\n",
+				left - 4, top + 10, maxSpeedup));
+		writer.write(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\" text-anchor=\"end\">0</text>\n",
+				left - 4, top + plotHeight));
+
+		List<Integer> threadCounts = new ArrayList<>();
+		for (Measurement m : algorithmMeasurements) {
+			if (!threadCounts.contains(m.getNumberOfThreads())) {
+				threadCounts.add(m.getNumberOfThreads());
+			}
+		}
+		for (int threads : threadCounts) {
+			writer.write(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\" text-anchor=\"middle\">%d</text>\n",
+					x(threads, minThreads, xRange, left, plotWidth), top + plotHeight + 15, threads));
+		}
+
+		// The ideal speedup, proportional to the number of threads
+		writer.write(String.format(Locale.ROOT, "<line x1=\"%.1f\" y1=\"%.1f\" x2=\"%.1f\" y2=\"%.1f\" " +
+						"stroke=\"#bbb\" stroke-dasharray=\"4 4\"/>\n",
+				x(minThreads, minThreads, xRange, left, plotWidth), y(1.0, maxSpeedup, top, plotHeight),
+				x(maxThreads, minThreads, xRange, left, plotWidth),
+				y((double)maxThreads / minThreads, maxSpeedup, top, plotHeight)));
+
+		for (int s = 0; s < series.size(); s++) {
+			String colour = CHART_COLOURS[s % CHART_COLOURS.length];
+			List<Measurement> points = new ArrayList<>();
+			for (Measurement m : algorithmMeasurements) {
+				if (m.isSeriesOf(series.get(s))) {
+					points.add(m);
+				}
+			}
+			Collections.sort(points, new Comparator<Measurement>() {
+				@Override
+				public int compare(Measurement a, Measurement b) {
+					return Integer.compare(a.getNumberOfThreads(), b.getNumberOfThreads());
+				}
+			});
+			StringBuilder polyline = new StringBuilder();
+			for (Measurement m : points) {
+				polyline.append(String.format(Locale.ROOT, "%.1f,%.1f ",
+						x(m.getNumberOfThreads(), minThreads, xRange, left, plotWidth),
+						y(getSpeedup(m), maxSpeedup, top, plotHeight)));
+			}
+			writer.write("<polyline fill=\"none\" stroke=\"" + colour + "\" stroke-width=\"2\" points=\"" +
+					polyline.toString().trim() + "\"/>\n");
+			writer.write(String.format(Locale.ROOT, "<rect x=\"%d\" y=\"%d\" width=\"10\" height=\"10\" " +
+					"fill=\"%s\"/>\n", width - right + 15, top + 16 * s, colour));
+			writer.write(String.format(Locale.ROOT, "<text x=\"%d\" y=\"%d\">%s, scale %d</text>\n",
+					width - right + 30, top + 16 * s + 9, name(series.get(s).getRepresentation()),
+					series.get(s).getScale()));
+		}
+		writer.write("</svg>\n");
+	}
+
+	private static double x(int threads, int minThreads, double xRange, int left, int plotWidth) {
+		return left + plotWidth * Math.log((double)threads / minThreads) / xRange;
+	}
+
+	private static double y(double speedup, double maxSpeedup, int top, int plotHeight) {
+		return top + plotHeight * (1.0 - speedup / maxSpeedup);
+	}
+
+	private void writeTable(Writer writer, List<Measurement> algorithmMeasurements, List<Regression> regressions)
+			throws IOException {
+		writer.write("<table>\n<tr><th>Representation</th><th>Scale</th><th>Vertices</th><th>Edges</th>" +
+				"<th>Threads</th><th>Load (s)</th><th>Processing (s)</th><th>EVPS</th><th>Speedup</th>" +
+				"<th>Efficiency</th><th>Weak efficiency</th><th>Peak RSS</th><th>GC (s)</th><th>Regressions</th>" +
+				"</tr>\n");
+		for (Measurement m : algorithmMeasurements) {
+			List<String> regressed = describe(m, regressions);
+			writer.write((regressed.isEmpty() ? "<tr>" : "<tr class=\"regression\">") +
+					"<td>" + name(m.getRepresentation()) + "</td><td>" + m.getScale() + "</td><td>" +
+					m.getNumberOfVertices() + "</td><td>" + m.getNumberOfEdges() + "</td><td>" +
+					m.getNumberOfThreads() + (m.isSequential() ? " (sequential)" : "") + "</td><td>" +
+					seconds(m.getLoadMillis()) + "</td><td>" +
+					seconds(m.getProcessingMillis()) + "</td><td>" +
+					String.format(Locale.ROOT, "%.3g", m.getEvps()) + "</td><td>" + ratio(getSpeedup(m)) +
+					"</td><td>" + ratio(getEfficiency(m)) + "</td><td>" + ratio(getWeakScalingEfficiency(m)) +
+					"</td><td>" + formatMetric(m.getPeakRssBytes(), true) + "</td><td>" +
+					seconds(m.getGcMillis()) + "</td><td>" + escape(join(regressed, "; ")) + "</td></tr>\n");
+		}
+		writer.write("</table>\n");
+	}
+
+	private static List<String> describe(Measurement measurement, List<Regression> regressions) {
+		List<String> descriptions = new ArrayList<>();
+		if (regressions != null) {
+			for (Regression regression : regressions) {
+				if (regression.getMeasurement() == measurement) {
+					descriptions.add(regression.getDescription());
+				}
+			}
+		}
+		return descriptions;
+	}
+
+	private static String formatMetric(double value, boolean bytes) {
+		if (bytes) {
+			return value < 0 ? "n/a" : MemoryEstimator.formatBytes((long)value);
+		}
+		return seconds((long)value) + " s";
+	}
+
+	private static String name(Representation representation) {
+		return representation.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+
+	private static String seconds(long millis) {
+		return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+	}
+
+	private static long millis(String seconds) {
+		return new BigDecimal(seconds).movePointRight(3).longValue();
+	}
+
+	private static String ratio(double value) {
+		return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.2f", value);
+	}
+
+	private static String join(List<String> values, String separator) {
+		StringBuilder joined = new StringBuilder();
+		for (String value : values) {
+			if (joined.length() > 0) {
+				joined.append(separator);
+			}
+			joined.append(value);
+		}
+		return joined.toString();
+	}
+
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+}
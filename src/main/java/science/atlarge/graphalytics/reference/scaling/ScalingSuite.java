@@ -0,0 +1,521 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.scaling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
+import science.atlarge.graphalytics.reference.algorithms.bfs.BreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.bfs.SemiExternalBreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.CommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.SemiExternalCommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.SemiExternalPageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.sssp.SingleSourceShortestPathJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.SemiExternalWeaklyConnectedComponentsJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.WeaklyConnectedComponentsJob;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraphLoader;
+import science.atlarge.graphalytics.reference.graph.GraphStatistics;
+import science.atlarge.graphalytics.reference.graph.MemoryEstimator;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraphLoader;
+import science.atlarge.graphalytics.reference.scaling.SyntheticGraphGenerator.SyntheticGraph;
+import science.atlarge.graphalytics.reference.util.FloatingPointMode;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+
+/**
+ * Measures how the jobs scale with the number of threads and the size of the graph. For every algorithm, the suite
+ * sweeps the representations of the graph, the scales of synthetic graphs generated by
+ * {@link SyntheticGraphGenerator}, and the numbers of threads, and measures the load time, processing time, EVPS,
+ * peak RSS and GC time of every configuration, in the way the platform runs the job: loading includes building the
+ * incoming edges and selecting variants, and processing includes building the output. Every configuration is repeated
+ * and the median is reported, to dampen the effect of JIT compilation and noise. Jobs that run sequentially, i.e.,
+ * the in-memory CDLP and WCC jobs and all semi-external jobs, are only measured with one thread, as more threads
+ * would only add noise to their processing time.
+ * <p>
+ * The suite writes scaling.csv and a self-contained scaling.html to its directory, and flags regressions against a
+ * baseline, e.g., the scaling.csv of an earlier run on the same machine. The default scales grow by one with every
+ * doubling of the threads, so the measurements cover both strong scaling (a fixed scale with more threads) and weak
+ * scaling (a scale that grows with the threads).
+ * <p>
+ * PageRank runs in the fast floating-point mode by default. Running the suite once in every mode, with the report of
+ * the fast mode as the baseline of the deterministic mode and a tolerance of 0, reports the overhead of deterministic
+ * summation for every thread count.
+ */
+public class ScalingSuite {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	public static final int DEFAULT_MIN_SCALE = 14;
+	public static final int DEFAULT_REPETITIONS = 3;
+	public static final double DEFAULT_TOLERANCE = 0.1;
+	private static final int CDLP_ITERATIONS = 10;
+	private static final int PR_ITERATIONS = 10;
+	private static final float PR_DAMPING_FACTOR = 0.85f;
+	private static final int SEMI_EXTERNAL_BLOCK_BYTES = 16 << 20;
+
+	private final Path directory;
+	private List<Algorithm> algorithms = Arrays.asList(Algorithm.values());
+	private List<Representation> representations = Arrays.asList(Representation.values());
+	private int[] threadCounts = defaultThreadCounts(Runtime.getRuntime().availableProcessors());
+	private int[] scales = defaultScales(DEFAULT_MIN_SCALE, threadCounts);
+	private int edgeFactor = SyntheticGraphGenerator.DEFAULT_EDGE_FACTOR;
+	private boolean directed = true;
+	private int repetitions = DEFAULT_REPETITIONS;
+	private FloatingPointMode floatingPointMode = FloatingPointMode.FAST;
+
+	/**
+	 * @param directory the directory in which graphs are generated and the report is written
+	 */
+	public ScalingSuite(Path directory) {
+		this.directory = directory;
+	}
+
+	public void setAlgorithms(List<Algorithm> algorithms) {
+		this.algorithms = algorithms;
+	}
+
+	public void setRepresentations(List<Representation> representations) {
+		this.representations = representations;
+	}
+
+	public void setThreadCounts(int[] threadCounts) {
+		this.threadCounts = threadCounts;
+	}
+
+	public void setScales(int[] scales) {
+		this.scales = scales;
+	}
+
+	public void setEdgeFactor(int edgeFactor) {
+		this.edgeFactor = edgeFactor;
+	}
+
+	public void setDirected(boolean directed) {
+		this.directed = directed;
+	}
+
+	/**
+	 * @param floatingPointMode the floating-point mode in which PageRank runs in memory
+	 */
+	public void setFloatingPointMode(FloatingPointMode floatingPointMode) {
+		this.floatingPointMode = floatingPointMode;
+	}
+
+	public void setRepetitions(int repetitions) {
+		if (repetitions < 1) {
+			throw new IllegalArgumentException("Invalid number of repetitions: " + repetitions);
+		}
+		this.repetitions = repetitions;
+	}
+
+	/**
+	 * @return 1, 2, 4, ... up to and including the number of processors
+	 */
+	static int[] defaultThreadCounts(int numProcessors) {
+		List<Integer> counts = new ArrayList<>();
+		for (int threads = 1; threads < numProcessors; threads *= 2) {
+			counts.add(threads);
+		}
+		counts.add(numProcessors);
+		return toIntArray(counts);
+	}
+
+	/**
+	 * @return the minimum scale plus one for every doubling of the number of threads
+	 */
+	static int[] defaultScales(int minScale, int[] threadCounts) {
+		int maxThreads = 1;
+		for (int threads : threadCounts) {
+			maxThreads = Math.max(maxThreads, threads);
+		}
+		int[] scales = new int[32 - Integer.numberOfLeadingZeros(maxThreads - 1) + 1];
+		for (int i = 0; i < scales.length; i++) {
+			scales[i] = minScale + i;
+		}
+		return scales;
+	}
+
+	/**
+	 * Runs every configuration that the representation supports. Configurations that run out of memory are logged and
+	 * left out of the results.
+	 */
+	public List<Measurement> run() throws IOException {
+		SyntheticGraphGenerator generator = new SyntheticGraphGenerator(edgeFactor, directed,
+				SyntheticGraphGenerator.DEFAULT_SEED, Runtime.getRuntime().availableProcessors());
+		List<Measurement> measurements = new ArrayList<>();
+		for (int scale : scales) {
+			SyntheticGraph graph = generator.generate(scale, directory.resolve("graphs"));
+			for (Algorithm algorithm : algorithms) {
+				for (Representation representation : representations) {
+					if (!representation.supports(algorithm, directed)) {
+						continue;
+					}
+					boolean sequential = isSequential(algorithm, representation);
+					for (int threads : sequential ? new int[] {1} : threadCounts) {
+						try {
+							Measurement measurement = measure(graph, algorithm, representation, threads);
+							LOG.info(String.format(Locale.ROOT, "%s: load %.3f s, processing %.3f s, %.3g EVPS, " +
+											"peak RSS %s, GC %.3f s.", measurement,
+									measurement.getLoadMillis() / 1000.0, measurement.getProcessingMillis() / 1000.0,
+									measurement.getEvps(), measurement.getPeakRssBytes() < 0 ? "n/a" :
+											MemoryEstimator.formatBytes(measurement.getPeakRssBytes()),
+									measurement.getGcMillis() / 1000.0));
+							measurements.add(measurement);
+						} catch (OutOfMemoryError e) {
+							LOG.error("Out of memory running " + algorithm + " on " + graph.getName() + " with " +
+									threads + " threads, skipping the configuration.");
+						}
+					}
+				}
+			}
+		}
+		return measurements;
+	}
+
+	/**
+	 * @return true if the job of the algorithm in the representation does not use the threads it is given
+	 */
+	static boolean isSequential(Algorithm algorithm, Representation representation) {
+		return representation == Representation.SEMI_EXTERNAL || algorithm == Algorithm.CDLP ||
+				algorithm == Algorithm.WCC;
+	}
+
+	/**
+	 * Loads and processes the graph the configured number of times, after an untimed garbage collection.
+	 */
+	Measurement measure(SyntheticGraph graph, Algorithm algorithm, Representation representation, int threads)
+			throws IOException {
+		long[] loadMillis = new long[repetitions];
+		long[] processingMillis = new long[repetitions];
+		long[] gcMillis = new long[repetitions];
+		long peakRssBytes = 0;
+		long[] size = new long[2];
+		for (int r = 0; r < repetitions; r++) {
+			System.gc();
+			boolean rssReset = ResourceUsage.resetPeakRss();
+			long gcStart = ResourceUsage.getGcMillis();
+			long[] times = runOnce(graph, algorithm, representation, threads, size);
+			loadMillis[r] = TimeUnit.NANOSECONDS.toMillis(times[0]);
+			processingMillis[r] = TimeUnit.NANOSECONDS.toMillis(times[1]);
+			gcMillis[r] = ResourceUsage.getGcMillis() - gcStart;
+			long peakRss = rssReset ? ResourceUsage.getPeakRssBytes() : -1;
+			peakRssBytes = peakRss < 0 || peakRssBytes < 0 ? -1 : Math.max(peakRssBytes, peakRss);
+		}
+		return new Measurement(algorithm, representation, graph.getScale(), size[0], size[1], threads,
+				median(loadMillis), median(processingMillis), peakRssBytes, median(gcMillis),
+				isSequential(algorithm, representation));
+	}
+
+	/**
+	 * @param size set to the number of vertices and edges of the graph
+	 * @return the load time and processing time, in nanoseconds
+	 */
+	private long[] runOnce(SyntheticGraph graph, Algorithm algorithm, Representation representation, int threads,
+			long[] size) throws IOException {
+		String vertexFile = graph.getVertexFile().toString();
+		String edgeFile = graph.getEdgeFile().toString();
+		long start = System.nanoTime();
+		if (representation == Representation.SEMI_EXTERNAL) {
+			SemiExternalGraphLoader loader = new SemiExternalGraphLoader(directory.resolve("edges"),
+					SEMI_EXTERNAL_BLOCK_BYTES, Runtime.getRuntime().maxMemory() / 4);
+			try (SemiExternalGraph semiExternalGraph = loader.load(graph.getName(), vertexFile, edgeFile, directed)) {
+				if (algorithm == Algorithm.CDLP) {
+					semiExternalGraph.buildNeighbourLists();
+				}
+				long loaded = System.nanoTime();
+				runSemiExternal(semiExternalGraph, algorithm, graph.getSourceVertex());
+				size[0] = semiExternalGraph.getNumberOfVertices();
+				size[1] = semiExternalGraph.getNumberOfEdges();
+				return new long[] {loaded - start, System.nanoTime() - loaded};
+			}
+		}
+
+		CsrGraphLoader loader = new CsrGraphLoader(threads);
+		loader.setIncomingEdgesAllowed(representation != Representation.OUTGOING_ONLY);
+		CsrGraph csrGraph = loader.load(vertexFile, edgeFile, directed, algorithm == Algorithm.SSSP);
+		try (ParallelExecutor executor = new ParallelExecutor(threads)) {
+			Runnable job = prepareInMemory(csrGraph, algorithm, graph.getSourceVertex(), executor, floatingPointMode);
+			long loaded = System.nanoTime();
+			job.run();
+			size[0] = csrGraph.getNumberOfVertices();
+			// Undirected edges are stored in both directions
+			size[1] = directed ? csrGraph.getNumberOfEdges() : csrGraph.getNumberOfEdges() / 2;
+			return new long[] {loaded - start, System.nanoTime() - loaded};
+		}
+	}
+
+	/**
+	 * Selects the variant of the job and builds the incoming edges it needs, which are part of loading the graph.
+	 *
+	 * @return the job, which discards its output
+	 */
+	private static Runnable prepareInMemory(final CsrGraph graph, Algorithm algorithm, long sourceVertex,
+			final ParallelExecutor executor, final FloatingPointMode floatingPointMode) {
+		final GraphStatistics statistics = algorithm == Algorithm.BFS || algorithm == Algorithm.LCC ||
+				algorithm == Algorithm.SSSP ? GraphStatistics.compute(graph) : null;
+		switch (algorithm) {
+			case BFS:
+				final BreadthFirstSearchParameters bfsParameters = new BreadthFirstSearchParameters(sourceVertex);
+				final BreadthFirstSearchJob.Variant bfsVariant = BreadthFirstSearchJob.selectVariant(statistics,
+						graph.supportsIncomingEdges());
+				if (bfsVariant == BreadthFirstSearchJob.Variant.DIRECTION_OPTIMIZING) {
+					graph.buildIncomingEdges();
+				}
+				return new Runnable() {
+					@Override
+					public void run() {
+						new BreadthFirstSearchJob(graph, bfsParameters, executor, bfsVariant).run();
+					}
+				};
+			case CDLP:
+				graph.buildIncomingEdges();
+				return new Runnable() {
+					@Override
+					public void run() {
+						new CommunityDetectionLPJob(graph, new CommunityDetectionLPParameters(CDLP_ITERATIONS)).run();
+					}
+				};
+			case WCC:
+				if (graph.supportsIncomingEdges()) {
+					graph.buildIncomingEdges();
+				}
+				return new Runnable() {
+					@Override
+					public void run() {
+						new WeaklyConnectedComponentsJob(graph).run();
+					}
+				};
+			case PR:
+				if (graph.supportsIncomingEdges()) {
+					graph.buildIncomingEdges();
+				}
+				return new Runnable() {
+					@Override
+					public void run() {
+						new PageRankJob(graph, new PageRankParameters(PR_DAMPING_FACTOR, PR_ITERATIONS), executor,
+								floatingPointMode).run();
+					}
+				};
+			case LCC:
+				graph.buildIncomingEdges();
+				final LocalClusteringCoefficientJob.Variant lccVariant =
+						LocalClusteringCoefficientJob.selectVariant(statistics);
+				return new Runnable() {
+					@Override
+					public void run() {
+						new LocalClusteringCoefficientJob(graph, executor, lccVariant).run();
+					}
+				};
+			case SSSP:
+				final SingleSourceShortestPathsParameters ssspParameters =
+						new SingleSourceShortestPathsParameters(sourceVertex);
+				final SingleSourceShortestPathJob.Variant ssspVariant =
+						SingleSourceShortestPathJob.selectVariant(statistics, executor.getNumThreads());
+				final double delta = SingleSourceShortestPathJob.selectDelta(statistics);
+				return new Runnable() {
+					@Override
+					public void run() {
+						new SingleSourceShortestPathJob(graph, ssspParameters, executor, ssspVariant, delta).run();
+					}
+				};
+			default:
+				throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+		}
+	}
+
+	private static void runSemiExternal(SemiExternalGraph graph, Algorithm algorithm, long sourceVertex)
+			throws IOException {
+		switch (algorithm) {
+			case BFS:
+				new SemiExternalBreadthFirstSearchJob(graph, new BreadthFirstSearchParameters(sourceVertex)).run();
+				break;
+			case CDLP:
+				new SemiExternalCommunityDetectionLPJob(graph,
+						new CommunityDetectionLPParameters(CDLP_ITERATIONS)).run();
+				break;
+			case WCC:
+				new SemiExternalWeaklyConnectedComponentsJob(graph).run();
+				break;
+			case PR:
+				new SemiExternalPageRankJob(graph, new PageRankParameters(PR_DAMPING_FACTOR, PR_ITERATIONS)).run();
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported algorithm in semi-external mode: " + algorithm);
+		}
+	}
+
+	/**
+	 * @return a line describing the machine and the settings of the suite, for the report
+	 */
+	String describe() {
+		return String.format(Locale.ROOT, "Generated %s on %d processors with Java %s and a maximum heap of %s. " +
+						"R-MAT graphs with edge factor %d, %s; median of %d repetitions per configuration; PageRank " +
+						"in %s floating-point mode.",
+				new Date(), Runtime.getRuntime().availableProcessors(), System.getProperty("java.version"),
+				MemoryEstimator.formatBytes(Runtime.getRuntime().maxMemory()), edgeFactor,
+				directed ? "directed" : "undirected", repetitions,
+				floatingPointMode.name().toLowerCase(Locale.ROOT));
+	}
+
+	private static long median(long[] values) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	private static int[] toIntArray(List<Integer> values) {
+		int[] array = new int[values.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values.get(i);
+		}
+		return array;
+	}
+
+	private static int[] parseInts(String value) {
+		List<Integer> values = new ArrayList<>();
+		for (String field : value.split(",")) {
+			values.add(Integer.parseInt(field.trim()));
+		}
+		return toIntArray(values);
+	}
+
+	private static void usage() {
+		System.err.println("Usage: " + ScalingSuite.class.getName() + " <directory> [options]\n" +
+				"  --algorithms BFS,CDLP,...     algorithms to run (default: all)\n" +
+				"  --representations a,b,...     in-memory, outgoing-only, semi-external (default: all)\n" +
+				"  --threads 1,2,4,...           thread counts (default: powers of two up to the processors)\n" +
+				"  --scales 14,15,...            graph scales, 2^scale vertices (default: " + DEFAULT_MIN_SCALE +
+				" plus one per doubling of the threads)\n" +
+				"  --edge-factor N               edges per vertex (default: " +
+				SyntheticGraphGenerator.DEFAULT_EDGE_FACTOR + ")\n" +
+				"  --undirected                  generate undirected graphs\n" +
+				"  --repetitions N               repetitions per configuration (default: " + DEFAULT_REPETITIONS +
+				")\n" +
+				"  --floating-point-mode M       fast or deterministic, for PageRank (default: fast)\n" +
+				"  --baseline FILE               scaling.csv of an earlier run to compare with\n" +
+				"  --tolerance T                 relative slowdown flagged as a regression (default: " +
+				DEFAULT_TOLERANCE + ")");
+		System.exit(2);
+	}
+
+	/**
+	 * Runs the suite from the command line, exiting with status 1 if a regression against the baseline is found.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args[0].startsWith("--")) {
+			usage();
+		}
+		Path directory = Paths.get(args[0]);
+		ScalingSuite suite = new ScalingSuite(directory);
+		Path baselineFile = null;
+		double tolerance = DEFAULT_TOLERANCE;
+		boolean scalesSet = false;
+		try {
+			for (int i = 1; i < args.length; i++) {
+				String option = args[i];
+				if (option.equals("--undirected")) {
+					suite.setDirected(false);
+					continue;
+				}
+				if (i + 1 == args.length) {
+					usage();
+				}
+				String value = args[++i];
+				switch (option) {
+					case "--algorithms":
+						List<Algorithm> algorithms = new ArrayList<>();
+						for (String name : value.split(",")) {
+							algorithms.add(Algorithm.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+						}
+						suite.setAlgorithms(algorithms);
+						break;
+					case "--representations":
+						List<Representation> representations = new ArrayList<>();
+						for (String name : value.split(",")) {
+							representations.add(Representation.valueOf(
+									name.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+						}
+						suite.setRepresentations(representations);
+						break;
+					case "--threads":
+						suite.setThreadCounts(parseInts(value));
+						break;
+					case "--scales":
+						suite.setScales(parseInts(value));
+						scalesSet = true;
+						break;
+					case "--edge-factor":
+						suite.setEdgeFactor(Integer.parseInt(value));
+						break;
+					case "--repetitions":
+						suite.setRepetitions(Integer.parseInt(value));
+						break;
+					case "--floating-point-mode":
+						suite.setFloatingPointMode(FloatingPointMode.valueOf(value.trim().toUpperCase(Locale.ROOT)));
+						break;
+					case "--baseline":
+						baselineFile = Paths.get(value);
+						break;
+					case "--tolerance":
+						tolerance = Double.parseDouble(value);
+						break;
+					default:
+						usage();
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+		}
+		if (!scalesSet) {
+			suite.setScales(defaultScales(DEFAULT_MIN_SCALE, suite.threadCounts));
+		}
+
+		ScalingReport report = new ScalingReport(suite.run());
+		List<ScalingReport.Regression> regressions = null;
+		if (baselineFile != null) {
+			regressions = report.compareWith(ScalingReport.readCsv(baselineFile), tolerance);
+			for (ScalingReport.Regression regression : regressions) {
+				LOG.warn("Regression: " + regression + ".");
+			}
+		}
+		Path csvFile = directory.resolve("scaling.csv");
+		Path htmlFile = directory.resolve("scaling.html");
+		report.writeCsv(csvFile, regressions);
+		report.writeHtml(htmlFile, suite.describe(), regressions);
+		LOG.info("Wrote " + csvFile + " and " + htmlFile + ".");
+		System.exit(regressions != null && !regressions.isEmpty() ? 1 : 0);
+	}
+
+}
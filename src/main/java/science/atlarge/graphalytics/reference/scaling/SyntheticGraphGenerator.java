@@ -0,0 +1,250 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.scaling;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+import science.atlarge.graphalytics.reference.util.SplitMixRandom;
+
+/**
+ * Generates R-MAT graphs in the Graphalytics vertex/edge file format, so that the scaling suite can measure loading
+ * and processing on graphs of any size without downloading datasets. A graph of scale s has 2^s vertices and
+ * edgeFactor * 2^s generated edges, of which self-loops and duplicates are removed. Every edge is placed by
+ * recursively choosing a quadrant of the adjacency matrix with the probabilities of Graph500 (0.57, 0.19, 0.19,
+ * 0.05), which gives a skewed degree distribution; the vertex numbers are then scrambled so that high-degree vertices
+ * are not clustered at low IDs. Edges carry weights in (0, 1], so every graph can also be used for SSSP.
+ * <p>
+ * Edges are drawn from a random stream per block of edges, so a graph only depends on its scale, edge factor,
+ * directedness and seed. Generated files are kept and reused by later runs.
+ */
+public class SyntheticGraphGenerator {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	public static final int DEFAULT_EDGE_FACTOR = 16;
+	public static final long DEFAULT_SEED = 0x52A1L;
+	private static final double A = 0.57;
+	private static final double B = 0.19;
+	private static final double C = 0.19;
+	private static final int MAX_SCALE = 30;
+	private static final int EDGES_PER_BLOCK = 1 << 16;
+	private static final int WEIGHT_STEPS = 1024;
+
+	private final int edgeFactor;
+	private final boolean directed;
+	private final long seed;
+	private final int numThreads;
+
+	public SyntheticGraphGenerator(int edgeFactor, boolean directed, long seed, int numThreads) {
+		if (edgeFactor < 1) {
+			throw new IllegalArgumentException("Invalid edge factor: " + edgeFactor);
+		}
+		this.edgeFactor = edgeFactor;
+		this.directed = directed;
+		this.seed = seed;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * A generated graph and its files.
+	 */
+	public static final class SyntheticGraph {
+
+		private final String name;
+		private final int scale;
+		private final boolean directed;
+		private final Path vertexFile;
+		private final Path edgeFile;
+		private final long sourceVertex;
+
+		SyntheticGraph(String name, int scale, boolean directed, Path vertexFile, Path edgeFile, long sourceVertex) {
+			this.name = name;
+			this.scale = scale;
+			this.directed = directed;
+			this.vertexFile = vertexFile;
+			this.edgeFile = edgeFile;
+			this.sourceVertex = sourceVertex;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getScale() {
+			return scale;
+		}
+
+		public boolean isDirected() {
+			return directed;
+		}
+
+		public Path getVertexFile() {
+			return vertexFile;
+		}
+
+		public Path getEdgeFile() {
+			return edgeFile;
+		}
+
+		/**
+		 * @return the ID of the vertex with the highest expected degree, i.e., the first vertex of the adjacency
+		 * matrix before scrambling, which is used as the source of BFS and SSSP
+		 */
+		public long getSourceVertex() {
+			return sourceVertex;
+		}
+
+	}
+
+	/**
+	 * Generates the graph of the given scale in a directory, unless it has been generated before.
+	 */
+	public SyntheticGraph generate(int scale, Path directory) throws IOException {
+		if (scale < 1 || scale > MAX_SCALE) {
+			throw new IllegalArgumentException("Invalid scale: " + scale);
+		}
+		String name = String.format(Locale.ROOT, "rmat-%d-%d-%s-%x", scale, edgeFactor, directed ? "d" : "u", seed);
+		SyntheticGraph graph = new SyntheticGraph(name, scale, directed, directory.resolve(name + ".v"),
+				directory.resolve(name + ".e"), scramble(0, scale));
+		if (Files.exists(graph.getVertexFile()) && Files.exists(graph.getEdgeFile())) {
+			LOG.info("Using previously generated graph " + name + ".");
+			return graph;
+		}
+
+		long startTime = System.currentTimeMillis();
+		long[] edges = generateEdges(scale);
+		Files.createDirectories(directory);
+		writeVertices(graph.getVertexFile(), 1 << scale);
+		writeEdges(graph.getEdgeFile(), edges);
+		LOG.info("Generated graph " + name + " with " + (1 << scale) + " vertices and " + edges.length +
+				" edges in " + (System.currentTimeMillis() - startTime) + " ms.");
+		return graph;
+	}
+
+	/**
+	 * @return the edges of the graph of the given scale, as source << 32 | destination, sorted and without
+	 * self-loops or duplicates; undirected edges are stored once, with the lower vertex as source
+	 */
+	long[] generateEdges(final int scale) {
+		final long numEdges = (long)edgeFactor << scale;
+		if (numEdges > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many edges for scale " + scale + ": " + numEdges);
+		}
+		final long[] edges = new long[(int)numEdges];
+		int numBlocks = (int)((numEdges + EDGES_PER_BLOCK - 1) / EDGES_PER_BLOCK);
+		try (ParallelExecutor executor = new ParallelExecutor(numThreads)) {
+			executor.forEach(numBlocks, new ParallelExecutor.RangeTask() {
+				@Override
+				public void run(int from, int to) {
+					for (int block = from; block < to; block++) {
+						SplitMixRandom random = new SplitMixRandom(seed, block);
+						int end = (int)Math.min(numEdges, (long)(block + 1) * EDGES_PER_BLOCK);
+						for (int i = block * EDGES_PER_BLOCK; i < end; i++) {
+							int source = 0;
+							int destination = 0;
+							for (int bit = 0; bit < scale; bit++) {
+								double p = random.nextDouble();
+								source = source << 1 | (p >= A + B ? 1 : 0);
+								destination = destination << 1 | (p >= A && p < A + B || p >= A + B + C ? 1 : 0);
+							}
+							source = scramble(source, scale);
+							destination = scramble(destination, scale);
+							if (!directed && source > destination) {
+								int swap = source;
+								source = destination;
+								destination = swap;
+							}
+							// Self-loops are marked for removal
+							edges[i] = source == destination ? -1L : (long)source << 32 | destination;
+						}
+					}
+				}
+			});
+		}
+
+		LongArrays.parallelRadixSort(edges);
+		int size = 0;
+		for (int i = 0; i < edges.length; i++) {
+			if (edges[i] >= 0 && (size == 0 || edges[i] != edges[size - 1])) {
+				edges[size++] = edges[i];
+			}
+		}
+		long[] unique = new long[size];
+		System.arraycopy(edges, 0, unique, 0, size);
+		return unique;
+	}
+
+	/**
+	 * @return the ID of a vertex of the adjacency matrix; an odd multiplier makes the mapping a bijection
+	 */
+	int scramble(int vertex, int scale) {
+		long multiplier = HashCommon.mix(seed) | 1L;
+		return (int)((vertex * multiplier + HashCommon.mix(~seed)) & ((1L << scale) - 1));
+	}
+
+	/**
+	 * @return the weight of an edge, derived from the edge so that it does not depend on the order of generation
+	 */
+	double weight(long edge) {
+		return (double)(1 + (HashCommon.mix(edge ^ seed) & (WEIGHT_STEPS - 1))) / WEIGHT_STEPS;
+	}
+
+	private static void writeVertices(Path file, int numVertices) throws IOException {
+		Path temporary = temporaryFile(file);
+		try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.US_ASCII)) {
+			for (int v = 0; v < numVertices; v++) {
+				writer.write(Integer.toString(v));
+				writer.newLine();
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void writeEdges(Path file, long[] edges) throws IOException {
+		Path temporary = temporaryFile(file);
+		try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.US_ASCII)) {
+			for (long edge : edges) {
+				writer.write(Long.toString(edge >>> 32));
+				writer.write(' ');
+				writer.write(Long.toString(edge & 0xFFFFFFFFL));
+				writer.write(' ');
+				writer.write(Double.toString(weight(edge)));
+				writer.newLine();
+			}
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Files are written under a temporary name, so an interrupted run does not leave a partial graph to be reused.
+	 */
+	private static Path temporaryFile(Path file) {
+		return file.resolveSibling(file.getFileName() + ".tmp");
+	}
+
+}
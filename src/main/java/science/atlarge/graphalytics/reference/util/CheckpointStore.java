@@ -0,0 +1,315 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Stores the state of an iterative job in a checkpoint file, so that the job can resume from the latest checkpoint
+ * after a crash. Checkpoints are written on a background thread through memory-mapped files, and replace the
+ * previous checkpoint atomically once they are complete. A checkpoint is identified by a fingerprint of the graph
+ * and the job parameters; checkpoints with a different fingerprint are ignored.
+ * <p>
+ * Checkpointing is best-effort: a checkpoint that cannot be written is logged and skipped.
+ */
+public class CheckpointStore implements AutoCloseable {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final long MAGIC = 0x47524150484b5054L;
+	private static final int VERSION = 1;
+	private static final int TYPE_DOUBLE = 1;
+	private static final int TYPE_LONG = 2;
+	private static final int HEADER_BYTES = 40;
+	private static final int ELEMENT_BYTES = 8;
+	/**
+	 * Number of elements mapped at once, as a single mapping is limited to 2 GiB.
+	 */
+	private static final int ELEMENTS_PER_MAPPING = 1 << 27;
+
+	private final Path file;
+	private final int interval;
+	private final ExecutorService executor;
+
+	private Future<?> pendingWrite;
+	private Object pendingArray;
+
+	private final AtomicLong writeTimeMillis = new AtomicLong();
+	private long waitTimeMillis;
+	private long restoreTimeMillis;
+	private int numberOfCheckpoints;
+
+	/**
+	 * @param directory the directory in which checkpoint files are stored
+	 * @param name      the name of the checkpoint, which must identify the graph and algorithm
+	 * @param interval  the number of iterations between checkpoints
+	 */
+	public CheckpointStore(Path directory, String name, int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Checkpoint interval must be positive: " + interval);
+		}
+		this.file = directory.resolve(name.replaceAll("[^A-Za-z0-9._-]", "_") + ".ckpt");
+		this.interval = interval;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "reference-checkpoint");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return a fingerprint of the given values, e.g., the size of a graph and the parameters of a job
+	 */
+	public static long fingerprint(long... values) {
+		long fingerprint = VERSION;
+		for (long value : values) {
+			fingerprint = HashCommon.mix(fingerprint * 31 + value);
+		}
+		return fingerprint;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true if a checkpoint must be taken after the given number of completed iterations
+	 */
+	public boolean isDue(int completedIterations, int totalIterations) {
+		return completedIterations % interval == 0 && completedIterations < totalIterations;
+	}
+
+	/**
+	 * Loads the latest checkpoint into the given array, if it matches the fingerprint and array.
+	 *
+	 * @return the number of completed iterations stored in the checkpoint, or 0 if there is no usable checkpoint
+	 */
+	public int restore(long fingerprint, double[] values) {
+		return restore(fingerprint, TYPE_DOUBLE, values, values.length);
+	}
+
+	/**
+	 * Loads the latest checkpoint into the given array, if it matches the fingerprint and array.
+	 *
+	 * @return the number of completed iterations stored in the checkpoint, or 0 if there is no usable checkpoint
+	 */
+	public int restore(long fingerprint, long[] values) {
+		return restore(fingerprint, TYPE_LONG, values, values.length);
+	}
+
+	/**
+	 * Starts writing a checkpoint in the background. The array must not be modified until
+	 * {@link #awaitWrite(Object)} has been called for it.
+	 */
+	public void save(long fingerprint, int completedIterations, double[] values) {
+		save(fingerprint, completedIterations, TYPE_DOUBLE, values, values.length);
+	}
+
+	/**
+	 * Starts writing a checkpoint in the background. The array must not be modified until
+	 * {@link #awaitWrite(Object)} has been called for it.
+	 */
+	public void save(long fingerprint, int completedIterations, long[] values) {
+		save(fingerprint, completedIterations, TYPE_LONG, values, values.length);
+	}
+
+	/**
+	 * Waits for the checkpoint that is being written from the given array, if any, so the array can be modified.
+	 */
+	public void awaitWrite(Object array) {
+		if (pendingWrite != null && pendingArray == array) {
+			awaitPendingWrite();
+		}
+	}
+
+	/**
+	 * Waits for pending writes and removes the checkpoint, e.g., because the job has completed.
+	 */
+	public void delete() {
+		awaitPendingWrite();
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOG.warn("Failed to delete checkpoint " + file, e);
+		}
+	}
+
+	/**
+	 * @return the number of checkpoints written
+	 */
+	public int getNumberOfCheckpoints() {
+		return numberOfCheckpoints;
+	}
+
+	/**
+	 * @return the time spent writing checkpoints in the background, in milliseconds
+	 */
+	public long getWriteTimeMillis() {
+		return writeTimeMillis.get();
+	}
+
+	/**
+	 * @return the time the job spent waiting for checkpoints to be written, in milliseconds
+	 */
+	public long getWaitTimeMillis() {
+		return waitTimeMillis;
+	}
+
+	/**
+	 * @return the time spent loading a checkpoint, in milliseconds
+	 */
+	public long getRestoreTimeMillis() {
+		return restoreTimeMillis;
+	}
+
+	private int restore(long fingerprint, int type, Object values, int length) {
+		if (!Files.exists(file)) {
+			return 0;
+		}
+		long startTime = System.currentTimeMillis();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() != HEADER_BYTES + (long)ELEMENT_BYTES * length) {
+				LOG.warn("Ignoring checkpoint " + file + ": it does not match the size of the graph");
+				return 0;
+			}
+			MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			if (header.getLong() != MAGIC || header.getInt() != VERSION || header.getInt() != type ||
+					header.getLong() != fingerprint || header.getLong() != length) {
+				LOG.warn("Ignoring checkpoint " + file + ": it was written for a different graph or job");
+				return 0;
+			}
+			int completedIterations = header.getInt();
+
+			for (int from = 0; from < length; from += ELEMENTS_PER_MAPPING) {
+				int count = Math.min(ELEMENTS_PER_MAPPING, length - from);
+				MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_ONLY,
+						HEADER_BYTES + (long)ELEMENT_BYTES * from, (long)ELEMENT_BYTES * count);
+				if (type == TYPE_DOUBLE) {
+					buffer.asDoubleBuffer().get((double[])values, from, count);
+				} else {
+					buffer.asLongBuffer().get((long[])values, from, count);
+				}
+			}
+			restoreTimeMillis += System.currentTimeMillis() - startTime;
+			LOG.info("Restored checkpoint " + file + " after iteration " + completedIterations + ".");
+			return completedIterations;
+		} catch (IOException e) {
+			LOG.warn("Ignoring checkpoint " + file + ": it could not be read", e);
+			return 0;
+		}
+	}
+
+	private void save(final long fingerprint, final int completedIterations, final int type, final Object values,
+			final int length) {
+		awaitPendingWrite();
+		pendingArray = values;
+		pendingWrite = executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				long startTime = System.currentTimeMillis();
+				write(fingerprint, completedIterations, type, values, length);
+				writeTimeMillis.addAndGet(System.currentTimeMillis() - startTime);
+				return null;
+			}
+		});
+	}
+
+	private void write(long fingerprint, int completedIterations, int type, Object values, int length)
+			throws IOException {
+		Files.createDirectories(file.getParent());
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			for (int from = 0; from < length; from += ELEMENTS_PER_MAPPING) {
+				int count = Math.min(ELEMENTS_PER_MAPPING, length - from);
+				MappedByteBuffer buffer = map(channel, FileChannel.MapMode.READ_WRITE,
+						HEADER_BYTES + (long)ELEMENT_BYTES * from, (long)ELEMENT_BYTES * count);
+				if (type == TYPE_DOUBLE) {
+					buffer.asDoubleBuffer().put((double[])values, from, count);
+				} else {
+					buffer.asLongBuffer().put((long[])values, from, count);
+				}
+				buffer.force();
+			}
+
+			MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			header.putLong(MAGIC).putInt(VERSION).putInt(type).putLong(fingerprint).putLong(length)
+					.putInt(completedIterations);
+			header.force();
+		}
+		// Replace the previous checkpoint only once the new one is complete
+		Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		LOG.debug("- Wrote checkpoint after iteration " + completedIterations);
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+			throws IOException {
+		MappedByteBuffer buffer = channel.map(mode, position, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		return buffer;
+	}
+
+	private void awaitPendingWrite() {
+		if (pendingWrite == null) {
+			return;
+		}
+		long startTime = System.currentTimeMillis();
+		try {
+			pendingWrite.get();
+			numberOfCheckpoints++;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for checkpoint", e);
+		} catch (ExecutionException e) {
+			LOG.warn("Failed to write checkpoint " + file, e.getCause());
+		} finally {
+			waitTimeMillis += System.currentTimeMillis() - startTime;
+			pendingWrite = null;
+			pendingArray = null;
+		}
+	}
+
+	/**
+	 * Stops the background thread. A checkpoint that is still being written is abandoned.
+	 */
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+}
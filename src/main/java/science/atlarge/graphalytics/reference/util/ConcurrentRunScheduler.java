@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes independent runs concurrently within a fixed budget of threads. The budget is split evenly over a number
+ * of slots, each of which takes the next run from the list as soon as its previous run completes, and executes it
+ * with a {@link ParallelExecutor} of its share of the threads. Runs are started in list order.
+ * <p>
+ * The processing time of a run is measured on the thread that executes it, from the moment the run is started until
+ * it returns, so it excludes the time spent waiting for a slot. It does include any slowdown caused by runs executing
+ * at the same time, e.g., by competing for memory bandwidth.
+ */
+public class ConcurrentRunScheduler {
+
+	/**
+	 * A run that can be executed by the scheduler.
+	 */
+	public interface Run<T> {
+
+		/**
+		 * @param executor the threads assigned to the run, which are shared with no other run while it executes
+		 */
+		T run(ParallelExecutor executor) throws Exception;
+
+	}
+
+	private final int threadBudget;
+	private final int maxConcurrentRuns;
+
+	/**
+	 * @param threadBudget      the total number of threads used by all runs together
+	 * @param maxConcurrentRuns the maximum number of runs executed at the same time, or 0 to execute as many runs as
+	 *                          the thread budget allows
+	 */
+	public ConcurrentRunScheduler(int threadBudget, int maxConcurrentRuns) {
+		if (threadBudget < 1 || maxConcurrentRuns < 0) {
+			throw new IllegalArgumentException("Invalid thread budget or number of concurrent runs: " + threadBudget +
+					", " + maxConcurrentRuns);
+		}
+		this.threadBudget = threadBudget;
+		this.maxConcurrentRuns = maxConcurrentRuns;
+	}
+
+	/**
+	 * @return the number of runs that are executed at the same time, i.e., the number of slots
+	 */
+	public int getNumberOfSlots(int numRuns) {
+		int slots = Math.min(numRuns, threadBudget);
+		if (maxConcurrentRuns > 0) {
+			slots = Math.min(slots, maxConcurrentRuns);
+		}
+		return Math.max(1, slots);
+	}
+
+	/**
+	 * @return the number of threads of every slot; the budget is split evenly, and the first slots receive the
+	 * remaining threads
+	 */
+	public int[] getThreadsPerSlot(int numRuns) {
+		int slots = getNumberOfSlots(numRuns);
+		int[] threads = new int[slots];
+		for (int s = 0; s < slots; s++) {
+			threads[s] = threadBudget / slots + (s < threadBudget % slots ? 1 : 0);
+		}
+		return threads;
+	}
+
+	/**
+	 * Executes all runs and waits for them to complete. A failing run does not affect the other runs.
+	 *
+	 * @return the outcome of every run, in list order, and the wall-clock time of all runs together
+	 */
+	public <T> Suite<T> runAll(final List<? extends Run<T>> runs) throws InterruptedException {
+		final int[] threads = getThreadsPerSlot(runs.size());
+		final List<Result<T>> results = new ArrayList<>(Collections.<Result<T>>nCopies(runs.size(), null));
+		final AtomicInteger nextRun = new AtomicInteger();
+
+		ExecutorService slots = Executors.newFixedThreadPool(threads.length, new ThreadFactory() {
+			private final AtomicInteger slot = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "reference-run-" + slot.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final long startNanos = System.nanoTime();
+		try {
+			List<Future<?>> futures = new ArrayList<>(threads.length);
+			for (final int slotThreads : threads) {
+				futures.add(slots.submit(new Runnable() {
+					@Override
+					public void run() {
+						try (ParallelExecutor executor = new ParallelExecutor(slotThreads)) {
+							int index;
+							while ((index = nextRun.getAndIncrement()) < runs.size()) {
+								Result<T> result = execute(runs.get(index), executor, startNanos);
+								synchronized (results) {
+									results.set(index, result);
+								}
+							}
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					// Runs catch their own failures, so this is a failure of the scheduler itself
+					throw new IllegalStateException("Failed to execute runs", e.getCause());
+				}
+			}
+		} finally {
+			slots.shutdownNow();
+		}
+		return new Suite<>(results, System.nanoTime() - startNanos);
+	}
+
+	private static <T> Result<T> execute(Run<T> run, ParallelExecutor executor, long suiteStartNanos) {
+		long startNanos = System.nanoTime();
+		T output = null;
+		Throwable failure = null;
+		try {
+			output = run.run(executor);
+		} catch (Throwable t) {
+			failure = t;
+		}
+		long endNanos = System.nanoTime();
+		return new Result<>(output, failure, executor.getNumThreads(), startNanos - suiteStartNanos,
+				endNanos - startNanos);
+	}
+
+	/**
+	 * The outcome of a run.
+	 */
+	public static final class Result<T> {
+
+		private final T output;
+		private final Throwable failure;
+		private final int numThreads;
+		private final long waitNanos;
+		private final long processingNanos;
+
+		private Result(T output, Throwable failure, int numThreads, long waitNanos, long processingNanos) {
+			this.output = output;
+			this.failure = failure;
+			this.numThreads = numThreads;
+			this.waitNanos = waitNanos;
+			this.processingNanos = processingNanos;
+		}
+
+		/**
+		 * @return the output of the run, or null if it failed
+		 */
+		public T getOutput() {
+			return output;
+		}
+
+		/**
+		 * @return the exception with which the run failed, or null if it succeeded
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		/**
+		 * @return the number of threads with which the run was executed
+		 */
+		public int getNumberOfThreads() {
+			return numThreads;
+		}
+
+		/**
+		 * @return the time from the start of the suite until the run was started, in nanoseconds
+		 */
+		public long getWaitNanos() {
+			return waitNanos;
+		}
+
+		/**
+		 * @return the time from the start of the run until it completed, in nanoseconds
+		 */
+		public long getProcessingNanos() {
+			return processingNanos;
+		}
+
+	}
+
+	/**
+	 * The outcome of all runs executed together.
+	 */
+	public static final class Suite<T> {
+
+		private final List<Result<T>> results;
+		private final long wallClockNanos;
+
+		private Suite(List<Result<T>> results, long wallClockNanos) {
+			this.results = results;
+			this.wallClockNanos = wallClockNanos;
+		}
+
+		/**
+		 * @return the outcome of every run, in the order in which the runs were given
+		 */
+		public List<Result<T>> getResults() {
+			return results;
+		}
+
+		/**
+		 * @return the time from the start of the first run until the last run completed, in nanoseconds
+		 */
+		public long getWallClockNanos() {
+			return wallClockNanos;
+		}
+
+		/**
+		 * @return the sum of the processing times of all runs, in nanoseconds
+		 */
+		public long getTotalProcessingNanos() {
+			long total = 0;
+			for (Result<T> result : results) {
+				total += result.getProcessingNanos();
+			}
+			return total;
+		}
+
+	}
+
+}
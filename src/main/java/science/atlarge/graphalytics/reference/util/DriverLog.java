@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AsyncAppender;
+import org.apache.logging.log4j.core.appender.ConsoleAppender;
+import org.apache.logging.log4j.core.appender.FileAppender;
+import org.apache.logging.log4j.core.config.AbstractConfiguration;
+import org.apache.logging.log4j.core.config.AppenderRef;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.LoggerConfig;
+import org.apache.logging.log4j.core.filter.AbstractFilterable;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+
+/**
+ * Writes the log of a benchmark run to a file, e.g., driver.logs. While the log is open, every event that the console
+ * appender of the log4j configuration accepts is also written to the file, and if the configuration has no console
+ * appender, every event of the root logger. Logging threads only hand events to a bounded queue; a background thread
+ * formats them and writes them to the file through a buffer.
+ * <p>
+ * Every line of the file is a record of the run: its time, level, thread and logger, the ID of the run and its
+ * algorithm, the phase of the run if the event carries one of the phase markers, and the message. The platform logs
+ * the start and end of its phases with these markers and with the messages that {@link #readTime(String, String)}
+ * reads back to compute the processing time and makespan. Output printed directly to {@code System.out} or
+ * {@code System.err} is not written to the file, so the platform logs all its output through log4j.
+ */
+public final class DriverLog implements AutoCloseable {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/**
+	 * Marks the records of the start and end of a phase of the run.
+	 */
+	public static final Marker PHASE = MarkerManager.getMarker("PHASE");
+	public static final Marker LOADING = MarkerManager.getMarker("LOADING").setParents(PHASE);
+	public static final Marker PROCESSING = MarkerManager.getMarker("PROCESSING").setParents(PHASE);
+	public static final Marker OUTPUT = MarkerManager.getMarker("OUTPUT").setParents(PHASE);
+
+	/**
+	 * Messages of the phase records, each followed by the time in milliseconds since the epoch.
+	 */
+	public static final String LOADING_STARTS = "Loading starts at: ";
+	public static final String PROCESSING_STARTS = "Processing starts at: ";
+	public static final String PROCESSING_ENDS = "Processing ends at: ";
+	public static final String OUTPUT_STARTS = "Output starts at: ";
+	public static final String OUTPUT_ENDS = "Output ends at: ";
+
+	private static final int QUEUE_SIZE = 8192;
+	private static final int BUFFER_SIZE = 256 * 1024;
+	/**
+	 * Time to wait for queued events to be written when the log is closed, in milliseconds (0 waits until done).
+	 */
+	private static final long SHUTDOWN_TIMEOUT = 0;
+	private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+	private final LoggerContext context;
+	private final Configuration configuration;
+	private final FileAppender fileAppender;
+	private final AsyncAppender asyncAppender;
+	private final List<LoggerConfig> loggers;
+
+	private DriverLog(LoggerContext context, Configuration configuration, FileAppender fileAppender,
+			AsyncAppender asyncAppender, List<LoggerConfig> loggers) {
+		this.context = context;
+		this.configuration = configuration;
+		this.fileAppender = fileAppender;
+		this.asyncAppender = asyncAppender;
+		this.loggers = loggers;
+	}
+
+	/**
+	 * Starts writing the log of a run to a file, which is truncated if it exists.
+	 *
+	 * @param runId     the ID of the run, written on every record
+	 * @param algorithm the algorithm of the run, written on every record
+	 */
+	public static DriverLog open(Path file, String runId, String algorithm) throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		if (!(LogManager.getContext(false) instanceof LoggerContext)) {
+			throw new IllegalStateException("The log of a run can only be written if log4j-core is the logging " +
+					"implementation");
+		}
+		LoggerContext context = (LoggerContext)LogManager.getContext(false);
+		Configuration configuration = context.getConfiguration();
+
+		Appender console = null;
+		for (Appender appender : configuration.getAppenders().values()) {
+			if (appender instanceof ConsoleAppender) {
+				console = appender;
+				break;
+			}
+		}
+		Filter filter = console instanceof AbstractFilterable ? ((AbstractFilterable)console).getFilter() : null;
+
+		String name = "reference-driver-log-" + NEXT_ID.getAndIncrement();
+		PatternLayout layout = PatternLayout.newBuilder().withPattern(recordPattern(runId, algorithm))
+				.withConfiguration(configuration).withCharset(StandardCharsets.UTF_8).build();
+		FileAppender fileAppender = FileAppender.createAppender(file.toString(), "false", "false", name + "-file",
+				"false", "true", "true", String.valueOf(BUFFER_SIZE), layout, null, "false", null, configuration);
+		fileAppender.start();
+		configuration.addAppender(fileAppender);
+		AsyncAppender asyncAppender = AsyncAppender.createAppender(
+				new AppenderRef[] {AppenderRef.createAppenderRef(fileAppender.getName(), null, null)}, null, true,
+				SHUTDOWN_TIMEOUT, QUEUE_SIZE, name, false, filter, configuration, true);
+		asyncAppender.start();
+		configuration.addAppender(asyncAppender);
+
+		// Attach to the loggers that write to the console, with the same level and filter
+		Set<LoggerConfig> candidates = new LinkedHashSet<>(configuration.getLoggers().values());
+		candidates.add(configuration.getRootLogger());
+		List<LoggerConfig> loggers = new ArrayList<>();
+		for (LoggerConfig logger : candidates) {
+			if (console == null) {
+				if (logger == configuration.getRootLogger()) {
+					logger.addAppender(asyncAppender, null, null);
+					loggers.add(logger);
+				}
+				continue;
+			}
+			if (!logger.getAppenders().containsKey(console.getName())) {
+				continue;
+			}
+			// Appenders added programmatically, as in the default configuration, have no reference
+			AppenderRef consoleRef = null;
+			for (AppenderRef ref : logger.getAppenderRefs()) {
+				if (ref.getRef().equals(console.getName())) {
+					consoleRef = ref;
+				}
+			}
+			logger.addAppender(asyncAppender, consoleRef != null ? consoleRef.getLevel() : null,
+					consoleRef != null ? consoleRef.getFilter() : null);
+			loggers.add(logger);
+		}
+		context.updateLoggers();
+		return new DriverLog(context, configuration, fileAppender, asyncAppender, loggers);
+	}
+
+	/**
+	 * @return the layout pattern of the records of a run, e.g.,
+	 * "2017-03-01T12:00:00,000 INFO  [main] ReferencePlatform run=42 algorithm=PR phase=PROCESSING - Processing
+	 * starts at: 1488369600000"
+	 */
+	static String recordPattern(String runId, String algorithm) {
+		return "%d{ISO8601} %-5level [%t] %c{1} run=" + escape(runId) + " algorithm=" + escape(algorithm) +
+				"%notEmpty{ phase=%markerSimpleName} - %msg%n";
+	}
+
+	private static String escape(String value) {
+		return String.valueOf(value).replaceAll("\\s+", "_").replace("%", "%%");
+	}
+
+	/**
+	 * Reads the time of a phase record from the log of a run.
+	 *
+	 * @param logs    the contents of the log
+	 * @param message the message of the phase record, e.g., {@link #PROCESSING_STARTS}
+	 * @return the time at the end of the last line that contains the message, or null if there is no such line
+	 */
+	public static Long readTime(String logs, String message) {
+		Long time = null;
+		for (String line : logs.split("\n")) {
+			if (!line.contains(message)) {
+				continue;
+			}
+			try {
+				String[] lineParts = line.trim().split("\\s+");
+				time = Long.parseLong(lineParts[lineParts.length - 1]);
+			} catch (NumberFormatException e) {
+				LOG.error(String.format("Cannot parse line: %s", line), e);
+			}
+		}
+		return time;
+	}
+
+	/**
+	 * Stops writing the log, and waits until all events logged so far have been written to the file.
+	 */
+	@Override
+	public void close() {
+		for (LoggerConfig logger : loggers) {
+			logger.removeAppender(asyncAppender.getName());
+		}
+		context.updateLoggers();
+		asyncAppender.stop();
+		fileAppender.stop();
+		if (configuration instanceof AbstractConfiguration) {
+			((AbstractConfiguration)configuration).removeAppender(asyncAppender.getName());
+			((AbstractConfiguration)configuration).removeAppender(fileAppender.getName());
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+/**
+ * Determines how parallel jobs reduce floating-point values.
+ */
+public enum FloatingPointMode {
+
+	/**
+	 * Partial sums are combined in the order in which threads finish, so the last digits of a result may differ
+	 * between runs and thread counts.
+	 */
+	FAST,
+
+	/**
+	 * Values are summed with compensated summation in blocks of a fixed size, after which the blocks are combined
+	 * by a fixed pairwise reduction tree. Results are bit-identical regardless of the number of threads.
+	 */
+	DETERMINISTIC
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+/**
+ * Inner loops shared by the jobs. This is the scalar version; the Java 17 build replaces this class in the
+ * multi-release JAR with a version that uses the Vector API when the jdk.incubator.vector module is available.
+ */
+public final class Kernels {
+
+	private Kernels() {
+	}
+
+	/**
+	 * @return true if the kernels use vector instructions
+	 */
+	public static boolean isVectorized() {
+		return false;
+	}
+
+	/**
+	 * Divides the value of every vertex in [from, to) by its degree, storing 0 for vertices without edges.
+	 */
+	public static void divideByDegree(double[] values, int[] offsets, double[] quotients, int from, int to) {
+		ScalarKernels.divideByDegree(values, offsets, quotients, from, to);
+	}
+
+	/**
+	 * @return the sum of the values at indices[from] to indices[to - 1], added in an unspecified order
+	 */
+	public static double gatherSum(double[] values, int[] indices, int from, int to) {
+		return ScalarKernels.gatherSum(values, indices, from, to);
+	}
+
+	/**
+	 * Adds a value to the values at indices[from] to indices[to - 1], which must be distinct.
+	 */
+	public static void scatterAdd(double[] values, int[] indices, int from, int to, double addend) {
+		ScalarKernels.scatterAdd(values, indices, from, to, addend);
+	}
+
+	/**
+	 * @return the number of elements that occur in both of two sorted lists without duplicates
+	 */
+	public static int countCommon(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+		return ScalarKernels.countCommon(a, aFrom, aTo, b, bFrom, bTo);
+	}
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exposes the {@link Progress} of the current run while it is running: as an MXBean in the platform MBean server,
+ * which can be inspected with, e.g., JConsole, and optionally as a JSON document served over HTTP on the loopback
+ * interface. Exposing the progress is best-effort: failures are logged, and do not fail the run.
+ * <p>
+ * When runs execute concurrently, the progress of every run is added with {@link #addRun(String, Progress)}: it is
+ * registered as a separate MXBean, named after the run, and listed under "runs" in the JSON document.
+ */
+public class MetricsServer implements AutoCloseable {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	public static final String OBJECT_NAME = "science.atlarge.graphalytics.reference:type=Progress";
+	public static final String PATH = "/progress";
+
+	private final Progress progress;
+	private final Map<String, Progress> runs = new LinkedHashMap<>();
+	private final List<ObjectName> runObjectNames = new ArrayList<>();
+	private ObjectName objectName;
+	private HttpServer httpServer;
+
+	private MetricsServer(Progress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Registers the progress MXBean and, if a port is given, starts the HTTP endpoint.
+	 *
+	 * @param httpPort the port of the HTTP endpoint on the loopback interface, 0 for any free port, or -1 to disable
+	 *                 the endpoint
+	 */
+	public static MetricsServer start(Progress progress, int httpPort) {
+		MetricsServer server = new MetricsServer(progress);
+		server.registerMBean();
+		if (httpPort >= 0) {
+			server.startHttpServer(httpPort);
+		}
+		return server;
+	}
+
+	/**
+	 * @return the URL of the HTTP endpoint, or null if it is not running
+	 */
+	public String getUrl() {
+		if (httpServer == null) {
+			return null;
+		}
+		InetSocketAddress address = httpServer.getAddress();
+		return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + PATH;
+	}
+
+	/**
+	 * @return the name of the MXBean of a concurrent run
+	 */
+	public static String getObjectName(String run) {
+		return OBJECT_NAME + ",run=" + ObjectName.quote(run);
+	}
+
+	/**
+	 * Exposes the progress of one of the runs that execute concurrently, until the server is closed.
+	 */
+	public void addRun(String run, Progress runProgress) {
+		synchronized (runs) {
+			runs.put(run, runProgress);
+		}
+		ObjectName name = registerMBean(runProgress, getObjectName(run));
+		if (name != null) {
+			synchronized (runObjectNames) {
+				runObjectNames.add(name);
+			}
+		}
+	}
+
+	private void registerMBean() {
+		objectName = registerMBean(progress, OBJECT_NAME);
+	}
+
+	private static ObjectName registerMBean(Progress progress, String objectName) {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(objectName);
+			if (mBeanServer.isRegistered(name)) {
+				// Left behind by a previous run that was not finalized
+				mBeanServer.unregisterMBean(name);
+			}
+			mBeanServer.registerMBean(progress, name);
+			return name;
+		} catch (JMException e) {
+			LOG.warn("Failed to register MBean " + objectName, e);
+			return null;
+		}
+	}
+
+	private static void unregisterMBean(ObjectName name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException e) {
+			LOG.warn("Failed to unregister MBean " + name, e);
+		}
+	}
+
+	private void startHttpServer(int port) {
+		try {
+			httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException e) {
+			LOG.warn("Failed to start the metrics endpoint on port " + port, e);
+			return;
+		}
+		httpServer.createContext(PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					if (!exchange.getRequestMethod().equals("GET")) {
+						exchange.sendResponseHeaders(405, -1);
+						return;
+					}
+					Map<String, Progress> runsCopy;
+					synchronized (runs) {
+						runsCopy = new LinkedHashMap<>(runs);
+					}
+					byte[] body = toJson(progress, runsCopy).getBytes(StandardCharsets.UTF_8);
+					exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+					exchange.sendResponseHeaders(200, body.length);
+					try (OutputStream out = exchange.getResponseBody()) {
+						out.write(body);
+					}
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		// The default executor handles requests on the single server thread, which is sufficient for polling
+		httpServer.start();
+	}
+
+	/**
+	 * @return the progress as a JSON object
+	 */
+	static String toJson(ProgressMXBean progress) {
+		return appendFields(new StringBuilder("{"), progress).append('}').toString();
+	}
+
+	/**
+	 * @return the progress as a JSON object, with the progress of every concurrent run in a "runs" array
+	 */
+	static String toJson(ProgressMXBean progress, Map<String, ? extends ProgressMXBean> runs) {
+		StringBuilder json = appendFields(new StringBuilder("{"), progress).append(",\"runs\":[");
+		boolean first = true;
+		for (Map.Entry<String, ? extends ProgressMXBean> run : runs.entrySet()) {
+			json.append(first ? "{" : ",{");
+			appendString(json, "run", run.getKey()).append(',');
+			appendFields(json, run.getValue()).append('}');
+			first = false;
+		}
+		return json.append("]}").toString();
+	}
+
+	private static StringBuilder appendFields(StringBuilder json, ProgressMXBean progress) {
+		appendString(json, "graph", progress.getGraph()).append(',');
+		appendString(json, "algorithm", progress.getAlgorithm()).append(',');
+		appendString(json, "phase", progress.getPhase()).append(',');
+		json.append("\"iteration\":").append(progress.getIteration()).append(',');
+		json.append("\"verticesProcessed\":").append(progress.getVerticesProcessed()).append(',');
+		json.append("\"edgesProcessed\":").append(progress.getEdgesProcessed()).append(',');
+		json.append("\"edgesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", progress.getEdgesPerSecond()))
+				.append(',');
+		json.append("\"loadTimeMillis\":").append(progress.getLoadTimeMillis()).append(',');
+		json.append("\"processingTimeMillis\":").append(progress.getProcessingTimeMillis()).append(',');
+		json.append("\"outputTimeMillis\":").append(progress.getOutputTimeMillis()).append(',');
+		json.append("\"heapUsedBytes\":").append(progress.getHeapUsedBytes()).append(',');
+		return json.append("\"heapMaxBytes\":").append(progress.getHeapMaxBytes());
+	}
+
+	private static StringBuilder appendString(StringBuilder json, String key, String value) {
+		json.append('"').append(key).append("\":");
+		if (value == null) {
+			return json.append("null");
+		}
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"');
+	}
+
+	/**
+	 * Stops the HTTP endpoint and unregisters the MXBeans.
+	 */
+	@Override
+	public void close() {
+		if (httpServer != null) {
+			httpServer.stop(0);
+			httpServer = null;
+		}
+		if (objectName != null) {
+			unregisterMBean(objectName);
+			objectName = null;
+		}
+		synchronized (runObjectNames) {
+			for (ObjectName name : runObjectNames) {
+				unregisterMBean(name);
+			}
+			runObjectNames.clear();
+		}
+		synchronized (runs) {
+			runs.clear();
+		}
+	}
+
+}
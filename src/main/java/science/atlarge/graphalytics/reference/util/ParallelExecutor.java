@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes loops over an index range on a fixed number of threads. The range is split into small chunks that are
+ * handed out dynamically, and the calling thread participates in the work. The {@link Progress} bound to the calling
+ * thread is also bound to the other threads while they execute the loop.
+ */
+public class ParallelExecutor implements AutoCloseable {
+
+	private static final int CHUNKS_PER_THREAD = 16;
+
+	private final int numThreads;
+	private final ExecutorService executor;
+
+	public ParallelExecutor(int numThreads) {
+		this.numThreads = numThreads;
+		this.executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads - 1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "reference-worker");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}) : null;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Runs the task on disjoint subranges that together cover [0, size), and waits for all of them to complete.
+	 */
+	public void forEach(final int size, final RangeTask task) {
+		if (executor == null || size < 2) {
+			task.run(0, size);
+			return;
+		}
+
+		final int chunkSize = Math.max(1, (int)((size + (long)numThreads * CHUNKS_PER_THREAD - 1) /
+				((long)numThreads * CHUNKS_PER_THREAD)));
+		final AtomicLong nextChunk = new AtomicLong();
+		final Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				long from;
+				while ((from = nextChunk.getAndAdd(chunkSize)) < size) {
+					task.run((int)from, (int)Math.min(size, from + chunkSize));
+				}
+			}
+		};
+		final Progress progress = Progress.get();
+		Runnable boundWorker = new Runnable() {
+			@Override
+			public void run() {
+				Progress previous = Progress.bind(progress);
+				try {
+					worker.run();
+				} finally {
+					Progress.bind(previous);
+				}
+			}
+		};
+
+		List<Future<?>> futures = new ArrayList<>(numThreads - 1);
+		for (int i = 1; i < numThreads; i++) {
+			futures.add(executor.submit(boundWorker));
+		}
+		worker.run();
+		for (Future<?> future : futures) {
+			await(future);
+		}
+	}
+
+	private static void await(Future<?> future) {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for parallel task", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException("Parallel task failed", e.getCause());
+		}
+	}
+
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Body of a parallel loop, invoked for a subrange [from, to) of the loop's index range.
+	 */
+	public interface RangeTask {
+
+		void run(int from, int to);
+
+	}
+
+}
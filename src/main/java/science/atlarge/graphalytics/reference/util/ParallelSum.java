@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+/**
+ * Parallel summation of a sequence of doubles, following a {@link FloatingPointMode}.
+ */
+public final class ParallelSum {
+
+	/**
+	 * Number of terms summed sequentially in deterministic mode. It must not depend on the number of threads.
+	 */
+	static final int BLOCK_SIZE = 1 << 12;
+
+	private ParallelSum() {
+	}
+
+	/**
+	 * @return the sum of all terms with an index in [0, size)
+	 */
+	public static double sum(ParallelExecutor executor, FloatingPointMode mode, int size, final Terms terms) {
+		if (mode == FloatingPointMode.DETERMINISTIC) {
+			return deterministicSum(executor, size, terms);
+		}
+
+		final Accumulator total = new Accumulator(false);
+		executor.forEach(size, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				Accumulator partial = new Accumulator(false);
+				terms.addTo(partial, from, to);
+				synchronized (total) {
+					total.add(partial.get());
+				}
+			}
+		});
+		return total.get();
+	}
+
+	private static double deterministicSum(ParallelExecutor executor, final int size, final Terms terms) {
+		int numBlocks = (int)((size + (long)BLOCK_SIZE - 1) / BLOCK_SIZE);
+		final double[] partials = new double[numBlocks];
+		executor.forEach(numBlocks, new ParallelExecutor.RangeTask() {
+			@Override
+			public void run(int from, int to) {
+				for (int block = from; block < to; block++) {
+					Accumulator partial = new Accumulator(true);
+					int start = block * BLOCK_SIZE;
+					terms.addTo(partial, start, (int)Math.min(size, (long)start + BLOCK_SIZE));
+					partials[block] = partial.get();
+				}
+			}
+		});
+		return pairwiseSum(partials, 0, numBlocks);
+	}
+
+	static double pairwiseSum(double[] values, int from, int to) {
+		if (to - from == 0) {
+			return 0.0;
+		} else if (to - from == 1) {
+			return values[from];
+		}
+		int middle = (from + to) >>> 1;
+		return pairwiseSum(values, from, middle) + pairwiseSum(values, middle, to);
+	}
+
+	/**
+	 * Adds the terms of a range of indices to an accumulator, in increasing order of index.
+	 */
+	public interface Terms {
+
+		void addTo(Accumulator sum, int from, int to);
+
+	}
+
+	/**
+	 * Running sum of doubles, optionally with Kahan compensation for lost low-order bits.
+	 */
+	public static final class Accumulator {
+
+		private final boolean compensated;
+		private double sum;
+		private double compensation;
+
+		Accumulator(boolean compensated) {
+			this.compensated = compensated;
+		}
+
+		public void add(double value) {
+			if (compensated) {
+				double y = value - compensation;
+				double t = sum + y;
+				compensation = (t - sum) - y;
+				sum = t;
+			} else {
+				sum += value;
+			}
+		}
+
+		public double get() {
+			return sum;
+		}
+
+	}
+
+}
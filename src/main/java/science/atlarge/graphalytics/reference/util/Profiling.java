@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Hooks that emit Java Flight Recorder events for loading a graph, processing it, every iteration of a job, and
+ * writing its output, and that track the {@link Progress} of the run. This is the Java 7 version, in which JFR is not
+ * available and the hooks only track the progress; the Java 17 build replaces this class with a version that also
+ * emits custom JFR events.
+ */
+public final class Profiling {
+
+	private Profiling() {
+	}
+
+	/**
+	 * @return true if events are emitted and flight recordings can be started
+	 */
+	public static boolean isAvailable() {
+		return false;
+	}
+
+	/**
+	 * Starts a flight recording of the events of this JVM, including the events of the platform.
+	 *
+	 * @param configuration the name of a predefined JFR configuration, e.g., "default" or "profile"
+	 */
+	public static Recording startRecording(String configuration) throws IOException {
+		throw new UnsupportedOperationException("Flight recordings require Java 17 or newer");
+	}
+
+	/**
+	 * @return a span covering the loading of a graph, which ends with the size of the loaded graph
+	 */
+	public static Span beginLoad(String graph, String algorithm) {
+		Progress.get().beginLoad(graph, algorithm);
+		return new Span(Progress.Phase.LOADING);
+	}
+
+	/**
+	 * @return a span covering the processing of a graph, which ends with the size of the output
+	 */
+	public static Span beginProcessing(String graph, String algorithm) {
+		Progress.get().beginProcessing(graph, algorithm);
+		return new Span(Progress.Phase.PROCESSING);
+	}
+
+	/**
+	 * @return a span covering an iteration, or a level of a traversal, which ends with the number of vertices and
+	 * edges processed in it
+	 */
+	public static Span beginIteration(String algorithm, int iteration) {
+		Progress.get().beginIteration(iteration);
+		return new Span(null);
+	}
+
+	/**
+	 * @return a span covering the writing of the output of a job, which ends with the number of vertices written
+	 */
+	public static Span beginOutput(String algorithm) {
+		Progress.get().beginOutput();
+		return new Span(Progress.Phase.OUTPUT);
+	}
+
+	/**
+	 * A phase that is being timed, which is committed as an event when it ends.
+	 */
+	public static class Span {
+
+		private final Progress.Phase phase;
+
+		/**
+		 * @param phase the phase covered by the span, or null for an iteration
+		 */
+		Span(Progress.Phase phase) {
+			this.phase = phase;
+		}
+
+		public void end(long vertices, long edges) {
+			if (phase == null) {
+				Progress.get().addProcessed(vertices, edges);
+			} else {
+				Progress.get().endPhase(phase);
+			}
+		}
+
+	}
+
+	/**
+	 * A running flight recording.
+	 */
+	public static class Recording implements AutoCloseable {
+
+		private Recording() {
+		}
+
+		/**
+		 * Writes the events recorded so far to a file.
+		 */
+		public void dump(Path file) throws IOException {
+		}
+
+		/**
+		 * Stops the recording and discards its events.
+		 */
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The live progress of the current run: its phase, the iteration of the job, the vertices and edges processed so
+ * far, and the time spent in every phase. The progress is updated by the {@link Profiling} hooks, i.e., at the start
+ * and end of every phase and iteration, and can be read at any time from other threads, e.g., through JMX or the
+ * HTTP endpoint of a {@link MetricsServer}. Updates use atomic counters and volatile fields, so reading the progress
+ * never blocks the job. Jobs without iterations, or with long iterations, add the vertices and edges they process in
+ * batches of {@link #REPORT_INTERVAL} vertices instead.
+ * <p>
+ * Runs that execute concurrently (see ReferencePlatform#runConcurrently) each track their own progress, which is
+ * bound to the threads that execute the run (see {@link #bind(Progress)}); the vertices and edges they process are
+ * also added to the progress of the suite.
+ */
+public class Progress implements ProgressMXBean {
+
+	/**
+	 * The number of vertices after which jobs that process vertices in long loops, rather than in iterations, report
+	 * their progress.
+	 */
+	public static final int REPORT_INTERVAL = 4096;
+
+	private static final Progress INSTANCE = new Progress();
+
+	private static final ThreadLocal<Progress> BOUND = new ThreadLocal<>();
+
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final Progress total;
+
+	private volatile String graph;
+	private volatile String algorithm;
+	private volatile Phase phase = Phase.IDLE;
+	private volatile int iteration = -1;
+	private final AtomicLong verticesProcessed = new AtomicLong();
+	private final AtomicLong edgesProcessed = new AtomicLong();
+
+	/**
+	 * Start time of every phase, and its duration once it has ended, in nanoseconds. The duration is 0 for phases
+	 * that have not started and -1 for phases that are running.
+	 */
+	private final AtomicLongArray startNanos = new AtomicLongArray(Phase.values().length);
+	private final AtomicLongArray durationNanos = new AtomicLongArray(Phase.values().length);
+
+	public Progress() {
+		this(null);
+	}
+
+	/**
+	 * @param total the progress to which the vertices and edges processed are also added, or null
+	 */
+	public Progress(Progress total) {
+		this.total = total;
+	}
+
+	/**
+	 * @return the progress bound to the calling thread, or else the progress of the runs of this JVM
+	 */
+	public static Progress get() {
+		Progress progress = BOUND.get();
+		return progress != null ? progress : INSTANCE;
+	}
+
+	/**
+	 * Binds a progress to the calling thread, so that {@link #get()} returns it on that thread.
+	 *
+	 * @param progress the progress to bind, or null to unbind the current progress
+	 * @return the progress that was bound to the calling thread before, or null
+	 */
+	public static Progress bind(Progress progress) {
+		Progress previous = BOUND.get();
+		if (progress != null) {
+			BOUND.set(progress);
+		} else {
+			BOUND.remove();
+		}
+		return previous;
+	}
+
+	/**
+	 * Starts tracking a new run, which begins by loading its graph.
+	 */
+	public void beginLoad(String graph, String algorithm) {
+		this.graph = graph;
+		this.algorithm = algorithm;
+		for (int i = 0; i < durationNanos.length(); i++) {
+			durationNanos.set(i, 0);
+		}
+		beginPhase(Phase.LOADING);
+	}
+
+	/**
+	 * Starts the processing of a graph, and resets the iteration and the number of vertices and edges processed.
+	 */
+	public void beginProcessing(String graph, String algorithm) {
+		this.graph = graph;
+		this.algorithm = algorithm;
+		iteration = -1;
+		verticesProcessed.set(0);
+		edgesProcessed.set(0);
+		beginPhase(Phase.PROCESSING);
+	}
+
+	public void beginOutput() {
+		beginPhase(Phase.OUTPUT);
+	}
+
+	/**
+	 * Ends a phase; the run is idle until the next phase begins.
+	 */
+	public void endPhase(Phase phase) {
+		int i = phase.ordinal();
+		durationNanos.set(i, System.nanoTime() - startNanos.get(i));
+		if (this.phase == phase) {
+			this.phase = Phase.IDLE;
+		}
+	}
+
+	/**
+	 * @param iteration the iteration, or level of a traversal, that starts, counting from 0
+	 */
+	public void beginIteration(int iteration) {
+		this.iteration = iteration;
+	}
+
+	/**
+	 * Adds the vertices and edges processed in an iteration. May be called from any thread.
+	 */
+	public void addProcessed(long vertices, long edges) {
+		verticesProcessed.addAndGet(vertices);
+		edgesProcessed.addAndGet(edges);
+		if (total != null) {
+			total.addProcessed(vertices, edges);
+		}
+	}
+
+	private void beginPhase(Phase phase) {
+		int i = phase.ordinal();
+		startNanos.set(i, System.nanoTime());
+		durationNanos.set(i, -1);
+		this.phase = phase;
+	}
+
+	@Override
+	public String getGraph() {
+		return graph;
+	}
+
+	@Override
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	@Override
+	public String getPhase() {
+		return phase.name().toLowerCase();
+	}
+
+	@Override
+	public int getIteration() {
+		return iteration;
+	}
+
+	@Override
+	public long getVerticesProcessed() {
+		return verticesProcessed.get();
+	}
+
+	@Override
+	public long getEdgesProcessed() {
+		return edgesProcessed.get();
+	}
+
+	@Override
+	public double getEdgesPerSecond() {
+		long nanos = getNanos(Phase.PROCESSING);
+		return nanos == 0 ? 0.0 : edgesProcessed.get() * 1e9 / nanos;
+	}
+
+	@Override
+	public long getLoadTimeMillis() {
+		return getNanos(Phase.LOADING) / 1000000;
+	}
+
+	@Override
+	public long getProcessingTimeMillis() {
+		return getNanos(Phase.PROCESSING) / 1000000;
+	}
+
+	@Override
+	public long getOutputTimeMillis() {
+		return getNanos(Phase.OUTPUT) / 1000000;
+	}
+
+	@Override
+	public long getHeapUsedBytes() {
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	@Override
+	public long getHeapMaxBytes() {
+		MemoryUsage usage = memory.getHeapMemoryUsage();
+		return usage.getMax() < 0 ? usage.getCommitted() : usage.getMax();
+	}
+
+	/**
+	 * @return the duration of a phase, or the time since it started if it is running, in nanoseconds
+	 */
+	private long getNanos(Phase phase) {
+		int i = phase.ordinal();
+		long duration = durationNanos.get(i);
+		return duration >= 0 ? duration : System.nanoTime() - startNanos.get(i);
+	}
+
+	/**
+	 * The phases of a run.
+	 */
+	public enum Phase {
+		IDLE,
+		LOADING,
+		PROCESSING,
+		OUTPUT
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+/**
+ * Management interface of {@link Progress}, registered with the platform MBean server as
+ * {@value MetricsServer#OBJECT_NAME}, and for every concurrent run under a name with an additional "run" key.
+ */
+public interface ProgressMXBean {
+
+	/**
+	 * @return the name of the graph of the current run, or null before the first run
+	 */
+	String getGraph();
+
+	/**
+	 * @return the algorithm of the current run, or null before the first run
+	 */
+	String getAlgorithm();
+
+	/**
+	 * @return the phase of the current run: "idle", "loading", "processing" or "output"
+	 */
+	String getPhase();
+
+	/**
+	 * @return the current iteration, or level of a traversal, of the job, counting from 0; -1 if none has started
+	 */
+	int getIteration();
+
+	/**
+	 * @return the number of vertices processed in the completed iterations of the job
+	 */
+	long getVerticesProcessed();
+
+	/**
+	 * @return the number of edges processed in the completed iterations of the job
+	 */
+	long getEdgesProcessed();
+
+	/**
+	 * @return the number of edges processed per second of processing time
+	 */
+	double getEdgesPerSecond();
+
+	/**
+	 * @return the time spent loading the graph, so far if it is still being loaded, in milliseconds
+	 */
+	long getLoadTimeMillis();
+
+	/**
+	 * @return the processing time, so far if the graph is still being processed, in milliseconds
+	 */
+	long getProcessingTimeMillis();
+
+	/**
+	 * @return the time spent writing the output, so far if it is still being written, in milliseconds
+	 */
+	long getOutputTimeMillis();
+
+	long getHeapUsedBytes();
+
+	long getHeapMaxBytes();
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+/**
+ * Scalar implementations of the {@link Kernels}, used on every Java version and as the fallback when vector
+ * instructions are not available.
+ */
+final class ScalarKernels {
+
+	private ScalarKernels() {
+	}
+
+	static void divideByDegree(double[] values, int[] offsets, double[] quotients, int from, int to) {
+		for (int v = from; v < to; v++) {
+			int degree = offsets[v + 1] - offsets[v];
+			quotients[v] = degree > 0 ? values[v] / degree : 0.0;
+		}
+	}
+
+	static double gatherSum(double[] values, int[] indices, int from, int to) {
+		double sum = 0.0;
+		for (int i = from; i < to; i++) {
+			sum += values[indices[i]];
+		}
+		return sum;
+	}
+
+	static void scatterAdd(double[] values, int[] indices, int from, int to, double addend) {
+		for (int i = from; i < to; i++) {
+			values[indices[i]] += addend;
+		}
+	}
+
+	static int countCommon(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+		int common = 0;
+		while (aFrom < aTo && bFrom < bTo) {
+			if (a[aFrom] < b[bFrom]) {
+				aFrom++;
+			} else if (a[aFrom] > b[bFrom]) {
+				bFrom++;
+			} else {
+				common++;
+				aFrom++;
+				bFrom++;
+			}
+		}
+		return common;
+	}
+
+}
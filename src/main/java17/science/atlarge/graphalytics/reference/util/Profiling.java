@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Hooks that emit Java Flight Recorder events for loading a graph, processing it, every iteration of a job, and
+ * writing its output, and that track the {@link Progress} of the run. This is the Java 17 version, which emits custom
+ * JFR events. The events are enabled by default, so any recording of the JVM includes them; when no recording is
+ * running, a span costs a small allocation.
+ */
+public final class Profiling {
+
+	private Profiling() {
+	}
+
+	/**
+	 * @return true if events are emitted and flight recordings can be started
+	 */
+	public static boolean isAvailable() {
+		return true;
+	}
+
+	/**
+	 * Starts a flight recording of the events of this JVM, including the events of the platform.
+	 *
+	 * @param configuration the name of a predefined JFR configuration, e.g., "default" or "profile"
+	 */
+	public static Recording startRecording(String configuration) throws IOException {
+		try {
+			jdk.jfr.Recording recording = new jdk.jfr.Recording(Configuration.getConfiguration(configuration));
+			recording.setName("graphalytics-reference");
+			recording.start();
+			return new Recording(recording);
+		} catch (ParseException e) {
+			throw new IOException("Invalid JFR configuration: " + configuration, e);
+		}
+	}
+
+	/**
+	 * @return a span covering the loading of a graph, which ends with the size of the loaded graph
+	 */
+	public static Span beginLoad(String graph, String algorithm) {
+		Progress.get().beginLoad(graph, algorithm);
+		LoadEvent event = new LoadEvent();
+		event.graph = graph;
+		return new Span(event, algorithm, Progress.Phase.LOADING);
+	}
+
+	/**
+	 * @return a span covering the processing of a graph, which ends with the size of the output
+	 */
+	public static Span beginProcessing(String graph, String algorithm) {
+		Progress.get().beginProcessing(graph, algorithm);
+		ProcessingEvent event = new ProcessingEvent();
+		event.graph = graph;
+		return new Span(event, algorithm, Progress.Phase.PROCESSING);
+	}
+
+	/**
+	 * @return a span covering an iteration, or a level of a traversal, which ends with the number of vertices and
+	 * edges processed in it
+	 */
+	public static Span beginIteration(String algorithm, int iteration) {
+		Progress.get().beginIteration(iteration);
+		IterationEvent event = new IterationEvent();
+		event.iteration = iteration;
+		return new Span(event, algorithm, null);
+	}
+
+	/**
+	 * @return a span covering the writing of the output of a job, which ends with the number of vertices written
+	 */
+	public static Span beginOutput(String algorithm) {
+		Progress.get().beginOutput();
+		return new Span(new OutputEvent(), algorithm, Progress.Phase.OUTPUT);
+	}
+
+	/**
+	 * A phase that is being timed, which is committed as an event when it ends.
+	 */
+	public static class Span {
+
+		private final PhaseEvent event;
+		private final Progress.Phase phase;
+
+		/**
+		 * @param phase the phase covered by the span, or null for an iteration
+		 */
+		Span(PhaseEvent event, String algorithm, Progress.Phase phase) {
+			this.event = event;
+			this.phase = phase;
+			event.algorithm = algorithm;
+			event.begin();
+		}
+
+		public void end(long vertices, long edges) {
+			event.vertices = vertices;
+			event.edges = edges;
+			event.commit();
+			if (phase == null) {
+				Progress.get().addProcessed(vertices, edges);
+			} else {
+				Progress.get().endPhase(phase);
+			}
+		}
+
+	}
+
+	/**
+	 * A running flight recording.
+	 */
+	public static class Recording implements AutoCloseable {
+
+		private final jdk.jfr.Recording recording;
+
+		private Recording(jdk.jfr.Recording recording) {
+			this.recording = recording;
+		}
+
+		/**
+		 * Writes the events recorded so far to a file.
+		 */
+		public void dump(Path file) throws IOException {
+			recording.dump(file);
+		}
+
+		/**
+		 * Stops the recording and discards its events.
+		 */
+		@Override
+		public void close() {
+			recording.close();
+		}
+
+	}
+
+	@Category("Graphalytics")
+	@StackTrace(false)
+	abstract static class PhaseEvent extends Event {
+
+		@Label("Algorithm")
+		String algorithm;
+
+		@Label("Vertices")
+		long vertices;
+
+		@Label("Edges")
+		long edges;
+
+	}
+
+	@Name("science.atlarge.graphalytics.reference.Load")
+	@Label("Graph Load")
+	@Description("Loading a graph into memory, with the number of vertices and edges loaded")
+	static class LoadEvent extends PhaseEvent {
+
+		@Label("Graph")
+		String graph;
+
+	}
+
+	@Name("science.atlarge.graphalytics.reference.Processing")
+	@Label("Processing")
+	@Description("Running an algorithm on a loaded graph, with the number of vertices in the output")
+	static class ProcessingEvent extends PhaseEvent {
+
+		@Label("Graph")
+		String graph;
+
+	}
+
+	@Name("science.atlarge.graphalytics.reference.Iteration")
+	@Label("Iteration")
+	@Description("An iteration of a job, or a level of a traversal, with the number of vertices and edges processed")
+	static class IterationEvent extends PhaseEvent {
+
+		@Label("Iteration")
+		int iteration;
+
+	}
+
+	@Name("science.atlarge.graphalytics.reference.Output")
+	@Label("Output")
+	@Description("Writing the output of a job, with the number of vertices written")
+	static class OutputEvent extends PhaseEvent {
+	}
+
+}
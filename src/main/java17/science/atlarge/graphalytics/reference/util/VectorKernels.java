@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementations of the {@link Kernels} using the Vector API. Every kernel processes full vectors first and
+ * handles the remaining elements with the scalar kernel.
+ */
+final class VectorKernels {
+
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	private VectorKernels() {
+	}
+
+	/**
+	 * @return true if the preferred vectors hold more than one double, i.e., if vectorizing can pay off
+	 */
+	static boolean isSupported() {
+		return DOUBLES.length() > 1;
+	}
+
+	static void divideByDegree(double[] values, int[] offsets, double[] quotients, int from, int to) {
+		// Integer vector with one lane per double lane, to convert degrees to doubles
+		VectorSpecies<Integer> degreeSpecies = VectorSpecies.of(int.class,
+				VectorShape.forBitSize(DOUBLES.length() * Integer.SIZE));
+		int v = from;
+		int bound = from + DOUBLES.loopBound(to - from);
+		for (; v < bound; v += DOUBLES.length()) {
+			IntVector degrees = IntVector.fromArray(degreeSpecies, offsets, v + 1)
+					.sub(IntVector.fromArray(degreeSpecies, offsets, v));
+			DoubleVector divisors = (DoubleVector)degrees.convertShape(VectorOperators.I2D, DOUBLES, 0);
+			DoubleVector.fromArray(DOUBLES, values, v)
+					.div(divisors)
+					.blend(0.0, divisors.eq(0.0))
+					.intoArray(quotients, v);
+		}
+		ScalarKernels.divideByDegree(values, offsets, quotients, v, to);
+	}
+
+	static double gatherSum(double[] values, int[] indices, int from, int to) {
+		DoubleVector sums = DoubleVector.zero(DOUBLES);
+		int i = from;
+		int bound = from + DOUBLES.loopBound(to - from);
+		for (; i < bound; i += DOUBLES.length()) {
+			sums = sums.add(DoubleVector.fromArray(DOUBLES, values, 0, indices, i));
+		}
+		return sums.reduceLanes(VectorOperators.ADD) + ScalarKernels.gatherSum(values, indices, i, to);
+	}
+
+	static void scatterAdd(double[] values, int[] indices, int from, int to, double addend) {
+		// The indices are distinct, so every lane updates a different value
+		int i = from;
+		int bound = from + DOUBLES.loopBound(to - from);
+		for (; i < bound; i += DOUBLES.length()) {
+			DoubleVector.fromArray(DOUBLES, values, 0, indices, i)
+					.add(addend)
+					.intoArray(values, 0, indices, i);
+		}
+		ScalarKernels.scatterAdd(values, indices, i, to, addend);
+	}
+
+	static int countCommon(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+		if (aTo - aFrom > bTo - bFrom) {
+			return countCommon(b, bFrom, bTo, a, aFrom, aTo);
+		}
+		// Compare every element of the shorter list with a block of the longer list, skipping blocks that only
+		// contain smaller elements
+		int common = 0;
+		int lanes = INTS.length();
+		while (aFrom < aTo && bFrom + lanes <= bTo) {
+			int element = a[aFrom];
+			if (element > b[bFrom + lanes - 1]) {
+				bFrom += lanes;
+			} else {
+				if (IntVector.fromArray(INTS, b, bFrom).eq(element).anyTrue()) {
+					common++;
+				}
+				aFrom++;
+			}
+		}
+		return common + ScalarKernels.countCommon(a, aFrom, aTo, b, bFrom, bTo);
+	}
+
+}
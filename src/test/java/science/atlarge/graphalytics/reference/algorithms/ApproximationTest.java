@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.VertexIndex;
+import science.atlarge.graphalytics.reference.util.FloatingPointMode;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the approximations of LCC and PageRank stay within their reported error bounds, do not depend on the
+ * number of threads, and are exact when their sample or threshold leaves nothing to approximate.
+ */
+public class ApproximationTest {
+
+	private static final int NUM_VERTICES = 500;
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testSampledLocalClusteringCoefficient() {
+		for (boolean directed : new boolean[] {true, false}) {
+			CsrGraph graph = generateGraph(directed, 40);
+			Long2DoubleMap exact = new LocalClusteringCoefficientJob(graph).run();
+			for (LocalClusteringCoefficientJob.Approximation approximation : new LocalClusteringCoefficientJob
+					.Approximation[] {LocalClusteringCoefficientJob.Approximation.WEDGE_SAMPLING,
+					LocalClusteringCoefficientJob.Approximation.NEIGHBOUR_SAMPLING}) {
+				String message = (directed ? "directed, " : "undirected, ") + approximation;
+				LocalClusteringCoefficientJob job = new LocalClusteringCoefficientJob(graph);
+				job.setApproximation(approximation, 64);
+				Long2DoubleMap approximate = job.run();
+
+				assertTrue(message, job.getNumberOfSampledVertices() > NUM_VERTICES / 2);
+				for (Long2DoubleMap.Entry entry : exact.long2DoubleEntrySet()) {
+					assertEquals(message, entry.getDoubleValue(), approximate.get(entry.getLongKey()),
+							job.getErrorBound());
+				}
+				try (ParallelExecutor executor = new ParallelExecutor(4)) {
+					LocalClusteringCoefficientJob parallelJob = new LocalClusteringCoefficientJob(graph, executor,
+							LocalClusteringCoefficientJob.Variant.BITMAP);
+					parallelJob.setApproximation(approximation, 64);
+					assertEquals(message, approximate, parallelJob.run());
+				}
+
+				// Vertices with no more wedges or neighbours than samples are computed exactly
+				job.setApproximation(approximation, NUM_VERTICES * NUM_VERTICES);
+				assertEquals(message, exact, job.run());
+				assertEquals(message, 0.0, job.getErrorBound(), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testPageRankStoppingAtResidual() {
+		CsrGraph graph = generateGraph(true, 5);
+		PageRankParameters parameters = new PageRankParameters(0.85f, 100);
+		Long2DoubleMap exact = new PageRankJob(graph, parameters).run();
+
+		PageRankJob job = new PageRankJob(graph, parameters);
+		job.setApproximation(PageRankJob.Approximation.RESIDUAL);
+		job.setResidualThreshold(1e-6);
+		Long2DoubleMap approximate = job.run();
+
+		assertTrue(job.getNumberOfIterationsRun() < 100);
+		assertTrue(job.getErrorBound() > 0.0);
+		assertTrue(l1Distance(exact, approximate) <= job.getErrorBound());
+
+		// A threshold that is not reached within the iterations runs all of them
+		PageRankParameters fewIterations = new PageRankParameters(0.85f, 10);
+		job = new PageRankJob(graph, fewIterations);
+		job.setApproximation(PageRankJob.Approximation.RESIDUAL);
+		job.setResidualThreshold(0.0);
+		assertEquals(new PageRankJob(graph, fewIterations).run(), job.run());
+		assertEquals(10, job.getNumberOfIterationsRun());
+		assertEquals(0.0, job.getErrorBound(), 0.0);
+	}
+
+	@Test
+	public void testMonteCarloPageRank() {
+		CsrGraph graph = generateGraph(true, 5);
+		PageRankParameters parameters = new PageRankParameters(0.85f, 100);
+		Long2DoubleMap exact = new PageRankJob(graph, parameters).run();
+
+		PageRankJob job = new PageRankJob(graph, parameters);
+		job.setApproximation(PageRankJob.Approximation.MONTE_CARLO);
+		job.setWalksPerVertex(64);
+		Long2DoubleMap approximate = job.run();
+
+		double error = l1Distance(exact, approximate);
+		assertTrue(error + " > 2 * " + job.getErrorBound(), error <= 2 * job.getErrorBound());
+		assertTrue(error + " < " + job.getErrorBound() + " / 2", error >= job.getErrorBound() / 2);
+		try (ParallelExecutor executor = new ParallelExecutor(4)) {
+			PageRankJob parallelJob = new PageRankJob(graph, parameters, executor, FloatingPointMode.FAST);
+			parallelJob.setApproximation(PageRankJob.Approximation.MONTE_CARLO);
+			parallelJob.setWalksPerVertex(64);
+			assertEquals(approximate, parallelJob.run());
+		}
+	}
+
+	private static double l1Distance(Long2DoubleMap expected, Long2DoubleMap actual) {
+		assertEquals(expected.size(), actual.size());
+		double distance = 0.0;
+		for (Long2DoubleMap.Entry entry : expected.long2DoubleEntrySet()) {
+			distance += Math.abs(entry.getDoubleValue() - actual.get(entry.getLongKey()));
+		}
+		return distance;
+	}
+
+	/**
+	 * Generates a random graph with sorted neighbour lists, in which some vertices have no outgoing edges.
+	 */
+	private CsrGraph generateGraph(boolean directed, int edgesPerVertex) {
+		LongOpenHashSet edgeSet = new LongOpenHashSet();
+		for (int source = 0; source < NUM_VERTICES; source++) {
+			if (source % 50 == 0) {
+				continue;
+			}
+			for (int i = 0; i < edgesPerVertex; i++) {
+				// Prefer low destinations, so the graph has vertices of high degree
+				int destination = Math.min(random.nextInt(NUM_VERTICES), random.nextInt(NUM_VERTICES));
+				if (destination != source) {
+					edgeSet.add((long)source << 32 | destination);
+					if (!directed) {
+						edgeSet.add((long)destination << 32 | source);
+					}
+				}
+			}
+		}
+		long[] edges = edgeSet.toLongArray();
+		LongArrays.quickSort(edges);
+
+		long[] vertexIds = new long[NUM_VERTICES];
+		for (int v = 0; v < NUM_VERTICES; v++) {
+			vertexIds[v] = 3L * v;
+		}
+		int[] offsets = new int[NUM_VERTICES + 1];
+		int[] neighbours = new int[edges.length];
+		for (int i = 0; i < edges.length; i++) {
+			offsets[(int)(edges[i] >>> 32) + 1]++;
+			neighbours[i] = (int)edges[i];
+		}
+		for (int v = 0; v < NUM_VERTICES; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		return new CsrGraph(vertexIds, VertexIndex.build(vertexIds), offsets, neighbours, null, directed, 1);
+	}
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
+import science.atlarge.graphalytics.reference.algorithms.bfs.BreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.CommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.sssp.SingleSourceShortestPathJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.WeaklyConnectedComponentsJob;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.VertexIndex;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the jobs do not allocate memory per edge they visit. Every job is run once to warm up, and then once
+ * more while measuring the bytes allocated by the (single) thread running it. The measurement must stay within a
+ * budget for the per-vertex result arrays and output map, a fixed amount for bookkeeping, and a small amount per
+ * edge that is far below the size of any object.
+ */
+public class JobAllocationTest {
+
+	private static final int NUM_VERTICES = 4000;
+	private static final int EDGES_PER_VERTEX = 32;
+	private static final int ITERATIONS = 10;
+	private static final long SOURCE_VERTEX = vertexId(0);
+
+	private static final long BYTES_PER_VERTEX = 96;
+	private static final double BYTES_PER_EDGE = 0.25;
+	private static final long FIXED_BYTES = 64 * 1024;
+
+	private ThreadMXBean threadBean;
+
+	@Before
+	public void setUp() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof ThreadMXBean);
+		threadBean = (ThreadMXBean) bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	@Test
+	public void testBreadthFirstSearch() {
+		for (boolean directed : new boolean[] {true, false}) {
+			final CsrGraph graph = generateGraph(directed, false);
+			assertWithinBudget("BFS", graph, 1, new Runnable() {
+				@Override
+				public void run() {
+					new BreadthFirstSearchJob(graph, new BreadthFirstSearchParameters(SOURCE_VERTEX)).run();
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testCommunityDetection() {
+		for (boolean directed : new boolean[] {true, false}) {
+			final CsrGraph graph = generateGraph(directed, false);
+			assertWithinBudget("CDLP", graph, ITERATIONS, new Runnable() {
+				@Override
+				public void run() {
+					new CommunityDetectionLPJob(graph, new CommunityDetectionLPParameters(ITERATIONS)).run();
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testWeaklyConnectedComponents() {
+		for (boolean directed : new boolean[] {true, false}) {
+			final CsrGraph graph = generateGraph(directed, false);
+			assertWithinBudget("WCC", graph, 1, new Runnable() {
+				@Override
+				public void run() {
+					new WeaklyConnectedComponentsJob(graph).run();
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testPageRank() {
+		for (boolean directed : new boolean[] {true, false}) {
+			final CsrGraph graph = generateGraph(directed, false);
+			assertWithinBudget("PR", graph, ITERATIONS, new Runnable() {
+				@Override
+				public void run() {
+					new PageRankJob(graph, new PageRankParameters(0.85f, ITERATIONS)).run();
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testLocalClusteringCoefficient() {
+		for (boolean directed : new boolean[] {true, false}) {
+			final CsrGraph graph = generateGraph(directed, false);
+			assertWithinBudget("LCC", graph, 1, new Runnable() {
+				@Override
+				public void run() {
+					new LocalClusteringCoefficientJob(graph).run();
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testSingleSourceShortestPaths() {
+		for (boolean directed : new boolean[] {true, false}) {
+			final CsrGraph graph = generateGraph(directed, true);
+			assertWithinBudget("SSSP", graph, 1, new Runnable() {
+				@Override
+				public void run() {
+					new SingleSourceShortestPathJob(graph, new SingleSourceShortestPathsParameters(SOURCE_VERTEX)).run();
+				}
+			});
+		}
+	}
+
+	private void assertWithinBudget(String name, CsrGraph graph, int passes, Runnable job) {
+		if (graph.supportsIncomingEdges()) {
+			graph.buildIncomingEdges();
+		}
+		job.run();
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+		job.run();
+		long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+		long edgesVisited = (long)passes * graph.getNumberOfEdges() * (graph.isDirected() ? 2 : 1);
+		long budget = BYTES_PER_VERTEX * graph.getNumberOfVertices() + (long)(BYTES_PER_EDGE * edgesVisited) +
+				FIXED_BYTES;
+		assertTrue(name + (graph.isDirected() ? " (directed)" : " (undirected)") + " allocated " + allocated +
+				" bytes, budget is " + budget + " bytes", allocated <= budget);
+	}
+
+	/**
+	 * Generates a random graph with sorted neighbour lists, in which vertex IDs are spread out to avoid dense IDs.
+	 */
+	private static CsrGraph generateGraph(boolean directed, boolean weighted) {
+		Random random = new Random(42);
+		LongOpenHashSet edgeSet = new LongOpenHashSet();
+		for (int source = 0; source < NUM_VERTICES; source++) {
+			for (int i = 0; i < EDGES_PER_VERTEX / (directed ? 1 : 2); i++) {
+				int destination = random.nextInt(NUM_VERTICES);
+				if (destination != source) {
+					edgeSet.add((long)source << 32 | destination);
+					if (!directed) {
+						edgeSet.add((long)destination << 32 | source);
+					}
+				}
+			}
+		}
+		long[] edges = edgeSet.toLongArray();
+		LongArrays.quickSort(edges);
+
+		long[] vertexIds = new long[NUM_VERTICES];
+		for (int v = 0; v < NUM_VERTICES; v++) {
+			vertexIds[v] = vertexId(v);
+		}
+		VertexIndex vertexIndices = VertexIndex.build(vertexIds);
+
+		int[] offsets = new int[NUM_VERTICES + 1];
+		int[] neighbours = new int[edges.length];
+		double[] weights = weighted ? new double[edges.length] : null;
+		for (int i = 0; i < edges.length; i++) {
+			offsets[(int)(edges[i] >>> 32) + 1]++;
+			neighbours[i] = (int)edges[i];
+			if (weighted) {
+				weights[i] = random.nextDouble();
+			}
+		}
+		for (int v = 0; v < NUM_VERTICES; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		return new CsrGraph(vertexIds, vertexIndices, offsets, neighbours, weights, directed, 1);
+	}
+
+	private static long vertexId(int index) {
+		return 7L * index + 3;
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
+import science.atlarge.graphalytics.reference.algorithms.bfs.BreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
+import science.atlarge.graphalytics.reference.algorithms.sssp.SingleSourceShortestPathJob;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.GraphStatistics;
+import science.atlarge.graphalytics.reference.graph.VertexIndex;
+import science.atlarge.graphalytics.reference.util.ParallelExecutor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the implementation variants of BFS, LCC and SSSP produce exactly the output of the baseline variants,
+ * on sparse and dense random graphs and for several numbers of threads, and that SSSP on weights stored in single
+ * precision stays within the rounding error of the weights.
+ */
+public class JobVariantsTest {
+
+	private static final int NUM_VERTICES = 2000;
+	private static final int[] EDGES_PER_VERTEX = {1, 3, 24};
+	private static final int[] NUM_THREADS = {1, 4};
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testDirectionOptimizingBreadthFirstSearch() {
+		for (boolean directed : new boolean[] {true, false}) {
+			for (int edgesPerVertex : EDGES_PER_VERTEX) {
+				CsrGraph graph = generateGraph(directed, edgesPerVertex, false);
+				graph.buildIncomingEdges();
+				for (int source : new int[] {0, NUM_VERTICES / 2}) {
+					BreadthFirstSearchParameters parameters = new BreadthFirstSearchParameters(graph.getVertexId(source));
+					for (int numThreads : NUM_THREADS) {
+						try (ParallelExecutor executor = new ParallelExecutor(numThreads)) {
+							assertEquals(message(graph, edgesPerVertex, numThreads),
+									new BreadthFirstSearchJob(graph, parameters).run(),
+									new BreadthFirstSearchJob(graph, parameters, executor,
+											BreadthFirstSearchJob.Variant.DIRECTION_OPTIMIZING).run());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBitmapLocalClusteringCoefficient() {
+		for (boolean directed : new boolean[] {true, false}) {
+			for (int edgesPerVertex : EDGES_PER_VERTEX) {
+				CsrGraph graph = generateGraph(directed, edgesPerVertex, false);
+				for (int numThreads : NUM_THREADS) {
+					try (ParallelExecutor executor = new ParallelExecutor(numThreads)) {
+						assertEquals(message(graph, edgesPerVertex, numThreads),
+								new LocalClusteringCoefficientJob(graph).run(),
+								new LocalClusteringCoefficientJob(graph, executor,
+										LocalClusteringCoefficientJob.Variant.BITMAP).run());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSinglePrecisionShortestPaths() {
+		for (int edgesPerVertex : EDGES_PER_VERTEX) {
+			CsrGraph graph = generateGraph(true, edgesPerVertex, true);
+			CsrGraph floatGraph = toSinglePrecision(graph);
+			SingleSourceShortestPathsParameters parameters =
+					new SingleSourceShortestPathsParameters(graph.getVertexId(0));
+			Long2DoubleMap expected = new SingleSourceShortestPathJob(graph, parameters).run();
+			for (int numThreads : NUM_THREADS) {
+				try (ParallelExecutor executor = new ParallelExecutor(numThreads)) {
+					for (SingleSourceShortestPathJob.Variant variant : SingleSourceShortestPathJob.Variant.values()) {
+						Long2DoubleMap actual = new SingleSourceShortestPathJob(floatGraph, parameters, executor,
+								variant, 0.5).run();
+						assertEquals(expected.size(), actual.size());
+						for (Long2DoubleMap.Entry entry : expected.long2DoubleEntrySet()) {
+							double distance = entry.getDoubleValue();
+							assertEquals(message(graph, edgesPerVertex, numThreads) + ", " + variant,
+									distance, actual.get(entry.getLongKey()), Math.ulp(1.0f) * distance);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testDeltaSteppingShortestPaths() {
+		for (boolean directed : new boolean[] {true, false}) {
+			for (int edgesPerVertex : EDGES_PER_VERTEX) {
+				CsrGraph graph = generateGraph(directed, edgesPerVertex, true);
+				SingleSourceShortestPathsParameters parameters =
+						new SingleSourceShortestPathsParameters(graph.getVertexId(0));
+				double selectedDelta = SingleSourceShortestPathJob.selectDelta(GraphStatistics.compute(graph));
+				for (double delta : new double[] {0.01, selectedDelta, 1000.0}) {
+					for (int numThreads : NUM_THREADS) {
+						try (ParallelExecutor executor = new ParallelExecutor(numThreads)) {
+							assertEquals(message(graph, edgesPerVertex, numThreads) + ", delta " + delta,
+									new SingleSourceShortestPathJob(graph, parameters).run(),
+									new SingleSourceShortestPathJob(graph, parameters, executor,
+											SingleSourceShortestPathJob.Variant.DELTA_STEPPING, delta).run());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testVariantSelection() {
+		// A dense graph with a small diameter, and a sparse graph with a large diameter
+		GraphStatistics dense = GraphStatistics.compute(generateGraph(false, 24, true));
+		GraphStatistics sparse = GraphStatistics.compute(generateGraph(false, 1, true));
+
+		assertEquals(BreadthFirstSearchJob.Variant.DIRECTION_OPTIMIZING,
+				BreadthFirstSearchJob.selectVariant(dense, true));
+		assertEquals(BreadthFirstSearchJob.Variant.TOP_DOWN, BreadthFirstSearchJob.selectVariant(sparse, true));
+		assertEquals(LocalClusteringCoefficientJob.Variant.BITMAP, LocalClusteringCoefficientJob.selectVariant(dense));
+		assertEquals(LocalClusteringCoefficientJob.Variant.MERGE, LocalClusteringCoefficientJob.selectVariant(sparse));
+		// The graphs are too small for delta-stepping to pay off
+		assertEquals(SingleSourceShortestPathJob.Variant.DIJKSTRA, SingleSourceShortestPathJob.selectVariant(dense, 4));
+	}
+
+	private static String message(CsrGraph graph, int edgesPerVertex, int numThreads) {
+		return (graph.isDirected() ? "directed" : "undirected") + ", " + edgesPerVertex + " edges per vertex, " +
+				numThreads + " threads";
+	}
+
+	private static CsrGraph toSinglePrecision(CsrGraph graph) {
+		int numVertices = graph.getNumberOfVertices();
+		long[] vertexIds = new long[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			vertexIds[v] = graph.getVertexId(v);
+		}
+		double[] weights = graph.getOutWeights();
+		float[] floatWeights = new float[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			floatWeights[i] = (float)weights[i];
+		}
+		return new CsrGraph(vertexIds, VertexIndex.build(vertexIds), graph.getOutOffsets(), graph.getOutNeighbours(),
+				null, floatWeights, graph.isDirected(), true, 1);
+	}
+
+	/**
+	 * Generates a random graph with sorted neighbour lists. Weights are drawn from a small set of values, including
+	 * zero, so that many paths have the same length.
+	 */
+	private CsrGraph generateGraph(boolean directed, int edgesPerVertex, boolean weighted) {
+		LongOpenHashSet edgeSet = new LongOpenHashSet();
+		for (int source = 0; source < NUM_VERTICES; source++) {
+			for (int i = 0; i < edgesPerVertex; i++) {
+				int destination = random.nextInt(NUM_VERTICES);
+				if (destination != source) {
+					edgeSet.add((long)source << 32 | destination);
+					if (!directed) {
+						edgeSet.add((long)destination << 32 | source);
+					}
+				}
+			}
+		}
+		long[] edges = edgeSet.toLongArray();
+		LongArrays.quickSort(edges);
+
+		long[] vertexIds = new long[NUM_VERTICES];
+		for (int v = 0; v < NUM_VERTICES; v++) {
+			vertexIds[v] = 7L * v + 3;
+		}
+		VertexIndex vertexIndices = VertexIndex.build(vertexIds);
+
+		int[] offsets = new int[NUM_VERTICES + 1];
+		int[] neighbours = new int[edges.length];
+		double[] weights = weighted ? new double[edges.length] : null;
+		for (int i = 0; i < edges.length; i++) {
+			offsets[(int)(edges[i] >>> 32) + 1]++;
+			neighbours[i] = (int)edges[i];
+			if (weighted) {
+				weights[i] = random.nextInt(8) * 0.125 + (random.nextBoolean() ? random.nextDouble() : 0.0);
+			}
+		}
+		for (int v = 0; v < NUM_VERTICES; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		return new CsrGraph(vertexIds, vertexIndices, offsets, neighbours, weights, directed, 1);
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.cdlp;
+
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.partitioned.PartitionedRunner;
+import science.atlarge.graphalytics.reference.partitioned.Partitioning;
+import science.atlarge.graphalytics.validation.GraphStructure;
+import science.atlarge.graphalytics.validation.algorithms.cdlp.CommunityDetectionLPOutput;
+import science.atlarge.graphalytics.validation.algorithms.cdlp.CommunityDetectionLPValidationTest;
+
+/**
+ * Validation tests for the partitioned community detection implementation, with three workers on threads of the test
+ * JVM.
+ */
+public class PartitionedCommunityDetectionLPJobTest extends CommunityDetectionLPValidationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Override
+	public CommunityDetectionLPOutput executeDirectedCommunityDetection(GraphStructure graph,
+			CommunityDetectionLPParameters parameters) throws Exception {
+		return execute(graph, parameters);
+	}
+
+	@Override
+	public CommunityDetectionLPOutput executeUndirectedCommunityDetection(GraphStructure graph,
+			CommunityDetectionLPParameters parameters) throws Exception {
+		return execute(graph, parameters);
+	}
+
+	private CommunityDetectionLPOutput execute(GraphStructure graph, CommunityDetectionLPParameters parameters)
+			throws Exception {
+		CsrGraph csrGraph = CsrGraph.fromPropertyGraph(graph.toPropertyGraph());
+		Long2LongMap output = (Long2LongMap)PartitionedRunner.run(csrGraph, folder.getRoot(),
+				Algorithm.CDLP, parameters, Partitioning.HASH, 3);
+		return new CommunityDetectionLPOutput(output);
+	}
+
+}
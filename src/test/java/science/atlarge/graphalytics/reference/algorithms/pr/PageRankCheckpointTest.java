@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.pr;
+
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.VertexIndex;
+import science.atlarge.graphalytics.reference.util.CheckpointStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests for resuming PageRank from a checkpoint.
+ */
+public class PageRankCheckpointTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testResumeFromCheckpoint() {
+		CsrGraph graph = createGraph();
+		PageRankParameters parameters = new PageRankParameters(0.85f, 10);
+		Long2DoubleMap expected = new PageRankJob(graph, parameters).run();
+
+		// Simulate a run that crashed after checkpointing the ranks of iteration 4
+		Long2DoubleMap partial = new PageRankJob(graph, new PageRankParameters(0.85f, 4)).run();
+		double[] ranks = new double[graph.getNumberOfVertices()];
+		for (int v = 0; v < ranks.length; v++) {
+			ranks[v] = partial.get(graph.getVertexId(v));
+		}
+
+		try (CheckpointStore checkpoints = new CheckpointStore(folder.getRoot().toPath(), "graph-PR", 2)) {
+			checkpoints.save(PageRankJob.checkpointFingerprint(graph, parameters), 4, ranks);
+			checkpoints.awaitWrite(ranks);
+
+			PageRankJob job = new PageRankJob(graph, parameters);
+			job.setCheckpointStore(checkpoints);
+			Long2DoubleMap actual = job.run();
+
+			for (int v = 0; v < graph.getNumberOfVertices(); v++) {
+				long id = graph.getVertexId(v);
+				assertEquals(expected.get(id), actual.get(id), 0.0);
+			}
+			// The simulated checkpoint, followed by checkpoints after iterations 6 and 8
+			assertEquals(3, checkpoints.getNumberOfCheckpoints());
+			assertFalse(Files.exists(checkpoints.getFile()));
+		}
+	}
+
+	private static CsrGraph createGraph() {
+		long[] vertexIds = {1, 2, 3, 4, 5};
+		VertexIndex vertexIndices = VertexIndex.build(vertexIds);
+		int[] offsets = {0, 2, 3, 5, 6, 6};
+		int[] neighbours = {1, 2, 2, 0, 4, 0};
+		return new CsrGraph(vertexIds, vertexIndices, offsets, neighbours, null, true, 1);
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.pr;
+
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraphLoader;
+import science.atlarge.graphalytics.validation.GraphStructure;
+import science.atlarge.graphalytics.validation.algorithms.pr.PageRankOutput;
+import science.atlarge.graphalytics.validation.algorithms.pr.PageRankValidationTest;
+
+/**
+ * Validation tests for the semi-external PageRank implementation.
+ */
+public class SemiExternalPageRankJobTest extends PageRankValidationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Override
+	public PageRankOutput executeDirectedPageRank(GraphStructure graph, PageRankParameters parameters)
+			throws Exception {
+		return execute(graph, parameters);
+	}
+
+	@Override
+	public PageRankOutput executeUndirectedPageRank(GraphStructure graph, PageRankParameters parameters)
+			throws Exception {
+		return execute(graph, parameters);
+	}
+
+	private PageRankOutput execute(GraphStructure graph, PageRankParameters parameters) throws Exception {
+		SemiExternalGraphLoader loader = new SemiExternalGraphLoader(folder.getRoot().toPath(), 64, 64);
+		try (SemiExternalGraph semiExternalGraph = loader.load("pr",
+				CsrGraph.fromPropertyGraph(graph.toPropertyGraph()))) {
+			Long2DoubleMap output = new SemiExternalPageRankJob(semiExternalGraph, parameters).run();
+			return new PageRankOutput(output);
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.algorithms.wcc;
+
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraphLoader;
+import science.atlarge.graphalytics.validation.GraphStructure;
+import science.atlarge.graphalytics.validation.algorithms.wcc.WeaklyConnectedComponentsOutput;
+import science.atlarge.graphalytics.validation.algorithms.wcc.WeaklyConnectedComponentsValidationTest;
+
+/**
+ * Validation tests for the semi-external connected components implementation.
+ */
+public class SemiExternalWeaklyConnectedComponentsJobTest extends WeaklyConnectedComponentsValidationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Override
+	public WeaklyConnectedComponentsOutput executeDirectedConnectedComponents(GraphStructure graph) throws Exception {
+		return execute(graph);
+	}
+
+	@Override
+	public WeaklyConnectedComponentsOutput executeUndirectedConnectedComponents(GraphStructure graph) throws Exception {
+		return execute(graph);
+	}
+
+	private WeaklyConnectedComponentsOutput execute(GraphStructure graph) throws Exception {
+		SemiExternalGraphLoader loader = new SemiExternalGraphLoader(folder.getRoot().toPath(), 64, 64);
+		try (SemiExternalGraph semiExternalGraph = loader.load("wcc",
+				CsrGraph.fromPropertyGraph(graph.toPropertyGraph()))) {
+			Long2LongMap output = new SemiExternalWeaklyConnectedComponentsJob(semiExternalGraph).run();
+			return new WeaklyConnectedComponentsOutput(output);
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the pipelined loading of graphs into a CsrGraph.
+ */
+public class CsrGraphLoaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDirectedGraph() throws IOException {
+		CsrGraph graph = load(true, false, "10 20", "10 30", "30 20", "20 10");
+
+		assertEquals(4, graph.getNumberOfVertices());
+		assertEquals(4, graph.getNumberOfEdges());
+		assertEquals(1, graph.getVertexIndex(20));
+		assertEquals(-1, graph.getVertexIndex(50));
+		assertEquals(40, graph.getVertexId(3));
+
+		assertArrayEquals(new int[] {0, 2, 3, 4, 4}, graph.getOutOffsets());
+		assertArrayEquals(new int[] {1, 2, 0, 1}, graph.getOutNeighbours());
+		assertFalse(graph.hasIncomingEdges());
+		assertArrayEquals(new int[] {0, 1, 3, 4, 4}, graph.getInOffsets());
+		assertArrayEquals(new int[] {1, 0, 2, 0}, graph.getInNeighbours());
+		assertNull(graph.getOutWeights());
+	}
+
+	@Test
+	public void testUndirectedGraphStoresBothDirections() throws IOException {
+		CsrGraph graph = load(false, false, "10 20", "30 20");
+
+		assertEquals(4, graph.getNumberOfEdges());
+		assertArrayEquals(new int[] {0, 1, 3, 4, 4}, graph.getOutOffsets());
+		assertArrayEquals(new int[] {1, 0, 2, 1}, graph.getOutNeighbours());
+		assertTrue(graph.hasIncomingEdges());
+		assertSame(graph.getOutNeighbours(), graph.getInNeighbours());
+	}
+
+	@Test
+	public void testWeightedGraph() throws IOException {
+		CsrGraph graph = load(true, true, "10 20 0.5", "30 40 1.5", "10 40 2.0e1");
+
+		assertArrayEquals(new int[] {1, 3, 3}, graph.getOutNeighbours());
+		assertArrayEquals(new double[] {0.5, 20.0, 1.5}, graph.getOutWeights(), 0.0);
+	}
+
+	@Test
+	public void testEdgesAreSortedPerVertex() throws IOException {
+		CsrGraph graph = load(true, false, "10 40", "10 20", "30 20", "10 30");
+
+		assertArrayEquals(new int[] {0, 3, 3, 4, 4}, graph.getOutOffsets());
+		assertArrayEquals(new int[] {1, 2, 3, 1}, graph.getOutNeighbours());
+	}
+
+	@Test
+	public void testSelfLoopsAndDuplicatesAreRemoved() throws IOException {
+		CsrGraph graph = load(false, false, "10 20", "20 20", "20 10", "30 40", "10 20");
+
+		assertEquals(4, graph.getNumberOfEdges());
+		assertArrayEquals(new int[] {0, 1, 2, 3, 4}, graph.getOutOffsets());
+		assertArrayEquals(new int[] {1, 0, 3, 2}, graph.getOutNeighbours());
+	}
+
+	@Test
+	public void testDuplicateWithLowestWeightIsKept() throws IOException {
+		CsrGraph graph = load(true, true, "10 30 3.0", "10 20 2.0", "10 30 1.0", "10 10 0.5", "10 30 2.0");
+
+		assertArrayEquals(new int[] {0, 2, 2, 2, 2}, graph.getOutOffsets());
+		assertArrayEquals(new int[] {1, 2}, graph.getOutNeighbours());
+		assertArrayEquals(new double[] {2.0, 1.0}, graph.getOutWeights(), 0.0);
+	}
+
+	@Test
+	public void testSinglePrecisionWeights() throws IOException {
+		CsrGraphLoader loader = new CsrGraphLoader(2);
+		loader.setWeightPrecision(WeightPrecision.FLOAT);
+		CsrGraph graph = load(loader, false, true, "10 30 0.1", "10 20 2.0", "30 10 0.05", "10 10 0.5");
+
+		assertEquals(WeightPrecision.FLOAT, graph.getWeightPrecision());
+		assertNull(graph.getOutWeights());
+		assertArrayEquals(new int[] {1, 2, 0, 0}, graph.getOutNeighbours());
+		assertArrayEquals(new float[] {2.0f, 0.05f, 2.0f, 0.05f}, graph.getOutFloatWeights(), 0.0f);
+		assertEquals(0.05f, graph.getOutWeight(1), 0.0);
+	}
+
+	@Test(expected = IOException.class)
+	public void testWeightOutOfSinglePrecisionRangeIsRejected() throws IOException {
+		CsrGraphLoader loader = new CsrGraphLoader(2);
+		loader.setWeightPrecision(WeightPrecision.FLOAT);
+		load(loader, true, true, "10 20 1.0", "10 30 1e-300");
+	}
+
+	@Test
+	public void testManyChunksAcrossThreads() throws IOException {
+		int numVertices = 1000;
+		int numEdges = 200000;
+		File vertexFile = folder.newFile();
+		File edgeFile = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(vertexFile)) {
+			for (int i = 0; i < numVertices; i++) {
+				writer.println(i);
+			}
+		}
+		try (PrintWriter writer = new PrintWriter(edgeFile)) {
+			for (int i = 0; i < numEdges; i++) {
+				// Without self-loops; the neighbours of the highest vertices wrap around to the lowest indices
+				int source = i % numVertices;
+				writer.println(source + " " + ((source + 1 + i / numVertices) % numVertices));
+			}
+		}
+
+		CsrGraph graph = new CsrGraphLoader(4).load(vertexFile.getPath(), edgeFile.getPath(), true, false);
+
+		assertEquals(numEdges, graph.getNumberOfEdges());
+		for (int v = 0; v < numVertices; v++) {
+			assertEquals(numEdges / numVertices, graph.getOutDegree(v));
+			// Outgoing edges are sorted by destination, incoming edges by source
+			for (int i = graph.getOutOffsets()[v] + 1; i < graph.getOutOffsets()[v + 1]; i++) {
+				assertTrue(graph.getOutNeighbours()[i - 1] < graph.getOutNeighbours()[i]);
+			}
+			for (int i = graph.getInOffsets()[v] + 1; i < graph.getInOffsets()[v + 1]; i++) {
+				assertTrue(graph.getInNeighbours()[i - 1] < graph.getInNeighbours()[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testParallelScatterMatchesSingleThread() throws IOException {
+		int numVertices = 500;
+		int numEdges = 150000;
+		File vertexFile = folder.newFile();
+		File edgeFile = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(vertexFile)) {
+			for (int i = 0; i < numVertices; i++) {
+				writer.println(i);
+			}
+		}
+		try (PrintWriter writer = new PrintWriter(edgeFile)) {
+			for (int i = 0; i < numEdges; i++) {
+				// Contains duplicates with different weights, of which the lowest weight must be kept
+				int source = i % numVertices;
+				int destination = (source + 1 + (i / numVertices) % 97) % numVertices;
+				writer.println(source + " " + destination + " " + (i % 13 + 0.5));
+			}
+		}
+
+		CsrGraph sequential = new CsrGraphLoader(1).load(vertexFile.getPath(), edgeFile.getPath(), false, true);
+		CsrGraph parallel = new CsrGraphLoader(4).load(vertexFile.getPath(), edgeFile.getPath(), false, true);
+
+		assertArrayEquals(sequential.getOutOffsets(), parallel.getOutOffsets());
+		assertArrayEquals(sequential.getOutNeighbours(), parallel.getOutNeighbours());
+		assertArrayEquals(sequential.getOutWeights(), parallel.getOutWeights(), 0.0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDisallowedIncomingEdges() throws IOException {
+		CsrGraph graph = load(true, false, "10 20");
+
+		CsrGraph outgoingOnly = new CsrGraph(new long[] {10, 20}, null, graph.getOutOffsets(),
+				graph.getOutNeighbours(), null, true, false, 1);
+		assertFalse(outgoingOnly.supportsIncomingEdges());
+		outgoingOnly.getInNeighbours();
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnknownVertexIsRejected() throws IOException {
+		load(true, false, "10 20", "10 50");
+	}
+
+	private CsrGraph load(boolean directed, boolean weighted, String... edges) throws IOException {
+		return load(new CsrGraphLoader(2), directed, weighted, edges);
+	}
+
+	private CsrGraph load(CsrGraphLoader loader, boolean directed, boolean weighted, String... edges)
+			throws IOException {
+		File vertexFile = folder.newFile();
+		File edgeFile = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(vertexFile)) {
+			writer.println("10");
+			writer.println("20");
+			writer.println("30");
+			writer.println("40");
+		}
+		try (PrintWriter writer = new PrintWriter(edgeFile)) {
+			for (String edge : edges) {
+				writer.println(edge);
+			}
+		}
+		return loader.load(vertexFile.getPath(), edgeFile.getPath(), directed, weighted);
+	}
+
+}
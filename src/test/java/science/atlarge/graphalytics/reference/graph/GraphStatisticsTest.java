@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the statistics computed from a CsrGraph.
+ */
+public class GraphStatisticsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testUndirectedPathAndStar() throws IOException {
+		// A path 1-2-3-4-5-6 and a star with center 10 and leaves 11 to 15; vertex 20 is isolated
+		GraphStatistics statistics = GraphStatistics.compute(load(false, false,
+				new long[] {1, 2, 3, 4, 5, 6, 10, 11, 12, 13, 14, 15, 20},
+				"1 2", "2 3", "3 4", "4 5", "5 6", "10 11", "10 12", "10 13", "10 14", "10 15"));
+
+		assertEquals(13, statistics.getNumberOfVertices());
+		assertEquals(20, statistics.getNumberOfEdges());
+		assertEquals(5, statistics.getMaxDegree());
+		// Degrees 0: 1 vertex, 1: 7 vertices, 2-3: 4 vertices, 4-7: 1 vertex
+		assertArrayEquals(new long[] {1, 7, 4, 1}, statistics.getDegreeHistogram());
+		assertEquals(3, statistics.getNumberOfComponents());
+		assertEquals(6, statistics.getLargestComponentSize());
+		// The first sweep starts in the star, so the path is never explored
+		assertEquals(2, statistics.getEstimatedDiameter());
+		assertEquals(0.0, statistics.getMaxWeight(), 0.0);
+	}
+
+	@Test
+	public void testDiameterOfPathFromItsMiddle() throws IOException {
+		// The vertex of maximum degree (first in the vertex file) is in the middle of the path
+		GraphStatistics statistics = GraphStatistics.compute(load(false, false,
+				new long[] {4, 1, 2, 3, 5, 6, 7, 8}, "1 2", "2 3", "3 4", "4 5", "5 6", "6 7", "7 8"));
+
+		assertEquals(1, statistics.getNumberOfComponents());
+		assertEquals(7, statistics.getEstimatedDiameter());
+	}
+
+	@Test
+	public void testDirectedWeightedGraph() throws IOException {
+		GraphStatistics statistics = GraphStatistics.compute(load(true, true, new long[] {1, 2, 3, 4},
+				"1 2 0.5", "1 3 1.5", "2 3 4.0", "3 1 2.0"));
+
+		assertEquals(4, statistics.getNumberOfEdges());
+		assertEquals(1.0, statistics.getAverageDegree(), 0.0);
+		assertEquals(2, statistics.getMaxDegree());
+		// Components ignore the direction of edges
+		assertEquals(2, statistics.getNumberOfComponents());
+		assertEquals(3, statistics.getLargestComponentSize());
+		assertEquals(4.0, statistics.getMaxWeight(), 0.0);
+		assertEquals(2.0, statistics.getAverageWeight(), 0.0);
+	}
+
+	private CsrGraph load(boolean directed, boolean weighted, long[] vertices, String... edges) throws IOException {
+		File vertexFile = folder.newFile();
+		File edgeFile = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(vertexFile)) {
+			for (long vertex : vertices) {
+				writer.println(vertex);
+			}
+		}
+		try (PrintWriter writer = new PrintWriter(edgeFile)) {
+			for (String edge : edges) {
+				writer.println(edge);
+			}
+		}
+		return new CsrGraphLoader(1).load(vertexFile.getPath(), edgeFile.getPath(), directed, weighted);
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the memory estimates used to admit runs.
+ */
+public class MemoryEstimatorTest {
+
+	private static final long NUM_VERTICES = 10000000L;
+	private static final long NUM_EDGES = 200000000L;
+
+	@Test
+	public void testIncomingEdgesIncreaseEstimateOfDirectedGraphs() {
+		// A sparse graph, for which processing rather than loading determines the peak memory usage
+		MemoryEstimator estimator = new MemoryEstimator(NUM_VERTICES, NUM_VERTICES, true, false, 4);
+
+		long withIncomingEdges = estimator.estimatePeakBytes(Algorithm.PR, true);
+		long withoutIncomingEdges = estimator.estimatePeakBytes(Algorithm.PR, false);
+
+		assertEquals(estimator.estimateIncomingEdgeBytes(), withIncomingEdges - withoutIncomingEdges);
+		// The incoming edges are as large as the outgoing edges
+		assertTrue(estimator.estimateIncomingEdgeBytes() > 4 * NUM_VERTICES);
+	}
+
+	@Test
+	public void testIncomingEdgesAreFreeForUndirectedGraphs() {
+		MemoryEstimator estimator = new MemoryEstimator(NUM_VERTICES, NUM_EDGES, false, false, 4);
+
+		assertEquals(estimator.estimatePeakBytes(Algorithm.WCC, false), estimator.estimatePeakBytes(Algorithm.WCC, true));
+	}
+
+	@Test
+	public void testEstimateCoversEdgeArrays() {
+		MemoryEstimator unweighted = new MemoryEstimator(NUM_VERTICES, NUM_EDGES, false, false, 4);
+		MemoryEstimator weighted = new MemoryEstimator(NUM_VERTICES, NUM_EDGES, false, true, 4);
+
+		// Undirected edges are stored in both directions
+		assertTrue(unweighted.estimateGraphBytes() > 2 * 4 * NUM_EDGES);
+		assertTrue(weighted.estimateGraphBytes() > 2 * 12 * NUM_EDGES);
+		assertTrue(weighted.estimatePeakBytes(Algorithm.SSSP, false) >= weighted.estimateLoadBytes());
+	}
+
+	@Test
+	public void testConcurrentEstimateCoversConcurrentJobs() {
+		// A sparse graph, so that the working state of the jobs outweighs the memory used to load it
+		MemoryEstimator estimator = new MemoryEstimator(NUM_VERTICES, NUM_VERTICES / 10, true, false, 4);
+		List<Algorithm> algorithms = Arrays.asList(Algorithm.BFS, Algorithm.PR, Algorithm.WCC);
+
+		assertEquals(estimator.estimatePeakBytes(Algorithm.PR, true),
+				estimator.estimateConcurrentPeakBytes(Collections.singletonList(Algorithm.PR), 1, true));
+		long oneAtATime = estimator.estimateConcurrentPeakBytes(algorithms, 1, true);
+		long allAtOnce = estimator.estimateConcurrentPeakBytes(algorithms, 3, true);
+		// The outputs of all jobs are kept, but only the largest job holds its working state
+		assertTrue(oneAtATime > estimator.estimatePeakBytes(Algorithm.PR, true));
+		assertTrue(allAtOnce > oneAtATime);
+	}
+
+	@Test
+	public void testUndirectedEdgesCountTwiceTowardsEdgeLimit() {
+		long numEdges = CsrGraphLoader.MAX_EDGES / 2 + 1;
+		assertTrue(new MemoryEstimator(NUM_VERTICES, numEdges, true, false, 4).fitsInCsrGraph());
+		assertFalse(new MemoryEstimator(NUM_VERTICES, numEdges, false, false, 4).fitsInCsrGraph());
+		assertTrue(new MemoryEstimator(NUM_VERTICES, numEdges - 1, false, false, 4).fitsInCsrGraph());
+		assertFalse(new MemoryEstimator(NUM_VERTICES, CsrGraphLoader.MAX_EDGES + 1, true, false, 4).fitsInCsrGraph());
+	}
+
+	@Test
+	public void testSemiExternalEstimateExcludesEdges() {
+		MemoryEstimator estimator = new MemoryEstimator(NUM_VERTICES, NUM_EDGES, true, false, 4);
+		int blockBytes = 16 << 20;
+		long partitionBytes = 1L << 30;
+
+		long pageRankBytes = estimator.estimateSemiExternalPeakBytes(Algorithm.PR, blockBytes, partitionBytes);
+		assertTrue(pageRankBytes < estimator.estimatePeakBytes(Algorithm.PR, false) - 4 * NUM_EDGES);
+		assertTrue(pageRankBytes > 24 * NUM_VERTICES + 2 * blockBytes);
+
+		// Building the neighbour lists of CDLP takes at most one partition of neighbours
+		long cdlpBytes = estimator.estimateSemiExternalPeakBytes(Algorithm.CDLP, blockBytes, partitionBytes);
+		assertTrue(cdlpBytes > partitionBytes);
+		assertTrue(cdlpBytes < partitionBytes + 8 * NUM_EDGES);
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for loading graphs into a SemiExternalGraph and streaming over their edges and neighbour lists. Blocks of
+ * two edges and partitions of four neighbours make passes cross block and partition boundaries.
+ */
+public class SemiExternalGraphLoaderTest {
+
+	private static final int BLOCK_BYTES = 16;
+	private static final int PARTITION_BYTES = 16;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDirectedGraph() throws IOException {
+		try (SemiExternalGraph graph = load(true, "10 20", "10 30", "30 30", "30 20", "20 10")) {
+			assertEquals(4, graph.getNumberOfVertices());
+			assertEquals(4, graph.getNumberOfEdges());
+			assertEquals(1, graph.getVertexIndex(20));
+			assertEquals(-1, graph.getVertexIndex(50));
+			assertEquals(40, graph.getVertexId(3));
+			assertArrayEquals(new int[] {2, 1, 1, 0}, outDegrees(graph));
+
+			// Edges are streamed sorted by source and destination, without the self-loop
+			assertArrayEquals(new int[] {0, 1, 0, 2, 1, 0, 2, 1}, streamEdges(graph));
+			assertEquals(32, graph.getIoStatistics().getBytesRead());
+		}
+	}
+
+	@Test
+	public void testUndirectedGraphStoresEdgesOnce() throws IOException {
+		try (SemiExternalGraph graph = load(false, "10 20", "30 20")) {
+			assertEquals(2, graph.getNumberOfEdges());
+			assertArrayEquals(new int[] {1, 2, 1, 0}, outDegrees(graph));
+			assertArrayEquals(new int[] {0, 1, 1, 2}, streamEdges(graph));
+		}
+	}
+
+	@Test
+	public void testDuplicateEdgesAreRemoved() throws IOException {
+		try (SemiExternalGraph graph = load(true, "10 20", "20 10", "10 20", "30 40", "10 20", "30 40")) {
+			assertEquals(3, graph.getNumberOfEdges());
+			assertArrayEquals(new int[] {1, 1, 1, 0}, outDegrees(graph));
+			assertArrayEquals(new int[] {0, 1, 1, 0, 2, 3}, streamEdges(graph));
+		}
+
+		// Both directions of an undirected edge are the same edge
+		try (SemiExternalGraph graph = load(false, "10 20", "20 10", "30 40", "40 30", "30 40", "10 30")) {
+			assertEquals(3, graph.getNumberOfEdges());
+			assertArrayEquals(new int[] {2, 1, 2, 1}, outDegrees(graph));
+			assertArrayEquals(new int[] {0, 1, 0, 2, 2, 3}, streamEdges(graph));
+		}
+	}
+
+	@Test
+	public void testNeighbourListsSpanPartitions() throws IOException {
+		try (SemiExternalGraph graph = load(true, "10 20", "10 30", "10 40", "20 10", "30 10", "40 10", "30 40")) {
+			assertFalse(graph.hasNeighbourLists());
+			graph.buildNeighbourLists();
+			assertTrue(graph.hasNeighbourLists());
+
+			// The list of vertex 10 is longer than a block and a partition
+			int[][] lists = neighbourLists(graph);
+			assertArrayEquals(new int[] {1, 1, 2, 2, 3, 3}, lists[0]);
+			assertArrayEquals(new int[] {0, 0}, lists[1]);
+			assertArrayEquals(new int[] {0, 0, 3}, lists[2]);
+			assertArrayEquals(new int[] {0, 0, 2}, lists[3]);
+		}
+	}
+
+	@Test
+	public void testCloseDeletesFiles() throws IOException {
+		SemiExternalGraph graph = load(false, "10 20", "30 20");
+		graph.buildNeighbourLists();
+		graph.close();
+
+		assertDirectoryEmpty();
+	}
+
+	@Test
+	public void testUnknownVertexIsRejected() throws IOException {
+		try {
+			load(true, "10 20", "10 50");
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// The partially written edge file is deleted
+			assertDirectoryEmpty();
+		}
+	}
+
+	@Test
+	public void testConversionFromCsrGraph() throws IOException {
+		CsrGraph csrGraph = new CsrGraphLoader(1).load(vertexFile().getPath(), edgeFile("10 20", "30 20", "40 10")
+				.getPath(), false, false);
+		try (SemiExternalGraph graph = new SemiExternalGraphLoader(directory(), BLOCK_BYTES, PARTITION_BYTES)
+				.load("test", csrGraph)) {
+			assertEquals(3, graph.getNumberOfEdges());
+			assertArrayEquals(new int[] {2, 2, 1, 1}, outDegrees(graph));
+			assertArrayEquals(new int[] {0, 1, 0, 3, 1, 2}, streamEdges(graph));
+		}
+	}
+
+	private void assertDirectoryEmpty() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory())) {
+			assertFalse(files.iterator().hasNext());
+		}
+	}
+
+	private static int[] outDegrees(SemiExternalGraph graph) {
+		int[] degrees = new int[graph.getNumberOfVertices()];
+		for (int v = 0; v < degrees.length; v++) {
+			degrees[v] = graph.getOutDegree(v);
+		}
+		return degrees;
+	}
+
+	private static int[] streamEdges(SemiExternalGraph graph) throws IOException {
+		final IntArrayList edges = new IntArrayList();
+		graph.forEachEdge(new SemiExternalGraph.EdgeVisitor() {
+			@Override
+			public void visit(int[] block, int count) {
+				edges.addElements(edges.size(), block, 0, 2 * count);
+			}
+		});
+		return edges.toIntArray();
+	}
+
+	private static int[][] neighbourLists(SemiExternalGraph graph) throws IOException {
+		final int[][] lists = new int[graph.getNumberOfVertices()][];
+		graph.forEachNeighbourList(new SemiExternalGraph.NeighbourVisitor() {
+			@Override
+			public void visit(int vertex, int[] neighbours, int from, int to) {
+				lists[vertex] = Arrays.copyOfRange(neighbours, from, to);
+				Arrays.sort(lists[vertex]);
+			}
+		});
+		return lists;
+	}
+
+	private SemiExternalGraph load(boolean directed, String... edges) throws IOException {
+		return new SemiExternalGraphLoader(directory(), BLOCK_BYTES, PARTITION_BYTES)
+				.load("test", vertexFile().getPath(), edgeFile(edges).getPath(), directed);
+	}
+
+	private Path directory() {
+		return folder.getRoot().toPath().resolve("edges");
+	}
+
+	private File vertexFile() throws IOException {
+		File vertexFile = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(vertexFile)) {
+			writer.println("10");
+			writer.println("20");
+			writer.println("30");
+			writer.println("40");
+		}
+		return vertexFile;
+	}
+
+	private File edgeFile(String... edges) throws IOException {
+		File edgeFile = folder.newFile();
+		try (PrintWriter writer = new PrintWriter(edgeFile)) {
+			for (String edge : edges) {
+				writer.println(edge);
+			}
+		}
+		return edgeFile;
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.graph;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the strategies that map vertex IDs to indices, comparing them with a hash map.
+ */
+public class VertexIndexTest {
+
+	private static final int NUM_VERTICES = 20000;
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testConsecutiveIdsUseOffsets() {
+		long[] vertexIds = new long[NUM_VERTICES];
+		for (int i = 0; i < NUM_VERTICES; i++) {
+			vertexIds[i] = i - 100;
+		}
+		check(vertexIds, VertexIndex.Strategy.OFFSET);
+		check(new long[] {Long.MAX_VALUE - 1, Long.MAX_VALUE}, VertexIndex.Strategy.OFFSET);
+		check(new long[0], VertexIndex.Strategy.OFFSET);
+	}
+
+	@Test
+	public void testDenseIdsUseDirectTable() {
+		long[] vertexIds = new long[NUM_VERTICES];
+		for (int i = 0; i < NUM_VERTICES; i++) {
+			vertexIds[i] = 1000 + i + i / 2;
+		}
+		LongArrays.shuffle(vertexIds, random);
+		check(vertexIds, VertexIndex.Strategy.DIRECT);
+	}
+
+	@Test
+	public void testRegularlySpacedIdsUseSortedIds() {
+		long[] vertexIds = new long[NUM_VERTICES];
+		for (int i = 0; i < NUM_VERTICES; i++) {
+			vertexIds[i] = 1000L * i + random.nextInt(10) - (1L << 40);
+		}
+		check(vertexIds, VertexIndex.Strategy.SORTED);
+
+		LongArrays.shuffle(vertexIds, random);
+		check(vertexIds, VertexIndex.Strategy.SORTED);
+	}
+
+	@Test
+	public void testRandomIdsUseHashTable() {
+		long[] vertexIds = distinct(NUM_VERTICES, 1L << 40);
+		check(vertexIds, VertexIndex.Strategy.HASH);
+
+		// Small IDs with a few outliers at both ends of the range of longs
+		vertexIds = distinct(NUM_VERTICES, 1L << 30);
+		vertexIds[0] = Long.MIN_VALUE;
+		vertexIds[1] = Long.MAX_VALUE;
+		LongArrays.quickSort(vertexIds);
+		check(vertexIds, VertexIndex.Strategy.HASH);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateIdsAreRejected() {
+		long[] vertexIds = distinct(NUM_VERTICES, 1L << 40);
+		vertexIds[NUM_VERTICES - 1] = vertexIds[0];
+		VertexIndex.build(vertexIds);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateDenseIdsAreRejected() {
+		VertexIndex.build(new long[] {3, 1, 2, 1});
+	}
+
+	private long[] distinct(int size, long bound) {
+		LongOpenHashSet ids = new LongOpenHashSet(size);
+		while (ids.size() < size) {
+			ids.add((random.nextLong() >>> 1) % bound);
+		}
+		long[] vertexIds = ids.toLongArray();
+		LongArrays.shuffle(vertexIds, random);
+		return vertexIds;
+	}
+
+	private void check(long[] vertexIds, VertexIndex.Strategy expected) {
+		Long2IntOpenHashMap oracle = new Long2IntOpenHashMap();
+		oracle.defaultReturnValue(-1);
+		for (int i = 0; i < vertexIds.length; i++) {
+			oracle.put(vertexIds[i], i);
+		}
+
+		VertexIndex index = VertexIndex.build(vertexIds);
+		assertEquals(expected, index.getStrategy());
+		for (int i = 0; i < vertexIds.length; i++) {
+			assertEquals(i, index.get(vertexIds[i]));
+			// Neighbouring values, which are often unknown
+			assertEquals(oracle.get(vertexIds[i] + 1), index.get(vertexIds[i] + 1));
+			assertEquals(oracle.get(vertexIds[i] - 1), index.get(vertexIds[i] - 1));
+		}
+		for (int i = 0; i < 10000; i++) {
+			long id = random.nextLong();
+			assertEquals(oracle.get(id), index.get(id));
+		}
+		assertEquals(oracle.get(Long.MIN_VALUE), index.get(Long.MIN_VALUE));
+		assertEquals(oracle.get(Long.MAX_VALUE), index.get(Long.MAX_VALUE));
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.output;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for writing job output in the background.
+ */
+public class AsyncOutputWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPlainOutput() throws IOException {
+		File file = new File(folder.getRoot(), "output");
+		write(OutputCompression.NONE, file);
+
+		assertEquals(expectedLines(), readLines(new FileInputStream(file)));
+	}
+
+	@Test
+	public void testGzipOutput() throws IOException {
+		File file = new File(folder.getRoot(), "output");
+		write(OutputCompression.GZIP, file);
+
+		assertFalse(file.exists());
+		File compressedFile = new File(folder.getRoot(), "output.gz");
+		assertTrue(compressedFile.exists());
+		assertEquals(expectedLines(), readLines(new GZIPInputStream(new FileInputStream(compressedFile))));
+	}
+
+	@Test(expected = IOException.class)
+	public void testFailureIsReportedOnCompletion() throws IOException {
+		try (AsyncOutputWriter writer = new AsyncOutputWriter(OutputCompression.NONE)) {
+			writer.submit(new File(folder.getRoot(), "missing/output").getPath(), output(), "BFS");
+			writer.awaitCompletion();
+		}
+	}
+
+	private static void write(OutputCompression compression, File file) throws IOException {
+		try (AsyncOutputWriter writer = new AsyncOutputWriter(compression)) {
+			writer.submit(file.getPath(), output(), "BFS");
+			assertTrue(writer.awaitCompletion() >= 0);
+		}
+	}
+
+	private static Long2DoubleMap output() {
+		Long2DoubleMap output = new Long2DoubleOpenHashMap();
+		for (long id = 0; id < 1000; id++) {
+			output.put(id * 3, id / 8.0);
+		}
+		return output;
+	}
+
+	private static Set<String> expectedLines() {
+		Set<String> lines = new HashSet<>();
+		for (long id = 0; id < 1000; id++) {
+			lines.add(id * 3 + " " + id / 8.0);
+		}
+		return lines;
+	}
+
+	private static Set<String> readLines(InputStream in) throws IOException {
+		Set<String> lines = new HashSet<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.reference.output.ValidationReport.Kind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the output validator on small files, split into many chunks to exercise the parallel parsing.
+ */
+public class OutputValidatorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ValidationReport validate(String reference, String output, Algorithm algorithm) throws IOException {
+		OutputValidator validator = new OutputValidator(3);
+		validator.setChunkBytes(7);
+		validator.setMaxReportedMismatches(3);
+		return validator.validate(write("reference", reference), write("output", output), algorithm);
+	}
+
+	private Path write(String name, String content) throws IOException {
+		Path file = folder.getRoot().toPath().resolve(name);
+		Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	@Test
+	public void testMatchingOutputInAnyOrderIsValid() throws IOException {
+		ValidationReport report = validate("1 0\n2 1\n3 9223372036854775807\n100 2\n",
+				"100 2\r\n\n3 9223372036854775807\n  1 0\n2 1", Algorithm.BFS);
+
+		assertTrue(report.toString(), report.isValid());
+		assertEquals(4, report.getNumberOfVertices());
+		assertEquals(OutputValidator.Rule.EXACT, report.getRule());
+	}
+
+	@Test
+	public void testMismatchesAreCountedByKind() throws IOException {
+		ValidationReport report = validate("1 0\n2 1\n3 2\n4 2\n", "1 0\n2 5\n4 2\n7 1\n4 3\n", Algorithm.CDLP);
+
+		assertFalse(report.isValid());
+		assertEquals(1, report.getNumberOfWrongValues());
+		assertEquals(1, report.getNumberOfMissingVertices());
+		assertEquals(1, report.getNumberOfUnexpectedVertices());
+		assertEquals(1, report.getNumberOfDuplicateVertices());
+		// Only the first mismatches are reported, those of the reference output first
+		assertEquals(3, report.getMismatches().size());
+		assertEquals(Kind.WRONG_VALUE, report.getMismatches().get(0).getKind());
+		assertEquals(2, report.getMismatches().get(0).getVertexId());
+		assertEquals("5", report.getMismatches().get(0).getActual());
+		assertEquals(Kind.MISSING, report.getMismatches().get(1).getKind());
+		assertEquals(3, report.getMismatches().get(1).getVertexId());
+		assertEquals(Kind.UNEXPECTED, report.getMismatches().get(2).getKind());
+	}
+
+	@Test
+	public void testRelabelledComponentsAreValid() throws IOException {
+		String reference = "1 1\n2 1\n3 3\n4 3\n5 5\n";
+		assertTrue(validate(reference, "1 2\n2 2\n3 4\n4 4\n5 5\n", Algorithm.WCC).isValid());
+		// Labels that are not vertex IDs
+		assertTrue(validate(reference, "1 -7\n2 -7\n3 80\n4 80\n5 81\n", Algorithm.WCC).isValid());
+	}
+
+	@Test
+	public void testSplitOrMergedComponentsAreInvalid() throws IOException {
+		String reference = "1 1\n2 1\n3 3\n4 3\n5 5\n";
+		ValidationReport split = validate(reference, "1 1\n2 2\n3 3\n4 3\n5 5\n", Algorithm.WCC);
+		assertFalse(split.isValid());
+		assertEquals(1, split.getNumberOfWrongValues());
+
+		ValidationReport merged = validate(reference, "1 -1\n2 -1\n3 -1\n4 -1\n5 -5\n", Algorithm.WCC);
+		assertFalse(merged.isValid());
+		assertEquals(2, merged.getNumberOfWrongValues());
+	}
+
+	@Test
+	public void testRelabelledComponentsSpanningThreadRanges() throws IOException {
+		// Components of 10 vertices interleaved over the vertices of all threads, with labels that are not vertex IDs
+		StringBuilder reference = new StringBuilder();
+		StringBuilder output = new StringBuilder();
+		StringBuilder wrong = new StringBuilder();
+		for (int v = 0; v < 1000; v++) {
+			reference.append(v).append(' ').append(v % 100).append('\n');
+			output.append(v).append(' ').append(7919L * (v % 100) - 5).append('\n');
+			wrong.append(v).append(' ').append(v == 950 ? -1 : 7919L * (v % 100) - 5).append('\n');
+		}
+		OutputValidator validator = new OutputValidator(4);
+		validator.setChunkBytes(1000);
+		assertTrue(validator.validate(write("reference", reference.toString()), write("output", output.toString()),
+				Algorithm.WCC).isValid());
+
+		ValidationReport report = validator.validate(write("reference", reference.toString()),
+				write("output", wrong.toString()), Algorithm.WCC);
+		assertEquals(1, report.getNumberOfWrongValues());
+		assertEquals(950, report.getMismatches().get(0).getVertexId());
+	}
+
+	@Test
+	public void testFloatingPointValuesMatchWithinEpsilon() throws IOException {
+		String reference = "1 0.25\n2 1.0E-7\n3 Infinity\n4 12345.678\n5 0\n";
+		assertTrue(validate(reference, "1 0.250001\n2 1.00000001e-7\n3 infinity\n4 12345.6781\n5 -0.0\n",
+				Algorithm.SSSP).isValid());
+
+		ValidationReport report = validate(reference, "1 0.26\n2 1.0E-7\n3 1e308\n4 12345.678\n5 0\n",
+				Algorithm.PR);
+		assertEquals(2, report.getNumberOfWrongValues());
+		assertEquals("Infinity", report.getMismatches().get(1).getExpected());
+	}
+
+	@Test
+	public void testParsesNumbersLikeTheJdk() throws IOException {
+		String[] numbers = {"0", "-1.5", "3.141592653589793", "0.1", "123456789012345678901234", "4.9e-324",
+				"1.7976931348623157E308", "0.000000000000000000000000000001", "2.2250738585072014E-308", "1e22",
+				"9007199254740993", "+2.5e+3", ".5", "5."};
+		for (String number : numbers) {
+			OutputValidator.LineParser parser = new OutputValidator.LineParser(
+					ByteBuffer.wrap(number.getBytes(StandardCharsets.US_ASCII)), 0, null);
+			assertTrue(parser.nextLine());
+			assertEquals(number, Double.parseDouble(number), parser.parseDouble(), 0.0);
+		}
+	}
+
+	@Test
+	public void testMalformedLinesAreRejected() throws IOException {
+		for (String output : new String[] {"1 0\n2 x\n", "1 0 0\n", "1\n", "99999999999999999999 0\n"}) {
+			try {
+				validate("1 0\n2 0\n", output, Algorithm.BFS);
+				fail("Accepted " + output);
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("at byte"));
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testDuplicateReferenceVerticesAreRejected() throws IOException {
+		validate("1 0\n1 0\n", "1 0\n", Algorithm.BFS);
+	}
+
+}
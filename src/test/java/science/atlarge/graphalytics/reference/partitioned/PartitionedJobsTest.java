@@ -0,0 +1,266 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.domain.algorithms.BreadthFirstSearchParameters;
+import science.atlarge.graphalytics.domain.algorithms.CommunityDetectionLPParameters;
+import science.atlarge.graphalytics.domain.algorithms.PageRankParameters;
+import science.atlarge.graphalytics.reference.algorithms.bfs.BreadthFirstSearchJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.CommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.cdlp.SemiExternalCommunityDetectionLPJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.PageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.pr.SemiExternalPageRankJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.WeaklyConnectedComponentsJob;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraphLoader;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraph;
+import science.atlarge.graphalytics.reference.graph.SemiExternalGraphLoader;
+import science.atlarge.graphalytics.reference.util.Progress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for partitioned runs, comparing their output with the in-memory jobs on random graphs. The graphs have
+ * several components and vertex IDs that are neither contiguous nor sorted in the vertex file. On a graph with
+ * duplicate edges, the semi-external jobs are compared as well.
+ */
+public class PartitionedJobsTest {
+
+	private static final int NUM_VERTICES = 300;
+	private static final int NUM_EDGES = 700;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testMatchesInMemoryJobs() throws IOException {
+		for (boolean directed : new boolean[] {true, false}) {
+			File[] files = writeRandomGraph(directed);
+			CsrGraph graph = new CsrGraphLoader(1).load(files[0].getPath(), files[1].getPath(), directed, false);
+			if (directed) {
+				graph.buildIncomingEdges();
+			}
+			for (Partitioning partitioning : Partitioning.values()) {
+				String message = (directed ? "directed" : "undirected") + ", " + partitioning;
+
+				BreadthFirstSearchParameters bfsParameters = new BreadthFirstSearchParameters(graph.getVertexId(0));
+				assertEquals(message, new BreadthFirstSearchJob(graph, bfsParameters).run(),
+						run(files, directed, Algorithm.BFS, bfsParameters, partitioning, 3));
+
+				CommunityDetectionLPParameters cdlpParameters = new CommunityDetectionLPParameters(10);
+				assertEquals(message, new CommunityDetectionLPJob(graph, cdlpParameters).run(),
+						run(files, directed, Algorithm.CDLP, cdlpParameters, partitioning, 3));
+
+				assertEquals(message, new WeaklyConnectedComponentsJob(graph).run(),
+						run(files, directed, Algorithm.WCC, null, partitioning, 3));
+
+				PageRankParameters prParameters = new PageRankParameters(0.85f, 10);
+				Long2DoubleMap expected = new PageRankJob(graph, prParameters).run();
+				Long2DoubleMap actual = (Long2DoubleMap)run(files, directed, Algorithm.PR, prParameters, partitioning,
+						3);
+				assertEquals(message, expected.size(), actual.size());
+				for (Long2DoubleMap.Entry entry : expected.long2DoubleEntrySet()) {
+					assertEquals(message, entry.getDoubleValue(), actual.get(entry.getLongKey()), 1e-15);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testExecutionModesAgreeOnDuplicateEdges() throws IOException {
+		for (boolean directed : new boolean[] {true, false}) {
+			File[] files = withDuplicateEdges(writeRandomGraph(directed), directed);
+			String message = directed ? "directed" : "undirected";
+			CsrGraph graph = new CsrGraphLoader(1).load(files[0].getPath(), files[1].getPath(), directed, false);
+			if (directed) {
+				graph.buildIncomingEdges();
+			}
+			SemiExternalGraphLoader loader = new SemiExternalGraphLoader(folder.getRoot().toPath(), 64, 256);
+			try (SemiExternalGraph semiExternalGraph = loader.load("duplicates", files[0].getPath(),
+					files[1].getPath(), directed)) {
+				assertEquals(message, directed ? NUM_EDGES : 2 * NUM_EDGES, graph.getNumberOfEdges());
+				assertEquals(message, NUM_EDGES, semiExternalGraph.getNumberOfEdges());
+
+				CommunityDetectionLPParameters cdlpParameters = new CommunityDetectionLPParameters(10);
+				Long2LongMap expectedLabels = new CommunityDetectionLPJob(graph, cdlpParameters).run();
+				assertEquals(message, expectedLabels,
+						new SemiExternalCommunityDetectionLPJob(semiExternalGraph, cdlpParameters).run());
+				assertEquals(message, expectedLabels,
+						run(files, directed, Algorithm.CDLP, cdlpParameters, Partitioning.HASH, 3));
+
+				PageRankParameters prParameters = new PageRankParameters(0.85f, 10);
+				Long2DoubleMap expectedRanks = new PageRankJob(graph, prParameters).run();
+				Long2DoubleMap semiExternalRanks = new SemiExternalPageRankJob(semiExternalGraph, prParameters).run();
+				Long2DoubleMap partitionedRanks = (Long2DoubleMap)run(files, directed, Algorithm.PR, prParameters,
+						Partitioning.HASH, 3);
+				assertEquals(message, expectedRanks.size(), semiExternalRanks.size());
+				assertEquals(message, expectedRanks.size(), partitionedRanks.size());
+				for (Long2DoubleMap.Entry entry : expectedRanks.long2DoubleEntrySet()) {
+					assertEquals(message, entry.getDoubleValue(), semiExternalRanks.get(entry.getLongKey()), 1e-12);
+					assertEquals(message, entry.getDoubleValue(), partitionedRanks.get(entry.getLongKey()), 1e-12);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSingleWorker() throws IOException {
+		File[] files = writeRandomGraph(false);
+		CsrGraph graph = new CsrGraphLoader(1).load(files[0].getPath(), files[1].getPath(), false, false);
+
+		assertEquals(new WeaklyConnectedComponentsJob(graph).run(),
+				run(files, false, Algorithm.WCC, null, Partitioning.HASH, 1));
+	}
+
+	@Test
+	public void testWorkersInSeparateProcesses() throws IOException {
+		File[] files = writeRandomGraph(true);
+		CsrGraph graph = new CsrGraphLoader(1).load(files[0].getPath(), files[1].getPath(), true, false);
+		BreadthFirstSearchParameters parameters = new BreadthFirstSearchParameters(graph.getVertexId(0));
+
+		WorkerLauncher launcher = new ProcessWorkerLauncher(Arrays.asList("-Xmx64m"),
+				folder.getRoot().toPath().resolve("logs"));
+		assertEquals(new BreadthFirstSearchJob(graph, parameters).run(), PartitionedRunner.run(files[0].getPath(),
+				files[1].getPath(), true, Algorithm.BFS, parameters, Partitioning.RANGE, 2, launcher));
+	}
+
+	@Test
+	public void testCommunicationStatistics() throws IOException {
+		File[] files = writeRandomGraph(false);
+		JobDescription job = JobDescription.create(files[0].getPath(), files[1].getPath(), false, Algorithm.PR,
+				new PageRankParameters(0.85f, 5), Partitioning.HASH, 3);
+		try (PartitionCoordinator coordinator = new PartitionCoordinator(3, new ThreadWorkerLauncher())) {
+			coordinator.start(job);
+			Progress.get().beginProcessing("graph", "PR");
+			coordinator.process();
+
+			// The workers report every superstep, in which they process all vertices and both directions of all edges
+			assertEquals(4, Progress.get().getIteration());
+			assertEquals(5L * NUM_VERTICES, Progress.get().getVerticesProcessed());
+			assertEquals(5L * 2 * NUM_EDGES, Progress.get().getEdgesProcessed());
+
+			// One superstep per iteration; every worker sends its boundary values to the two other workers
+			assertEquals(5, coordinator.getCommunicationStatistics().size());
+			for (CommunicationStatistics superstep : coordinator.getCommunicationStatistics()) {
+				assertTrue(superstep.getValuesSent() > 0);
+				assertTrue(superstep.getBytesSent() >= 8 * superstep.getValuesSent());
+			}
+			CommunicationStatistics total = coordinator.getTotalCommunication();
+			assertEquals(5 * coordinator.getCommunicationStatistics().get(0).getValuesSent(), total.getValuesSent());
+		}
+	}
+
+	@Test
+	public void testWorkerFailureIsReported() throws IOException {
+		File vertexFile = write("vertices", "1", "2", "3");
+		File edgeFile = write("edges", "1 2", "2 4");
+		try {
+			PartitionedRunner.run(vertexFile.getPath(), edgeFile.getPath(), true, Algorithm.WCC, null,
+					Partitioning.HASH, 2, new ThreadWorkerLauncher());
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("not in the vertex file"));
+		}
+	}
+
+	private Map<Long, ? extends Object> run(File[] files, boolean directed, Algorithm algorithm, Object parameters,
+			Partitioning partitioning, int numWorkers) throws IOException {
+		return PartitionedRunner.run(files[0].getPath(), files[1].getPath(), directed, algorithm, parameters,
+				partitioning, numWorkers, new ThreadWorkerLauncher());
+	}
+
+	/**
+	 * @return the vertex file and edge file of a random graph without self-loops and duplicate edges
+	 */
+	private File[] writeRandomGraph(boolean directed) throws IOException {
+		long[] vertexIds = new long[NUM_VERTICES];
+		for (int v = 0; v < NUM_VERTICES; v++) {
+			vertexIds[v] = 3L * v + 7;
+		}
+		LongArrays.shuffle(vertexIds, random);
+
+		String[] vertices = new String[NUM_VERTICES];
+		for (int v = 0; v < NUM_VERTICES; v++) {
+			vertices[v] = String.valueOf(vertexIds[v]);
+		}
+		// Edges stay within the first or second half of the vertex file, which splits the graph in components
+		LongOpenHashSet edgeKeys = new LongOpenHashSet();
+		String[] edges = new String[NUM_EDGES];
+		for (int e = 0; e < NUM_EDGES; ) {
+			int offset = random.nextBoolean() ? 0 : NUM_VERTICES / 2;
+			int source = offset + random.nextInt(NUM_VERTICES / 2);
+			int destination = offset + random.nextInt(NUM_VERTICES / 2);
+			long key = directed ? (long)source * NUM_VERTICES + destination
+					: (long)Math.min(source, destination) * NUM_VERTICES + Math.max(source, destination);
+			if (source != destination && edgeKeys.add(key)) {
+				edges[e++] = vertexIds[source] + " " + vertexIds[destination];
+			}
+		}
+		return new File[] {write("vertices", vertices), write("edges", edges)};
+	}
+
+	/**
+	 * @return the vertex file and a copy of the edge file in which every third edge is repeated, for undirected graphs
+	 * alternately in the same and in the opposite direction
+	 */
+	private File[] withDuplicateEdges(File[] files, boolean directed) throws IOException {
+		List<String> edges = new ArrayList<>(Files.readAllLines(files[1].toPath(), StandardCharsets.UTF_8));
+		int numEdges = edges.size();
+		for (int e = 0; e < numEdges; e += 3) {
+			String[] endpoints = edges.get(e).split(" ");
+			boolean reversed = !directed && e % 2 == 0;
+			edges.add(reversed ? endpoints[1] + " " + endpoints[0] : edges.get(e));
+		}
+		Collections.shuffle(edges, random);
+		return new File[] {files[0], write("edges", edges.toArray(new String[edges.size()]))};
+	}
+
+	private File write(String prefix, String... lines) throws IOException {
+		File file = folder.newFile(prefix + "-" + random.nextInt() + ".txt");
+		try (PrintWriter writer = new PrintWriter(file)) {
+			for (String line : lines) {
+				writer.println(line);
+			}
+		}
+		return file;
+	}
+
+}
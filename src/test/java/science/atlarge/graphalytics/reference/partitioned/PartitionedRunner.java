@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+
+/**
+ * Runs partitioned jobs on in-memory test graphs, by writing them to vertex and edge files.
+ */
+public final class PartitionedRunner {
+
+	private PartitionedRunner() {
+	}
+
+	/**
+	 * Runs a job with workers on threads of the current JVM.
+	 */
+	public static Map<Long, ? extends Object> run(CsrGraph graph, File directory, Algorithm algorithm,
+			Object parameters, Partitioning partitioning, int numWorkers) throws IOException {
+		return run(graph, directory, algorithm, parameters, partitioning, numWorkers, new ThreadWorkerLauncher());
+	}
+
+	public static Map<Long, ? extends Object> run(CsrGraph graph, File directory, Algorithm algorithm,
+			Object parameters, Partitioning partitioning, int numWorkers, WorkerLauncher launcher)
+			throws IOException {
+		File vertexFile = new File(directory, "graph.v");
+		File edgeFile = new File(directory, "graph.e");
+		write(graph, vertexFile, edgeFile);
+		return run(vertexFile.getPath(), edgeFile.getPath(), graph.isDirected(), algorithm, parameters, partitioning,
+				numWorkers, launcher);
+	}
+
+	public static Map<Long, ? extends Object> run(String vertexFilePath, String edgeFilePath, boolean directed,
+			Algorithm algorithm, Object parameters, Partitioning partitioning, int numWorkers, WorkerLauncher launcher)
+			throws IOException {
+		JobDescription job = JobDescription.create(vertexFilePath, edgeFilePath, directed, algorithm, parameters,
+				partitioning, numWorkers);
+		try (PartitionCoordinator coordinator = new PartitionCoordinator(numWorkers, launcher)) {
+			coordinator.start(job);
+			return coordinator.process();
+		}
+	}
+
+	/**
+	 * Writes the vertices of a graph in index order, and its edges in order of source. Undirected edges are written
+	 * once.
+	 */
+	private static void write(CsrGraph graph, File vertexFile, File edgeFile) throws IOException {
+		int[] offsets = graph.getOutOffsets();
+		int[] neighbours = graph.getOutNeighbours();
+		try (PrintWriter vertices = new PrintWriter(vertexFile); PrintWriter edges = new PrintWriter(edgeFile)) {
+			for (int u = 0; u < graph.getNumberOfVertices(); u++) {
+				vertices.println(graph.getVertexId(u));
+				for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+					if (graph.isDirected() || u < neighbours[i]) {
+						edges.println(graph.getVertexId(u) + " " + graph.getVertexId(neighbours[i]));
+					}
+				}
+			}
+		}
+	}
+
+}
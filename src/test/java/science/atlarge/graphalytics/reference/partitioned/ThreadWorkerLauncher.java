@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.partitioned;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Launches every worker on a thread in the current JVM, to test partitioned runs without starting processes.
+ */
+public class ThreadWorkerLauncher implements WorkerLauncher {
+
+	private final List<Thread> threads = new ArrayList<>();
+
+	@Override
+	public void launch(final int workerId, final String host, final int port) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				new PartitionWorker(host, port, workerId).run();
+			}
+		}, "reference-worker-" + workerId);
+		thread.setDaemon(true);
+		thread.start();
+		threads.add(thread);
+	}
+
+	@Override
+	public void close() {
+		for (Thread thread : threads) {
+			try {
+				thread.join(10000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		threads.clear();
+	}
+
+}
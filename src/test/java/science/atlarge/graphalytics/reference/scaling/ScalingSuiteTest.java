@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.scaling;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import science.atlarge.graphalytics.domain.algorithms.Algorithm;
+import science.atlarge.graphalytics.reference.util.FloatingPointMode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the scaling suite on tiny graphs, and the metrics, regressions and files of the scaling report.
+ */
+public class ScalingSuiteTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Measurement measurement(Representation representation, int scale, int threads,
+			long processingMillis) {
+		return new Measurement(Algorithm.PR, representation, scale, 1L << scale, 16L << scale, threads, 100,
+				processingMillis, 1L << 30, 5, false);
+	}
+
+	@Test
+	public void testDefaultScalesGrowWithThreads() {
+		assertArrayEquals(new int[] {1, 2, 4, 6}, ScalingSuite.defaultThreadCounts(6));
+		assertArrayEquals(new int[] {1}, ScalingSuite.defaultThreadCounts(1));
+		assertArrayEquals(new int[] {14, 15, 16, 17}, ScalingSuite.defaultScales(14, new int[] {1, 2, 4, 6}));
+		assertArrayEquals(new int[] {14}, ScalingSuite.defaultScales(14, new int[] {1}));
+	}
+
+	@Test
+	public void testSuiteMeasuresEverySupportedConfiguration() throws IOException {
+		ScalingSuite suite = new ScalingSuite(folder.getRoot().toPath());
+		suite.setThreadCounts(new int[] {1, 2});
+		suite.setScales(new int[] {6});
+		suite.setEdgeFactor(4);
+		suite.setRepetitions(1);
+		List<Measurement> measurements = suite.run();
+
+		// Sequential jobs are only measured with one thread
+		int expected = 0;
+		for (Algorithm algorithm : Algorithm.values()) {
+			for (Representation representation : Representation.values()) {
+				if (representation.supports(algorithm, true)) {
+					expected += ScalingSuite.isSequential(algorithm, representation) ? 1 : 2;
+				}
+			}
+		}
+		assertEquals(expected, measurements.size());
+		for (Measurement measurement : measurements) {
+			assertEquals(64, measurement.getNumberOfVertices());
+			assertTrue(measurement.getNumberOfEdges() > 0);
+			assertTrue(measurement.getEvps() > 0);
+			assertEquals(ScalingSuite.isSequential(measurement.getAlgorithm(), measurement.getRepresentation()),
+					measurement.isSequential());
+			if (measurement.isSequential()) {
+				assertEquals(1, measurement.getNumberOfThreads());
+			}
+		}
+
+		ScalingReport report = new ScalingReport(measurements);
+		Path csvFile = folder.getRoot().toPath().resolve("scaling.csv");
+		Path htmlFile = folder.getRoot().toPath().resolve("scaling.html");
+		report.writeCsv(csvFile, null);
+		report.writeHtml(htmlFile, suite.describe(), null);
+
+		List<Measurement> read = ScalingReport.readCsv(csvFile);
+		assertEquals(measurements.size(), read.size());
+		for (int i = 0; i < read.size(); i++) {
+			assertTrue(read.get(i).isConfigurationOf(measurements.get(i)));
+			assertEquals(measurements.get(i).getProcessingMillis(), read.get(i).getProcessingMillis());
+			assertEquals(measurements.get(i).getPeakRssBytes(), read.get(i).getPeakRssBytes());
+			assertEquals(measurements.get(i).isSequential(), read.get(i).isSequential());
+		}
+		String html = new String(Files.readAllBytes(htmlFile), StandardCharsets.UTF_8);
+		assertTrue(html.contains("<svg"));
+		assertTrue(html.contains("SSSP"));
+		assertTrue(html.contains("<p>Sequential in in-memory, outgoing-only, semi-external: measured with one thread " +
+				"only.</p>"));
+	}
+
+	@Test
+	public void testPageRankInDeterministicMode() throws IOException {
+		ScalingSuite suite = new ScalingSuite(folder.getRoot().toPath());
+		suite.setAlgorithms(Collections.singletonList(Algorithm.PR));
+		suite.setRepresentations(Collections.singletonList(Representation.IN_MEMORY));
+		suite.setThreadCounts(new int[] {1, 2});
+		suite.setScales(new int[] {6});
+		suite.setEdgeFactor(4);
+		suite.setRepetitions(1);
+		suite.setFloatingPointMode(FloatingPointMode.DETERMINISTIC);
+
+		assertEquals(2, suite.run().size());
+		assertTrue(suite.describe().contains("PageRank in deterministic floating-point mode"));
+	}
+
+	@Test
+	public void testStrongAndWeakScalingMetrics() {
+		ScalingReport report = new ScalingReport(Arrays.asList(
+				measurement(Representation.IN_MEMORY, 10, 1, 800),
+				measurement(Representation.IN_MEMORY, 10, 2, 500),
+				measurement(Representation.IN_MEMORY, 10, 4, 250),
+				measurement(Representation.IN_MEMORY, 11, 2, 1000),
+				measurement(Representation.IN_MEMORY, 12, 4, 1600)));
+		List<Measurement> measurements = report.getMeasurements();
+
+		assertEquals(1.0, report.getSpeedup(measurements.get(0)), 1e-9);
+		assertEquals(1.6, report.getSpeedup(measurements.get(1)), 1e-9);
+		assertEquals(0.8, report.getEfficiency(measurements.get(2)), 1e-9);
+		assertEquals(0.8, report.getWeakScalingEfficiency(measurements.get(3)), 1e-9);
+		assertEquals(0.5, report.getWeakScalingEfficiency(measurements.get(4)), 1e-9);
+		// The scale does not grow with the threads
+		assertTrue(Double.isNaN(report.getWeakScalingEfficiency(measurements.get(1))));
+	}
+
+	@Test
+	public void testSequentialJobsHaveNoSpeedup() {
+		Measurement sequential = new Measurement(Algorithm.WCC, Representation.IN_MEMORY, 10, 1L << 10, 16L << 10, 1,
+				100, 400, 1L << 30, 5, true);
+		ScalingReport report = new ScalingReport(Arrays.asList(sequential,
+				measurement(Representation.IN_MEMORY, 10, 1, 800)));
+
+		assertTrue(Double.isNaN(report.getSpeedup(sequential)));
+		assertTrue(Double.isNaN(report.getEfficiency(sequential)));
+		assertTrue(Double.isNaN(report.getWeakScalingEfficiency(sequential)));
+		assertEquals(1.0, report.getSpeedup(report.getMeasurements().get(1)), 1e-9);
+		assertEquals("WCC in-memory scale 10 1 threads (sequential)", sequential.toString());
+		assertTrue(ScalingSuite.isSequential(Algorithm.CDLP, Representation.OUTGOING_ONLY));
+		assertTrue(ScalingSuite.isSequential(Algorithm.PR, Representation.SEMI_EXTERNAL));
+		assertFalse(ScalingSuite.isSequential(Algorithm.PR, Representation.IN_MEMORY));
+	}
+
+	@Test
+	public void testSlowerConfigurationsAreFlaggedAsRegressions() throws IOException {
+		List<Measurement> baseline = Arrays.asList(
+				measurement(Representation.IN_MEMORY, 10, 1, 800),
+				measurement(Representation.IN_MEMORY, 10, 2, 500),
+				measurement(Representation.SEMI_EXTERNAL, 10, 1, 5));
+		ScalingReport report = new ScalingReport(Arrays.asList(
+				measurement(Representation.IN_MEMORY, 10, 1, 850),
+				measurement(Representation.IN_MEMORY, 10, 2, 700),
+				measurement(Representation.SEMI_EXTERNAL, 10, 1, 9),
+				measurement(Representation.IN_MEMORY, 11, 2, 9000)));
+
+		List<ScalingReport.Regression> regressions = report.compareWith(baseline, 0.1);
+
+		// Times below the minimum are too noisy to compare, and new configurations have no baseline
+		assertEquals(1, regressions.size());
+		assertEquals(report.getMeasurements().get(1), regressions.get(0).getMeasurement());
+		assertEquals(500, regressions.get(0).getBaselineValue(), 1e-9);
+		assertEquals("processing time +40%", regressions.get(0).getDescription());
+
+		Path csvFile = folder.getRoot().toPath().resolve("scaling.csv");
+		report.writeCsv(csvFile, regressions);
+		assertEquals(4, ScalingReport.readCsv(csvFile).size());
+		Path htmlFile = folder.getRoot().toPath().resolve("scaling.html");
+		report.writeHtml(htmlFile, "<test>", regressions);
+		String html = new String(Files.readAllBytes(htmlFile), StandardCharsets.UTF_8);
+		assertTrue(html.contains("&lt;test&gt;"));
+		assertTrue(html.contains("processing time +40%"));
+		assertTrue(report.compareWith(Collections.<Measurement>emptyList(), 0.1).isEmpty());
+		assertTrue(new ScalingReport(new ArrayList<Measurement>()).compareWith(baseline, 0.1).isEmpty());
+	}
+
+}
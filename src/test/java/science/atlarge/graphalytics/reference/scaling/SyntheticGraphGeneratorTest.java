@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.scaling;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.CsrGraphLoader;
+import science.atlarge.graphalytics.reference.scaling.SyntheticGraphGenerator.SyntheticGraph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the synthetic graphs are deterministic, valid Graphalytics graphs.
+ */
+public class SyntheticGraphGeneratorTest {
+
+	private static final int SCALE = 8;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testEdgesDoNotDependOnTheNumberOfThreads() {
+		long[] edges = new SyntheticGraphGenerator(4, true, 7, 1).generateEdges(SCALE);
+
+		assertArrayEquals(edges, new SyntheticGraphGenerator(4, true, 7, 3).generateEdges(SCALE));
+		assertFalse(Arrays.equals(edges, new SyntheticGraphGenerator(4, true, 8, 1).generateEdges(SCALE)));
+	}
+
+	@Test
+	public void testEdgesAreUniqueWithoutSelfLoops() {
+		long[] edges = new SyntheticGraphGenerator(8, false, 7, 2).generateEdges(SCALE);
+
+		assertTrue(edges.length > 0);
+		for (int i = 0; i < edges.length; i++) {
+			long source = edges[i] >>> 32;
+			long destination = edges[i] & 0xFFFFFFFFL;
+			assertTrue(source < destination);
+			assertTrue(destination < 1 << SCALE);
+			if (i > 0) {
+				assertTrue(edges[i] > edges[i - 1]);
+			}
+		}
+	}
+
+	@Test
+	public void testGeneratedGraphLoadsAndIsReused() throws IOException {
+		SyntheticGraphGenerator generator = new SyntheticGraphGenerator(4, true, 7, 2);
+		SyntheticGraph graph = generator.generate(SCALE, folder.getRoot().toPath());
+		CsrGraph csrGraph = new CsrGraphLoader(2).load(graph.getVertexFile().toString(),
+				graph.getEdgeFile().toString(), true, true);
+
+		assertEquals(1 << SCALE, csrGraph.getNumberOfVertices());
+		assertEquals(generator.generateEdges(SCALE).length, csrGraph.getNumberOfEdges());
+		assertTrue(csrGraph.getVertexIndex(graph.getSourceVertex()) >= 0);
+		for (double weight : csrGraph.getOutWeights()) {
+			assertTrue(weight > 0 && weight <= 1);
+		}
+
+		FileTime modified = FileTime.fromMillis(0);
+		Files.setLastModifiedTime(graph.getEdgeFile(), modified);
+		SyntheticGraph reused = generator.generate(SCALE, folder.getRoot().toPath());
+		assertEquals(graph.getName(), reused.getName());
+		assertEquals(modified, Files.getLastModifiedTime(reused.getEdgeFile()));
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for writing and restoring checkpoints.
+ */
+public class CheckpointStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRestoreDoubles() {
+		double[] values = {0.5, 1.5, Double.MIN_VALUE, -3.25};
+		try (CheckpointStore store = new CheckpointStore(directory(), "graph-PR", 2)) {
+			store.save(42, 6, values);
+			store.awaitWrite(values);
+			assertEquals(1, store.getNumberOfCheckpoints());
+
+			double[] restored = new double[values.length];
+			assertEquals(6, store.restore(42, restored));
+			assertArrayEquals(values, restored, 0.0);
+		}
+	}
+
+	@Test
+	public void testRestoreLongs() {
+		long[] values = {7, Long.MIN_VALUE, Long.MAX_VALUE};
+		try (CheckpointStore store = new CheckpointStore(directory(), "graph-CDLP", 2)) {
+			store.save(42, 4, values);
+			store.awaitWrite(values);
+
+			long[] restored = new long[values.length];
+			assertEquals(4, store.restore(42, restored));
+			assertArrayEquals(values, restored);
+		}
+	}
+
+	@Test
+	public void testLatestCheckpointReplacesPrevious() {
+		double[] first = {1.0, 2.0};
+		double[] second = {3.0, 4.0};
+		try (CheckpointStore store = new CheckpointStore(directory(), "graph-PR", 2)) {
+			store.save(42, 2, first);
+			store.save(42, 4, second);
+			store.awaitWrite(second);
+
+			double[] restored = new double[2];
+			assertEquals(4, store.restore(42, restored));
+			assertArrayEquals(second, restored, 0.0);
+		}
+	}
+
+	@Test
+	public void testMismatchingCheckpointIsIgnored() {
+		double[] values = {1.0, 2.0};
+		try (CheckpointStore store = new CheckpointStore(directory(), "graph-PR", 2)) {
+			store.save(42, 2, values);
+			store.awaitWrite(values);
+
+			assertEquals(0, store.restore(43, new double[2]));
+			assertEquals(0, store.restore(42, new double[3]));
+			assertEquals(0, store.restore(42, new long[2]));
+		}
+	}
+
+	@Test
+	public void testDeleteRemovesCheckpoint() {
+		double[] values = {1.0, 2.0};
+		try (CheckpointStore store = new CheckpointStore(directory(), "graph-PR", 2)) {
+			store.save(42, 2, values);
+			store.delete();
+
+			assertFalse(Files.exists(store.getFile()));
+			assertEquals(0, store.restore(42, new double[2]));
+		}
+	}
+
+	@Test
+	public void testCheckpointsAreDueEveryInterval() {
+		try (CheckpointStore store = new CheckpointStore(directory(), "graph-PR", 3)) {
+			assertFalse(store.isDue(1, 10));
+			assertTrue(store.isDue(3, 10));
+			assertTrue(store.isDue(9, 10));
+			assertFalse(store.isDue(9, 9));
+		}
+	}
+
+	private Path directory() {
+		return folder.getRoot().toPath().resolve("checkpoints");
+	}
+
+}
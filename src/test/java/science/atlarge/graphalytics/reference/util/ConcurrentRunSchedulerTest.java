@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that concurrent runs stay within the thread budget and report their own outcome and timing.
+ */
+public class ConcurrentRunSchedulerTest {
+
+	@Test
+	public void testThreadBudgetIsSplitOverSlots() {
+		assertArrayEquals(new int[] {3, 3, 2}, new ConcurrentRunScheduler(8, 3).getThreadsPerSlot(6));
+		assertArrayEquals(new int[] {4, 4}, new ConcurrentRunScheduler(8, 0).getThreadsPerSlot(2));
+		// No more slots than threads or runs
+		assertArrayEquals(new int[] {1, 1}, new ConcurrentRunScheduler(2, 0).getThreadsPerSlot(6));
+		assertArrayEquals(new int[] {8}, new ConcurrentRunScheduler(8, 4).getThreadsPerSlot(1));
+	}
+
+	@Test
+	public void testRunsExecuteConcurrentlyWithinBudget() throws InterruptedException {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<ConcurrentRunScheduler.Run<Integer>> runs = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			final int value = i;
+			runs.add(new ConcurrentRunScheduler.Run<Integer>() {
+				@Override
+				public Integer run(ParallelExecutor executor) throws Exception {
+					int current = running.incrementAndGet();
+					synchronized (maxRunning) {
+						maxRunning.set(Math.max(maxRunning.get(), current));
+					}
+					Thread.sleep(50);
+					running.decrementAndGet();
+					return value * executor.getNumThreads();
+				}
+			});
+		}
+
+		ConcurrentRunScheduler.Suite<Integer> suite = new ConcurrentRunScheduler(4, 2).runAll(runs);
+
+		assertEquals(2, maxRunning.get());
+		for (int i = 0; i < runs.size(); i++) {
+			ConcurrentRunScheduler.Result<Integer> result = suite.getResults().get(i);
+			assertNull(result.getFailure());
+			assertEquals(2, result.getNumberOfThreads());
+			assertEquals(Integer.valueOf(2 * i), result.getOutput());
+			// The processing time of a run excludes the time it waited for a slot
+			assertTrue(result.getProcessingNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+			assertTrue(result.getProcessingNanos() < suite.getWallClockNanos());
+		}
+		assertTrue(suite.getResults().get(5).getWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertTrue(suite.getWallClockNanos() >= TimeUnit.MILLISECONDS.toNanos(150));
+		assertTrue(suite.getTotalProcessingNanos() > suite.getWallClockNanos());
+	}
+
+	@Test
+	public void testConcurrentRunsTrackTheirOwnProgress() throws InterruptedException {
+		Progress total = new Progress();
+		total.beginProcessing("graph", "suite");
+		final List<Progress> progresses = new ArrayList<>();
+		List<ConcurrentRunScheduler.Run<Integer>> runs = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			final int iteration = i;
+			final int size = 1000 * (i + 1);
+			final Progress progress = new Progress(total);
+			progresses.add(progress);
+			runs.add(new ConcurrentRunScheduler.Run<Integer>() {
+				@Override
+				public Integer run(ParallelExecutor executor) throws Exception {
+					Progress previous = Progress.bind(progress);
+					try {
+						progress.beginProcessing("graph", "run-" + iteration);
+						Progress.get().beginIteration(iteration);
+						// The progress is bound to the threads of the executor as well
+						executor.forEach(size, new ParallelExecutor.RangeTask() {
+							@Override
+							public void run(int from, int to) {
+								Progress.get().addProcessed(to - from, 2 * (to - from));
+							}
+						});
+						return size;
+					} finally {
+						Progress.bind(previous);
+					}
+				}
+			});
+		}
+
+		ConcurrentRunScheduler.Suite<Integer> suite = new ConcurrentRunScheduler(4, 2).runAll(runs);
+
+		for (int i = 0; i < runs.size(); i++) {
+			assertNull(suite.getResults().get(i).getFailure());
+			Progress progress = progresses.get(i);
+			assertEquals("run-" + i, progress.getAlgorithm());
+			assertEquals(i, progress.getIteration());
+			assertEquals(1000L * (i + 1), progress.getVerticesProcessed());
+			assertEquals(2000L * (i + 1), progress.getEdgesProcessed());
+		}
+		assertEquals(-1, total.getIteration());
+		assertEquals(10000L, total.getVerticesProcessed());
+		assertEquals(20000L, total.getEdgesProcessed());
+	}
+
+	@Test
+	public void testFailedRunDoesNotAffectOtherRuns() throws InterruptedException {
+		final IllegalStateException failure = new IllegalStateException("Failed run");
+		List<ConcurrentRunScheduler.Run<String>> runs = new ArrayList<>();
+		runs.add(new ConcurrentRunScheduler.Run<String>() {
+			@Override
+			public String run(ParallelExecutor executor) {
+				throw failure;
+			}
+		});
+		runs.add(new ConcurrentRunScheduler.Run<String>() {
+			@Override
+			public String run(ParallelExecutor executor) {
+				return "done";
+			}
+		});
+
+		ConcurrentRunScheduler.Suite<String> suite = new ConcurrentRunScheduler(2, 1).runAll(runs);
+
+		assertSame(failure, suite.getResults().get(0).getFailure());
+		assertNull(suite.getResults().get(0).getOutput());
+		assertEquals("done", suite.getResults().get(1).getOutput());
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for copying the log to a file. The tests log at error level, which the default log4j configuration prints.
+ */
+public class DriverLogTest {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final int NUM_THREADS = 4;
+	private static final int LINES_PER_THREAD = 25;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCopiesLinesOfAllThreadsInOrder() throws Exception {
+		File file = new File(folder.getRoot(), "platform/driver.logs");
+		LOG.error("Before the log is opened");
+		try (DriverLog log = DriverLog.open(file.toPath(), "run-1", "PR")) {
+			Thread[] threads = new Thread[NUM_THREADS];
+			for (int t = 0; t < NUM_THREADS; t++) {
+				final int thread = t;
+				threads[t] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						for (int i = 0; i < LINES_PER_THREAD; i++) {
+							LOG.error("Thread " + thread + " line " + i);
+						}
+					}
+				});
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			LOG.debug("Below the level of the console");
+		}
+		LOG.error("After the log is closed");
+
+		List<String> lines = readLines(file);
+		assertEquals(NUM_THREADS * LINES_PER_THREAD, lines.size());
+		int[] next = new int[NUM_THREADS];
+		for (String line : lines) {
+			String[] parts = line.substring(line.indexOf("Thread ")).split(" ");
+			int thread = Integer.parseInt(parts[1]);
+			assertEquals(line, next[thread]++, Integer.parseInt(parts[3]));
+		}
+	}
+
+	@Test
+	public void testReopenTruncatesFile() throws IOException {
+		File file = new File(folder.getRoot(), "driver.logs");
+		try (DriverLog log = DriverLog.open(file.toPath(), "run-1", "PR")) {
+			LOG.error("First run");
+		}
+		try (DriverLog log = DriverLog.open(file.toPath(), "run-1", "PR")) {
+			LOG.error("Second run");
+		}
+
+		List<String> lines = readLines(file);
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0), lines.get(0).endsWith("Second run"));
+	}
+
+	@Test
+	public void testRecordsCarryRunAlgorithmAndPhase() throws IOException {
+		File file = new File(folder.getRoot(), "driver.logs");
+		PrintStream out = System.out;
+		try (DriverLog log = DriverLog.open(file.toPath(), "42 b", "CDLP")) {
+			assertSame(out, System.out);
+			LOG.error(DriverLog.PROCESSING, DriverLog.PROCESSING_STARTS + 1000);
+			LOG.error("Without a phase");
+		}
+
+		List<String> lines = readLines(file);
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0),
+				lines.get(0).contains(" run=42_b algorithm=CDLP phase=PROCESSING - Processing starts at: 1000"));
+		assertTrue(lines.get(1), lines.get(1).endsWith(" run=42_b algorithm=CDLP - Without a phase"));
+	}
+
+	@Test
+	public void testPhaseRecordsYieldProcessingTimeAndMakespan() throws IOException {
+		File file = new File(folder.getRoot(), "driver.logs");
+		try (DriverLog log = DriverLog.open(file.toPath(), "run-1", "BFS")) {
+			LOG.error(DriverLog.LOADING, DriverLog.LOADING_STARTS + 1000);
+			LOG.error(DriverLog.PROCESSING, DriverLog.PROCESSING_STARTS + 3000);
+			LOG.error(DriverLog.OUTPUT, DriverLog.OUTPUT_STARTS + 7000);
+			LOG.error(DriverLog.OUTPUT, DriverLog.OUTPUT_ENDS + 8000);
+			LOG.error(DriverLog.PROCESSING, DriverLog.PROCESSING_ENDS + 8500);
+		}
+
+		// The metrics are read from the file as ReferencePlatform.finalize does
+		String logs = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		assertEquals(Long.valueOf(1000), DriverLog.readTime(logs, DriverLog.LOADING_STARTS));
+		assertEquals(Long.valueOf(3000), DriverLog.readTime(logs, DriverLog.PROCESSING_STARTS));
+		assertEquals(Long.valueOf(8500), DriverLog.readTime(logs, DriverLog.PROCESSING_ENDS));
+		assertNull(DriverLog.readTime("Unrelated line 12\n", DriverLog.PROCESSING_ENDS));
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+	}
+
+}
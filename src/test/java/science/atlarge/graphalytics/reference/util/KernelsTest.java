@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the kernels, comparing them with straightforward loops. Uneven lengths and offsets exercise the
+ * handling of partial vectors when the kernels are vectorized.
+ */
+public class KernelsTest {
+
+	private final Random random = new Random(42);
+
+	@Test
+	public void testDivideByDegree() {
+		int numVertices = 1001;
+		int[] offsets = new int[numVertices + 1];
+		double[] values = new double[numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			offsets[v + 1] = offsets[v] + (v % 7 == 0 ? 0 : random.nextInt(20));
+			values[v] = random.nextDouble();
+		}
+
+		double[] expected = new double[numVertices];
+		double[] actual = new double[numVertices];
+		for (int v = 3; v < numVertices - 2; v++) {
+			int degree = offsets[v + 1] - offsets[v];
+			expected[v] = degree > 0 ? values[v] / degree : 0.0;
+		}
+		Kernels.divideByDegree(values, offsets, actual, 3, numVertices - 2);
+
+		assertArrayEquals(expected, actual, 0.0);
+	}
+
+	@Test
+	public void testGatherSum() {
+		double[] values = randomValues(500);
+		int[] indices = randomIndices(997, values.length);
+
+		for (int length = 0; length < 40; length++) {
+			double expected = 0.0;
+			for (int i = 5; i < 5 + length; i++) {
+				expected += values[indices[i]];
+			}
+			assertEquals(expected, Kernels.gatherSum(values, indices, 5, 5 + length), 1e-12);
+		}
+	}
+
+	@Test
+	public void testScatterAdd() {
+		double[] expected = randomValues(500);
+		double[] actual = expected.clone();
+		int[] indices = distinctIndices(123, expected.length);
+
+		for (int i = 1; i < indices.length; i++) {
+			expected[indices[i]] += 0.25;
+		}
+		Kernels.scatterAdd(actual, indices, 1, indices.length, 0.25);
+
+		assertArrayEquals(expected, actual, 0.0);
+	}
+
+	@Test
+	public void testCountCommon() {
+		for (int trial = 0; trial < 200; trial++) {
+			int[] a = distinctIndices(random.nextInt(60), 200);
+			int[] b = distinctIndices(random.nextInt(60), 200);
+			IntArrays.quickSort(a);
+			IntArrays.quickSort(b);
+
+			int expected = 0;
+			for (int x : a) {
+				for (int y : b) {
+					if (x == y) {
+						expected++;
+					}
+				}
+			}
+			assertEquals(expected, Kernels.countCommon(a, 0, a.length, b, 0, b.length));
+		}
+	}
+
+	private double[] randomValues(int size) {
+		double[] values = new double[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = random.nextDouble();
+		}
+		return values;
+	}
+
+	private int[] randomIndices(int size, int bound) {
+		int[] indices = new int[size];
+		for (int i = 0; i < size; i++) {
+			indices[i] = random.nextInt(bound);
+		}
+		return indices;
+	}
+
+	private int[] distinctIndices(int size, int bound) {
+		int[] all = new int[bound];
+		for (int i = 0; i < bound; i++) {
+			all[i] = i;
+		}
+		IntArrays.shuffle(all, random);
+		return IntArrays.copy(all, 0, size);
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Scanner;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import science.atlarge.graphalytics.domain.algorithms.SingleSourceShortestPathsParameters;
+import science.atlarge.graphalytics.reference.algorithms.lcc.LocalClusteringCoefficientJob;
+import science.atlarge.graphalytics.reference.algorithms.sssp.SingleSourceShortestPathJob;
+import science.atlarge.graphalytics.reference.algorithms.wcc.WeaklyConnectedComponentsJob;
+import science.atlarge.graphalytics.reference.graph.CsrGraph;
+import science.atlarge.graphalytics.reference.graph.VertexIndex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for exposing the progress of a run through JMX and HTTP on the loopback interface.
+ */
+public class MetricsServerTest {
+
+	@Test
+	public void testServesProgressOverHttp() throws Exception {
+		Progress progress = new Progress();
+		progress.beginLoad("graph-\"1\"", "PR");
+		progress.endPhase(Progress.Phase.LOADING);
+		progress.beginProcessing("graph-\"1\"", "PR");
+		progress.beginIteration(0);
+		progress.addProcessed(10, 40);
+		progress.beginIteration(1);
+		progress.addProcessed(10, 40);
+
+		try (MetricsServer server = MetricsServer.start(progress, 0)) {
+			assertTrue(server.getUrl().startsWith("http://127.0.0.1:"));
+			HttpURLConnection connection = (HttpURLConnection)new URL(server.getUrl()).openConnection();
+			assertEquals(200, connection.getResponseCode());
+			assertTrue(connection.getContentType().startsWith("application/json"));
+			String json;
+			try (InputStream in = connection.getInputStream(); Scanner scanner = new Scanner(in, "UTF-8")) {
+				json = scanner.useDelimiter("\\A").next();
+			}
+			assertTrue(json, json.startsWith("{\"graph\":\"graph-\\\"1\\\"\",\"algorithm\":\"PR\","));
+			assertTrue(json, json.contains("\"phase\":\"processing\""));
+			assertTrue(json, json.contains("\"iteration\":1,"));
+			assertTrue(json, json.contains("\"verticesProcessed\":20,"));
+			assertTrue(json, json.contains("\"edgesProcessed\":80,"));
+			assertTrue(json, json.contains("\"heapUsedBytes\":"));
+		}
+	}
+
+	@Test
+	public void testRegistersMXBean() throws Exception {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(MetricsServer.OBJECT_NAME);
+		Progress progress = new Progress();
+		progress.beginLoad("graph", "BFS");
+
+		try (MetricsServer server = MetricsServer.start(progress, -1)) {
+			assertNull(server.getUrl());
+			assertEquals("loading", mBeanServer.getAttribute(name, "Phase"));
+			assertEquals("BFS", mBeanServer.getAttribute(name, "Algorithm"));
+			assertEquals(-1, mBeanServer.getAttribute(name, "Iteration"));
+
+			progress.endPhase(Progress.Phase.LOADING);
+			assertEquals("idle", mBeanServer.getAttribute(name, "Phase"));
+		}
+		assertFalse(mBeanServer.isRegistered(name));
+	}
+
+	@Test
+	public void testExposesConcurrentRuns() throws Exception {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		Progress total = new Progress();
+		total.beginProcessing("graph", "PR,BFS");
+		Progress pageRank = new Progress(total);
+		pageRank.beginProcessing("graph", "PR");
+		pageRank.beginIteration(3);
+		pageRank.addProcessed(10, 40);
+		Progress breadthFirstSearch = new Progress(total);
+		breadthFirstSearch.beginProcessing("graph", "BFS");
+		breadthFirstSearch.beginIteration(1);
+		breadthFirstSearch.addProcessed(5, 20);
+
+		ObjectName pageRankName = new ObjectName(MetricsServer.getObjectName("graph-PR"));
+		ObjectName breadthFirstSearchName = new ObjectName(MetricsServer.getObjectName("graph-BFS"));
+		try (MetricsServer server = MetricsServer.start(total, 0)) {
+			server.addRun("graph-PR", pageRank);
+			server.addRun("graph-BFS", breadthFirstSearch);
+			assertEquals(3, mBeanServer.getAttribute(pageRankName, "Iteration"));
+			assertEquals("BFS", mBeanServer.getAttribute(breadthFirstSearchName, "Algorithm"));
+			assertEquals(15L, mBeanServer.getAttribute(new ObjectName(MetricsServer.OBJECT_NAME),
+					"VerticesProcessed"));
+
+			HttpURLConnection connection = (HttpURLConnection)new URL(server.getUrl()).openConnection();
+			String json;
+			try (InputStream in = connection.getInputStream(); Scanner scanner = new Scanner(in, "UTF-8")) {
+				json = scanner.useDelimiter("\\A").next();
+			}
+			assertTrue(json, json.startsWith("{\"graph\":\"graph\",\"algorithm\":\"PR,BFS\","));
+			assertTrue(json, json.contains("\"verticesProcessed\":15,"));
+			assertTrue(json, json.contains(",\"runs\":[{\"run\":\"graph-PR\",\"graph\":\"graph\"," +
+					"\"algorithm\":\"PR\""));
+			assertTrue(json, json.contains("},{\"run\":\"graph-BFS\",\"graph\":\"graph\",\"algorithm\":\"BFS\""));
+			assertTrue(json, json.contains("\"iteration\":3,"));
+			assertTrue(json, json.endsWith("}]}"));
+		}
+		assertFalse(mBeanServer.isRegistered(pageRankName));
+		assertFalse(mBeanServer.isRegistered(breadthFirstSearchName));
+	}
+
+	@Test
+	public void testPhaseTimings() throws Exception {
+		Progress progress = new Progress();
+		assertEquals("idle", progress.getPhase());
+		assertEquals(0, progress.getLoadTimeMillis());
+
+		progress.beginLoad("graph", "WCC");
+		Thread.sleep(20);
+		progress.endPhase(Progress.Phase.LOADING);
+		long loadTime = progress.getLoadTimeMillis();
+		assertTrue(loadTime >= 20);
+		Thread.sleep(20);
+		assertEquals(loadTime, progress.getLoadTimeMillis());
+
+		progress.beginProcessing("graph", "WCC");
+		progress.addProcessed(0, 1000);
+		Thread.sleep(20);
+		assertTrue(progress.getProcessingTimeMillis() >= 20);
+		assertTrue(progress.getEdgesPerSecond() > 0.0);
+		assertEquals(0, progress.getOutputTimeMillis());
+	}
+
+	@Test
+	public void testJobsWithoutIterationsReportProgress() {
+		// A directed ring in which every vertex links to the next two, larger than a batch of progress
+		int numVertices = 3 * Progress.REPORT_INTERVAL + 5;
+		long[] vertexIds = new long[numVertices];
+		int[] offsets = new int[numVertices + 1];
+		int[] neighbours = new int[2 * numVertices];
+		double[] weights = new double[2 * numVertices];
+		for (int v = 0; v < numVertices; v++) {
+			vertexIds[v] = v;
+			offsets[v + 1] = 2 * (v + 1);
+			int next = (v + 1) % numVertices;
+			int afterNext = (v + 2) % numVertices;
+			neighbours[2 * v] = Math.min(next, afterNext);
+			neighbours[2 * v + 1] = Math.max(next, afterNext);
+			weights[2 * v] = 1.0;
+			weights[2 * v + 1] = 1.0;
+		}
+		CsrGraph graph = new CsrGraph(vertexIds, VertexIndex.build(vertexIds), offsets, neighbours, weights, true, 2);
+		SingleSourceShortestPathsParameters parameters = new SingleSourceShortestPathsParameters(0);
+		Progress progress = Progress.get();
+
+		try (ParallelExecutor executor = new ParallelExecutor(2)) {
+			progress.beginProcessing("ring", "LCC");
+			new LocalClusteringCoefficientJob(graph, executor).run();
+			assertEquals(0, progress.getIteration());
+			assertEquals(numVertices, progress.getVerticesProcessed());
+			assertEquals(2L * numVertices, progress.getEdgesProcessed());
+			String json = MetricsServer.toJson(progress);
+			assertTrue(json, json.contains("\"verticesProcessed\":" + numVertices + ","));
+
+			progress.beginProcessing("ring", "WCC");
+			new WeaklyConnectedComponentsJob(graph).run();
+			assertEquals(numVertices, progress.getVerticesProcessed());
+			assertEquals(4L * numVertices, progress.getEdgesProcessed());
+
+			progress.beginProcessing("ring", "SSSP");
+			new SingleSourceShortestPathJob(graph, parameters, executor, SingleSourceShortestPathJob.Variant.DIJKSTRA,
+					0.0).run();
+			assertEquals(numVertices, progress.getVerticesProcessed());
+			assertEquals(2L * numVertices, progress.getEdgesProcessed());
+
+			// Every bucket of distance width 1 holds the one vertex at that distance, or two for the last one
+			progress.beginProcessing("ring", "SSSP");
+			new SingleSourceShortestPathJob(graph, parameters, executor,
+					SingleSourceShortestPathJob.Variant.DELTA_STEPPING, 1.0).run();
+			assertTrue(progress.getIteration() > 0);
+			assertEquals(numVertices, progress.getVerticesProcessed());
+			assertEquals(2L * numVertices, progress.getEdgesProcessed());
+		}
+	}
+
+	@Test
+	public void testClosedServerStopsServing() throws IOException {
+		String url;
+		try (MetricsServer server = MetricsServer.start(new Progress(), 0)) {
+			url = server.getUrl();
+		}
+		HttpURLConnection connection = (HttpURLConnection)new URL(url).openConnection();
+		try {
+			connection.getResponseCode();
+			fail("Expected the connection to be refused");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+}
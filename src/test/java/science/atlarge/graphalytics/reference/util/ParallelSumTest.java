@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the floating-point modes of ParallelSum.
+ */
+public class ParallelSumTest {
+
+	private static final int SIZE = 25 * ParallelSum.BLOCK_SIZE + 17;
+
+	@Test
+	public void testDeterministicSumIsIndependentOfThreadCount() {
+		double[] values = randomValues();
+		long expected = Double.doubleToLongBits(sum(values, 1, FloatingPointMode.DETERMINISTIC));
+
+		for (int numThreads = 2; numThreads <= 8; numThreads++) {
+			for (int repetition = 0; repetition < 5; repetition++) {
+				assertEquals(expected, Double.doubleToLongBits(sum(values, numThreads, FloatingPointMode.DETERMINISTIC)));
+			}
+		}
+	}
+
+	@Test
+	public void testFastSumIsAccurate() {
+		double[] values = randomValues();
+		double expected = sum(values, 1, FloatingPointMode.DETERMINISTIC);
+
+		assertEquals(expected, sum(values, 4, FloatingPointMode.FAST), Math.abs(expected) * 1e-12);
+	}
+
+	@Test
+	public void testEmptySum() {
+		assertEquals(0.0, sum(new double[0], 4, FloatingPointMode.DETERMINISTIC), 0.0);
+		assertEquals(0.0, sum(new double[0], 4, FloatingPointMode.FAST), 0.0);
+	}
+
+	private static double sum(final double[] values, int numThreads, FloatingPointMode mode) {
+		try (ParallelExecutor executor = new ParallelExecutor(numThreads)) {
+			return ParallelSum.sum(executor, mode, values.length, new ParallelSum.Terms() {
+				@Override
+				public void addTo(ParallelSum.Accumulator sum, int from, int to) {
+					for (int i = from; i < to; i++) {
+						sum.add(values[i]);
+					}
+				}
+			});
+		}
+	}
+
+	private static double[] randomValues() {
+		Random random = new Random(42);
+		double[] values = new double[SIZE];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextDouble() * Math.pow(10, random.nextInt(12) - 6);
+		}
+		return values;
+	}
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package science.atlarge.graphalytics.reference.util;
+
+import org.junit.Before;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs the kernel tests only if the kernels are vectorized, so that they are reported as skipped rather than
+ * silently testing the scalar kernels again. The Java 17 build runs this test with the Vector API enabled and sets
+ * {@value #REQUIRE_VECTORIZED_PROPERTY}, in which case falling back to the scalar kernels fails the test instead.
+ */
+public class VectorizedKernelsTest extends KernelsTest {
+
+	static final String REQUIRE_VECTORIZED_PROPERTY = "graphalytics.kernels.require-vectorized";
+
+	@Before
+	public void checkVectorized() {
+		if (Boolean.getBoolean(REQUIRE_VECTORIZED_PROPERTY)) {
+			assertTrue("The kernels fell back to the scalar implementation", Kernels.isVectorized());
+		} else {
+			assumeTrue(Kernels.isVectorized());
+		}
+	}
+
+}